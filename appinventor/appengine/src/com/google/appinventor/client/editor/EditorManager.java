@@ -16,11 +16,14 @@ import com.google.appinventor.client.editor.youngandroid.YaBlocksEditor;
 import com.google.appinventor.client.explorer.project.Project;
 import com.google.appinventor.client.settings.project.ProjectSettings;
 import com.google.appinventor.shared.rpc.BlocksTruncatedException;
+import com.google.appinventor.shared.rpc.project.ChecksumedFileException;
 import com.google.appinventor.shared.rpc.project.FileDescriptorWithContent;
 import com.google.appinventor.shared.rpc.project.ProjectRootNode;
+import com.google.appinventor.shared.rpc.project.TextPatch;
 import com.google.common.collect.Maps;
 import com.google.gwt.user.client.Command;
 import com.google.gwt.user.client.Timer;
+import com.google.gwt.user.client.rpc.AsyncCallback;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -54,10 +57,16 @@ public final class EditorManager {
   // TODO(user): Make this configurable.
   private static final int AUTO_SAVE_FORCED_TIMEOUT = 30000;
 
+  // Files shorter than this (in characters) are always saved whole.
+  private static final int MIN_PATCH_FILE_LENGTH = 4096;
+
   // Fields used for saving and auto-saving.
   private final Set<ProjectSettings> dirtyProjectSettings;
   private final Set<FileEditor> dirtyFileEditors;
   private final HashMap<String,FileEditor> pendingFileEditors;
+  // Content of each file as last saved, keyed by project ID and file ID. The
+  // next save of the file is sent as a patch against it.
+  private final Map<String, String> savedContents;
   private final Timer autoSaveTimer;
   private boolean autoSaveIsScheduled;
   private long autoSaveRequestTime;
@@ -76,6 +85,7 @@ public final class EditorManager {
     dirtyProjectSettings = new HashSet<ProjectSettings>();
     dirtyFileEditors = new HashSet<FileEditor>();
     pendingFileEditors = new HashMap<String,FileEditor>();
+    savedContents = new HashMap<String, String>();
 
     autoSaveTimer = new Timer() {
       @Override
@@ -153,6 +163,7 @@ public final class EditorManager {
         if (fileEditor != null) {
           dirtyFileEditors.remove(fileEditor);
         }
+        savedContents.remove(projectId + ":" + fileId);
       }
       projectEditor.closeFileEditors(fileIds);
     }
@@ -172,6 +183,7 @@ public final class EditorManager {
     ProjectSettings projectSettings = project.getSettings();
     dirtyProjectSettings.remove(projectSettings);
     openProjectEditors.remove(projectId);
+    savedContents.keySet().removeIf(key -> key.startsWith(projectId + ":"));
   }
 
   /**
@@ -395,11 +407,13 @@ public final class EditorManager {
         final long projectId = fileDescriptor.getProjectId();
         final String fileId = fileDescriptor.getFileId();
         final String content = fileDescriptor.getContent();
+        final String savedContentKey = projectId + ":" + fileId;
         Ode.CLog("Saving fileId " + fileId + " for projectId " + projectId);
-        Ode.getInstance().getProjectService().save2(Ode.getInstance().getSessionId(),
-          projectId, fileId, false, content, new OdeAsyncCallback<Long>(MESSAGES.saveErrorMultipleFiles()) {
+        final OdeAsyncCallback<Long> callback =
+          new OdeAsyncCallback<Long>(MESSAGES.saveErrorMultipleFiles()) {
             @Override
             public void onSuccess(Long date) {
+              savedContents.put(savedContentKey, content);
               if (dateHolder.date != 0) {
                 // This sets the project modification time to that of one of
                 // the successful file saves. It doesn't really matter which
@@ -438,8 +452,58 @@ public final class EditorManager {
                 afterSavingFiles.execute();   // of files saved (or not in this case)
               }
             }
-          });
+          };
+        // Until this save succeeds the server's copy of the file is unknown,
+        // so the next save is sent whole if this one fails.
+        final TextPatch patch = createPatch(savedContents.remove(savedContentKey), content);
+        if (patch == null) {
+          Ode.getInstance().getProjectService().save2(Ode.getInstance().getSessionId(),
+              projectId, fileId, false, content, callback);
+        } else {
+          Ode.getInstance().getProjectService().savePatch(Ode.getInstance().getSessionId(),
+              projectId, fileId, false, patch, new AsyncCallback<Long>() {
+                @Override
+                public void onSuccess(Long date) {
+                  callback.onSuccess(date);
+                }
+
+                @Override
+                public void onFailure(Throwable caught) {
+                  if (caught instanceof ChecksumedFileException) {
+                    // The server does not hold the content the patch was made
+                    // against, e.g. because the file was saved from another
+                    // window. Save the whole file instead.
+                    Ode.CLog("Patch rejected for fileId " + fileId + ", saving it whole");
+                    Ode.getInstance().getProjectService().save2(Ode.getInstance().getSessionId(),
+                        projectId, fileId, false, content, callback);
+                  } else {
+                    callback.onFailure(caught);
+                  }
+                }
+              });
+        }
       }
     }
   }
+
+  /**
+   * Returns the patch to send in place of a file's content, or null if the
+   * whole content should be sent: patches are off, the file has not been
+   * saved in this session, it is short, or the patch is not much shorter.
+   *
+   * @param savedContent  the content of the file as last saved, or null
+   * @param content  the content to save
+   */
+  private static TextPatch createPatch(String savedContent, String content) {
+    if (savedContent == null || content.length() < MIN_PATCH_FILE_LENGTH
+        || !Ode.getSystemConfig().getSavePatches()) {
+      return null;
+    }
+    try {
+      TextPatch patch = TextPatch.create(savedContent, content);
+      return patch.getDeltaLength() < content.length() / 2 ? patch : null;
+    } catch (ChecksumedFileException e) {
+      return null;
+    }
+  }
 }
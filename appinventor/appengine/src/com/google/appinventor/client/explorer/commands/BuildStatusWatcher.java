@@ -0,0 +1,108 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2026 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.client.explorer.commands;
+
+import com.google.appinventor.shared.rpc.ServerLayout;
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.http.client.Request;
+import com.google.gwt.http.client.RequestBuilder;
+import com.google.gwt.http.client.RequestCallback;
+import com.google.gwt.http.client.RequestException;
+import com.google.gwt.http.client.Response;
+import com.google.gwt.http.client.URL;
+import com.google.gwt.json.client.JSONArray;
+import com.google.gwt.json.client.JSONObject;
+import com.google.gwt.json.client.JSONParser;
+
+/**
+ * Waits on the server for the progress and completion of a build, so that
+ * the build commands need not poll for its result.
+ *
+ * <p>Each wait is a long poll of the
+ * {@link com.google.appinventor.server.BuildStatusServlet}, which answers once
+ * the build server has reported something new. When the server has no events
+ * for the build the listener is told so, and the caller falls back to polling.
+ */
+class BuildStatusWatcher {
+  // The result of an event that reports progress rather than completion
+  private static final int NOT_FINISHED = -1;
+
+  interface Listener {
+    /**
+     * Called with the latest progress of the build, from 0 to 100.
+     */
+    void onProgress(int progress);
+
+    /**
+     * Called when the build has finished. Its result can then be fetched
+     * with getBuildResult.
+     */
+    void onFinished();
+
+    /**
+     * Called when the server cannot report on the build.
+     */
+    void onUnavailable();
+  }
+
+  private final long projectId;
+  private final String target;
+  private long lastSequence = 0;
+
+  BuildStatusWatcher(long projectId, String target) {
+    this.projectId = projectId;
+    this.target = target;
+  }
+
+  /**
+   * Waits for the next change in the status of the build.
+   *
+   * @param listener the listener told about the change
+   */
+  void await(final Listener listener) {
+    String url = GWT.getModuleBaseURL() + ServerLayout.BUILD_STATUS_SERVLET_BASE + projectId
+        + "/" + URL.encodePathSegment(target) + "?after=" + lastSequence;
+    RequestBuilder builder = new RequestBuilder(RequestBuilder.GET, url);
+    try {
+      builder.sendRequest(null, new RequestCallback() {
+        @Override
+        public void onError(Request request, Throwable exception) {
+          listener.onUnavailable();
+        }
+
+        @Override
+        public void onResponseReceived(Request request, Response response) {
+          if (response.getStatusCode() != Response.SC_OK) {
+            listener.onUnavailable();
+            return;
+          }
+          JSONArray events = JSONParser.parseStrict(response.getText()).isObject()
+              .get("events").isArray();
+          if (events.size() == 0) {
+            // Nothing happened before the server timed out the request.
+            await(listener);
+            return;
+          }
+          int progress = 0;
+          boolean finished = false;
+          for (int i = 0; i < events.size(); i++) {
+            JSONObject event = events.get(i).isObject();
+            lastSequence = (long) event.get("sequence").isNumber().doubleValue();
+            progress = (int) event.get("progress").isNumber().doubleValue();
+            finished |= (int) event.get("result").isNumber().doubleValue() != NOT_FINISHED;
+          }
+          if (finished) {
+            listener.onFinished();
+          } else {
+            listener.onProgress(progress);
+          }
+        }
+      });
+    } catch (RequestException e) {
+      listener.onUnavailable();
+    }
+  }
+}
@@ -41,6 +41,7 @@ public class ShowProgressBarCommand extends ChainableCommand {
   private ProjectNode projectNode;
   private ProgressBarDialogBox minPB;
   private String serviceName;
+  private BuildStatusWatcher watcher;
 
   /**
    * Creates a new command for showing a barcode for the target of a project.
@@ -84,14 +85,7 @@ public class ShowProgressBarCommand extends ChainableCommand {
             minPB.hide();
           } else if (inProgress && progressBarShow != 2) {
             // Build isn't done yet
-            Timer timer = new Timer() {
-                @Override
-                  public void run() {
-                  execute(node);
-                }
-              };
-            // TODO(user): Maybe do an exponential backoff here.
-            timer.schedule(WAIT_INTERVAL_MILLIS);
+            waitForBuild(node);
           }
         }
 
@@ -104,6 +98,43 @@ public class ShowProgressBarCommand extends ChainableCommand {
     ode.getProjectService().getBuildResult(node.getProjectId(), target, callback);
   }
 
+  /*
+   * Follows the progress of the build as the build server reports it, and
+   * fetches the result once it has finished. If the server cannot report on
+   * the build, polls for the result instead.
+   */
+  private void waitForBuild(final ProjectNode node) {
+    if (watcher == null) {
+      watcher = new BuildStatusWatcher(node.getProjectId(), target);
+    }
+    watcher.await(new BuildStatusWatcher.Listener() {
+      @Override
+      public void onProgress(int progress) {
+        boolean inProgress = addMessages(new RpcResult(-1, Integer.toString(progress), ""));
+        if (inProgress && progressBarShow != 2) {
+          watcher.await(this);
+        }
+      }
+
+      @Override
+      public void onFinished() {
+        execute(node);
+      }
+
+      @Override
+      public void onUnavailable() {
+        Timer timer = new Timer() {
+            @Override
+              public void run() {
+              execute(node);
+            }
+          };
+        // TODO(user): Maybe do an exponential backoff here.
+        timer.schedule(WAIT_INTERVAL_MILLIS);
+      }
+    });
+  }
+
   /**
    * Sets the progress bar's message based on the given result object.
    *
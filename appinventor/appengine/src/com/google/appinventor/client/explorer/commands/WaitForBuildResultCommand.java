@@ -41,6 +41,7 @@ public class WaitForBuildResultCommand extends ChainableCommand {
   private final String target;
   private static final int WAIT_INTERVAL_MILLIS = 10000;
   private final String buildRequestTime;
+  private BuildStatusWatcher watcher;
 
   /**
    * Creates a new WaitForBuildResultCommand.
@@ -111,14 +112,7 @@ public class WaitForBuildResultCommand extends ChainableCommand {
           executionFailedOrCanceled();
         } else {
           // Build isn't done yet
-          Timer timer = new Timer() {
-            @Override
-            public void run() {
-              execute(node);
-            }
-          };
-          // TODO(user): Maybe do an exponential backoff here.
-          timer.schedule(WAIT_INTERVAL_MILLIS);
+          waitForBuild(node);
         }
       }
 
@@ -132,6 +126,40 @@ public class WaitForBuildResultCommand extends ChainableCommand {
     ode.getProjectService().getBuildResult(node.getProjectId(), target, callback);
   }
 
+  /*
+   * Waits for the build server to report that the build has finished, and
+   * then fetches the result. If the server cannot report on the build, polls
+   * for the result instead.
+   */
+  private void waitForBuild(final ProjectNode node) {
+    if (watcher == null) {
+      watcher = new BuildStatusWatcher(node.getProjectId(), target);
+    }
+    watcher.await(new BuildStatusWatcher.Listener() {
+      @Override
+      public void onProgress(int progress) {
+        watcher.await(this);
+      }
+
+      @Override
+      public void onFinished() {
+        execute(node);
+      }
+
+      @Override
+      public void onUnavailable() {
+        Timer timer = new Timer() {
+          @Override
+          public void run() {
+            execute(node);
+          }
+        };
+        // TODO(user): Maybe do an exponential backoff here.
+        timer.schedule(WAIT_INTERVAL_MILLIS);
+      }
+    });
+  }
+
   private static YoungAndroidBlocksNode findBlocksNode(YoungAndroidProjectNode projectRootNode,
       String formName) {
     // Iterate over the YoungAndroidBlocksNodes in this project.
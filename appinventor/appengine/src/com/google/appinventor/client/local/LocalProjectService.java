@@ -43,6 +43,7 @@ import com.google.appinventor.shared.rpc.project.ProjectNode;
 import com.google.appinventor.shared.rpc.project.ProjectRootNode;
 import com.google.appinventor.shared.rpc.project.ProjectServiceAsync;
 import com.google.appinventor.shared.rpc.project.TextFile;
+import com.google.appinventor.shared.rpc.project.TextPatch;
 import com.google.appinventor.shared.rpc.project.UserProject;
 import com.google.appinventor.shared.rpc.project.youngandroid.NewYoungAndroidProjectParameters;
 import com.google.appinventor.shared.rpc.project.youngandroid.YoungAndroidAssetNode;
@@ -453,6 +454,20 @@ public class LocalProjectService implements ProjectServiceAsync {
     callback.onSuccess(System.currentTimeMillis());
   }
 
+  @Override
+  public void savePatch(String sessionId, long projectId, String fileId, boolean force,
+      TextPatch patch, AsyncCallback<Long> callback) {
+    ArrayBuffer buffer = contents.get(projectId + ":" + fileId);
+    String content;
+    try {
+      content = patch.apply(buffer == null ? "" : new TextDecoder("utf-8").decode(buffer));
+    } catch (Exception e) {
+      callback.onFailure(e);
+      return;
+    }
+    save2(sessionId, projectId, fileId, force, content, callback);
+  }
+
   @Override
   public void save(String sessionId, List<FileDescriptorWithContent> filesAndContent,
       AsyncCallback<Long> callback) {
@@ -904,6 +904,10 @@ public final class YoungAndroidFormUpgrader {
       // Assets helper block was added.
       srcCompVersion = 15;
     }
+    if (srcCompVersion < 16) {
+      // The FrameSync property was added in version 16.
+      srcCompVersion = 16;
+    }
     return srcCompVersion;
   }
 
@@ -1956,6 +1960,12 @@ public final class YoungAndroidFormUpgrader {
       // Added Property: GetEntries
       srcCompVersion = 3;
     }
+
+    if (srcCompVersion < 4) {
+      // Added Property: WriteInBackground
+      // Added method: StoreValues
+      srcCompVersion = 4;
+    }
     return srcCompVersion;
   }
 
@@ -0,0 +1,127 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2026 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.server;
+
+import com.google.appinventor.server.storage.BuildStatusEvent;
+import com.google.appinventor.server.storage.StorageIo;
+import com.google.appinventor.server.storage.StorageIoInstanceHolder;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+import java.util.List;
+
+/**
+ * Delivers the progress and completion of builds to the clients waiting for
+ * them.
+ *
+ * <p>Events are appended to the build status log kept by {@link StorageIo},
+ * so a client may wait on any instance. Clients waiting on the instance that
+ * receives an event from the build server are woken at once; clients waiting
+ * on other instances see it within {@link #POLL_INTERVAL_MILLIS}.
+ *
+ */
+public final class BuildStatusChannel {
+
+  // How often a waiting client checks the log for events received by other instances
+  private static final long POLL_INTERVAL_MILLIS = 1000;
+
+  private static final BuildStatusChannel INSTANCE = new BuildStatusChannel();
+
+  // The objects that clients waiting on a log wait on. The values are weak, so a log's monitor
+  // is forgotten once no one waits on it.
+  private final LoadingCache<String, Object> monitors = CacheBuilder.newBuilder()
+      .weakValues()
+      .build(new CacheLoader<String, Object>() {
+        @Override
+        public Object load(String key) {
+          return new Object();
+        }
+      });
+
+  private BuildStatusChannel() {
+  }
+
+  public static BuildStatusChannel getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Starts a new build status log for a project's build target.
+   *
+   * @param userId the user id
+   * @param projectId the project id
+   * @param target the build target
+   */
+  public void start(String userId, long projectId, String target) {
+    StorageIoInstanceHolder.getInstance().startBuildStatusLog(userId, projectId, target);
+  }
+
+  /**
+   * Appends an event to a build status log and wakes the clients waiting on
+   * it.
+   *
+   * @param userId the user id
+   * @param projectId the project id
+   * @param target the build target
+   * @param progress the progress of the build, from 0 to 100
+   * @param result the result code of the finished build, or
+   *        {@link BuildStatusEvent#NOT_FINISHED}
+   * @return the event published, or null if it could not be stored
+   */
+  public BuildStatusEvent publish(String userId, long projectId, String target, int progress,
+      int result) {
+    BuildStatusEvent event = StorageIoInstanceHolder.getInstance()
+        .appendBuildStatusEvent(userId, projectId, target, progress, result);
+    Object monitor = monitors.getIfPresent(key(userId, projectId, target));
+    if (monitor != null) {
+      synchronized (monitor) {
+        monitor.notifyAll();
+      }
+    }
+    return event;
+  }
+
+  /**
+   * Waits until a build status log has events after the given sequence
+   * number, or the timeout elapses.
+   *
+   * @param userId the user id
+   * @param projectId the project id
+   * @param target the build target
+   * @param afterSequence the sequence number of the last event already seen, or 0
+   * @param timeoutMillis how long to wait
+   * @return the new events, which are none if the timeout elapsed, or null if
+   *         there is no log and the caller must fall back to polling
+   * @throws InterruptedException if the calling thread is interrupted
+   */
+  public List<BuildStatusEvent> await(String userId, long projectId, String target,
+      long afterSequence, long timeoutMillis) throws InterruptedException {
+    StorageIo storageIo = StorageIoInstanceHolder.getInstance();
+    long deadline = System.currentTimeMillis() + timeoutMillis;
+    // Holding the monitor while reading the log ensures that an event
+    // published after the read wakes the wait below.
+    Object monitor = monitors.getUnchecked(key(userId, projectId, target));
+    synchronized (monitor) {
+      while (true) {
+        List<BuildStatusEvent> events =
+            storageIo.getBuildStatusEvents(userId, projectId, target, afterSequence);
+        if (events == null || !events.isEmpty()) {
+          return events;
+        }
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+          return events;
+        }
+        monitor.wait(Math.min(remaining, POLL_INTERVAL_MILLIS));
+      }
+    }
+  }
+
+  private static String key(String userId, long projectId, String target) {
+    return userId + "|" + projectId + "|" + target;
+  }
+}
@@ -0,0 +1,121 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2026 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.server;
+
+import com.google.appinventor.server.storage.BuildStatusEvent;
+import com.google.appinventor.server.storage.StorageIoInstanceHolder;
+import com.google.appinventor.server.util.CacheHeaders;
+import com.google.appinventor.server.util.CacheHeadersImpl;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Servlet through which clients wait for the progress and completion of a
+ * build, instead of polling
+ * {@link com.google.appinventor.shared.rpc.project.ProjectService#getBuildResult}.
+ *
+ * <p>A request is held until the build status log of the build target has
+ * events the client has not seen, or {@link #LONG_POLL_MILLIS} elapse, and
+ * then answered with those events as JSON. If there is no log, for example
+ * because memcache evicted it, or the instance already holds
+ * {@link #MAX_WAITERS} requests, the response is 204 No Content and the
+ * client falls back to polling.
+ *
+ */
+public class BuildStatusServlet extends OdeServlet {
+
+  /*
+   * URIs for build status requests are structured as follows:
+   *    /<baseurl>/buildstatus/<projectId>/<target>?after=<sequence>
+   */
+  private static final int PROJECT_ID_INDEX = 3;
+  private static final int TARGET_INDEX = 4;
+  private static final int SPLIT_LIMIT = 5;
+
+  // Short enough that a waiting client holds a request thread for little longer than a poll
+  private static final long LONG_POLL_MILLIS = 10000;
+
+  // The most requests an instance holds at once; others are sent back to polling
+  private static final int MAX_WAITERS = 32;
+
+  private static final AtomicInteger waiters = new AtomicInteger();
+
+  // Object used to safely set cache headers in responses
+  private static final CacheHeaders CACHE_HEADERS = new CacheHeadersImpl();
+
+  @Override
+  public void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+    CACHE_HEADERS.setNotCacheable(resp);
+    String[] uriComponents = req.getRequestURI().split("/", SPLIT_LIMIT);
+    String userId = userInfoProvider.getUserId();
+    long projectId;
+    long afterSequence;
+    String target;
+    try {
+      projectId = Long.parseLong(uriComponents[PROJECT_ID_INDEX]);
+      target = uriComponents[TARGET_INDEX];
+      String after = req.getParameter("after");
+      afterSequence = after == null ? 0 : Long.parseLong(after);
+    } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+      resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Bad build status request");
+      return;
+    }
+
+    try {
+      StorageIoInstanceHolder.getInstance().assertUserHasProject(userId, projectId);
+    } catch (SecurityException e) {
+      // As in DownloadServlet, do not leak that the project may exist.
+      resp.sendError(HttpServletResponse.SC_NOT_FOUND, "404 Not Found");
+      return;
+    }
+
+    List<BuildStatusEvent> events = null;
+    try {
+      if (waiters.incrementAndGet() <= MAX_WAITERS) {
+        events = BuildStatusChannel.getInstance().await(userId, projectId, target, afterSequence,
+            LONG_POLL_MILLIS);
+      }
+    } catch (InterruptedException e) {
+      // The instance is shutting down; let the client ask again.
+      Thread.currentThread().interrupt();
+      events = Collections.emptyList();
+    } finally {
+      waiters.decrementAndGet();
+    }
+    if (events == null) {
+      resp.setStatus(HttpServletResponse.SC_NO_CONTENT);
+      return;
+    }
+
+    JSONArray eventArray = new JSONArray();
+    for (BuildStatusEvent event : events) {
+      JSONObject eventObject = new JSONObject();
+      eventObject.put("sequence", event.getSequence());
+      eventObject.put("progress", event.getProgress());
+      eventObject.put("result", event.getResult());
+      eventArray.put(eventObject);
+    }
+    byte[] content = new JSONObject().put("events", eventArray).toString()
+        .getBytes(StandardCharsets.UTF_8);
+    resp.setStatus(HttpServletResponse.SC_OK);
+    resp.setContentType("application/json; charset=utf-8");
+    resp.setContentLength(content.length);
+    ServletOutputStream out = resp.getOutputStream();
+    out.write(content);
+    out.close();
+  }
+}
@@ -17,8 +17,8 @@ import com.google.appinventor.server.util.CacheHeaders;
 import com.google.appinventor.server.util.CacheHeadersImpl;
 
 import com.google.appinventor.shared.rpc.ServerLayout;
-import com.google.appinventor.shared.rpc.project.ProjectSourceZip;
 import com.google.appinventor.shared.rpc.project.RawFile;
+import com.google.appinventor.shared.rpc.project.UserProject;
 
 import com.google.appinventor.shared.storage.StorageUtil;
 
@@ -144,11 +144,16 @@ public class DownloadServlet extends OdeServlet {
         // project in the export
         boolean includeYail = userInfoProvider.getIsAdmin();
         boolean includeScreenShots = includeYail;
-        StorageIoInstanceHolder.getInstance().assertUserHasProject(userId, projectId);
-        ProjectSourceZip zipFile = fileExporter.exportProjectSourceZip(userId,
-          projectId, includeProjectHistory, false, zipName, includeYail,
-          includeScreenShots, false, false, false, false);
-        downloadableFile = zipFile.getRawFile();
+        StorageIo storageIo = StorageIoInstanceHolder.getInstance();
+        storageIo.assertUserHasProject(userId, projectId);
+        if (zipName == null) {
+          zipName = storageIo.getProjectName(userId, projectId) + ".aia";
+        }
+        ServletOutputStream out = startStreamedDownload(req, resp, zipName);
+        fileExporter.writeProjectSourceZip(userId, projectId, includeProjectHistory, false,
+          includeYail, includeScreenShots, false, false, false, false, out);
+        out.close();
+        return;
 
       } else if (downloadKind.equals(ServerLayout.DOWNLOAD_USER_PROJECT_SOURCE)) {
         if (!userInfoProvider.getIsAdmin()) {
@@ -182,9 +187,9 @@ public class DownloadServlet extends OdeServlet {
           projectName = storageIo.getProjectName(projectUserId, projectId);
         } catch (NumberFormatException e) {
           // assume we got a name instead
-          for (Long pid : storageIo.getProjects(projectUserId)) {
-            if (storageIo.getProjectName(projectUserId, pid).equals(projectIdOrName)) {
-              projectId = pid;
+          for (UserProject project : storageIo.getProjectSummaries(projectUserId)) {
+            if (project.getProjectName().equals(projectIdOrName)) {
+              projectId = project.getProjectId();
             }
           }
           if (projectId == 0) {
@@ -201,9 +206,12 @@ public class DownloadServlet extends OdeServlet {
         } else {
           zipName = "u" + projectUserId + "_p" + projectId + ".aia";
         }
-        ProjectSourceZip zipFile = fileExporter.exportProjectSourceZip(projectUserId,
-          projectId, /* include history*/ true, /* include keystore */ true, zipName, true, true, false, false, false, false);
-        downloadableFile = zipFile.getRawFile();
+        storageIo.assertUserHasProject(projectUserId, projectId);
+        ServletOutputStream out = startStreamedDownload(req, resp, zipName);
+        fileExporter.writeProjectSourceZip(projectUserId, projectId, /* include history*/ true,
+          /* include keystore */ true, true, true, false, false, false, false, out);
+        out.close();
+        return;
       } else if (downloadKind.equals(ServerLayout.DOWNLOAD_SELECTED_PROJECTS_SOURCE)) {
         String[] projectIdStrings = uriComponents[PROJECT_ID_INDEX].split("-");
         List<Long> projectIds = new ArrayList<Long>();
@@ -212,14 +220,20 @@ public class DownloadServlet extends OdeServlet {
           StorageIoInstanceHolder.getInstance().assertUserHasProject(userId, pid);
           projectIds.add(pid);
         }
-        ProjectSourceZip zipFile = fileExporter.exportSelectedProjectsSourceZip(
-          userId, "selected-projects.zip", projectIds);
-        downloadableFile = zipFile.getRawFile();
+        ServletOutputStream out = startStreamedDownload(req, resp, "selected-projects.zip");
+        fileExporter.writeSelectedProjectsSourceZip(userId, projectIds, out);
+        out.close();
+        return;
       } else if (downloadKind.equals(ServerLayout.DOWNLOAD_ALL_PROJECTS_SOURCE)) {
         // Download all project source files as a zip of zips.
-        ProjectSourceZip zipFile = fileExporter.exportAllProjectsSourceZip(
-            userId, "all-projects.zip");
-        downloadableFile = zipFile.getRawFile();
+        List<Long> projectIds = StorageIoInstanceHolder.getInstance().getProjects(userId);
+        if (projectIds.isEmpty()) {
+          throw new IllegalArgumentException("No projects to download");
+        }
+        ServletOutputStream out = startStreamedDownload(req, resp, "all-projects.zip");
+        fileExporter.writeSelectedProjectsSourceZip(userId, projectIds, out);
+        out.close();
+        return;
 
       } else if (downloadKind.equals(ServerLayout.DOWNLOAD_FILE)) {
         // Download a specific file.
@@ -260,11 +274,16 @@ public class DownloadServlet extends OdeServlet {
           StringUtils.normalizeForFilename(projectTitle) + ".aia";
         // Set includeYail to true by default to ensure downloaded file has yail file on hand.
         boolean includeYail = true;
-        StorageIoInstanceHolder.getInstance().assertUserHasProject(userId, projectId);
-        ProjectSourceZip zipFile = fileExporter.exportProjectSourceZip(userId,
-          projectId, false, false, zipName, includeYail,
-          false, false, false, false, true);
-        downloadableFile = zipFile.getRawFile();
+        StorageIo storageIo = StorageIoInstanceHolder.getInstance();
+        storageIo.assertUserHasProject(userId, projectId);
+        if (zipName == null) {
+          zipName = storageIo.getProjectName(userId, projectId) + ".aia";
+        }
+        ServletOutputStream out = startStreamedDownload(req, resp, zipName);
+        fileExporter.writeProjectSourceZip(userId, projectId, false, false, includeYail,
+          false, false, false, false, true, out);
+        out.close();
+        return;
       } else if (downloadKind.equals(ServerLayout.DOWNLOAD_CSR)) {
         byte[] csr = getCSR();
         if (csr == null) {
@@ -318,6 +337,27 @@ public class DownloadServlet extends OdeServlet {
     }
   }
 
+  /*
+   * Sets the headers of a download that is written to the response as it is produced, and
+   * returns the stream to write it to. The length of the download is not known in advance, so
+   * no Content-Length is sent and the response is chunked.
+   *
+   * The status and headers are committed as soon as the download is written to, so callers
+   * must check that the user may download the projects before calling this. A storage error
+   * after that point cannot become an error status; it is thrown out of doGet instead, which
+   * aborts the response so that the client sees a failed download rather than a short zip.
+   */
+  private static ServletOutputStream startStreamedDownload(HttpServletRequest req,
+      HttpServletResponse resp, String fileName) throws IOException {
+    LOG.fine("Streaming File!");
+    resp.setStatus(HttpServletResponse.SC_OK);
+    resp.setHeader(
+      "content-disposition",
+      req.getParameter("inline") != null ? "inline" : "attachment" + "; filename=\"" + fileName + "\"");
+    resp.setContentType(StorageUtil.getContentTypeForFilePath(fileName));
+    return resp.getOutputStream();
+  }
+
   private static String byteArray2Hex(final byte[] hash) {
     Formatter formatter = new Formatter();
     for (byte b : hash) {
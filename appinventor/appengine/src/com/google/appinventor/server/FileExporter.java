@@ -10,6 +10,7 @@ import com.google.appinventor.shared.rpc.project.ProjectSourceZip;
 import com.google.appinventor.shared.rpc.project.RawFile;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 
 import javax.annotation.Nullable;
@@ -62,6 +63,32 @@ public interface FileExporter {
     boolean includeScreenShots,
     boolean fatalError, boolean forGallery, boolean forAppStore, boolean locallyCachedApp) throws IOException;
 
+  /**
+   * Writes the project source files as a zip to a stream, without holding
+   * the zip in memory. The stream is not closed.
+   *
+   * @param userId                 the userId
+   * @param projectId              the project id belonging to the userId
+   * @param includeProjectHistory  indicates whether to include a file
+   *                               containing the project's history in the zip
+   * @param includeAndroidKeystore indicates whether to include the user's android.keystore file
+   * @param fatalError             set to true to cause missing GCS file to throw exception
+   * @param forAppStore            set to true when building for the App Store
+   * @param out                    the stream to write the zip to
+   * @return the number of files in the zip
+   * @throws IllegalArgumentException if download request cannot be fulfilled
+   *                                  (no source files), in which case nothing
+   *                                  has been written
+   * @throws IOException              if files cannot be written
+   */
+  int writeProjectSourceZip(String userId, long projectId,
+    boolean includeProjectHistory,
+    boolean includeAndroidKeystore,
+    boolean includeYail,
+    boolean includeScreenShots,
+    boolean fatalError, boolean forGallery, boolean forAppStore, boolean locallyCachedApp,
+    OutputStream out) throws IOException;
+
   /**
    * Exports projects selected by the user as a zip of zips.
    *
@@ -75,6 +102,22 @@ public interface FileExporter {
    */
   ProjectSourceZip exportSelectedProjectsSourceZip(String userId, String zipName, List<Long> projectIds) throws IOException;
 
+  /**
+   * Writes projects selected by the user as a zip of zips to a stream, without
+   * holding the zip in memory. The stream is not closed.
+   *
+   * @param userId the userId
+   * @param projectIds the list of project ids corresponding to selected projects
+   * @param out the stream to write the zip to
+   * @return the number of files in the zip
+   * @throws IllegalArgumentException if download request cannot be fulfilled
+   *         (no projects)
+   * @throws IOException if files cannot be written, or a project fails after
+   *         part of it has been written
+   */
+  int writeSelectedProjectsSourceZip(String userId, List<Long> projectIds, OutputStream out)
+      throws IOException;
+
   /**
    * Exports all of the user's projects' source files as a zip of zips.
    *
@@ -15,9 +15,11 @@ import com.google.appinventor.shared.storage.StorageUtil;
 import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
 import java.util.zip.ZipOutputStream;
 
 import javax.annotation.Nullable;
@@ -82,118 +84,88 @@ public final class FileExporterImpl implements FileExporter {
         forGallery, fatalError, forAppStore, locallyCachedApp);
   }
 
+  @Override
+  public int writeProjectSourceZip(String userId, long projectId,
+      boolean includeProjectHistory,
+      boolean includeAndroidKeystore,
+      boolean includeYail,
+      boolean includeScreenShots,
+      boolean fatalError,
+      boolean forGallery,
+      boolean forAppStore,
+      boolean locallyCachedApp,
+      OutputStream out) throws IOException {
+    // Stream project source files as a zip.
+    return storageIo.writeProjectSourceZip(userId, projectId,
+        includeProjectHistory, includeAndroidKeystore, includeYail, includeScreenShots,
+        forGallery, fatalError, forAppStore, locallyCachedApp, out);
+  }
+
   @Override
   public ProjectSourceZip exportSelectedProjectsSourceZip(String userId,
       String zipName, List<Long> projectIds) throws IOException {
-      // Create a zip file for each project's sources.
-    if (projectIds.size() == 0) {
-      throw new IllegalArgumentException("No projects to download");
-    }
-
     ByteArrayOutputStream zipFile = new ByteArrayOutputStream();
-    ZipOutputStream out = new ZipOutputStream(zipFile);
-    int count = 0;
-    String metadata = "";
-    for (Long projectId : projectIds) {
-      try {
-        ProjectSourceZip projectSourceZip =
-            exportProjectSourceZip(userId, projectId, false, false, null, false, false, false, false, false, false);
-        byte[] data = projectSourceZip.getContent();
-        String name = projectSourceZip.getFileName();
-
-        // If necessary, renae duplicate projects
-        while (true) {
-          try {
-            out.putNextEntry(new ZipEntry(name));
-            break;
-          } catch (IOException e) {
-            name = "duplicate-" + name;
-          }
-        }
-        metadata += projectSourceZip.getMetadata() + "\n";
-
-        out.write(data, 0, data.length);
-        out.closeEntry();
-        count++;
-      } catch (IllegalArgumentException e) {
-        System.err.println("No files found for userid: " + userId +
-            " for projectid: " + projectId);
-      } catch (IOException e) {
-        System.err.println("IOException while reading files found for userid: " +
-            userId + " for projectid: " + projectId);
-        continue;
-      }
-    }
-    if (count == 0) {
-      throw new IllegalArgumentException("No files to download");
-    }
-
-    List<String> userFiles = storageIo.getUserFiles(userId);
-    if (userFiles.contains(StorageUtil.ANDROID_KEYSTORE_FILENAME)) {
-      byte[] androidKeystoreBytes =
-          storageIo.downloadRawUserFile(userId, StorageUtil.ANDROID_KEYSTORE_FILENAME);
-      if (androidKeystoreBytes.length > 0) {
-        out.putNextEntry(new ZipEntry(StorageUtil.ANDROID_KEYSTORE_FILENAME));
-        out.write(androidKeystoreBytes, 0, androidKeystoreBytes.length);
-        out.closeEntry();
-        count++;
-      }
-    }
-
-    out.close();
+    StringBuilder metadata = new StringBuilder();
+    int count = writeProjectsSourceZip(userId, projectIds, zipFile, metadata);
 
     // Package the big zip file up as a ProjectSourceZip and return it.
     byte[] content = zipFile.toByteArray();
     ProjectSourceZip projectSourceZip = new ProjectSourceZip(zipName, content, count);
-    projectSourceZip.setMetadata(metadata);
+    projectSourceZip.setMetadata(metadata.toString());
     return projectSourceZip;
   }
 
+  @Override
+  public int writeSelectedProjectsSourceZip(String userId, List<Long> projectIds,
+      OutputStream out) throws IOException {
+    return writeProjectsSourceZip(userId, projectIds, out, new StringBuilder());
+  }
+
   @Override
   public ProjectSourceZip exportAllProjectsSourceZip(String userId,
       String zipName) throws IOException {
-    // Create a zip file for each project's sources.
-    List<Long> projectIds = storageIo.getProjects(userId);
+    return exportSelectedProjectsSourceZip(userId, zipName, storageIo.getProjects(userId));
+  }
+
+  /*
+   * Writes a zip of zips containing the given projects' sources, followed by the user's
+   * android.keystore, and returns the number of entries. Each project's zip is streamed into
+   * the outer zip as it is read from storage. The names of the projects written are appended
+   * to metadata, one per line. A project that fails before any of it is written is left out;
+   * one that fails part way through fails the whole zip with an IOException.
+   */
+  private int writeProjectsSourceZip(String userId, List<Long> projectIds, OutputStream output,
+      StringBuilder metadata) throws IOException {
     if (projectIds.size() == 0) {
       throw new IllegalArgumentException("No projects to download");
     }
 
-    ByteArrayOutputStream zipFile = new ByteArrayOutputStream();
-    ZipOutputStream out = new ZipOutputStream(zipFile);
+    ZipOutputStream out = new ZipOutputStream(output);
     int count = 0;
-    String metadata = "";
     for (Long projectId : projectIds) {
+      String projectName = storageIo.getProjectName(userId, projectId);
+      NestedZipEntryOutputStream entry =
+          new NestedZipEntryOutputStream(out, projectName + ".aia");
       try {
-        // Note: We never include Yail files when exporting all source projects
+        // Note: We never include Yail files when exporting source projects
         // even for Admins. If you are an admin and want to debug a project, download
         // it explicitly.
-        ProjectSourceZip projectSourceZip =
-          exportProjectSourceZip(userId, projectId, false, false, null, false, false, false, false, false, false);
-        byte[] data = projectSourceZip.getContent();
-        String name = projectSourceZip.getFileName();
-
-        // If necessary, rename duplicate projects
-        while (true) {
-          try {
-            out.putNextEntry(new ZipEntry(name));
-            break;
-          } catch (IOException e) {
-            name = "duplicate-" + name;
-          }
-        }
-        metadata += projectSourceZip.getMetadata() + "\n";
-
-        out.write(data, 0, data.length);
+        storageIo.writeProjectSourceZip(userId, projectId, false, false, false, false, false,
+            false, false, false, entry);
         out.closeEntry();
+        metadata.append(projectName).append("\n");
         count++;
       } catch (IllegalArgumentException e) {
         System.err.println("No files found for userid: " + userId +
             " for projectid: " + projectId);
-        continue;
       } catch (IOException e) {
         System.err.println("IOException while reading files found for userid: " +
             userId + " for projectid: " + projectId);
-        continue;
+        if (entry.isStarted()) {
+          // Part of the project has already been written and cannot be taken back. Fail the
+          // whole download rather than hand out a zip holding a truncated project.
+          throw e;
+        }
       }
     }
     if (count == 0) {
@@ -212,13 +184,9 @@ public final class FileExporterImpl implements FileExporter {
       }
     }
 
-    out.close();
-
-    // Package the big zip file up as a ProjectSourceZip and return it.
-    byte[] content = zipFile.toByteArray();
-    ProjectSourceZip projectSourceZip = new ProjectSourceZip(zipName, content, count);
-    projectSourceZip.setMetadata(metadata);
-    return projectSourceZip;
+    // Finish rather than close the zip, since the caller owns output.
+    out.finish();
+    return count;
   }
 
   @Override
@@ -268,4 +236,59 @@ public final class FileExporterImpl implements FileExporter {
     }
     return filteredFiles;
   }
+
+  /*
+   * The stream a project's zip is written to when it is put in a zip of zips. The project's
+   * entry is only started when its zip writes its first byte, so that projects without files
+   * leave no entry behind, and it is renamed if another project already used its name.
+   */
+  private static class NestedZipEntryOutputStream extends OutputStream {
+    private final ZipOutputStream out;
+    private String name;
+    private boolean started = false;
+
+    NestedZipEntryOutputStream(ZipOutputStream out, String name) {
+      this.out = out;
+      this.name = name;
+    }
+
+    boolean isStarted() {
+      return started;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      start();
+      out.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      start();
+      out.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      out.flush();
+    }
+
+    // close() is inherited and does nothing, so the outer zip stays open.
+
+    private void start() throws IOException {
+      if (started) {
+        return;
+      }
+      // If necessary, rename duplicate projects
+      while (true) {
+        try {
+          out.putNextEntry(new ZipEntry(name));
+          break;
+        } catch (ZipException e) {
+          name = "duplicate-" + name;
+        }
+      }
+      started = true;
+    }
+  }
 }
@@ -55,6 +55,24 @@ public interface FileImporter {
                             InputStream uploadedFileStream, @Nullable String projectHistory)
       throws FileImporterException, IOException;
 
+  /**
+   * Creates the project on the server and imports its content from the
+   * chunks of a resumable upload. Unlike {@link #importProject}, which
+   * imports an archive that arrived in one request, each file of the archive
+   * is limited to the size allowed for an asset, since the chunks together
+   * may be larger than a request.
+   *
+   * @param userId the userId
+   * @param projectName project name
+   * @param uploadedFileStream project archive file, read from its chunks
+   * @return the UserProject
+   * @throws FileImporterException if the archive is not a valid project
+   *         archive or one of its files is too large
+   * @throws IOException if any file operation fails
+   */
+  UserProject importChunkedProject(String userId, String projectName,
+      InputStream uploadedFileStream) throws FileImporterException, IOException;
+
   /**
    * Adds the file to the project on the server and imports its content.
    *
@@ -95,4 +113,19 @@ public interface FileImporter {
    */
   String importTempFile(InputStream inStream) throws IOException;
 
+  /**
+   * Stores one chunk of a resumable upload, checking that neither the chunk
+   * nor the upload as a whole is too large.
+   *
+   * @param userId the userId
+   * @param uploadId the id the client chose for the upload
+   * @param index the index of the chunk, from 0
+   * @param chunkStream the content of the chunk
+   * @return the size of the chunks stored for the upload so far
+   * @throws FileImporterException if the chunk or the upload is too large
+   * @throws IOException if any file operation fails
+   */
+  long importChunk(String userId, String uploadId, int index, InputStream chunkStream)
+      throws FileImporterException, IOException;
+
 }
@@ -29,12 +29,11 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.io.ByteStreams;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.logging.Level;
@@ -55,6 +54,12 @@ public final class FileImporterImpl implements FileImporter {
   // Maximum size of an uploaded asset, in megabytes.
   private static final Flag<Float> maxAssetSizeMegs = Flag.createFlag("max.asset.size.megs", 15f);
 
+  // Maximum size of a project, in megabytes, as checked when it is sent to a build server.
+  private static final Flag<Integer> maxProjectSizeMegs = Flag.createFlag("project.maxsize", 30);
+
+  // Maximum size of one chunk of a resumable upload, in kilobytes.
+  private static final Flag<Integer> maxChunkSizeKb = Flag.createFlag("upload.chunk.maxkb", 4096);
+
   private static final Logger LOG = Logger.getLogger(FileImporterImpl.class.getName());
 
   private final StorageIo storageIo = StorageIoInstanceHolder.getInstance();
@@ -69,6 +74,19 @@ public final class FileImporterImpl implements FileImporter {
   public UserProject importProject(String userId, String projectName,
                                    InputStream uploadedFileStream, @Nullable String projectHistory)
       throws FileImporterException, IOException {
+    return importProject(userId, projectName, uploadedFileStream, projectHistory, Long.MAX_VALUE);
+  }
+
+  @Override
+  public UserProject importChunkedProject(String userId, String projectName,
+      InputStream uploadedFileStream) throws FileImporterException, IOException {
+    return importProject(userId, projectName, uploadedFileStream, null,
+        (long) (maxAssetSizeMegs.get() * 1024 * 1024));
+  }
+
+  private UserProject importProject(String userId, String projectName,
+      InputStream uploadedFileStream, @Nullable String projectHistory, long maxFileSizeBytes)
+      throws FileImporterException, IOException {
     // The projectName parameter has already been validated, including checking for an
     // existing project with the same name. (See TextValidators.checkNewProjectName).
 
@@ -145,11 +163,9 @@ public final class FileImporterImpl implements FileImporter {
               fileName = srcDirectory + '/' + StorageUtil.basename(fileName);
             }
 
-            // Get the file content from the ZipEntry.
-            ByteArrayOutputStream contentStream = new ByteArrayOutputStream();
-            ByteStreams.copy(zin, contentStream);
-
-            project.addRawFile(new RawFile(fileName, contentStream.toByteArray()));
+            // Get the file content from the ZipEntry, stopping at the first byte past the
+            // size allowed for one file.
+            project.addRawFile(new RawFile(fileName, readLimited(zin, maxFileSizeBytes)));
           }
         }
       }
@@ -177,30 +193,7 @@ public final class FileImporterImpl implements FileImporter {
     int maxAssetSizeBytes = (int) (maxAssetSizeMegs.get() * 1024 * 1024);
     int maxSizeBytes = Math.min(maxAssetSizeBytes, storageIo.getMaxJobSizeBytes());
 
-    BufferedInputStream bis = new BufferedInputStream(uploadedFileStream);
-    ByteArrayOutputStream os = new ByteArrayOutputStream();
-    BufferedOutputStream bos = new BufferedOutputStream(os);
-
-    // Alledgedly since it is buffered, reading in units of one byte
-    // should be as fast as many bytes, but we can always adjust this.
-    int bytes = 0;
-    long fileLength = 0;
-    byte[] buffer = new byte[1];
-    while ((bytes = bis.read(buffer, 0, buffer.length)) != -1) {
-      bos.write(buffer, 0, bytes);
-      fileLength += bytes;
-      if (fileLength > maxSizeBytes) {
-        // Read the rest of the stream, but throw it away
-        // and throw an error, so we do not consume memory storing
-        // a large object
-        while((bytes = bis.read(buffer, 0, buffer.length)) != -1) {
-        }
-        throw new FileImporterException(UploadResponse.Status.FILE_TOO_LARGE);
-      }
-    }
-    bos.flush();
-
-    byte[] content = os.toByteArray();
+    byte[] content = readLimited(uploadedFileStream, maxSizeBytes);
 
     // If the file already exists, we will overwrite the content.
     List<String> sourceFiles = storageIo.getProjectSourceFiles(userId, projectId);
@@ -229,14 +222,51 @@ public final class FileImporterImpl implements FileImporter {
   }
 
   @Override
-  public Set<String> getProjectNames(final String userId) {
-    List<Long> projectIds = storageIo.getProjects(userId);
-    Iterable<String> names = Iterables.transform(projectIds, new Function<Long, String>() {
-      @Override
-      public String apply(Long projectId) {
-        return storageIo.getProjectName(userId, projectId);
+  public long importChunk(String userId, String uploadId, int index, InputStream chunkStream)
+      throws FileImporterException, IOException {
+    byte[] content = readLimited(chunkStream, maxChunkSizeKb.get() * 1024L);
+    // An upload may be a project or an asset, and is checked against the limit of its kind
+    // when it is imported. Here it is only kept from growing past the larger of the two.
+    long maxUploadBytes = Math.max((long) maxProjectSizeMegs.get() * 1024 * 1024,
+        (long) (maxAssetSizeMegs.get() * 1024 * 1024));
+    long uploaded = content.length;
+    for (Map.Entry<Integer, Long> chunk : storageIo.getUploadChunks(userId, uploadId).entrySet()) {
+      if (chunk.getKey() != index) {
+        uploaded += chunk.getValue();
       }
-    });
+    }
+    if (uploaded > maxUploadBytes) {
+      throw new FileImporterException(UploadResponse.Status.FILE_TOO_LARGE);
+    }
+    storageIo.uploadChunk(userId, uploadId, index, content);
+    return uploaded;
+  }
+
+  /*
+   * Reads a stream to its end, failing as soon as more than maxBytes have
+   * been read rather than after the whole stream is in memory. The rest of a
+   * stream that is too long is read and thrown away, so that the request it
+   * came with completes.
+   */
+  private static byte[] readLimited(InputStream in, long maxBytes)
+      throws FileImporterException, IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    if (ByteStreams.copy(ByteStreams.limit(in, maxBytes + 1), out) > maxBytes) {
+      ByteStreams.exhaust(in);
+      throw new FileImporterException(UploadResponse.Status.FILE_TOO_LARGE);
+    }
+    return out.toByteArray();
+  }
+
+  @Override
+  public Set<String> getProjectNames(final String userId) {
+    Iterable<String> names = Iterables.transform(storageIo.getProjectSummaries(userId),
+        new Function<UserProject, String>() {
+          @Override
+          public String apply(UserProject project) {
+            return project.getProjectName();
+          }
+        });
     return ImmutableSet.copyOf(names);
   }
 }
@@ -8,19 +8,25 @@ package com.google.appinventor.server;
 
 import com.google.appinventor.server.encryption.EncryptionException;
 import com.google.appinventor.server.project.utils.Security;
+import com.google.appinventor.server.storage.BuildStatusEvent;
 import com.google.appinventor.server.storage.StorageIo;
 import com.google.appinventor.server.storage.StorageIoInstanceHolder;
 import com.google.appinventor.shared.storage.StorageUtil;
 import com.google.common.io.ByteStreams;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.json.JSONException;
+import org.json.JSONObject;
+
 /**
  * Servlet for receiving build output files and build error information from a Build Server.
  *
@@ -39,6 +45,13 @@ public class ReceiveBuildServlet extends OdeServlet {
   private final OdeAuthFilter odeFilter = new OdeAuthFilter();
   private final transient StorageIo storageIo = StorageIoInstanceHolder.getInstance();
 
+  // Build output files are received in build/<target>
+  private static final String BUILD_FOLDER_PREFIX = "build/";
+
+  // The hash of a build's sources is passed back in the query string of the callback URL
+  private static final String SOURCE_HASH_PARAM = "source=";
+  private static final Pattern SOURCE_HASH_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
   @Override
   public void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
     // URIs for receivebuild requests are structured as follows:
@@ -62,6 +75,10 @@ public class ReceiveBuildServlet extends OdeServlet {
     odeFilter.setUserFromUserId(userId, false, false, 0, null, null);
     try {
       String buildFileDirPath = uriComponents[4];
+      String target = buildFileDirPath.startsWith(BUILD_FOLDER_PREFIX)
+          ? buildFileDirPath.substring(BUILD_FOLDER_PREFIX.length()) : buildFileDirPath;
+      BuildStatusChannel channel = BuildStatusChannel.getInstance();
+      int buildResult = BuildStatusEvent.NOT_FINISHED;
       ZipInputStream zipInputStream = new ZipInputStream(req.getInputStream());
       while (true) {
         ZipEntry zipEntry = zipInputStream.getNextEntry();
@@ -78,16 +95,62 @@ public class ReceiveBuildServlet extends OdeServlet {
           int progress = Integer.parseInt((new String(fileBytes)).trim());
           LOG.info("Received a build.status file contents = " + progress);
           storageIo.storeBuildStatus(userId, projectId, progress);
+          channel.publish(userId, projectId, target, progress, BuildStatusEvent.NOT_FINISHED);
         } else {
           String filePath = buildFileDirPath + "/" + fileName;
           LOG.info("Saving build output files: " + filePath);
           storageIo.addOutputFilesToProject(userId, projectId, filePath);
           storageIo.uploadRawFileForce(projectId, filePath, userId, fileBytes);
           storageIo.storeBuildStatus(userId, projectId, 0); // Reset for the next build
+          if (fileName.equals("build.out")) {
+            buildResult = parseBuildResult(fileBytes);
+          }
         }
       }
+      if (buildResult != BuildStatusEvent.NOT_FINISHED) {
+        // Published once all of the output files are stored, so that clients
+        // woken by it find them.
+        channel.publish(userId, projectId, target, 100, buildResult);
+      }
+      String sourceHash = getSourceHash(req);
+      if (buildResult == 0 && sourceHash != null) {
+        // Kept after the client is told. The packages are copied within GCS, not read here.
+        storageIo.retainBuildOutput(userId, projectId, target, sourceHash);
+      }
     } finally {
       odeFilter.removeUser();
     }
   }
+
+  /*
+   * Returns the hash of the build's sources that YoungAndroidProjectService
+   * put in the callback URL, or null if there is none. The query string is
+   * parsed here, since asking the request for a parameter may consume a
+   * form encoded body.
+   */
+  private static String getSourceHash(HttpServletRequest req) {
+    String query = req.getQueryString();
+    if (query == null) {
+      return null;
+    }
+    for (String param : query.split("&")) {
+      if (param.startsWith(SOURCE_HASH_PARAM)) {
+        String hash = param.substring(SOURCE_HASH_PARAM.length());
+        return SOURCE_HASH_PATTERN.matcher(hash).matches() ? hash : null;
+      }
+    }
+    return null;
+  }
+
+  /*
+   * Returns the result code in a build.out file, treating one that cannot be
+   * parsed as a failed build, as YoungAndroidProjectService.getBuildResult does.
+   */
+  private static int parseBuildResult(byte[] buildOut) {
+    try {
+      return new JSONObject(new String(buildOut, StandardCharsets.UTF_8)).getInt("result");
+    } catch (JSONException e) {
+      return 1;
+    }
+  }
 }
@@ -6,20 +6,26 @@
 
 package com.google.appinventor.server;
 
+import com.google.appinventor.server.storage.StorageIo;
+import com.google.appinventor.server.storage.StorageIoInstanceHolder;
 import com.google.appinventor.server.util.CacheHeaders;
 import com.google.appinventor.server.util.CacheHeadersImpl;
 import com.google.appinventor.shared.rpc.ServerLayout;
 import com.google.appinventor.shared.rpc.UploadResponse;
 import com.google.appinventor.shared.rpc.component.Component;
 import com.google.appinventor.shared.rpc.project.UserProject;
+import com.google.common.base.Joiner;
 
 import org.apache.commons.fileupload.FileItemStream;
 import org.apache.commons.fileupload.FileItemIterator;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintWriter;
+import java.util.Set;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.servlet.http.HttpServletRequest;
@@ -36,6 +42,13 @@ public class UploadServlet extends OdeServlet {
    *    /<baseurl>/upload/project/<projectname>}
    *    /<baseurl>/upload/file/<projectId>/<filePath>
    *    /<baseurl>/upload/userfile/<filePath>
+   *    /<baseurl>/upload/chunk/<uploadId>/<chunkIndex>
+   *
+   * A project or file may also be sent as a resumable upload: its chunks are
+   * posted one by one to the chunk URI, and then the project or file URI is
+   * posted with the upload id and chunk count as query parameters instead of
+   * a form. A GET of /<baseurl>/upload/chunk/<uploadId> lists the chunks
+   * stored so far, so an interrupted upload can be resumed.
    */
 
   // Constants for accessing split URI
@@ -65,6 +78,11 @@ public class UploadServlet extends OdeServlet {
   private static final int COMPONENT_PATH_INDEX = 4;
   private static final int SPLIT_LIMIT_COMPONENT = 5;
 
+  // Constants used when upload kind is "chunk".
+  private static final int UPLOAD_ID_INDEX = 4;
+  private static final int CHUNK_INDEX_INDEX = 5;
+  private static final int SPLIT_LIMIT_CHUNK = 6;
+
 
   // Logging support
   private static final Logger LOG = Logger.getLogger(UploadServlet.class.getName());
@@ -76,6 +94,7 @@ public class UploadServlet extends OdeServlet {
   private static final String CONTENT_TYPE = "text/html; charset=utf-8";
 
   private final FileImporter fileImporter = new FileImporterImpl();
+  private final transient StorageIo storageIo = StorageIoInstanceHolder.getInstance();
 
   @Override
   public void doPost(HttpServletRequest req, HttpServletResponse resp) {
@@ -92,38 +111,70 @@ public class UploadServlet extends OdeServlet {
       if (uploadKind.equals(ServerLayout.UPLOAD_PROJECT)) {
         uriComponents = uri.split("/", SPLIT_LIMIT_PROJECT_SOURCE);
         String projectName = uriComponents[PROJECT_TITLE_INDEX];
+        String uploadId = req.getParameter(ServerLayout.UPLOAD_ID_PARAMETER);
+        if (uploadId != null && !isValidUploadId(uploadId)) {
+          resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid upload id");
+          return;
+        }
+        if (uploadId != null && getChunkCount(req) < 0) {
+          resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid chunk count");
+          return;
+        }
         InputStream uploadedStream;
         try {
-          uploadedStream = getRequestStream(req, ServerLayout.UPLOAD_PROJECT_ARCHIVE_FORM_ELEMENT);
+          uploadedStream = getUploadStream(req, uploadId,
+              ServerLayout.UPLOAD_PROJECT_ARCHIVE_FORM_ELEMENT);
         } catch (Exception e) {
           throw CrashReport.createAndLogError(LOG, req, null, e);
         }
 
-        try {
-          UserProject userProject = fileImporter.importProject(userInfoProvider.getUserId(),
-              projectName, uploadedStream);
-          String info = userProject.toString();
-          uploadResponse = new UploadResponse(UploadResponse.Status.SUCCESS, 0, info);
-        } catch (FileImporterException e) {
-          uploadResponse = e.uploadResponse;
+        if (uploadedStream == null) {
+          uploadResponse = missingChunksResponse(uploadId);
+        } else {
+          try {
+            UserProject userProject = uploadId == null
+                ? fileImporter.importProject(userInfoProvider.getUserId(), projectName,
+                    uploadedStream)
+                : fileImporter.importChunkedProject(userInfoProvider.getUserId(), projectName,
+                    uploadedStream);
+            String info = userProject.toString();
+            uploadResponse = new UploadResponse(UploadResponse.Status.SUCCESS, 0, info);
+            deleteUpload(uploadId);
+          } catch (FileImporterException e) {
+            uploadResponse = e.uploadResponse;
+          }
         }
       } else if (uploadKind.equals(ServerLayout.UPLOAD_FILE)) {
         uriComponents = uri.split("/", SPLIT_LIMIT_FILE);
         long projectId = Long.parseLong(uriComponents[PROJECT_ID_INDEX]);
         String fileName = uriComponents[FILE_PATH_INDEX];
+        String uploadId = req.getParameter(ServerLayout.UPLOAD_ID_PARAMETER);
+        if (uploadId != null && !isValidUploadId(uploadId)) {
+          resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid upload id");
+          return;
+        }
+        if (uploadId != null && getChunkCount(req) < 0) {
+          resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid chunk count");
+          return;
+        }
         InputStream uploadedStream;
         try {
-          uploadedStream = getRequestStream(req, ServerLayout.UPLOAD_FILE_FORM_ELEMENT);
+          uploadedStream = getUploadStream(req, uploadId, ServerLayout.UPLOAD_FILE_FORM_ELEMENT);
         } catch (Exception e) {
           throw CrashReport.createAndLogError(LOG, req, null, e);
         }
 
-        try {
-          long modificationDate = fileImporter.importFile(userInfoProvider.getUserId(),
-              projectId, fileName, uploadedStream);
-          uploadResponse = new UploadResponse(UploadResponse.Status.SUCCESS, modificationDate);
-        } catch (FileImporterException e) {
-          uploadResponse = e.uploadResponse;
+        if (uploadedStream == null) {
+          uploadResponse = missingChunksResponse(uploadId);
+        } else {
+          try {
+            long modificationDate = fileImporter.importFile(userInfoProvider.getUserId(),
+                projectId, fileName, uploadedStream);
+            uploadResponse = new UploadResponse(UploadResponse.Status.SUCCESS, modificationDate);
+            deleteUpload(uploadId);
+          } catch (FileImporterException e) {
+            uploadResponse = e.uploadResponse;
+          }
         }
       } else if (uploadKind.equals(ServerLayout.UPLOAD_USERFILE)) {
         uriComponents = uri.split("/", SPLIT_LIMIT_USERFILE);
@@ -158,6 +209,32 @@ public class UploadServlet extends OdeServlet {
 
         uploadResponse = new UploadResponse(UploadResponse.Status.SUCCESS, 0,
           fileImporter.importTempFile(uploadedStream));
+      } else if (uploadKind.equals(ServerLayout.UPLOAD_CHUNK)) {
+        uriComponents = uri.split("/", SPLIT_LIMIT_CHUNK);
+        if (CHUNK_INDEX_INDEX >= uriComponents.length) {
+          throw CrashReport.createAndLogError(LOG, req, null,
+              new IllegalArgumentException("Missing chunk index."));
+        }
+        String uploadId = uriComponents[UPLOAD_ID_INDEX];
+        if (!isValidUploadId(uploadId)) {
+          resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid upload id");
+          return;
+        }
+        int index = parseNonNegative(uriComponents[CHUNK_INDEX_INDEX]);
+        if (index < 0 || index >= StorageIo.MAX_UPLOAD_CHUNKS) {
+          resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid chunk index");
+          return;
+        }
+        // The chunk is the body of the request, which is not a form, so that
+        // it can be sent again as is if the request fails.
+        try {
+          long uploaded = fileImporter.importChunk(userInfoProvider.getUserId(), uploadId, index,
+              req.getInputStream());
+          uploadResponse = new UploadResponse(UploadResponse.Status.SUCCESS, 0,
+              Long.toString(uploaded));
+        } catch (FileImporterException e) {
+          uploadResponse = e.uploadResponse;
+        }
       } else {
         throw CrashReport.createAndLogError(LOG, req, null,
             new IllegalArgumentException("Unknown upload kind: " + uploadKind));
@@ -178,6 +255,95 @@ public class UploadServlet extends OdeServlet {
     resp.setStatus(HttpServletResponse.SC_OK);
   }
 
+  @Override
+  public void doGet(HttpServletRequest req, HttpServletResponse resp) {
+    setDefaultHeader(resp);
+
+    try {
+      String[] uriComponents = req.getRequestURI().split("/", SPLIT_LIMIT_CHUNK);
+      if (UPLOAD_ID_INDEX >= uriComponents.length
+          || !uriComponents[UPLOAD_KIND_INDEX].equals(ServerLayout.UPLOAD_CHUNK)) {
+        throw CrashReport.createAndLogError(LOG, req, null,
+            new IllegalArgumentException("Only chunked uploads can be listed."));
+      }
+      String uploadId = uriComponents[UPLOAD_ID_INDEX];
+      if (!isValidUploadId(uploadId)) {
+        resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid upload id");
+        return;
+      }
+      // The info of the response is the comma separated indexes of the chunks stored.
+      Set<Integer> chunks = storageIo.getUploadChunks(userInfoProvider.getUserId(),
+          uploadId).keySet();
+      UploadResponse uploadResponse = new UploadResponse(UploadResponse.Status.SUCCESS, 0,
+          Joiner.on(',').join(chunks));
+      resp.getWriter().print(uploadResponse.formatAsHtml());
+    } catch (IOException e) {
+      throw CrashReport.createAndLogError(LOG, req, null, e);
+    }
+
+    resp.setStatus(HttpServletResponse.SC_OK);
+  }
+
+  /*
+   * Returns the content of an upload: the chunks stored for it if an upload
+   * id is given, or else the given field of the request's form. Returns null
+   * if any of the chunks is missing.
+   */
+  private InputStream getUploadStream(HttpServletRequest req, String uploadId,
+      String expectedFieldName) throws Exception {
+    if (uploadId == null) {
+      return getRequestStream(req, expectedFieldName);
+    }
+    try {
+      return storageIo.openUpload(userInfoProvider.getUserId(), uploadId, getChunkCount(req));
+    } catch (FileNotFoundException e) {
+      LOG.info(e.getMessage());
+      return null;
+    }
+  }
+
+  // The response to an import of an upload whose chunks are not all stored. The client can list
+  // the chunks, send the missing ones again and then retry the import.
+  private static UploadResponse missingChunksResponse(String uploadId) {
+    return new UploadResponse(UploadResponse.Status.IO_EXCEPTION, 0,
+        "Missing chunks of upload " + uploadId);
+  }
+
+  private static boolean isValidUploadId(String uploadId) {
+    return StorageIo.UPLOAD_ID_PATTERN.matcher(uploadId).matches();
+  }
+
+  // Returns the number of chunks of a resumable upload, or -1 if it is missing or invalid.
+  private static int getChunkCount(HttpServletRequest req) {
+    int count = parseNonNegative(req.getParameter(ServerLayout.UPLOAD_CHUNKS_PARAMETER));
+    return count > StorageIo.MAX_UPLOAD_CHUNKS ? -1 : count;
+  }
+
+  // Returns the integer in value, or -1 if it is not a non-negative integer.
+  private static int parseNonNegative(String value) {
+    if (value == null) {
+      return -1;
+    }
+    try {
+      return Math.max(-1, Integer.parseInt(value));
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  // Deletes the chunks of an upload once it is imported. They expire anyway, so a failure is
+  // only logged.
+  private void deleteUpload(String uploadId) {
+    if (uploadId == null) {
+      return;
+    }
+    try {
+      storageIo.deleteUpload(userInfoProvider.getUserId(), uploadId);
+    } catch (IOException e) {
+      LOG.log(Level.WARNING, "Unable to delete the chunks of upload " + uploadId, e);
+    }
+  }
+
   private InputStream getRequestStream(HttpServletRequest req, String expectedFieldName)
       throws Exception {
     ServletFileUpload upload = new ServletFileUpload();
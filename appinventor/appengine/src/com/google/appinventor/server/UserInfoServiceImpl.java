@@ -96,6 +96,7 @@ public class UserInfoServiceImpl extends OdeRemoteServiceServlet implements User
     config.setDeleteAccountAllowed(deleteAccountAllowed);
     config.setIosExtensions(storageIo.getIosExtensionsConfig());
     config.setSurveyUrl(surveyUrl);
+    config.setSavePatches(Flag.createFlag("project.save.patches", true).get());
 
     if (!Flag.createFlag("build2.server.host", "").get().isEmpty()) {
       config.setSecondBuildserver(true);
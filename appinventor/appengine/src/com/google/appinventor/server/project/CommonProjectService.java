@@ -19,6 +19,7 @@ import com.google.appinventor.shared.rpc.project.ChecksumedFileException;
 import com.google.appinventor.shared.rpc.project.NewProjectParameters;
 import com.google.appinventor.shared.rpc.project.ProjectRootNode;
 import com.google.appinventor.shared.rpc.project.TextFile;
+import com.google.appinventor.shared.rpc.project.TextPatch;
 import com.google.appinventor.shared.rpc.project.UserProject;
 import com.google.appinventor.shared.rpc.user.User;
 import com.google.appinventor.shared.storage.StorageUtil;
@@ -322,6 +323,32 @@ public abstract class CommonProjectService {
     }
   }
 
+  /**
+   * Saves the content of the file associated with a node in the project tree
+   * by applying a patch to the stored content. A patch that changes nothing
+   * is not written.
+   *
+   * @param userId the user id
+   * @param projectId  project root node ID
+   * @param fileId  project node whose source should be saved
+   * @param force whether to write an empty blocks workspace
+   * @param patch  changes from the last saved content to the new content
+   * @return modification date for project
+   * @throws ChecksumedFileException if the stored content is not the version
+   *     the patch was made against
+   *
+   * @see com.google.appinventor.shared.rpc.project.ProjectService#savePatch(String, long, String, boolean, TextPatch)
+   */
+  public long savePatch(String userId, long projectId, String fileId, boolean force,
+      TextPatch patch) throws BlocksTruncatedException, ChecksumedFileException {
+    String content = patch.apply(
+        storageIo.downloadFile(userId, projectId, fileId, StorageUtil.DEFAULT_CHARSET));
+    if (patch.isEmpty()) {
+      return storageIo.getProjectDateModified(userId, projectId);
+    }
+    return save2(userId, projectId, fileId, force, content);
+  }
+
   /**
    * Saves a screenshot of a current blocks editor. This is called from the client side
    * whenever the user leaves a blocks editor. The data is shipped to us in base64 encoding
@@ -0,0 +1,407 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2026 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.server.project.youngandroid;
+
+import com.google.appengine.api.ThreadManager;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hashing;
+import com.google.common.io.CharStreams;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A group of interchangeable build servers configured by one host flag.
+ *
+ * <p>The flag holds a comma separated list of host[:port]. Each server's
+ * {@code /buildserver/health} and {@code /buildserver/vars} pages are read
+ * at most every {@link #PROBE_INTERVAL_MILLIS}, when a build needs them.
+ * The pages are read in the background, so {@link #select} never waits for
+ * them: it orders the servers by their last known state, in the order a
+ * build should be offered to them.</p>
+ *
+ * <p>Each project prefers one server, chosen by rendezvous hashing of the
+ * project id, so that its builds tend to land where its caches are warm.
+ * Every App Engine instance agrees on that server without sharing any state,
+ * and only the projects of a server that goes down move elsewhere. The
+ * preferred server comes first if it is healthy and has a free build slot.
+ * The other healthy servers follow from least to most loaded, with the
+ * preferred one among them if it is busy, and unhealthy servers come
+ * last.</p>
+ */
+class BuildServerPool {
+
+  private static final Logger LOG = Logger.getLogger(BuildServerPool.class.getName());
+
+  // How long the status read from a build server is used before it is read again
+  @VisibleForTesting
+  static final long PROBE_INTERVAL_MILLIS = 15 * 1000;
+  private static final int PROBE_TIMEOUT_MILLIS = 2000;
+
+  // Matches one variable of the /buildserver/vars page: <b>name</b> value<br>
+  private static final Pattern VARIABLE = Pattern.compile("<b>([^<]*)</b> ([^<]*)<br>");
+
+  /**
+   * A build server and the last known state of it.
+   */
+  static final class Node {
+    private final String host;
+    private boolean healthy = true;
+    // Builds running or queued, as a fraction of the builds it runs at once
+    private double load = 0;
+    private double capacity = 1;
+    // The build server's version, null until it is known
+    private String version = null;
+    private long probedAt = Long.MIN_VALUE;
+
+    private Node(String host) {
+      this.host = host;
+    }
+
+    String getHost() {
+      return host;
+    }
+  }
+
+  /**
+   * What a probe of a build server found.
+   */
+  @VisibleForTesting
+  static final class Status {
+    final boolean healthy;
+    final int tasks;
+    final int capacity;
+    final String version;
+
+    Status(boolean healthy, int tasks, int capacity) {
+      this(healthy, tasks, capacity, null);
+    }
+
+    Status(boolean healthy, int tasks, int capacity, String version) {
+      this.healthy = healthy;
+      this.tasks = tasks;
+      this.capacity = Math.max(1, capacity);
+      this.version = version;
+    }
+  }
+
+  /*
+   * Runs each probe on a thread of the current request, which App Engine
+   * lets run alongside the request's upload to the build server.
+   */
+  private static final Executor REQUEST_THREADS = new Executor() {
+    @Override
+    public void execute(Runnable command) {
+      Thread thread;
+      try {
+        thread = ThreadManager.currentRequestThreadFactory().newThread(command);
+      } catch (RuntimeException e) {
+        // Not in a request
+        thread = null;
+      }
+      if (thread == null) {
+        thread = new Thread(command, "BuildServerPool probe");
+        thread.setDaemon(true);
+      }
+      thread.start();
+    }
+  };
+
+  private final List<Node> nodes;
+  private final String password;
+  private final Executor probeExecutor;
+
+  /**
+   * Creates a pool.
+   *
+   * @param hosts comma separated host[:port] of the build servers
+   * @param password the password of the build servers, or empty
+   */
+  BuildServerPool(String hosts, String password) {
+    this(hosts, password, REQUEST_THREADS);
+  }
+
+  /**
+   * Creates a pool.
+   *
+   * @param hosts comma separated host[:port] of the build servers
+   * @param password the password of the build servers, or empty
+   * @param probeExecutor runs the probes of the build servers
+   */
+  @VisibleForTesting
+  BuildServerPool(String hosts, String password, Executor probeExecutor) {
+    ImmutableList.Builder<Node> builder = ImmutableList.builder();
+    for (String host : Splitter.on(',').trimResults().omitEmptyStrings().split(hosts)) {
+      builder.add(new Node(host));
+    }
+    this.nodes = builder.build();
+    this.password = password;
+    this.probeExecutor = probeExecutor;
+  }
+
+  String getPassword() {
+    return password;
+  }
+
+  /**
+   * Returns the build servers in the order a build of the project should be
+   * offered to them. Servers that are known to be down come last, since the
+   * probe that found them down may be out of date. Servers whose state is out
+   * of date are probed in the background for the builds that come next.
+   *
+   * @param projectId the project id
+   * @return the build servers of the pool, empty if none is configured
+   */
+  List<Node> select(final long projectId) {
+    probeStaleNodes();
+    final Map<Node, Long> scores = new HashMap<Node, Long>();
+    for (Node node : nodes) {
+      scores.put(node, Hashing.murmur3_128().newHasher()
+          .putLong(projectId)
+          .putString(node.host, Charsets.UTF_8)
+          .hash().asLong());
+    }
+    final Map<Node, Double> loads = new HashMap<Node, Double>();
+    final Map<Node, Boolean> health = new HashMap<Node, Boolean>();
+    synchronized (this) {
+      for (Node node : nodes) {
+        loads.put(node, node.load);
+        health.put(node, node.healthy);
+      }
+    }
+    List<Node> ordered = new ArrayList<Node>(nodes);
+    // Healthy servers first, least loaded first, the project's own server first among equals.
+    Collections.sort(ordered, new Comparator<Node>() {
+      @Override
+      public int compare(Node a, Node b) {
+        boolean aHealthy = health.get(a);
+        if (aHealthy != health.get(b)) {
+          return aHealthy ? -1 : 1;
+        }
+        int byLoad = Double.compare(loads.get(a), loads.get(b));
+        return byLoad != 0 ? byLoad : Long.compare(scores.get(b), scores.get(a));
+      }
+    });
+    Node preferred = null;
+    for (Node node : ordered) {
+      if (health.get(node) && (preferred == null || scores.get(node) > scores.get(preferred))) {
+        preferred = node;
+      }
+    }
+    // A build on the project's own server starts right away if it has a free slot.
+    if (preferred != null && loads.get(preferred) < 1) {
+      ordered.remove(preferred);
+      ordered.add(0, preferred);
+    }
+    return ordered;
+  }
+
+  /**
+   * Returns the version of the build servers, which is part of what their
+   * outputs depend on. Returns null if it is not known yet, or if the healthy
+   * servers do not all run the same version, since a build could then go to
+   * any of them.
+   *
+   * @return the version of the build servers, or null
+   */
+  String getVersion() {
+    probeStaleNodes();
+    String version = null;
+    synchronized (this) {
+      for (Node node : nodes) {
+        if (!node.healthy) {
+          continue;
+        }
+        if (node.version == null || (version != null && !version.equals(node.version))) {
+          return null;
+        }
+        version = node.version;
+      }
+    }
+    return version;
+  }
+
+  /**
+   * Records that a build server accepted a build, so that builds arriving
+   * before its next probe see it busier.
+   *
+   * @param node the build server
+   */
+  synchronized void reportAccepted(Node node) {
+    node.load += 1 / node.capacity;
+  }
+
+  /**
+   * Records that a build server turned a build away because it is full. It
+   * is offered builds last until it is probed again.
+   *
+   * @param node the build server
+   */
+  synchronized void reportRejected(Node node) {
+    node.load = Double.MAX_VALUE;
+  }
+
+  /**
+   * Records that a build server could not be reached. It is treated as down
+   * until it is probed again.
+   *
+   * @param node the build server
+   */
+  synchronized void reportUnreachable(Node node) {
+    node.healthy = false;
+  }
+
+  /*
+   * Starts reading the status of the servers whose last probe is too old.
+   * A server is claimed before it is probed, so concurrent builds do not
+   * probe it too. Even a pool of one server is probed, for its version.
+   */
+  private void probeStaleNodes() {
+    List<Node> stale = new ArrayList<Node>();
+    synchronized (this) {
+      long now = System.currentTimeMillis();
+      for (Node node : nodes) {
+        if (node.probedAt == Long.MIN_VALUE || now - node.probedAt >= PROBE_INTERVAL_MILLIS) {
+          node.probedAt = now;
+          stale.add(node);
+        }
+      }
+    }
+    for (final Node node : stale) {
+      try {
+        probeExecutor.execute(new Runnable() {
+          @Override
+          public void run() {
+            probeNode(node);
+          }
+        });
+      } catch (RuntimeException e) {
+        LOG.warning("Unable to probe build server " + node.host + ": " + e);
+        synchronized (this) {
+          // Try again for the next build.
+          node.probedAt = Long.MIN_VALUE;
+        }
+      }
+    }
+  }
+
+  private void probeNode(Node node) {
+    Status status;
+    try {
+      status = probe(node.host);
+    } catch (IOException e) {
+      LOG.info("Build server " + node.host + " did not answer its probe: " + e.getMessage());
+      status = new Status(false, 0, 1);
+    }
+    synchronized (this) {
+      node.healthy = status.healthy;
+      node.capacity = status.capacity;
+      node.load = (double) status.tasks / status.capacity;
+      if (status.version != null) {
+        node.version = status.version;
+      }
+    }
+  }
+
+  /**
+   * Reads the health and load of a build server.
+   *
+   * @param host the host[:port] of the build server
+   * @return the status of the build server
+   * @throws IOException if the build server could not be reached
+   */
+  @VisibleForTesting
+  Status probe(String host) throws IOException {
+    HttpURLConnection health = open(host, "health");
+    try {
+      if (health.getResponseCode() != HttpURLConnection.HTTP_OK) {
+        // Shutting down, draining or turning on
+        return new Status(false, 0, 1);
+      }
+      drain(health.getInputStream());
+    } finally {
+      health.disconnect();
+    }
+    HttpURLConnection vars = open(host, "vars");
+    try {
+      if (vars.getResponseCode() != HttpURLConnection.HTTP_OK) {
+        // Healthy, but its load is unknown.
+        return new Status(true, 0, 1);
+      }
+      return parseVars(drain(vars.getInputStream()));
+    } finally {
+      vars.disconnect();
+    }
+  }
+
+  /**
+   * Computes the status of a healthy build server from its
+   * {@code /buildserver/vars} page.
+   *
+   * @param page the content of the page
+   * @return the status of the build server
+   */
+  @VisibleForTesting
+  static Status parseVars(String page) {
+    Map<String, String> variables = new HashMap<String, String>();
+    Matcher matcher = VARIABLE.matcher(page);
+    while (matcher.find()) {
+      variables.put(matcher.group(1).trim(), matcher.group(2).trim());
+    }
+    int tasks = parseInt(variables.get("active-build-tasks"), 0)
+        + parseInt(variables.get("queued-build-tasks"), 0);
+    // A server without a limit on simultaneous builds runs about one per processor well.
+    int capacity = parseInt(variables.get("maximum-simultaneous-build-tasks-allowed"),
+        parseInt(variables.get("num-processors"), 1));
+    String version = variables.get("buildserver-git-fingerprint");
+    if (Strings.isNullOrEmpty(version)) {
+      version = variables.get("buildserver-version");
+    }
+    return new Status(true, tasks, capacity, Strings.emptyToNull(version));
+  }
+
+  private static int parseInt(String value, int defaultValue) {
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      return defaultValue;
+    }
+  }
+
+  private static HttpURLConnection open(String host, String page) throws IOException {
+    URL url = new URL("http://" + host + "/buildserver/" + page);
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    connection.setConnectTimeout(PROBE_TIMEOUT_MILLIS);
+    connection.setReadTimeout(PROBE_TIMEOUT_MILLIS);
+    return connection;
+  }
+
+  private static String drain(InputStream stream) throws IOException {
+    try (InputStreamReader reader = new InputStreamReader(stream, Charsets.UTF_8)) {
+      return CharStreams.toString(reader);
+    }
+  }
+}
@@ -20,6 +20,7 @@ import com.google.apphosting.api.ApiProxy;
 import com.google.appinventor.common.utils.StringUtils;
 import com.google.appinventor.common.version.GitBuildId;
 import com.google.appinventor.components.common.YaVersion;
+import com.google.appinventor.server.BuildStatusChannel;
 import com.google.appinventor.server.CrashReport;
 import com.google.appinventor.server.FileExporter;
 import com.google.appinventor.server.FileExporterImpl;
@@ -34,6 +35,8 @@ import com.google.appinventor.server.ios.ProvisioningProfileValidationResult;
 import com.google.appinventor.server.project.CommonProjectService;
 import com.google.appinventor.server.project.utils.Security;
 import com.google.appinventor.server.properties.json.ServerJsonParser;
+import com.google.appinventor.server.storage.BuildInput;
+import com.google.appinventor.server.storage.BuildStatusEvent;
 import com.google.appinventor.server.storage.StorageIo;
 import com.google.appinventor.server.util.UriBuilder;
 import com.google.appinventor.shared.properties.json.JSONParser;
@@ -65,6 +68,7 @@ import com.google.appinventor.shared.settings.Settings;
 import com.google.appinventor.shared.storage.StorageUtil;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Maps;
+import com.google.common.hash.Hashing;
 import com.google.common.io.CharStreams;
 import java.util.Locale;
 import org.json.JSONException;
@@ -74,14 +78,19 @@ import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.FileNotFoundException;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.StringReader;
 import java.net.ConnectException;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
+import java.net.NoRouteToHostException;
 import java.net.URL;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -99,6 +108,8 @@ public final class YoungAndroidProjectService extends CommonProjectService {
 
   private static final Logger LOG = Logger.getLogger(YoungAndroidProjectService.class.getName());
   private static final int MB = 1024 * 1024;
+  // Size of the chunks a project is sent to the build server in
+  private static final int UPLOAD_CHUNK_SIZE = 64 * 1024;
 
   // The value of this flag can be changed in appengine-web.xml
   private static final Flag<Boolean> sendGitVersion =
@@ -117,12 +128,13 @@ public final class YoungAndroidProjectService extends CommonProjectService {
   // Build folder path
   private static final String BUILD_FOLDER = "build";
 
-  // host[:port] to use for connecting to the build server
+  // host[:port] to use for connecting to the build server, or a comma
+  // separated list of them to spread builds over several build servers
   private static final Flag<String> buildServerHost =
       Flag.createFlag("build.server.host", "localhost:9990");
   private static final Flag<String> buildServerPassword =
       Flag.createFlag("build.server.password", "");
-  // host[:port] to use for connecting to the second build server
+  // host[:port] to use for connecting to the second build server, or a list
   private static final Flag<String> buildServerHost2 =
       Flag.createFlag("build2.server.host", "");
   private static final Flag<String> buildServerPassword2 =
@@ -130,6 +142,12 @@ public final class YoungAndroidProjectService extends CommonProjectService {
   // host[:port] to tell build server app host url
   private static final Flag<String> iosBuildServer =
       Flag.createFlag("ios.build.server.host", "");
+  private static final BuildServerPool buildServers =
+      new BuildServerPool(buildServerHost.get(), buildServerPassword.get());
+  private static final BuildServerPool buildServers2 =
+      new BuildServerPool(buildServerHost2.get(), buildServerPassword2.get());
+  private static final BuildServerPool iosBuildServers =
+      new BuildServerPool(iosBuildServer.get(), buildServerPassword.get());
   private static final Flag<String> appengineHost =
       Flag.createFlag("appengine.host", "");
   private static final boolean DEBUG = Flag.createFlag("appinventor.debugging", false).get();
@@ -548,43 +566,105 @@ public final class YoungAndroidProjectService extends CommonProjectService {
     for (String buildOutputFile : buildOutputFiles) {
       storageIo.deleteFile(userId, projectId, buildOutputFile);
     }
+    // Start the log before the build server can report progress into it.
+    BuildStatusChannel.getInstance().start(userId, projectId, target);
+    BuildServerPool pool = foriOS ? iosBuildServers
+        : secondBuildserver ? buildServers2 : buildServers;
+    // The files are listed once, both to look for retained outputs and to send to the servers.
+    BuildInput buildInput;
+    try {
+      buildInput = storageIo.loadBuildInput(userId, projectId, forAppStore);
+    } catch (IOException e) {
+      return new RpcResult(false, "", e.getMessage());
+    }
+    String sourceHash = getBuildSourceHash(buildInput, target, pool, secondBuildserver,
+        isAab, foriOS, forAppStore);
+    if (sourceHash != null && storageIo.restoreBuildOutput(userId, projectId, target,
+        sourceHash)) {
+      LOG.info("Reusing the retained " + target + " outputs of project " + projectId);
+      BuildStatusChannel.getInstance().publish(userId, projectId, target, 100, 0);
+      return new RpcResult(true, "Building " + projectName, "");
+    }
+    List<BuildServerPool.Node> nodes = pool.select(projectId);
+    if (nodes.isEmpty()) {
+      return new RpcResult(false, "", "No build server is configured.");
+    }
     URL buildServerUrl = null;
-    ProjectSourceZip zipFile = null;
+    ProjectUploadStream upload = null;
     try {
-      buildServerUrl = new URL(getBuildServerUrlStr(
-          user.getUserEmail(),
-          userId,
-          projectId,
-          secondBuildserver,
-          outputFileDir,
-          isAab, foriOS, forAppStore));
-      HttpURLConnection connection = (HttpURLConnection) buildServerUrl.openConnection();
-      setBuildServerPassword(connection, secondBuildserver);
-      connection.setDoOutput(true);
-      connection.setRequestMethod("POST");
-
-      BufferedOutputStream bufferedOutputStream = new BufferedOutputStream(connection.getOutputStream());
-      FileExporter fileExporter = new FileExporterImpl();
-      zipFile = fileExporter.exportProjectSourceZip(userId, projectId, false,
-          /* includeAndroidKeystore */ true,
-        projectName + ".aia", true, false, true, false, forAppStore, false);
-      // The code below tests the size of the compressed project before
-      // we send it off to the buildserver. When using URLFetch we know that
-      // this size is limited to 10MB based on Google's documentation.
-      // It isn't clear if this is also enforced in the Java 8 environment
-      // when not using URLFetch. However we are being conservative for now.
-      // Keep in mind that large projects can lead to large APK files which
-      // may not be loadable into many memory restricted devices, so we
-      // may not want to encourage large projects...
-      if (zipFile.getContent().length > MAX_PROJECT_SIZE.get() * MB) {
-        return fileTooBigResult(zipFile.getContent().length);
+      HttpURLConnection connection = null;
+      int responseCode = 0;
+      // Offer the build to each server in turn until one takes it. A build
+      // only moves to the next server if the last one could not be reached or
+      // answered 503 because it is full; any other failure may have happened
+      // after the server started the build. The project is exported again for
+      // each attempt since it is streamed as it is read.
+      for (int attempt = 0; attempt < nodes.size(); attempt++) {
+        BuildServerPool.Node node = nodes.get(attempt);
+        boolean lastAttempt = attempt == nodes.size() - 1;
+        buildServerUrl = new URL(getBuildServerUrlStr(
+            node.getHost(),
+            user.getUserEmail(),
+            userId,
+            projectId,
+            outputFileDir,
+            sourceHash,
+            isAab, foriOS, forAppStore));
+        upload = null;
+        boolean connected = false;
+        try {
+          connection = (HttpURLConnection) buildServerUrl.openConnection();
+          setBuildServerPassword(connection, pool.getPassword());
+          connection.setDoOutput(true);
+          connection.setRequestMethod("POST");
+          // The project is streamed to the build server as it is read from
+          // storage, so its length is not known when the request starts.
+          connection.setChunkedStreamingMode(UPLOAD_CHUNK_SIZE);
+          // Connect before exporting the project, so that an unreachable server
+          // is found out right away.
+          connection.connect();
+          connected = true;
+
+          // The upload stream limits the size of the compressed project we send
+          // off to the buildserver. When using URLFetch we know that
+          // this size is limited to 10MB based on Google's documentation.
+          // It isn't clear if this is also enforced in the Java 8 environment
+          // when not using URLFetch. However we are being conservative for now.
+          // Keep in mind that large projects can lead to large APK files which
+          // may not be loadable into many memory restricted devices, so we
+          // may not want to encourage large projects...
+          upload = new ProjectUploadStream(
+              new BufferedOutputStream(connection.getOutputStream()),
+              (long) MAX_PROJECT_SIZE.get() * MB);
+          storageIo.writeBuildInputZip(buildInput, upload);
+          upload.close();
+          responseCode = connection.getResponseCode();
+        } catch (IOException e) {
+          if (lastAttempt || !isConnectFailure(e, connected)) {
+            throw e;
+          }
+          LOG.warning("Build server " + node.getHost() + " could not be reached, trying the next"
+              + " one: " + e.getMessage());
+          pool.reportUnreachable(node);
+          continue;
+        }
+        if (responseCode == HttpURLConnection.HTTP_UNAVAILABLE && !lastAttempt) {
+          // The build server is at maximum capacity.
+          LOG.info("Build server " + node.getHost() + " is full, trying the next one");
+          pool.reportRejected(node);
+          try {
+            readContent(connection.getErrorStream());
+          } catch (IOException e) {
+            // No error content. That's ok.
+          }
+          continue;
+        }
+        if (responseCode == HttpURLConnection.HTTP_OK) {
+          pool.reportAccepted(node);
+        }
+        break;
       }
-      bufferedOutputStream.write(zipFile.getContent());
-      bufferedOutputStream.flush();
-      bufferedOutputStream.close();
 
-      int responseCode = 0;
-      responseCode = connection.getResponseCode();
       if (responseCode != HttpURLConnection.HTTP_OK) {
         // Put the HTTP response code into the RpcResult so the client code in BuildCommand.java
         // can provide an appropriate error message to the user.
@@ -634,7 +714,8 @@ public final class YoungAndroidProjectService extends CommonProjectService {
       return new RpcResult(false, "", e.getMessage());
     } catch (IOException e) {
       // As of App Engine 1.9.0 we get these when UrlFetch is asked to send too much data
-      int zipFileLength = zipFile == null ? -1 : zipFile.getContent().length;
+      // The upload stream also throws one when the project is larger than allowed.
+      long zipFileLength = upload == null ? -1 : upload.getCount();
       if (zipFileLength >= MAX_PROJECT_SIZE.get() * MB) {
         return fileTooBigResult(zipFileLength);
       } else {
@@ -648,8 +729,8 @@ public final class YoungAndroidProjectService extends CommonProjectService {
       // In particular, we often see RequestTooLargeException (if the zip is too
       // big) and ApiProxyException. There may be others.
       Throwable wrappedException = e;
-      if (e instanceof ApiProxy.RequestTooLargeException && zipFile != null) {
-        int zipFileLength = zipFile.getContent().length;
+      if (e instanceof ApiProxy.RequestTooLargeException && upload != null) {
+        long zipFileLength = upload.getCount();
         if (zipFileLength >= MAX_PROJECT_SIZE.get() * MB) {
           return fileTooBigResult(zipFileLength);
         } else {
@@ -807,15 +888,12 @@ public final class YoungAndroidProjectService extends CommonProjectService {
   // Note that this is a function rather than just a constant because we assume it will get
   // a little more complicated when we want to get the URL from an App Engine config file or
   // command line argument.
-  private String getBuildServerUrlStr(String userName, String userId,
-      long projectId, boolean secondBuildserver, String fileName, boolean isAab,
-      boolean foriOS, boolean forAppStore)
-      throws EncryptionException {
+  private String getBuildServerUrlStr(String host, String userName, String userId,
+      long projectId, String fileName, String sourceHash, boolean isAab, boolean foriOS,
+      boolean forAppStore) throws EncryptionException {
     if (forAppStore && !foriOS) {
       throw new IllegalArgumentException("App Store build is only for iOS");
     }
-    String host = foriOS ? iosBuildServer.get() :
-        secondBuildserver ? buildServerHost2.get() : buildServerHost.get();
     UriBuilder uriBuilder = new UriBuilder(
         "http://" + host + "/buildserver/build-all-from-zip-async"
     )
@@ -823,7 +901,7 @@ public final class YoungAndroidProjectService extends CommonProjectService {
         .add("callback", "http://" + getCurrentHost() + ServerLayout.ODE_BASEURL_NOAUTH +
             ServerLayout.RECEIVE_BUILD_SERVLET + "/" +
             Security.encryptUserAndProjectId(userId, projectId) + "/" +
-            fileName)
+            fileName + (sourceHash == null ? "" : "?source=" + sourceHash))
         .add("ext", forAppStore ? "asc" : foriOS ? "ipa" :
             isAab ? "aab" : "apk");
     if (sendGitVersion.get()) {
@@ -832,11 +910,33 @@ public final class YoungAndroidProjectService extends CommonProjectService {
     return uriBuilder.build();
   }
 
-  private void setBuildServerPassword(HttpURLConnection connection, boolean secondBuildserver) {
-    final String buildServerPassword = secondBuildserver
-            ? YoungAndroidProjectService.buildServerPassword2.get()
-            : YoungAndroidProjectService.buildServerPassword.get();
+  /*
+   * Returns a hash of everything a build's outputs depend on: the project's
+   * sources, the user's signing files, the kind of build and the version of
+   * the build servers that would build it. Returns null if build outputs are
+   * not retained or the version of the build servers is not known, in which
+   * case the project is built as usual.
+   */
+  private String getBuildSourceHash(BuildInput buildInput, String target,
+      BuildServerPool pool, boolean secondBuildserver, boolean isAab, boolean foriOS,
+      boolean forAppStore) {
+    String buildServerVersion = pool.getVersion();
+    String fingerprint = buildInput.getFingerprint();
+    if (buildServerVersion == null || fingerprint == null) {
+      return null;
+    }
+    return Hashing.sha256().newHasher()
+        .putString(fingerprint, StandardCharsets.UTF_8).putByte((byte) 0)
+        .putString(target, StandardCharsets.UTF_8).putByte((byte) 0)
+        .putString(buildServerVersion, StandardCharsets.UTF_8).putByte((byte) 0)
+        .putBoolean(secondBuildserver)
+        .putBoolean(isAab)
+        .putBoolean(foriOS)
+        .putBoolean(forAppStore)
+        .hash().toString();
+  }
 
+  private void setBuildServerPassword(HttpURLConnection connection, String buildServerPassword) {
     if (Objects.isNull(buildServerPassword) || buildServerPassword.isEmpty()) {
       // No need to set a password, as the build server is not password protected.
       return;
@@ -861,6 +961,15 @@ public final class YoungAndroidProjectService extends CommonProjectService {
     }
   }
 
+  /*
+   * Returns whether the request failed before the build server could have
+   * received any of it.
+   */
+  private static boolean isConnectFailure(IOException e, boolean connected) {
+    return !connected || e instanceof ConnectException || e instanceof UnknownHostException
+        || e instanceof NoRouteToHostException;
+  }
+
   /*
    * Reads the UTF-8 content from the given input stream.
    */
@@ -893,6 +1002,20 @@ public final class YoungAndroidProjectService extends CommonProjectService {
   public RpcResult getBuildResult(User user, long projectId, String target) {
     String userId = user.getUserId();
     String buildOutputFileName = BUILD_FOLDER + '/' + target + '/' + "build.out";
+    // While the build status log shows that the build is still running, there
+    // is no need to query for its output files. Progress may be logged after
+    // the result, so the build is finished if any event says so.
+    List<BuildStatusEvent> events = storageIo.getBuildStatusEvents(userId, projectId, target, 0);
+    if (events != null) {
+      boolean finished = false;
+      for (BuildStatusEvent event : events) {
+        finished |= event.isFinished();
+      }
+      if (!finished) {
+        int progress = events.isEmpty() ? 0 : events.get(events.size() - 1).getProgress();
+        return new RpcResult(-1, Integer.toString(progress), "");
+      }
+    }
     List<String> outputFiles = storageIo.getProjectOutputFiles(userId, projectId);
     RpcResult buildResult = new RpcResult(-1,
         Integer.toString(getCurrentProgress(user, projectId, target)),
@@ -963,8 +1086,7 @@ public final class YoungAndroidProjectService extends CommonProjectService {
   private String verifyProjectName(String userId, String projectName) {
     projectName = projectName.replace(" ", "_");
     int count = 0;
-    List<Long> projectIds = storageIo.getProjects(userId);
-    List<UserProject> projects = storageIo.getUserProjects(userId, projectIds);
+    List<UserProject> projects = storageIo.getProjectSummaries(userId);
     TreeSet<String> projectNames = new TreeSet();
     for (UserProject project : projects) {
       projectNames.add(project.getProjectName());
@@ -1019,4 +1141,36 @@ public final class YoungAndroidProjectService extends CommonProjectService {
 
   }
 
+  /*
+   * Counts the bytes of a project sent to the build server, and fails the
+   * upload as soon as the project is larger than the build server accepts,
+   * before the rest of it is read from storage.
+   */
+  private static class ProjectUploadStream extends FilterOutputStream {
+    private final long limit;
+    private long count = 0;
+
+    ProjectUploadStream(OutputStream out, long limit) {
+      super(out);
+      this.limit = limit;
+    }
+
+    long getCount() {
+      return count;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      count += len;
+      if (count > limit) {
+        throw new IOException("Project is larger than " + limit + " bytes");
+      }
+      out.write(b, off, len);
+    }
+  }
 }
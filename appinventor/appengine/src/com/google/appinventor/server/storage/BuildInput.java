@@ -0,0 +1,45 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2026 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.server.storage;
+
+import com.google.appinventor.server.storage.StoredData.FileData;
+import com.google.appinventor.server.storage.StoredData.UserFileData;
+
+import java.util.List;
+
+/**
+ * What a build of a project is made from: the project files sent to a build
+ * server and the user's signing files sent with them.
+ *
+ * <p>The files are listed once by {@link StorageIo#loadBuildInput}, so that
+ * the same files are both fingerprinted, to find retained outputs of an
+ * earlier build, and written by {@link StorageIo#writeBuildInputZip}, as
+ * often as the build is offered to a server.
+ */
+public final class BuildInput {
+  final String userId;
+  final long projectId;
+  final List<FileData> files;
+  final List<UserFileData> userFiles;
+  private final String fingerprint;
+
+  BuildInput(String userId, long projectId, List<FileData> files, List<UserFileData> userFiles,
+      String fingerprint) {
+    this.userId = userId;
+    this.projectId = projectId;
+    this.files = files;
+    this.userFiles = userFiles;
+    this.fingerprint = fingerprint;
+  }
+
+  /**
+   * Returns a hash of the files, as a hex string, or null if build outputs
+   * are not retained.
+   */
+  public String getFingerprint() {
+    return fingerprint;
+  }
+}
@@ -0,0 +1,54 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2026 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.server.storage;
+
+import java.io.Serializable;
+
+/**
+ * An entry in the build status log of a project's build target: either the
+ * progress reported by the build server, or the completion of the build.
+ *
+ * <p>Events are numbered in the order they were appended to the log, so a
+ * client can ask for the events after the last one it has seen.
+ */
+public final class BuildStatusEvent implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The result of an event that reports progress rather than completion.
+   */
+  public static final int NOT_FINISHED = -1;
+
+  private final long sequence;
+  private final int progress;
+  private final int result;
+
+  public BuildStatusEvent(long sequence, int progress, int result) {
+    this.sequence = sequence;
+    this.progress = progress;
+    this.result = result;
+  }
+
+  public long getSequence() {
+    return sequence;
+  }
+
+  public int getProgress() {
+    return progress;
+  }
+
+  /**
+   * Returns the result code of the finished build, as found in its build.out,
+   * or {@link #NOT_FINISHED} for a progress event.
+   */
+  public int getResult() {
+    return result;
+  }
+
+  public boolean isFinished() {
+    return result != NOT_FINISHED;
+  }
+}
@@ -0,0 +1,175 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2026 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.server.storage;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * An in-process cache of the content of project files kept outside of the
+ * datastore, in GCS or the blobstore, so that files read over and over are
+ * not fetched remotely each time.
+ *
+ * <p>Content is cached with the modification date of the {@link
+ * StoredData.FileData} it was read for, and only returned for that date, so a
+ * file written by any instance is read again. It is therefore consulted after
+ * the FileData has been looked up, in memcache or the datastore, and only
+ * saves the read of the content itself. The cache holds at most a
+ * budget of bytes, evicting the least recently used files first, and does
+ * not hold files too large to be worth the room. Its hit, miss and eviction
+ * counts are logged every {@link #STATS_LOG_INTERVAL_MILLIS}.</p>
+ */
+final class FileContentCache {
+
+  private static final Logger LOG = Logger.getLogger(FileContentCache.class.getName());
+
+  private static final long STATS_LOG_INTERVAL_MILLIS = 10 * 60 * 1000;
+
+  // Rough size of an entry apart from its content
+  private static final int ENTRY_OVERHEAD = 128;
+
+  private static final class Key {
+    final long projectId;
+    final String fileName;
+
+    Key(long projectId, String fileName) {
+      this.projectId = projectId;
+      this.fileName = fileName;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return projectId == other.projectId && fileName.equals(other.fileName);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(projectId, fileName);
+    }
+  }
+
+  private static final class Entry {
+    final long dateModified;
+    final byte[] content;
+
+    Entry(long dateModified, byte[] content) {
+      this.dateModified = dateModified;
+      this.content = content;
+    }
+  }
+
+  private final Cache<Key, Entry> cache;
+  private final int maxEntryBytes;
+  // A stale entry counts as a miss, so these are not the Guava cache's counts.
+  private final AtomicLong hits = new AtomicLong(0);
+  private final AtomicLong misses = new AtomicLong(0);
+  private long lastStatsLog = System.currentTimeMillis();
+
+  /**
+   * Creates a cache.
+   *
+   * @param maxBytes the most bytes of content to hold, or 0 to hold nothing
+   * @param maxEntryBytes the size of the largest file to hold
+   */
+  FileContentCache(long maxBytes, int maxEntryBytes) {
+    this.maxEntryBytes = maxEntryBytes;
+    this.cache = CacheBuilder.newBuilder()
+        .maximumWeight(maxBytes)
+        .weigher(new Weigher<Key, Entry>() {
+          @Override
+          public int weigh(Key key, Entry entry) {
+            return ENTRY_OVERHEAD + 2 * key.fileName.length() + entry.content.length;
+          }
+        })
+        .recordStats()  // for the eviction count
+        .build();
+  }
+
+  /**
+   * Returns the cached content of a file.
+   *
+   * @param projectId the project id
+   * @param fileName the file name
+   * @param dateModified the modification date of the file's {@code FileData}
+   * @return a copy of the content, or null if it is not cached for that date
+   */
+  byte[] get(long projectId, String fileName, long dateModified) {
+    logStats();
+    Key key = new Key(projectId, fileName);
+    Entry entry = cache.getIfPresent(key);
+    if (entry == null) {
+      misses.incrementAndGet();
+      return null;
+    }
+    if (entry.dateModified != dateModified) {
+      cache.invalidate(key);
+      misses.incrementAndGet();
+      return null;
+    }
+    hits.incrementAndGet();
+    return entry.content.clone();
+  }
+
+  /**
+   * Caches the content of a file. Files without a modification date, which
+   * were last written before the date was kept, are not cached.
+   *
+   * @param projectId the project id
+   * @param fileName the file name
+   * @param dateModified the modification date of the file's {@code FileData}
+   * @param content the content
+   */
+  void put(long projectId, String fileName, long dateModified, byte[] content) {
+    if (dateModified == 0 || content.length > maxEntryBytes) {
+      return;
+    }
+    cache.put(new Key(projectId, fileName), new Entry(dateModified, content.clone()));
+  }
+
+  /**
+   * Drops the content of a file that was deleted.
+   */
+  void invalidate(long projectId, String fileName) {
+    cache.invalidate(new Key(projectId, fileName));
+  }
+
+  @VisibleForTesting
+  long getHits() {
+    return hits.get();
+  }
+
+  @VisibleForTesting
+  long getMisses() {
+    return misses.get();
+  }
+
+  @VisibleForTesting
+  long getEvictions() {
+    return cache.stats().evictionCount();
+  }
+
+  private void logStats() {
+    long now = System.currentTimeMillis();
+    synchronized (this) {
+      if (now - lastStatsLog < STATS_LOG_INTERVAL_MILLIS) {
+        return;
+      }
+      lastStatsLog = now;
+    }
+    LOG.info("File content cache: " + cache.size() + " files, " + hits.get() + " hits, "
+        + misses.get() + " misses, " + getEvictions() + " evictions");
+  }
+}
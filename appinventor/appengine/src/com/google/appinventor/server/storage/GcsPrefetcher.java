@@ -0,0 +1,234 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2026 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.server.storage;
+
+import com.google.appengine.tools.cloudstorage.GcsFileMetadata;
+import com.google.appengine.tools.cloudstorage.GcsFilename;
+import com.google.appengine.tools.cloudstorage.GcsInputChannel;
+import com.google.appengine.tools.cloudstorage.GcsService;
+import com.google.common.annotations.VisibleForTesting;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reads a list of GCS files ahead of the code that writes them into a
+ * project zip, a few at a time, so that the round trips to GCS for the files
+ * of a project overlap instead of adding up. The files are handed back in
+ * the order of the list, so the zip comes out the same as when they are read
+ * one by one.
+ *
+ * <p>Only files up to a size limit are read ahead; a larger file is reported
+ * as found and left for the caller to stream, so that the memory held is
+ * bounded. A file missing in GCS is looked for again a few times, with a
+ * growing, jittered delay between the attempts, as older projects have
+ * files whose GCS object was never written.</p>
+ */
+final class GcsPrefetcher implements AutoCloseable {
+
+  private static final Logger LOG = Logger.getLogger(GcsPrefetcher.class.getName());
+
+  private static final int MAX_ATTEMPTS = 5;
+  private static final long INITIAL_BACKOFF_MILLIS = 50;
+  private static final long MAX_BACKOFF_MILLIS = 1000;
+
+  /**
+   * What was read of one file.
+   */
+  static final class Fetched {
+    final boolean found;
+    // The content, or null if the file is missing or too large to read ahead
+    final byte[] content;
+
+    Fetched(boolean found, byte[] content) {
+      this.found = found;
+      this.content = content;
+    }
+  }
+
+  private static final Fetched MISSING = new Fetched(false, null);
+  private static final Fetched TOO_LARGE = new Fetched(true, null);
+
+  private final GcsService gcsService;
+  private final List<GcsFilename> files;
+  private final int parallelism;
+  private final int maxPrefetchBytes;
+  // Null when the files are read one by one by the caller's thread
+  private final ExecutorService executor;
+  private final Deque<Future<Fetched>> pending = new ArrayDeque<Future<Fetched>>();
+  private int submitted = 0;
+  private int taken = 0;
+  private final AtomicInteger retries = new AtomicInteger(0);
+  private long waitNanos = 0;
+
+  /**
+   * Creates a prefetcher and starts reading the first files.
+   *
+   * @param gcsService the GCS service
+   * @param files the files, in the order they will be asked for
+   * @param parallelism the most files to read at once
+   * @param maxPrefetchBytes the size of the largest file to read ahead
+   * @param threadFactory the factory of the threads to read with, or null to
+   *     read each file when it is asked for
+   */
+  GcsPrefetcher(GcsService gcsService, List<GcsFilename> files, int parallelism,
+      int maxPrefetchBytes, ThreadFactory threadFactory) {
+    this.gcsService = gcsService;
+    this.files = files;
+    this.parallelism = Math.max(1, parallelism);
+    this.maxPrefetchBytes = maxPrefetchBytes;
+    if (threadFactory != null && this.parallelism > 1 && files.size() > 1) {
+      this.executor = Executors.newFixedThreadPool(
+          Math.min(this.parallelism, files.size()), threadFactory);
+      fill();
+    } else {
+      this.executor = null;
+    }
+  }
+
+  /**
+   * Returns the next file of the list, waiting for it to be read if needed.
+   *
+   * @return what was read of the file
+   * @throws IOException if the file could not be read
+   */
+  Fetched next() throws IOException {
+    if (taken >= files.size()) {
+      throw new IllegalStateException("All " + files.size() + " files were taken");
+    }
+    long start = System.nanoTime();
+    try {
+      if (executor == null) {
+        return fetch(files.get(taken++));
+      }
+      taken++;
+      fill();
+      return pending.removeFirst().get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while reading from GCS");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      } else if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    } finally {
+      waitNanos += System.nanoTime() - start;
+    }
+  }
+
+  /**
+   * Returns the number of times a missing file was looked for again.
+   */
+  int getRetries() {
+    return retries.get();
+  }
+
+  /**
+   * Returns how long the caller has waited in {@link #next}.
+   */
+  long getWaitMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(waitNanos);
+  }
+
+  /**
+   * Stops reading files that were not asked for.
+   */
+  @Override
+  public void close() {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
+  // Keeps up to parallelism files that have not been taken being read.
+  private void fill() {
+    while (submitted < files.size() && submitted < taken + parallelism) {
+      final GcsFilename file = files.get(submitted++);
+      pending.addLast(executor.submit(new Callable<Fetched>() {
+        @Override
+        public Fetched call() throws IOException {
+          return fetch(file);
+        }
+      }));
+    }
+  }
+
+  private Fetched fetch(GcsFilename file) throws IOException {
+    GcsFileMetadata metadata = null;
+    int attempt;
+    for (attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+      if (attempt > 0) {
+        retries.incrementAndGet();
+        sleep(backoffMillis(attempt));
+      }
+      // getMetadata returns null if the object in GCS is non-existent, which would
+      // happen when people uploaded a zero length object.
+      metadata = gcsService.getMetadata(file);
+      if (metadata != null) {
+        break;
+      }
+      LOG.log(Level.WARNING, "exportProjectFile: NPF recorded for " + file.getObjectName());
+    }
+    if (metadata == null) {
+      LOG.log(Level.WARNING, "FATAL NPF in exportProjectFile filename = " + file.getObjectName());
+      return MISSING;
+    } else if (attempt > 0) {
+      LOG.log(Level.WARNING, "recovered from NPF in exportProjectFile filename = "
+          + file.getObjectName() + " count = " + attempt);
+    }
+    if (metadata.getLength() > maxPrefetchBytes) {
+      return TOO_LARGE;
+    }
+    ByteBuffer buffer = ByteBuffer.allocate((int) metadata.getLength());
+    try (GcsInputChannel channel = gcsService.openReadChannel(file, 0)) {
+      while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+        // keep reading
+      }
+    }
+    return new Fetched(true, buffer.hasRemaining()
+        ? Arrays.copyOf(buffer.array(), buffer.position()) : buffer.array());
+  }
+
+  /**
+   * Returns the delay before the given attempt: doubling from
+   * {@link #INITIAL_BACKOFF_MILLIS} up to {@link #MAX_BACKOFF_MILLIS}, less a
+   * random part of up to half, so that reads that failed together do not
+   * retry together.
+   */
+  @VisibleForTesting
+  static long backoffMillis(int attempt) {
+    long delay = Math.min(MAX_BACKOFF_MILLIS, INITIAL_BACKOFF_MILLIS << Math.min(attempt - 1, 20));
+    return delay - ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+  }
+
+  private static void sleep(long millis) throws InterruptedIOException {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting to retry a GCS read");
+    }
+  }
+}
@@ -9,9 +9,12 @@ package com.google.appinventor.server.storage;
 import static com.google.appinventor.components.common.YaVersion.YOUNG_ANDROID_VERSION;
 import static com.google.appinventor.shared.storage.StorageUtil.APPSTORE_CREDENTIALS_FILENAME;
 
+import com.google.appengine.api.ThreadManager;
 import com.google.appengine.api.appidentity.AppIdentityService;
 import com.google.appengine.api.appidentity.AppIdentityServiceFactory;
 import com.google.appengine.api.appidentity.AppIdentityServiceFailureException;
+import com.google.appengine.api.blobstore.BlobInfo;
+import com.google.appengine.api.blobstore.BlobInfoFactory;
 import com.google.appengine.api.blobstore.BlobKey;
 import com.google.appengine.api.blobstore.BlobstoreInputStream;
 import com.google.appengine.api.blobstore.BlobstoreServiceFactory;
@@ -29,6 +32,7 @@ import com.google.appinventor.server.project.youngandroid.YoungAndroidSettingsBu
 import com.google.appinventor.server.storage.StoredData.AllowedIosExtensions;
 import com.google.appinventor.server.storage.StoredData.AllowedTutorialUrls;
 import com.google.appinventor.server.storage.StoredData.Backpack;
+import com.google.appinventor.server.storage.StoredData.BuildOutputData;
 import com.google.appinventor.server.storage.StoredData.CorruptionRecord;
 import com.google.appinventor.server.storage.StoredData.FeedbackData;
 import com.google.appinventor.server.storage.StoredData.FileData;
@@ -64,6 +68,8 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.google.common.io.ByteStreams;
 
 import com.googlecode.objectify.Key;
@@ -75,30 +81,44 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 
 // GCS imports
+import com.google.appengine.tools.cloudstorage.GcsFileMetadata;
 import com.google.appengine.tools.cloudstorage.GcsFileOptions;
 import com.google.appengine.tools.cloudstorage.GcsFilename;
 import com.google.appengine.tools.cloudstorage.GcsInputChannel;
 import com.google.appengine.tools.cloudstorage.GcsOutputChannel;
 import com.google.appengine.tools.cloudstorage.GcsService;
 import com.google.appengine.tools.cloudstorage.GcsServiceFactory;
+import com.google.appengine.tools.cloudstorage.ListItem;
+import com.google.appengine.tools.cloudstorage.ListOptions;
+import com.google.appengine.tools.cloudstorage.ListResult;
 import com.google.appengine.tools.cloudstorage.RetryParams;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.Serializable;
 import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.ConcurrentModificationException;
+import java.util.Enumeration;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.NoSuchElementException;
 import java.util.Properties;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.ZipEntry;
@@ -141,11 +161,57 @@ public class ObjectifyStorageIo implements StorageIo {
 
   private static final String BUILD_STATUS_CACHE_KEY_PREFIX = "40bae275-070f-478b-9a5f-d50361809b99";
   private static final String PROJECT_OWNER_CACHE_KEY_PREFIX = "cf452c52-839a-48e2-a3fc-ef77c87e09c2";
+  private static final String BUILD_STATUS_LOG_CACHE_KEY_PREFIX = "672a179f-5166-4238-8a2c-7796d3a41959";
+  private static final String PROJECT_SUMMARIES_CACHE_KEY_PREFIX = "d4f1b2a8-5c0e-4e7b-9b36-2f8e61c0a7d3";
+  private static final String PROJECT_MOD_DATE_CACHE_KEY_PREFIX = "8e3c5a71-2d94-4f0b-a6e8-93b1c7d2f405";
+
+  // A project's modification date is written at most once per window. The cached date is only
+  // used within its window, so it need not outlive it by much.
+  private static final long PROJECT_MOD_DATE_WINDOW_MILLIS = 60 * 1000;
+  private static final int PROJECT_MOD_DATE_EXPIRATION_SECONDS = 120;
+
+  // The summaries are dropped whenever a project is added, removed or changes its dates, so this
+  // only bounds how long a summary read while such a change committed can be served.
+  private static final int PROJECT_SUMMARIES_EXPIRATION_SECONDS = 600;
+  // Stands in for the summaries while they are not cached. Every invalidation stores it again,
+  // which makes a reader that loaded the summaries before the invalidation fail to cache them.
+  private static final String PROJECT_SUMMARIES_STALE = "stale";
+
+  // A build status log outlives any build, and only the recent events of a build are needed by
+  // clients that have fallen behind.
+  private static final int BUILD_STATUS_LOG_EXPIRATION_SECONDS = 3600;
+  private static final int MAX_BUILD_STATUS_EVENTS = 32;
+  private static final int MAX_BUILD_STATUS_LOG_UPDATES = 5;
 
   private static final long TWENTYFOURHOURS = 24*3600*1000; // 24 hours in milliseconds
 
   private static final boolean DEBUG = Flag.createFlag("appinventor.debugging", false).get();
 
+  // In-process cache of file contents stored in GCS or the blobstore
+  private static final FileContentCache fileContentCache = new FileContentCache(
+      (long) Flag.createFlag("storage.filecache.mb", 32).get() * 1024 * 1024,
+      Flag.createFlag("storage.filecache.maxfilekb", 1024).get() * 1024);
+
+  // Size of the read-ahead buffer used when streaming GCS files into an exported zip
+  private static final int GCS_EXPORT_BUFFER_SIZE = 256 * 1024;
+
+  // How many GCS files of a project are read at once while it is exported, and the size of the
+  // largest file read ahead of the zip rather than streamed into it
+  private static final int GCS_EXPORT_PARALLELISM =
+      Flag.createFlag("storage.export.parallelism", 8).get();
+  private static final int GCS_EXPORT_PREFETCH_BYTES = 1024 * 1024;
+
+  // How many bytes of build outputs are retained per user for reuse by builds of unchanged
+  // sources, or 0 to build every time. They are kept in the project bucket, since the APK bucket
+  // expires its files.
+  private static final long BUILD_OUTPUT_RETENTION_BYTES =
+      (long) Flag.createFlag("build.output.retention.mb", 64).get() * 1024 * 1024;
+  private static final String BUILD_OUTPUT_GCS_FOLDER = "retained-builds/";
+
+  // Resumable uploads are staged in GCS as numbered chunks. MAX_UPLOAD_CHUNKS bounds how many
+  // objects an upload can leave behind.
+  private static final int UPLOAD_READ_BUFFER_SIZE = 256 * 1024;
+
   // Use this class to define the work of a job that can be
   // retried. The "datastore" argument to run() is the Objectify
   // object for this job (created with
@@ -212,6 +278,7 @@ public class ObjectifyStorageIo implements StorageIo {
     ObjectifyService.register(Backpack.class);
     ObjectifyService.register(AllowedTutorialUrls.class);
     ObjectifyService.register(AllowedIosExtensions.class);
+    ObjectifyService.register(BuildOutputData.class);
 
     // Learn GCS Bucket from App Configuration or App Engine Default
     // gcsBucket is where project storage goes
@@ -579,6 +646,7 @@ public class ObjectifyStorageIo implements StorageIo {
           datastore.put(upd);
         }
       }, true);
+      invalidateProjectSummaries(userId);
     } catch (ObjectifyException e) {
       for (FileData addedFile : addedFiles) {
         if (isTrue(addedFile.isGCS)) {  // Do something
@@ -613,6 +681,7 @@ public class ObjectifyStorageIo implements StorageIo {
     file.projectKey = projectKey;
     file.role = role;
     file.userId = userId;
+    file.dateModified = System.currentTimeMillis();
     if (useGCSforFile(fileName, content.length)) {
       file.isGCS = true;
       file.gcsName = makeGCSfileName(fileName, projectKey.getId());
@@ -662,6 +731,8 @@ public class ObjectifyStorageIo implements StorageIo {
           datastore.delete(projectKey);
         }
       }, true);
+      invalidateProjectSummaries(userId);
+      memcache.delete(PROJECT_MOD_DATE_CACHE_KEY_PREFIX + projectId);
       // have to delete the blobs outside of the user and project jobs
       for (String blobKeyString: blobKeys) {
         deleteBlobstoreFile(blobKeyString);
@@ -676,6 +747,7 @@ public class ObjectifyStorageIo implements StorageIo {
           LOG.log(Level.WARNING, "Unable to delete " + gcsName + " from GCS while deleting project", e);
         }
       }
+      deleteBuildOutputs("projectId", projectId);
     } catch (ObjectifyException e) {
       throw CrashReport.createAndLogError(LOG, null,
           collectUserProjectErrorInfo(userId, projectId), e);
@@ -703,8 +775,7 @@ public class ObjectifyStorageIo implements StorageIo {
   }
   @Override
   public List<String> getProjectNames(final String userId) {
-    List<Long> projects = getProjects(userId);
-    List<UserProject> uprojects = getUserProjects(userId, projects);
+    List<UserProject> uprojects = getProjectSummaries(userId);
     List<String> projectNames = uprojects.stream().map(project -> project.getProjectName()).collect(Collectors.toList());
     return projectNames;
   }
@@ -883,6 +954,73 @@ public class ObjectifyStorageIo implements StorageIo {
     }
   }
 
+  @Override
+  public List<UserProject> getProjectSummaries(final String userId) {
+    String cacheKey = projectSummariesKey(userId);
+    Expiration expiration = Expiration.byDeltaSeconds(PROJECT_SUMMARIES_EXPIRATION_SECONDS);
+    MemcacheService.IdentifiableValue current = memcache.getIdentifiable(cacheKey);
+    if (current != null && current.getValue() instanceof ArrayList) {
+      @SuppressWarnings("unchecked")
+      ArrayList<String> cached = (ArrayList<String>) current.getValue();
+      List<UserProject> summaries = Lists.newArrayListWithExpectedSize(cached.size());
+      for (String summary : cached) {
+        summaries.add(UserProject.valueOf(summary));
+      }
+      return summaries;
+    }
+    if (current == null) {
+      // Stamp the key before reading the datastore, so that an invalidation while it is read
+      // can be told from here.
+      memcache.put(cacheKey, PROJECT_SUMMARIES_STALE, expiration,
+          MemcacheService.SetPolicy.ADD_ONLY_IF_NOT_PRESENT);
+      current = memcache.getIdentifiable(cacheKey);
+    }
+    final List<UserProject> summaries = new ArrayList<UserProject>();
+    try {
+      runJobWithRetries(new JobRetryHelper() {
+        @Override
+        public void run(Objectify datastore) {
+          summaries.clear();
+          // The keys of the UserProjectData are all that is needed of them, which
+          // saves loading the entities.
+          List<Long> projectIds = new ArrayList<Long>();
+          for (Key<UserProjectData> key : datastore.query(UserProjectData.class)
+              .ancestor(userKey(userId)).fetchKeys()) {
+            projectIds.add(key.getId());
+          }
+          for (ProjectData pd : datastore.get(ProjectData.class, projectIds).values()) {
+            summaries.add(new UserProject(pd.id, pd.name, pd.type, pd.dateCreated,
+                pd.dateModified, pd.dateBuilt));
+          }
+        }
+      }, false);
+    } catch (ObjectifyException e) {
+      throw CrashReport.createAndLogError(LOG, null, collectUserErrorInfo(userId), e);
+    }
+    ArrayList<String> encoded = new ArrayList<String>(summaries.size());
+    for (UserProject summary : summaries) {
+      encoded.add(summary.toString());
+    }
+    if (current != null && !(current.getValue() instanceof ArrayList)) {
+      // Only cache the summaries if the key was not invalidated since it was stamped.
+      memcache.putIfUntouched(cacheKey, current, encoded, expiration);
+    }
+    return summaries;
+  }
+
+  private void invalidateProjectSummaries(String userId) {
+    if (userId != null) {
+      // Overwrite rather than delete the summaries, so that a reader that stamped the key
+      // before this change committed cannot cache what it read.
+      memcache.put(projectSummariesKey(userId), PROJECT_SUMMARIES_STALE,
+          Expiration.byDeltaSeconds(PROJECT_SUMMARIES_EXPIRATION_SECONDS));
+    }
+  }
+
+  private static String projectSummariesKey(String userId) {
+    return PROJECT_SUMMARIES_CACHE_KEY_PREFIX + userId;
+  }
+
   @Override
   public String getProjectName(final String userId, final long projectId) {
     final Result<String> projectName = new Result<String>();
@@ -965,6 +1103,7 @@ public class ObjectifyStorageIo implements StorageIo {
         }
       }, false); // Transaction not needed, and we want the caching we get if we don't
                  // use them.
+      invalidateProjectSummaries(userId);
     } catch (ObjectifyException e) {
       throw CrashReport.createAndLogError(LOG, null,
           collectUserProjectErrorInfo(userId, projectId), e);
@@ -1224,13 +1363,16 @@ public class ObjectifyStorageIo implements StorageIo {
       runJobWithRetries(new JobRetryHelper() {
         @Override
         public void run(Objectify datastore) {
-          addFilesToProject(datastore, projectId, FileData.RoleEnum.SOURCE, changeModDate, userId, fileNames);
+          addFilesToProject(datastore, projectId, FileData.RoleEnum.SOURCE, userId, fileNames);
         }
       }, true);
     } catch (ObjectifyException e) {
       throw CrashReport.createAndLogError(LOG, null,
           collectProjectErrorInfo(userId, projectId, fileNames[0]), e);
     }
+    if (changeModDate) {
+      updateProjectModDate(userId, projectId);
+    }
   }
 
   @Override
@@ -1240,7 +1382,7 @@ public class ObjectifyStorageIo implements StorageIo {
       runJobWithRetries(new JobRetryHelper() {
         @Override
         public void run(Objectify datastore) {
-          addFilesToProject(datastore, projectId, FileData.RoleEnum.TARGET, false, userId, fileNames);
+          addFilesToProject(datastore, projectId, FileData.RoleEnum.TARGET, userId, fileNames);
         }
       }, true);
     } catch (ObjectifyException e) {
@@ -1250,7 +1392,7 @@ public class ObjectifyStorageIo implements StorageIo {
   }
 
   private void addFilesToProject(Objectify datastore, long projectId, FileData.RoleEnum role,
-    boolean changeModDate, String userId, String... fileNames) {
+    String userId, String... fileNames) {
     List<FileData> addedFiles = new ArrayList<FileData>();
     Key<ProjectData> projectKey = projectKey(projectId);
     for (String fileName : fileNames) {
@@ -1261,9 +1403,6 @@ public class ObjectifyStorageIo implements StorageIo {
       }
     }
     datastore.put(addedFiles); // batch put
-    if (changeModDate) {
-      updateProjectModDate(datastore, projectId);
-    }
   }
 
   private FileData createProjectFile(Objectify datastore, Key<ProjectData> projectKey,
@@ -1290,13 +1429,16 @@ public class ObjectifyStorageIo implements StorageIo {
       runJobWithRetries(new JobRetryHelper() {
         @Override
         public void run(Objectify datastore) {
-          removeFilesFromProject(datastore, projectId, FileData.RoleEnum.SOURCE, changeModDate, fileNames);
+          removeFilesFromProject(datastore, projectId, FileData.RoleEnum.SOURCE, fileNames);
         }
       }, true);
     } catch (ObjectifyException e) {
       throw CrashReport.createAndLogError(LOG, null,
           collectProjectErrorInfo(userId, projectId, fileNames[0]), e);
     }
+    if (changeModDate) {
+      updateProjectModDate(userId, projectId);
+    }
   }
 
   @Override
@@ -1306,7 +1448,7 @@ public class ObjectifyStorageIo implements StorageIo {
       runJobWithRetries(new JobRetryHelper() {
         @Override
         public void run(Objectify datastore) {
-          removeFilesFromProject(datastore, projectId, FileData.RoleEnum.TARGET, false, fileNames);
+          removeFilesFromProject(datastore, projectId, FileData.RoleEnum.TARGET, fileNames);
         }
       }, true);
     } catch (ObjectifyException e) {
@@ -1316,7 +1458,7 @@ public class ObjectifyStorageIo implements StorageIo {
   }
 
   private void removeFilesFromProject(Objectify datastore, long projectId,
-      FileData.RoleEnum role, boolean changeModDate, String... fileNames) {
+      FileData.RoleEnum role, String... fileNames) {
     Key<ProjectData> projectKey = projectKey(projectId);
     List<Key<FileData>> filesToRemove = new ArrayList<Key<FileData>>();
     for (String fileName : fileNames) {
@@ -1334,9 +1476,6 @@ public class ObjectifyStorageIo implements StorageIo {
       }
     }
     datastore.delete(filesToRemove);  // batch delete
-    if (changeModDate) {
-      updateProjectModDate(datastore, projectId);
-    }
   }
 
   @Override
@@ -1407,24 +1546,52 @@ public class ObjectifyStorageIo implements StorageIo {
     }
   }
 
-  private long updateProjectModDate(Objectify datastore, long projectId) {
-    long modDate = System.currentTimeMillis();
-    ProjectData pd = datastore.find(projectKey(projectId));
-    if (pd != null) {
-      // Only update the ProjectData dateModified if it is more then a minute
-      // in the future. Do this to avoid unnecessary datastore puts.
-      if (modDate > (pd.dateModified + 1000*60)) {
-        pd.dateModified = modDate;
-        datastore.put(pd);
-      } else {
-        // return the (old) dateModified
-        modDate = pd.dateModified;
-      }
-      return modDate;
-    } else {
+  // Moves the project's modification date forward after its files changed, and returns it. This
+  // runs after the job that changed the files rather than in it, so that saving a file does not
+  // read and write the ProjectData in the same transaction. The date is only written when the
+  // stored one is older than PROJECT_MOD_DATE_WINDOW_MILLIS, and the date last stored is kept in
+  // memcache, so most saves within a window do not touch the ProjectData at all. The dates
+  // returned never go backwards: within a window every save returns the same date.
+  private long updateProjectModDate(final String userId, final long projectId) {
+    final long now = System.currentTimeMillis();
+    String cacheKey = PROJECT_MOD_DATE_CACHE_KEY_PREFIX + projectId;
+    Long cached = (Long) memcache.get(cacheKey);
+    if (cached != null && now <= cached + PROJECT_MOD_DATE_WINDOW_MILLIS) {
+      return cached;
+    }
+    final Result<Long> modDate = new Result<Long>();
+    final Result<Boolean> written = new Result<Boolean>();
+    try {
+      runJobWithRetries(new JobRetryHelper() {
+        @Override
+        public void run(Objectify datastore) {
+          modDate.t = null;
+          written.t = false;
+          ProjectData pd = datastore.find(projectKey(projectId));
+          if (pd != null) {
+            if (now > pd.dateModified + PROJECT_MOD_DATE_WINDOW_MILLIS) {
+              pd.dateModified = now;
+              datastore.put(pd);
+              written.t = true;
+            }
+            modDate.t = pd.dateModified;
+          }
+        }
+      }, true);
+    } catch (ObjectifyException e) {
+      throw CrashReport.createAndLogError(LOG, null,
+          collectUserProjectErrorInfo(userId, projectId), e);
+    }
+    if (modDate.t == null) {
       throw CrashReport.createAndLogError(LOG, null, null,
           new IllegalArgumentException("project " + projectId + " doesn't exist"));
     }
+    if (written.t) {
+      invalidateProjectSummaries(userId);
+    }
+    memcache.put(cacheKey, modDate.t,
+        Expiration.byDeltaSeconds(PROJECT_MOD_DATE_EXPIRATION_SECONDS));
+    return modDate.t;
   }
 
   @Override
@@ -1442,7 +1609,6 @@ public class ObjectifyStorageIo implements StorageIo {
   public long uploadRawFile(final long projectId, final String fileName, final String userId,
       final boolean force, final byte[] content) throws BlocksTruncatedException {
     validateGCS();
-    final Result<Long> modTime = new Result<Long>();
     final boolean useGCS = useGCSforFile(fileName, content.length);
 
     final boolean considerBackup = (fileName.contains("src/") &&
@@ -1541,9 +1707,10 @@ public class ObjectifyStorageIo implements StorageIo {
           if (fd.userId == null || fd.userId.equals("")) {
             fd.userId = userId;
           }
+          // Always move forward, so cached content is never mistaken for this
+          fd.dateModified = Math.max(System.currentTimeMillis(), fd.dateModified + 1);
           datastore.put(fd);
           memcache.put(key.getString(), fd); // Store the updated data in memcache
-          modTime.t = updateProjectModDate(datastore, projectId);
         }
       }, false); // Use transaction for blobstore, otherwise we don't need one
                  // and without one the caching code comes into play.
@@ -1555,7 +1722,7 @@ public class ObjectifyStorageIo implements StorageIo {
       throw CrashReport.createAndLogError(LOG, null,
           collectProjectErrorInfo(userId, projectId, fileName), e);
     }
-    return modTime.t;
+    return updateProjectModDate(userId, projectId);
   }
 
   protected void deleteBlobstoreFile(String blobKeyString) {
@@ -1593,7 +1760,6 @@ public class ObjectifyStorageIo implements StorageIo {
   @Override
   public long deleteFile(final String userId, final long projectId, final String fileName) {
     validateGCS();
-    final Result<Long> modTime = new Result<Long>();
     final Result<String> oldBlobKeyString = new Result<String>();
     final Result<String> oldgcsName = new Result<String>();
     try {
@@ -1602,6 +1768,7 @@ public class ObjectifyStorageIo implements StorageIo {
         public void run(Objectify datastore) {
           Key<FileData> fileKey = projectFileKey(projectKey(projectId), fileName);
           memcache.delete(fileKey.getString());
+          fileContentCache.invalidate(projectId, fileName);
           FileData fileData = datastore.find(fileKey);
           if (fileData != null) {
             if (fileData.userId != null && !fileData.userId.equals("")) {
@@ -1617,7 +1784,6 @@ public class ObjectifyStorageIo implements StorageIo {
             }
           }
           datastore.delete(fileKey);
-          modTime.t = updateProjectModDate(datastore, projectId);
         }
       }, true);
     } catch (ObjectifyException e) {
@@ -1636,7 +1802,7 @@ public class ObjectifyStorageIo implements StorageIo {
         LOG.log(Level.WARNING, "Unable to delete " + oldgcsName + " from GCS.", e);
       }
     }
-    return (modTime.t == null) ? 0 : modTime.t;
+    return updateProjectModDate(userId, projectId);
   }
 
   // TODO(user) - just use "UTF-8" (instead of having an encoding argument),
@@ -1688,6 +1854,12 @@ public class ObjectifyStorageIo implements StorageIo {
           fd.t = (FileData) memcache.get(fileKey.getString());
           if (fd.t == null) {
             fd.t = datastore.find(fileKey);
+            if (fd.t != null) {
+              // An upload since the read has already cached newer data, which must not be
+              // overwritten.
+              memcache.put(fileKey.getString(), fd.t, null,
+                  MemcacheService.SetPolicy.ADD_ONLY_IF_NOT_PRESENT);
+            }
           }
         }
       }, false); // Transaction not needed
@@ -1705,6 +1877,15 @@ public class ObjectifyStorageIo implements StorageIo {
             new UnauthorizedAccessException(userId, projectId, null));
         }
       }
+      // The content cache can only be consulted once the FileData is known, since content is
+      // only served for the modification date the FileData has now. It saves the read from GCS
+      // or the blobstore, not the lookup of the FileData.
+      if (isTrue(fileData.isGCS) || fileData.isBlob) {
+        byte[] cached = fileContentCache.get(projectId, fileName, fileData.dateModified);
+        if (cached != null) {
+          return cached;
+        }
+      }
       if (isTrue(fileData.isGCS)) {     // It's in the Cloud Store
         try {
           int count;
@@ -1755,6 +1936,9 @@ public class ObjectifyStorageIo implements StorageIo {
               LOG.log(Level.WARNING, "FATAL NPF in downloadrawfile filename = " + fileData.gcsName);
             }
           }
+          if (recovered) {
+            fileContentCache.put(projectId, fileName, fileData.dateModified, result.t);
+          }
 
         } catch (IOException e) {
           throw CrashReport.createAndLogError(LOG, null,
@@ -1766,6 +1950,7 @@ public class ObjectifyStorageIo implements StorageIo {
             throw new BlobReadException("blobKey is null");
           }
           result.t = getBlobstoreBytes(fileData.blobKey);
+          fileContentCache.put(projectId, fileName, fileData.dateModified, result.t);
           // Time to consider upgrading this file if we are moving to GCS
           // Note: We only run if we have at least 5 seconds of runtime left in the request
           long timeRemaining = ApiProxy.getCurrentEnvironment().getRemainingMillis();
@@ -1804,6 +1989,22 @@ public class ObjectifyStorageIo implements StorageIo {
     }
   }
 
+  // Note: like getBlobstoreBytes(), this must be called outside of any transaction.
+  private void copyBlobstoreBytes(String blobKeyString, OutputStream out)
+      throws BlobReadException {
+    BlobKey blobKey = new BlobKey(blobKeyString);
+    try {
+      InputStream blobInputStream = new BlobstoreInputStream(blobKey);
+      try {
+        ByteStreams.copy(blobInputStream, out);
+      } finally {
+        blobInputStream.close();
+      }
+    } catch (IOException e) {
+      throw new BlobReadException(e, "Error trying to read blob from " + blobKey);
+    }
+  }
+
   /**
    * Exports project files as a zip archive
    *
@@ -1830,10 +2031,112 @@ public class ObjectifyStorageIo implements StorageIo {
       final boolean fatalError,
       final boolean forAppStore,
       final boolean locallyCachedApp) throws IOException {
+    ByteArrayOutputStream zipFile = new ByteArrayOutputStream();
+    Result<String> projectName = new Result<String>();
+    int fileCount = writeProjectSourceZip(userId, projectId, includeProjectHistory,
+        includeAndroidKeystore, includeYail, includeScreenShots, forGallery, fatalError,
+        forAppStore, locallyCachedApp, zipFile, projectName);
+    if (zipName == null) {
+      zipName = projectName.t + ".aia";
+    }
+    ProjectSourceZip projectSourceZip =
+        new ProjectSourceZip(zipName, zipFile.toByteArray(), fileCount);
+    projectSourceZip.setMetadata(projectName.t);
+    return projectSourceZip;
+  }
+
+  @Override
+  public int writeProjectSourceZip(String userId, long projectId,
+      boolean includeProjectHistory,
+      boolean includeAndroidKeystore,
+      boolean includeYail,
+      boolean includeScreenShots,
+      boolean forGallery,
+      boolean fatalError,
+      boolean forAppStore,
+      boolean locallyCachedApp,
+      OutputStream output) throws IOException {
+    return writeProjectSourceZip(userId, projectId, includeProjectHistory,
+        includeAndroidKeystore, includeYail, includeScreenShots, forGallery, fatalError,
+        forAppStore, locallyCachedApp, output, new Result<String>());
+  }
+
+  // Returns the files of a project that go into its zip, in the order they are written. Source
+  // files of a screen that lacks one of its .scm, .bky and .yail files are left out of a build, and
+  // such a screen's .yail file is deleted.
+  private List<FileData> getZipFiles(Objectify datastore, String userId, long projectId,
+      boolean includeYail, boolean includeScreenShots, boolean forGallery,
+      boolean forBuildserver, boolean locallyCachedApp) throws GalleryExtensionException {
+    Key<ProjectData> projectKey = projectKey(projectId);
+    List<FileData> fileData = new ArrayList<FileData>();
+    Map<String, Integer> screens = new HashMap<String, Integer>();
+    for (FileData fd : datastore.query(FileData.class).ancestor(projectKey)) {
+      fileData.add(fd);
+      String fileName = fd.fileName;
+      if (fileName.startsWith("src/") && (fileName.endsWith(".scm") || fileName.endsWith(".bky") || fileName.endsWith(".yail"))) {
+        String fileNameNoExt = fileName.substring(0, fileName.lastIndexOf("."));
+        int count = screens.containsKey(fileNameNoExt) ? screens.get(fileNameNoExt) + 1 : 1;
+        screens.put(fileNameNoExt, count);
+      }
+    }
+    Iterator<FileData> it = fileData.iterator();
+    while (it.hasNext()) {
+      FileData fd = it.next();
+      String fileName = fd.fileName;
+      if (fileName.startsWith("assets/external_comps") && forGallery) {
+        throw new GalleryExtensionException();
+      }
+      if (!fd.role.equals(FileData.RoleEnum.SOURCE)) {
+        it.remove();
+      } else if (fileName.equals(FileExporter.REMIX_INFORMATION_FILE_PATH) ||
+                (fileName.startsWith("screenshots") && !includeScreenShots) ||
+                (fileName.startsWith("src/") && fileName.endsWith(".yail") && !includeYail) ||
+                (fileName.startsWith("src/") && fileName.endsWith(".bky") && locallyCachedApp) ||
+                (fileName.startsWith("src/") && fileName.endsWith(".scm") && locallyCachedApp)) {
+        // Skip legacy remix history files that were previous stored with the project
+        // only include screenshots if asked ...
+        // Don't include YAIL files when exporting projects
+        // includeYail will be set to true when we are exporting the source
+        // to send to the buildserver or when the person exporting
+        // a project is an Admin (for debugging).
+        // Otherwise Yail files are confusing cruft. In the case of
+        // the Firebase Component they may contain secrets which we would
+        // rather not have leak into an export .aia file or into the Gallery
+        // We don't include the .scm and .bky files when exporting the source
+        // to be cached locally by a device to avoid leaking potentially sensitive
+        // information such as keys.
+        it.remove();
+      } else if (forBuildserver && fileName.startsWith("src/") &&
+          (fileName.endsWith(".scm") || fileName.endsWith(".bky") || fileName.endsWith(".yail"))) {
+        String fileNameNoExt = fileName.substring(0, fileName.lastIndexOf("."));
+        if ((Integer)screens.get(fileNameNoExt) < 3) {
+          LOG.log(Level.INFO, "Not adding file to build ", fileName);
+          it.remove();
+          if (fileName.endsWith(".yail")) {
+            deleteFile(userId, projectId, fileName);
+          }
+        }
+      }
+    }
+    return fileData;
+  }
+
+  // Writes the zip of the project's sources to output, one file at a time, and returns the number
+  // of files written. Nothing is written if the project has no files. The name of the project is
+  // returned in projectName.
+  private int writeProjectSourceZip(final String userId, final long projectId,
+      final boolean includeProjectHistory,
+      final boolean includeAndroidKeystore,
+      final boolean includeYail,
+      final boolean includeScreenShots,
+      final boolean forGallery,
+      final boolean fatalError,
+      final boolean forAppStore,
+      final boolean locallyCachedApp,
+      OutputStream output,
+      final Result<String> projectName) throws IOException {
     final boolean forBuildserver = includeAndroidKeystore && includeYail;
     validateGCS();
-    final Result<Integer> fileCount = new Result<Integer>();
-    fileCount.t = 0;
     final Result<String> projectHistory = new Result<String>();
     projectHistory.t = null;
     // We collect up all the file data for the project in a transaction but
@@ -1841,68 +2144,15 @@ public class ObjectifyStorageIo implements StorageIo {
     // to avoid problems reading blobs in a transaction with the wrong
     // entity group.
     final List<FileData> fileData = new ArrayList<FileData>();
-    final Result<String> projectName = new Result<String>();
-    final Map<String, Integer> screens = new HashMap<String, Integer>();
     projectName.t = null;
-    String fileName = null;
-
-    ByteArrayOutputStream zipFile = new ByteArrayOutputStream();
-    final ZipOutputStream out = new ZipOutputStream(zipFile);
-    out.setComment("Built with MIT App Inventor");
-
     try {
       JobRetryHelper job = new JobRetryHelper() {
         @Override
         public void run(Objectify datastore) throws IOException {
           Key<ProjectData> projectKey = projectKey(projectId);
-          for (FileData fd : datastore.query(FileData.class).ancestor(projectKey)) {
-            fileData.add(fd);
-            String fileName = fd.fileName;
-            if (fileName.startsWith("src/") && (fileName.endsWith(".scm") || fileName.endsWith(".bky") || fileName.endsWith(".yail"))) {
-              String fileNameNoExt = fileName.substring(0, fileName.lastIndexOf("."));
-              int count = screens.containsKey(fileNameNoExt) ? screens.get(fileNameNoExt) + 1 : 1;
-              screens.put(fileNameNoExt, count);
-            }
-          }
-          Iterator<FileData> it = fileData.iterator();
-          while (it.hasNext()) {
-            FileData fd = it.next();
-            String fileName = fd.fileName;
-            if (fileName.startsWith("assets/external_comps") && forGallery) {
-              throw new GalleryExtensionException();
-            }
-            if (!fd.role.equals(FileData.RoleEnum.SOURCE)) {
-              it.remove();
-            } else if (fileName.equals(FileExporter.REMIX_INFORMATION_FILE_PATH) ||
-                      (fileName.startsWith("screenshots") && !includeScreenShots) ||
-                      (fileName.startsWith("src/") && fileName.endsWith(".yail") && !includeYail) ||
-                      (fileName.startsWith("src/") && fileName.endsWith(".bky") && locallyCachedApp) ||
-                      (fileName.startsWith("src/") && fileName.endsWith(".scm") && locallyCachedApp)) {
-              // Skip legacy remix history files that were previous stored with the project
-              // only include screenshots if asked ...
-              // Don't include YAIL files when exporting projects
-              // includeYail will be set to true when we are exporting the source
-              // to send to the buildserver or when the person exporting
-              // a project is an Admin (for debugging).
-              // Otherwise Yail files are confusing cruft. In the case of
-              // the Firebase Component they may contain secrets which we would
-              // rather not have leak into an export .aia file or into the Gallery
-              // We don't include the .scm and .bky files when exporting the source
-              // to be cached locally by a device to avoid leaking potentially sensitive
-              // information such as keys.
-              it.remove();
-            } else if (forBuildserver && fileName.startsWith("src/") &&
-                (fileName.endsWith(".scm") || fileName.endsWith(".bky") || fileName.endsWith(".yail"))) {
-              String fileNameNoExt = fileName.substring(0, fileName.lastIndexOf("."));
-              if ((Integer)screens.get(fileNameNoExt) < 3) {
-                LOG.log(Level.INFO, "Not adding file to build ", fileName);
-                it.remove();
-                if (fileName.endsWith(".yail")) {
-                  deleteFile(userId, projectId, fileName);
-                }
-              }
-            }
-          }
+          fileData.clear();
+          fileData.addAll(getZipFiles(datastore, userId, projectId, includeYail,
+              includeScreenShots, forGallery, forBuildserver, locallyCachedApp));
           if (fileData.size() > 0) {
             ProjectData pd = datastore.find(projectKey);
             projectName.t = pd.name;
@@ -1917,113 +2167,123 @@ public class ObjectifyStorageIo implements StorageIo {
       if (error != null) {
         throw error;
       }
+    } catch (ObjectifyException e) {
+      CrashReport.createAndLogError(LOG, null, collectUserProjectErrorInfo(userId, projectId), e);
+      throw new IOException("Reflecting exception for userid " + userId +
+          " projectId " + projectId + ", original exception " + e.getMessage());
+    } catch (RuntimeException e) {
+      CrashReport.createAndLogError(LOG, null, collectUserProjectErrorInfo(userId, projectId), e);
+      throw new IOException("Reflecting exception for userid " + userId +
+          " projectId " + projectId + ", original exception " + e.getMessage());
+    }
+    List<UserFileData> userFiles = includeAndroidKeystore && !fileData.isEmpty()
+        ? getBuildUserFiles(userId, forAppStore) : Collections.<UserFileData>emptyList();
+    return writeZipFiles(userId, projectId, fileData, projectHistory.t, userFiles, fatalError,
+        locallyCachedApp, output);
+  }
+
+  // Writes the given files of a project, then its history, if any, and the given user files to
+  // a zip on output, and returns the number of files written. Nothing is written if there are no
+  // project files. The files are read outside of any job, since blobs cannot be read in one.
+  private int writeZipFiles(String userId, long projectId, List<FileData> fileData,
+      String projectHistory, List<UserFileData> userFiles, boolean fatalError,
+      boolean locallyCachedApp, OutputStream output) throws IOException {
+    int fileCount = 0;
+    String fileName = null;
+
+    // ZipOutputStream writes nothing to output until the first entry is added.
+    ZipOutputStream out = new ZipOutputStream(output);
+    out.setComment("Built with MIT App Inventor");
+
+    try {
       // Process the file contents outside of the job since we can't read
-      // blobs in the job.
+      // blobs in the job. The GCS files are read a few at a time ahead of
+      // the zip; larger ones are copied into the zip as they are read, so
+      // only one buffer's worth of them is in memory at a time.
+      long exportStart = System.currentTimeMillis();
+      List<GcsFilename> gcsFiles = new ArrayList<GcsFilename>();
       for (FileData fd : fileData) {
-        fileName = fd.fileName;
-        byte[] data = null;
-        if (fd.isBlob) {
-          try {
-            if (fd.blobKey == null) {
-              throw new BlobReadException("blobKey is null");
+        if (!fd.isBlob && isTrue(fd.isGCS)) {
+          gcsFiles.add(new GcsFilename(getGcsBucketToUse(fd.role), fd.gcsName));
+        }
+      }
+      GcsPrefetcher prefetcher = new GcsPrefetcher(gcsService, gcsFiles,
+          GCS_EXPORT_PARALLELISM, GCS_EXPORT_PREFETCH_BYTES, requestThreadFactory());
+      try {
+        for (FileData fd : fileData) {
+          fileName = fd.fileName;
+          if (fd.isBlob) {
+            try {
+              if (fd.blobKey == null) {
+                throw new BlobReadException("blobKey is null");
+              }
+              out.putNextEntry(new ZipEntry(fileName));
+              copyBlobstoreBytes(fd.blobKey, out);
+            } catch (BlobReadException e) {
+              throw CrashReport.createAndLogError(LOG, null,
+                  collectProjectErrorInfo(userId, projectId, fileName), e);
             }
-            data = getBlobstoreBytes(fd.blobKey);
-          } catch (BlobReadException e) {
-            throw CrashReport.createAndLogError(LOG, null,
-                collectProjectErrorInfo(userId, projectId, fileName), e);
-          }
-        } else if (isTrue(fd.isGCS)) {
-          try {
-            int count;
-            boolean npfHappened = false;
-            boolean recovered = false;
-            for (count = 0; count < 5; count++) {
-              GcsFilename gcsFileName = new GcsFilename(getGcsBucketToUse(fd.role), fd.gcsName);
-              int bytesRead = 0;
-              int fileSize = 0;
-              ByteBuffer resultBuffer;
-              try {
-                fileSize = (int) gcsService.getMetadata(gcsFileName).getLength();
-                resultBuffer = ByteBuffer.allocate(fileSize);
-                GcsInputChannel readChannel = gcsService.openReadChannel(gcsFileName, 0);
+          } else if (isTrue(fd.isGCS)) {
+            try {
+              // A file can be missing in GCS if it was uploaded with zero length before
+              // zero length objects were stored; there are plenty of older ones.
+              GcsPrefetcher.Fetched fetched = prefetcher.next();
+              if (!fetched.found && fatalError) {
+                throw new IOException("FATAL Error reading file from GCS filename = " + fd.gcsName);
+              }
+              out.putNextEntry(new ZipEntry(fileName));
+              if (fetched.content != null) {
+                out.write(fetched.content, 0, fetched.content.length);
+              } else if (fetched.found) {
+                GcsFilename gcsFileName = new GcsFilename(getGcsBucketToUse(fd.role), fd.gcsName);
+                InputStream in = Channels.newInputStream(
+                    gcsService.openPrefetchingReadChannel(gcsFileName, 0, GCS_EXPORT_BUFFER_SIZE));
                 try {
-                  while (bytesRead < fileSize) {
-                    bytesRead += readChannel.read(resultBuffer);
-                    if (bytesRead < fileSize) {
-                      if (DEBUG) {
-                        LOG.log(Level.INFO, "readChannel: bytesRead = " + bytesRead + " fileSize = " + fileSize);
-                      }
-                    }
-                  }
-                  recovered = true;
-                  data = resultBuffer.array();
-                  break;        // We got the data, break out of the loop!
+                  ByteStreams.copy(in, out);
                 } finally {
-                  readChannel.close();
+                  in.close();
                 }
-              } catch (NullPointerException e) {
-                // This happens if the object in GCS is non-existent, which would happen
-                // when people uploaded a zero length object. As of this change, we now
-                // store zero length objects into GCS, but there are plenty of older objects
-                // that are missing in GCS.
-                LOG.log(Level.WARNING, "exportProjectFile: NPF recorded for " + fd.gcsName);
-                npfHappened = true;
-                resultBuffer = ByteBuffer.allocate(0);
-                data = resultBuffer.array();
               }
+            } catch (IOException e) {
+              throw CrashReport.createAndLogError(LOG, null,
+                collectProjectErrorInfo(userId, projectId, fileName), e);
             }
-
-            // report out on how things went above
-            if (npfHappened) {    // We lost at least once
-              if (recovered) {
-                LOG.log(Level.WARNING, "recovered from NPF in exportProjectFile filename = " + fd.gcsName +
-                  " count = " + count);
-              } else {
-                LOG.log(Level.WARNING, "FATAL NPF in exportProjectFile filename = " + fd.gcsName);
-                if (fatalError) {
-                  throw new IOException("FATAL Error reading file from GCS filename = " + fd.gcsName);
-                }
+          } else {
+            byte[] data = fd.content;
+            if (data != null && fileName.endsWith(".properties") && locallyCachedApp == true) {
+              String projectProperties = new String(data, StandardCharsets.UTF_8);
+              Properties oldProperties = new Properties();
+              try {
+                oldProperties.load(new StringReader(projectProperties));
+              } catch (IOException e) {
+                e.printStackTrace();
               }
+              YoungAndroidSettingsBuilder oldPropertiesBuilder = new YoungAndroidSettingsBuilder(oldProperties);
+              String updatedProperties = oldPropertiesBuilder.setAIVersioning(Integer.toString(YOUNG_ANDROID_VERSION)).toProperties();
+              data = updatedProperties.getBytes(StandardCharsets.UTF_8);
             }
-          } catch (IOException e) {
-            throw CrashReport.createAndLogError(LOG, null,
-              collectProjectErrorInfo(userId, projectId, fileName), e);
-          }
-        } else {
-          data = fd.content;
-          if (fileName.endsWith(".properties") && locallyCachedApp == true) {
-            String projectProperties = new String(data, StandardCharsets.UTF_8);
-            Properties oldProperties = new Properties();
-            try {
-              oldProperties.load(new StringReader(projectProperties));
-            } catch (IOException e) {
-              e.printStackTrace();
+            out.putNextEntry(new ZipEntry(fileName));
+            if (data != null) {     // data is null if file creation is interrupted
+              out.write(data, 0, data.length);
             }
-            YoungAndroidSettingsBuilder oldPropertiesBuilder = new YoungAndroidSettingsBuilder(oldProperties);
-            String updatedProperties = oldPropertiesBuilder.setAIVersioning(Integer.toString(YOUNG_ANDROID_VERSION)).toProperties();
-            data = updatedProperties.getBytes(StandardCharsets.UTF_8);
           }
+          out.closeEntry();
+          fileCount++;
         }
-        if (data == null) {     // This happens if file creation is interrupted
-          data = new byte[0];
-        }
-        out.putNextEntry(new ZipEntry(fileName));
-        out.write(data, 0, data.length);
-        out.closeEntry();
-        fileCount.t++;
+      } finally {
+        prefetcher.close();
       }
-      if (projectHistory.t != null) {
-        byte[] data = projectHistory.t.getBytes(StorageUtil.DEFAULT_CHARSET);
+      LOG.log(Level.INFO, "Exported project " + projectId + ": " + fileCount + " files, "
+          + gcsFiles.size() + " from GCS with " + prefetcher.getRetries() + " retries, in "
+          + (System.currentTimeMillis() - exportStart) + " ms, " + prefetcher.getWaitMillis()
+          + " ms of it waiting for GCS");
+      if (projectHistory != null) {
+        byte[] data = projectHistory.getBytes(StorageUtil.DEFAULT_CHARSET);
         out.putNextEntry(new ZipEntry(FileExporter.REMIX_INFORMATION_FILE_PATH));
         out.write(data, 0, data.length);
         out.closeEntry();
-        fileCount.t++;
+        fileCount++;
       }
-    } catch (ObjectifyException e) {
-      CrashReport.createAndLogError(LOG, null,
-          collectProjectErrorInfo(userId, projectId, fileName), e);
-      throw new IOException("Reflecting exception for userid " + userId +
-          " projectId " + projectId + ", original exception " + e.getMessage());
     } catch (RuntimeException e) {
       CrashReport.createAndLogError(LOG, null,
           collectProjectErrorInfo(userId, projectId, fileName), e);
@@ -2031,54 +2291,49 @@ public class ObjectifyStorageIo implements StorageIo {
           " projectId " + projectId + ", original exception " + e.getMessage());
     }
 
-    if (fileCount.t == 0) {
-      // can't close out since will get a ZipException due to the lack of files
+    if (fileCount == 0) {
+      // can't finish out since will get a ZipException due to the lack of files
       throw new IllegalArgumentException("No files to download");
     }
 
-    if (includeAndroidKeystore) {
-      try {
-        runJobWithRetries(new JobRetryHelper() {
-            @Override
-            public void run(Objectify datastore) {
-              try {
-                Key<UserData> userKey = userKey(userId);
-                for (UserFileData ufd : datastore.query(UserFileData.class).ancestor(userKey)) {
-                  if (ufd.fileName.equals(StorageUtil.ANDROID_KEYSTORE_FILENAME) &&
-                      (ufd.content.length > 0)) {
-                    out.putNextEntry(new ZipEntry(StorageUtil.ANDROID_KEYSTORE_FILENAME));
-                    out.write(ufd.content, 0, ufd.content.length);
-                    out.closeEntry();
-                    fileCount.t++;
-                  } else if (forAppStore && ufd.fileName.equals(APPSTORE_CREDENTIALS_FILENAME)
-                      && ufd.content.length > 0) {
-                    out.putNextEntry(new ZipEntry(APPSTORE_CREDENTIALS_FILENAME));
-                    out.write(ufd.content, 0, ufd.content.length);
-                    out.closeEntry();
-                    fileCount.t++;
-                  }
-                }
-              } catch (IOException e) {
-                throw CrashReport.createAndLogError(LOG, null,
-                    collectProjectErrorInfo(userId, projectId,
-                        StorageUtil.ANDROID_KEYSTORE_FILENAME), e);
-              }
-            }
-        }, false);
-      } catch (ObjectifyException e) {
-        throw CrashReport.createAndLogError(LOG, null, collectUserErrorInfo(userId), e);
-      }
+    for (UserFileData ufd : userFiles) {
+      out.putNextEntry(new ZipEntry(ufd.fileName));
+      out.write(ufd.content, 0, ufd.content.length);
+      out.closeEntry();
+      fileCount++;
     }
 
-    out.close();
+    // Finish rather than close the zip, since the caller owns output.
+    out.finish();
+    return fileCount;
+  }
 
-    if (zipName == null) {
-      zipName = projectName.t + ".aia";
+  // Returns the user files that are sent to a build server with a project. They are collected in
+  // a job and written after it, since a retried job cannot take back what it has already written
+  // to a stream.
+  private List<UserFileData> getBuildUserFiles(final String userId, final boolean forAppStore) {
+    final List<UserFileData> userFiles = new ArrayList<UserFileData>();
+    try {
+      runJobWithRetries(new JobRetryHelper() {
+          @Override
+          public void run(Objectify datastore) {
+            userFiles.clear();
+            Key<UserData> userKey = userKey(userId);
+            for (UserFileData ufd : datastore.query(UserFileData.class).ancestor(userKey)) {
+              if (ufd.fileName.equals(StorageUtil.ANDROID_KEYSTORE_FILENAME) &&
+                  (ufd.content.length > 0)) {
+                userFiles.add(ufd);
+              } else if (forAppStore && ufd.fileName.equals(APPSTORE_CREDENTIALS_FILENAME)
+                  && ufd.content.length > 0) {
+                userFiles.add(ufd);
+              }
+            }
+          }
+      }, false);
+    } catch (ObjectifyException e) {
+      throw CrashReport.createAndLogError(LOG, null, collectUserErrorInfo(userId), e);
     }
-    ProjectSourceZip projectSourceZip =
-        new ProjectSourceZip(zipName, zipFile.toByteArray(), fileCount.t);
-    projectSourceZip.setMetadata(projectName.t);
-    return projectSourceZip;
+    return userFiles;
   }
 
   // Find a user by email address. This version does *not* create a new user
@@ -2469,6 +2724,89 @@ public class ObjectifyStorageIo implements StorageIo {
     gcsService.delete(new GcsFilename(getGcsBucketToUse(FileData.RoleEnum.TARGET), fileName));
   }
 
+  @Override
+  public void uploadChunk(String userId, String uploadId, int index, byte[] content)
+      throws IOException {
+    if (index < 0 || index >= MAX_UPLOAD_CHUNKS) {
+      throw new IllegalArgumentException("Invalid chunk index " + index);
+    }
+    gcsService.createOrReplace(
+        new GcsFilename(getGcsBucketToUse(FileData.RoleEnum.TARGET),
+            uploadChunkPrefix(userId, uploadId) + String.format("%06d", index)),
+        GcsFileOptions.getDefaultInstance(), ByteBuffer.wrap(content));
+  }
+
+  @Override
+  public SortedMap<Integer, Long> getUploadChunks(String userId, String uploadId)
+      throws IOException {
+    String prefix = uploadChunkPrefix(userId, uploadId);
+    SortedMap<Integer, Long> chunks = new TreeMap<Integer, Long>();
+    ListResult result = gcsService.list(getGcsBucketToUse(FileData.RoleEnum.TARGET),
+        new ListOptions.Builder().setPrefix(prefix).setRecursive(true).build());
+    while (result.hasNext()) {
+      ListItem item = result.next();
+      try {
+        chunks.put(Integer.parseInt(item.getName().substring(prefix.length())), item.getLength());
+      } catch (NumberFormatException e) {
+        LOG.warning("Unexpected object " + item.getName() + " in an upload");
+      }
+    }
+    return chunks;
+  }
+
+  @Override
+  public InputStream openUpload(String userId, String uploadId, int chunkCount)
+      throws IOException {
+    SortedMap<Integer, Long> chunks = getUploadChunks(userId, uploadId);
+    for (int index = 0; index < chunkCount; index++) {
+      if (!chunks.containsKey(index)) {
+        throw new FileNotFoundException("Chunk " + index + " of upload " + uploadId
+            + " is missing");
+      }
+    }
+    final String bucket = getGcsBucketToUse(FileData.RoleEnum.TARGET);
+    final List<GcsFilename> files = new ArrayList<GcsFilename>();
+    for (int index = 0; index < chunkCount; index++) {
+      files.add(new GcsFilename(bucket,
+          uploadChunkPrefix(userId, uploadId) + String.format("%06d", index)));
+    }
+    // Each chunk is opened once the one before it has been read.
+    return new SequenceInputStream(new Enumeration<InputStream>() {
+      private int next = 0;
+
+      @Override
+      public boolean hasMoreElements() {
+        return next < files.size();
+      }
+
+      @Override
+      public InputStream nextElement() {
+        if (next >= files.size()) {
+          throw new NoSuchElementException();
+        }
+        return Channels.newInputStream(gcsService.openPrefetchingReadChannel(files.get(next++),
+            0, UPLOAD_READ_BUFFER_SIZE));
+      }
+    });
+  }
+
+  @Override
+  public void deleteUpload(String userId, String uploadId) throws IOException {
+    String bucket = getGcsBucketToUse(FileData.RoleEnum.TARGET);
+    String prefix = uploadChunkPrefix(userId, uploadId);
+    for (int index : getUploadChunks(userId, uploadId).keySet()) {
+      gcsService.delete(new GcsFilename(bucket, prefix + String.format("%06d", index)));
+    }
+  }
+
+  // Upload chunks are kept per user, so that one user cannot add to or read another's upload.
+  private static String uploadChunkPrefix(String userId, String uploadId) {
+    if (!UPLOAD_ID_PATTERN.matcher(uploadId).matches()) {
+      throw new IllegalArgumentException("Invalid upload id " + uploadId);
+    }
+    return "__UPLOAD__/" + userId + "/" + uploadId + "/";
+  }
+
   // ********* METHODS BELOW ARE ONLY FOR TESTING *********
 
   @VisibleForTesting
@@ -2728,6 +3066,479 @@ public class ObjectifyStorageIo implements StorageIo {
     }
   }
 
+  @Override
+  public void startBuildStatusLog(String userId, long projectId, String target) {
+    memcache.put(buildStatusLogKey(userId, projectId, target), new BuildStatusLog(),
+        Expiration.byDeltaSeconds(BUILD_STATUS_LOG_EXPIRATION_SECONDS));
+  }
+
+  @Override
+  public BuildStatusEvent appendBuildStatusEvent(String userId, long projectId, String target,
+      int progress, int result) {
+    final String cacheKey = buildStatusLogKey(userId, projectId, target);
+    // The build server may report progress from one instance while the
+    // result arrives at another, so update the log with compare-and-set.
+    for (int attempt = 0; attempt < MAX_BUILD_STATUS_LOG_UPDATES; attempt++) {
+      MemcacheService.IdentifiableValue current = memcache.getIdentifiable(cacheKey);
+      BuildStatusLog log = current == null ? new BuildStatusLog()
+          : ((BuildStatusLog) current.getValue()).copy();
+      BuildStatusEvent event = log.append(progress, result);
+      if (event == null) {
+        // Progress that arrived after the result of the build
+        return null;
+      }
+      Expiration expiration = Expiration.byDeltaSeconds(BUILD_STATUS_LOG_EXPIRATION_SECONDS);
+      boolean stored = current == null
+          ? memcache.put(cacheKey, log, expiration,
+              MemcacheService.SetPolicy.ADD_ONLY_IF_NOT_PRESENT)
+          : memcache.putIfUntouched(cacheKey, current, log, expiration);
+      if (stored) {
+        return event;
+      }
+    }
+    // Drop the log rather than leave it stale, so that clients fall back to polling.
+    LOG.log(Level.WARNING, "Unable to update the build status log " + cacheKey);
+    memcache.delete(cacheKey);
+    return null;
+  }
+
+  @Override
+  public List<BuildStatusEvent> getBuildStatusEvents(String userId, long projectId,
+      String target, long afterSequence) {
+    BuildStatusLog log = (BuildStatusLog) memcache.get(
+        buildStatusLogKey(userId, projectId, target));
+    if (log == null) {          // not in memcache (or memcache service down)
+      return null;
+    }
+    List<BuildStatusEvent> events = new ArrayList<BuildStatusEvent>();
+    for (BuildStatusEvent event : log.events) {
+      if (event.getSequence() > afterSequence) {
+        events.add(event);
+      }
+    }
+    return events;
+  }
+
+  private static String buildStatusLogKey(String userId, long projectId, String target) {
+    return BUILD_STATUS_LOG_CACHE_KEY_PREFIX + userId + "|" + projectId + "|" + target;
+  }
+
+  @Override
+  public BuildInput loadBuildInput(final String userId, final long projectId,
+      boolean forAppStore) throws IOException {
+    validateGCS();
+    final List<FileData> fileData = new ArrayList<FileData>();
+    JobRetryHelper job = new JobRetryHelper() {
+      @Override
+      public void run(Objectify datastore) throws IOException {
+        fileData.clear();
+        fileData.addAll(getZipFiles(datastore, userId, projectId, true, false, false, true,
+            false));
+      }
+    };
+    try {
+      runJobWithRetries(job, true);
+    } catch (ObjectifyException e) {
+      CrashReport.createAndLogError(LOG, null, collectUserProjectErrorInfo(userId, projectId), e);
+      throw new IOException("Reflecting exception for userid " + userId +
+          " projectId " + projectId + ", original exception " + e.getMessage());
+    }
+    IOException error = job.getIOException();
+    if (error != null) {
+      throw error;
+    }
+    List<UserFileData> userFiles = getBuildUserFiles(userId, forAppStore);
+    String fingerprint = BUILD_OUTPUT_RETENTION_BYTES > 0
+        ? fingerprintBuildInput(projectId, fileData, userFiles) : null;
+    return new BuildInput(userId, projectId, fileData, userFiles, fingerprint);
+  }
+
+  @Override
+  public int writeBuildInputZip(BuildInput input, OutputStream out) throws IOException {
+    validateGCS();
+    return writeZipFiles(input.userId, input.projectId, input.files, null, input.userFiles,
+        true, false, out);
+  }
+
+  // Returns a hash of the files a build is made from.
+  private String fingerprintBuildInput(long projectId, List<FileData> fileData,
+      List<UserFileData> userFiles) throws IOException {
+    // Files in GCS or the blobstore are identified by their modification date, which moves on
+    // with every write, rather than read. Such a date only means something within its project,
+    // so the project is part of the hash. Files written before dates were kept are identified
+    // by the checksum and length their store keeps for them.
+    Hasher hasher = Hashing.sha256().newHasher();
+    hasher.putLong(projectId);
+    for (FileData fd : fileData) {
+      hasher.putString(fd.fileName, StandardCharsets.UTF_8).putByte((byte) 0);
+      if ((fd.isBlob || isTrue(fd.isGCS)) && fd.dateModified != 0) {
+        hasher.putByte((byte) 1).putLong(fd.dateModified);
+      } else if (isTrue(fd.isGCS)) {
+        GcsFileMetadata metadata =
+            gcsService.getMetadata(new GcsFilename(getGcsBucketToUse(fd.role), fd.gcsName));
+        hasher.putByte((byte) 3);
+        if (metadata != null) {
+          hasher.putString(String.valueOf(metadata.getEtag()), StandardCharsets.UTF_8)
+              .putByte((byte) 0).putLong(metadata.getLength());
+        }
+      } else if (fd.isBlob) {
+        BlobInfo info = fd.blobKey == null ? null
+            : new BlobInfoFactory().loadBlobInfo(new BlobKey(fd.blobKey));
+        hasher.putByte((byte) 4);
+        if (info != null) {
+          hasher.putString(info.getMd5Hash(), StandardCharsets.UTF_8).putByte((byte) 0)
+              .putLong(info.getSize());
+        }
+      } else {
+        hasher.putByte((byte) 2).putInt(fd.content == null ? -1 : fd.content.length);
+        if (fd.content != null) {
+          hasher.putBytes(fd.content);
+        }
+      }
+    }
+    for (UserFileData ufd : userFiles) {
+      hasher.putString(ufd.fileName, StandardCharsets.UTF_8).putByte((byte) 0)
+          .putInt(ufd.content.length).putBytes(ufd.content);
+    }
+    return hasher.hash().toString();
+  }
+
+  @Override
+  public void retainBuildOutput(final String userId, final long projectId, final String target,
+      final String sourceHash) {
+    if (BUILD_OUTPUT_RETENTION_BYTES <= 0) {
+      return;
+    }
+    validateGCS();
+    final String outputFolder = "build/" + target + "/";
+    final BuildOutputData output = new BuildOutputData();
+    output.id = buildOutputId(userId, sourceHash);
+    output.userId = userId;
+    output.projectId = projectId;
+    output.gcsPrefix = BUILD_OUTPUT_GCS_FOLDER + userId + "/" + sourceHash + "/";
+    output.fileNames = new ArrayList<String>();
+    final List<FileData> outputFiles = new ArrayList<FileData>();
+    try {
+      runJobWithRetries(new JobRetryHelper() {
+        @Override
+        public void run(Objectify datastore) {
+          outputFiles.clear();
+          for (FileData fd : datastore.query(FileData.class).ancestor(projectKey(projectId))) {
+            if (fd.role == FileData.RoleEnum.TARGET && fd.fileName.startsWith(outputFolder)) {
+              outputFiles.add(fd);
+            }
+          }
+        }
+      }, false);
+    } catch (ObjectifyException e) {
+      LOG.log(Level.WARNING, "Unable to list the " + target + " outputs of project "
+          + projectId, e);
+      return;
+    }
+    // The packages are copied from one GCS object to another, so they never pass through here.
+    try {
+      for (FileData fd : outputFiles) {
+        String name = fd.fileName.substring(outputFolder.length());
+        GcsFilename copy = new GcsFilename(GCS_BUCKET_NAME, output.gcsPrefix + name);
+        GcsFilename source = null;
+        byte[] content = null;
+        long size;
+        if (isTrue(fd.isGCS)) {
+          source = new GcsFilename(getGcsBucketToUse(fd.role), fd.gcsName);
+          GcsFileMetadata metadata = gcsService.getMetadata(source);
+          if (metadata == null) {
+            throw new IOException("Missing build output " + fd.gcsName);
+          }
+          size = metadata.getLength();
+        } else if (!fd.isBlob) {
+          content = fd.content == null ? new byte[0] : fd.content;
+          size = content.length;
+        } else {
+          throw new IOException("Build output " + fd.fileName + " is in the blobstore");
+        }
+        if (output.size + size > BUILD_OUTPUT_RETENTION_BYTES) {
+          LOG.info("Not retaining the " + target + " outputs of project " + projectId
+              + ", which are over the retention budget");
+          deleteBuildOutputFiles(output);
+          return;
+        }
+        if (source != null) {
+          gcsService.copy(source, copy);
+        } else {
+          gcsService.createOrReplace(copy, GcsFileOptions.getDefaultInstance(),
+              ByteBuffer.wrap(content));
+        }
+        output.fileNames.add(name);
+        output.size += size;
+      }
+    } catch (IOException | RuntimeException e) {
+      LOG.log(Level.WARNING, "Unable to retain the " + target + " outputs of project "
+          + projectId, e);
+      deleteBuildOutputFiles(output);
+      return;
+    }
+    if (output.fileNames.isEmpty()) {
+      return;
+    }
+    output.lastUsed = System.currentTimeMillis();
+    try {
+      runJobWithRetries(new JobRetryHelper() {
+        @Override
+        public void run(Objectify datastore) {
+          datastore.put(output);
+        }
+      }, false);
+    } catch (ObjectifyException e) {
+      throw CrashReport.createAndLogError(LOG, null,
+          collectUserProjectErrorInfo(userId, projectId), e);
+    }
+    evictBuildOutputs(userId);
+  }
+
+  @Override
+  public boolean restoreBuildOutput(final String userId, final long projectId,
+      final String target, final String sourceHash) {
+    if (BUILD_OUTPUT_RETENTION_BYTES <= 0) {
+      return false;
+    }
+    validateGCS();
+    final Result<BuildOutputData> output = new Result<BuildOutputData>();
+    try {
+      runJobWithRetries(new JobRetryHelper() {
+        @Override
+        public void run(Objectify datastore) {
+          output.t = datastore.find(BuildOutputData.class, buildOutputId(userId, sourceHash));
+        }
+      }, false);
+    } catch (ObjectifyException e) {
+      throw CrashReport.createAndLogError(LOG, null,
+          collectUserProjectErrorInfo(userId, projectId), e);
+    }
+    if (output.t == null) {
+      return false;
+    }
+    // Check for every file before touching the project, so that a partly missing copy leaves
+    // the project to an ordinary build.
+    try {
+      for (String name : output.t.fileNames) {
+        if (gcsService.getMetadata(
+            new GcsFilename(GCS_BUCKET_NAME, output.t.gcsPrefix + name)) == null) {
+          LOG.warning("Retained build output " + output.t.gcsPrefix + name + " is missing");
+          deleteBuildOutput(output.t);
+          return false;
+        }
+      }
+    } catch (IOException e) {
+      LOG.log(Level.WARNING, "Unable to read the retained outputs " + output.t.gcsPrefix, e);
+      return false;
+    }
+    String outputFolder = "build/" + target + "/";
+    for (String fileName : getProjectOutputFiles(userId, projectId)) {
+      if (fileName.startsWith(outputFolder)) {
+        deleteFile(userId, projectId, fileName);
+      }
+    }
+    try {
+      for (String name : output.t.fileNames) {
+        String fileName = outputFolder + name;
+        GcsFilename copy = new GcsFilename(GCS_BUCKET_NAME, output.t.gcsPrefix + name);
+        addOutputFilesToProject(userId, projectId, fileName);
+        if (useGCSforFile(fileName, 0)) {
+          copyGcsFileToProject(userId, projectId, fileName, copy);
+        } else {
+          // Small enough for the datastore, such as the build's result
+          byte[] content = readGcsFile(copy);
+          uploadRawFileForce(projectId, fileName, userId, content == null ? new byte[0] : content);
+        }
+      }
+    } catch (IOException e) {
+      // Leave no part of the outputs behind for getBuildResult to find.
+      LOG.log(Level.WARNING, "Unable to restore the retained outputs " + output.t.gcsPrefix, e);
+      for (String fileName : getProjectOutputFiles(userId, projectId)) {
+        if (fileName.startsWith(outputFolder)) {
+          deleteFile(userId, projectId, fileName);
+        }
+      }
+      return false;
+    }
+    output.t.lastUsed = System.currentTimeMillis();
+    try {
+      runJobWithRetries(new JobRetryHelper() {
+        @Override
+        public void run(Objectify datastore) {
+          datastore.put(output.t);
+        }
+      }, false);
+    } catch (ObjectifyException e) {
+      // The outputs were restored; they are only more likely to be evicted.
+      LOG.log(Level.WARNING, "Unable to update the retained outputs " + output.t.id, e);
+    }
+    return true;
+  }
+
+  private static String buildOutputId(String userId, String sourceHash) {
+    return userId + ":" + sourceHash;
+  }
+
+  // Makes a project file a copy of the given GCS file, as uploadRawFile would if given its
+  // content, but without reading it.
+  private void copyGcsFileToProject(final String userId, final long projectId,
+      final String fileName, final GcsFilename source) throws IOException {
+    JobRetryHelper job = new JobRetryHelper() {
+      @Override
+      public void run(Objectify datastore) throws IOException {
+        Key<FileData> key = projectFileKey(projectKey(projectId), fileName);
+        FileData fd = datastore.find(key);
+        Preconditions.checkState(fd != null);
+        fd.isGCS = true;
+        fd.gcsName = makeGCSfileName(fileName, projectId);
+        gcsService.copy(source, new GcsFilename(getGcsBucketToUse(fd.role), fd.gcsName));
+        fd.content = null;
+        fd.isBlob = false;
+        fd.blobstorePath = null;
+        fd.userId = userId;
+        // Always move forward, so cached content is never mistaken for this
+        fd.dateModified = Math.max(System.currentTimeMillis(), fd.dateModified + 1);
+        datastore.put(fd);
+        memcache.put(key.getString(), fd);
+      }
+    };
+    try {
+      runJobWithRetries(job, false);
+    } catch (ObjectifyException e) {
+      throw new IOException("Unable to copy " + source + " to " + fileName, e);
+    }
+    IOException error = job.getIOException();
+    if (error != null) {
+      throw error;
+    }
+    updateProjectModDate(userId, projectId);
+  }
+
+  // Drops the user's least recently used retained build outputs until the rest fit in the
+  // retention budget.
+  private void evictBuildOutputs(final String userId) {
+    List<BuildOutputData> outputs = listBuildOutputs("userId", userId);
+    if (outputs == null) {
+      return;
+    }
+    Collections.sort(outputs, new Comparator<BuildOutputData>() {
+      @Override
+      public int compare(BuildOutputData a, BuildOutputData b) {
+        return Long.compare(b.lastUsed, a.lastUsed);
+      }
+    });
+    long size = 0;
+    for (BuildOutputData output : outputs) {
+      size += output.size;
+      if (size > BUILD_OUTPUT_RETENTION_BYTES) {
+        deleteBuildOutput(output);
+      }
+    }
+  }
+
+  // Drops the retained build outputs whose field has the given value.
+  private void deleteBuildOutputs(String field, Object value) {
+    List<BuildOutputData> outputs = listBuildOutputs(field, value);
+    if (outputs != null) {
+      for (BuildOutputData output : outputs) {
+        deleteBuildOutput(output);
+      }
+    }
+  }
+
+  // Returns the retained build outputs whose field has the given value, or null if they could
+  // not be read.
+  private List<BuildOutputData> listBuildOutputs(final String field, final Object value) {
+    final List<BuildOutputData> outputs = new ArrayList<BuildOutputData>();
+    try {
+      runJobWithRetries(new JobRetryHelper() {
+        @Override
+        public void run(Objectify datastore) {
+          outputs.clear();
+          for (BuildOutputData output : datastore.query(BuildOutputData.class)
+              .filter(field, value)) {
+            outputs.add(output);
+          }
+        }
+      }, false);
+    } catch (ObjectifyException e) {
+      LOG.log(Level.WARNING, "Unable to list the retained build outputs with " + field + " "
+          + value, e);
+      return null;
+    }
+    return outputs;
+  }
+
+  private void deleteBuildOutput(final BuildOutputData output) {
+    deleteBuildOutputFiles(output);
+    try {
+      runJobWithRetries(new JobRetryHelper() {
+        @Override
+        public void run(Objectify datastore) {
+          datastore.delete(output);
+        }
+      }, false);
+    } catch (ObjectifyException e) {
+      LOG.log(Level.WARNING, "Unable to delete the retained build outputs " + output.id, e);
+    }
+  }
+
+  private void deleteBuildOutputFiles(BuildOutputData output) {
+    for (String name : output.fileNames) {
+      try {
+        gcsService.delete(new GcsFilename(GCS_BUCKET_NAME, output.gcsPrefix + name));
+      } catch (IOException e) {
+        LOG.log(Level.WARNING, "Unable to delete " + output.gcsPrefix + name, e);
+      }
+    }
+  }
+
+  // Returns the content of a GCS file, or null if there is no such file.
+  private byte[] readGcsFile(GcsFilename file) throws IOException {
+    GcsFileMetadata metadata = gcsService.getMetadata(file);
+    if (metadata == null) {
+      return null;
+    }
+    ByteBuffer buffer = ByteBuffer.allocate((int) metadata.getLength());
+    try (GcsInputChannel channel = gcsService.openReadChannel(file, 0)) {
+      while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+        // keep reading
+      }
+    }
+    return buffer.hasRemaining() ? Arrays.copyOf(buffer.array(), buffer.position())
+        : buffer.array();
+  }
+
+  // The build status log of a project's build target, as stored in memcache
+  private static final class BuildStatusLog implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private long lastSequence = 0;
+    private ArrayList<BuildStatusEvent> events = new ArrayList<BuildStatusEvent>();
+
+    BuildStatusLog copy() {
+      BuildStatusLog copy = new BuildStatusLog();
+      copy.lastSequence = lastSequence;
+      copy.events = new ArrayList<BuildStatusEvent>(events);
+      return copy;
+    }
+
+    // Returns null, leaving the log as it is, for progress reported after the build finished.
+    BuildStatusEvent append(int progress, int result) {
+      if (result == BuildStatusEvent.NOT_FINISHED && !events.isEmpty()
+          && events.get(events.size() - 1).isFinished()) {
+        return null;
+      }
+      BuildStatusEvent event = new BuildStatusEvent(++lastSequence, progress, result);
+      events.add(event);
+      if (events.size() > MAX_BUILD_STATUS_EVENTS) {
+        events.remove(0);
+      }
+      return event;
+    }
+  }
+
   @Override
   public void assertUserHasProject(final String userId, final long projectId) {
     final String cacheKey = PROJECT_OWNER_CACHE_KEY_PREFIX + "|" + projectId;
@@ -2813,6 +3624,8 @@ public class ObjectifyStorageIo implements StorageIo {
     for (long projectId : projectIds) {
       deleteProject(userId, projectId);
     }
+    // Including those retained before their project was recorded with them
+    deleteBuildOutputs("userId", userId);
 
     // Now flush the user data object both from the datastore and the
     // cache.
@@ -2859,6 +3672,18 @@ public class ObjectifyStorageIo implements StorageIo {
     return result.t;
   }
 
+  /*
+   * Returns the factory of threads tied to the current request, which are the only
+   * threads App Engine lets a request start, or null outside of a request.
+   */
+  private static ThreadFactory requestThreadFactory() {
+    try {
+      return ThreadManager.currentRequestThreadFactory();
+    } catch (RuntimeException e) {
+      return null;
+    }
+  }
+
   /*
    * Determine which GCS Bucket to use based on filename. In particular
    * APK files go in a bucket with a short TTL, because they are really
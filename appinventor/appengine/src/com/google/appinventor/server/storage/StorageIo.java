@@ -18,8 +18,11 @@ import com.google.appinventor.shared.rpc.user.SplashConfig;
 
 import java.io.InputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.SortedMap;
+import java.util.regex.Pattern;
 
 import javax.annotation.Nullable;
 
@@ -37,6 +40,16 @@ public interface StorageIo {
    */
   public static final long INVALID_PROJECTID = 0;
 
+  /**
+   * Pattern that the id of a resumable upload must match.
+   */
+  public static final Pattern UPLOAD_ID_PATTERN = Pattern.compile("[A-Za-z0-9_-]{8,64}");
+
+  /**
+   * Maximum number of chunks of a resumable upload.
+   */
+  public static final int MAX_UPLOAD_CHUNKS = 100000;
+
   // User management
 
   /**
@@ -206,6 +219,17 @@ public interface StorageIo {
 
   List<UserProject> getUserProjects(String userId, List<Long> projectIds);
 
+  /**
+   * Returns the name, type and dates of all of a user's projects, as for the
+   * project list, using one batched fetch of the projects. The result is
+   * cached for the user until a project is added, removed or has its dates
+   * changed.
+   *
+   * @param userId a userId
+   * @return new List of UserProject objects, one per project
+   */
+  List<UserProject> getProjectSummaries(String userId);
+
   /**
    * Returns a project name.
    *
@@ -518,6 +542,50 @@ public interface StorageIo {
 
   void deleteTempFile(String fileName) throws IOException;
 
+  /**
+   * Stores one chunk of a resumable upload, replacing a chunk stored before
+   * with the same index. Chunks are kept where temporary files are, so an
+   * upload that is never finished expires with them.
+   *
+   * @param userId the user id
+   * @param uploadId the id the client chose for the upload
+   * @param index the index of the chunk, from 0
+   * @param content the content of the chunk
+   * @throws IllegalArgumentException if the upload id or index is malformed
+   */
+  void uploadChunk(String userId, String uploadId, int index, byte[] content)
+      throws IOException;
+
+  /**
+   * Returns the sizes of the chunks of an upload stored so far, so that a
+   * client can resume an interrupted upload.
+   *
+   * @param userId the user id
+   * @param uploadId the id of the upload
+   * @return the chunk sizes, by chunk index
+   */
+  SortedMap<Integer, Long> getUploadChunks(String userId, String uploadId) throws IOException;
+
+  /**
+   * Opens a stream over the chunks of an upload, in order. Chunks are read
+   * one at a time as the stream is read.
+   *
+   * @param userId the user id
+   * @param uploadId the id of the upload
+   * @param chunkCount the number of chunks of the upload
+   * @return the content of the upload
+   * @throws java.io.FileNotFoundException if any of the chunks is missing
+   */
+  InputStream openUpload(String userId, String uploadId, int chunkCount) throws IOException;
+
+  /**
+   * Deletes the chunks of an upload.
+   *
+   * @param userId the user id
+   * @param uploadId the id of the upload
+   */
+  void deleteUpload(String userId, String uploadId) throws IOException;
+
   /**
    * Exports project files as a zip archive
    *
@@ -539,6 +607,30 @@ public interface StorageIo {
     final boolean forGallery,
     final boolean fatalError, boolean forAppStore, boolean locallyCachedApp) throws IOException;
 
+  /**
+   * Writes project files as a zip archive to a stream, copying each file
+   * from storage as it is read so that the archive is never held in memory.
+   * The stream is not closed. Nothing is written if the project has no files.
+   *
+   * @param userId                 a user Id (the request is made on behalf of this user)
+   * @param projectId              project ID
+   * @param includeProjectHistory  whether or not to include the project history
+   * @param includeAndroidKeystore whether or not to include the Android keystore
+   * @param fatalError             set true to cause missing GCS file to throw exception
+   * @param forAppStore            true if the app is being built for the App Store
+   * @param out                    the stream to write the zip archive to
+   * @return the number of files in the zip archive
+   * @throws IllegalArgumentException if the project has no files
+   */
+  int writeProjectSourceZip(String userId, long projectId,
+    boolean includeProjectHistory,
+    boolean includeAndroidKeystore,
+    boolean includeYail,
+    boolean includeScreenShots,
+    boolean forGallery,
+    boolean fatalError, boolean forAppStore, boolean locallyCachedApp,
+    OutputStream out) throws IOException;
+
   /**
    * Find a user's id given their email address. Note that this query is case
    * sensitive!
@@ -648,6 +740,105 @@ public interface StorageIo {
 
   public int getBuildStatus(String userId, long projectId);
 
+  /**
+   * Starts a new build status log for a project's build target, discarding
+   * the events of any previous build. Clients that wait for the build use
+   * the log instead of polling {@link #getProjectOutputFiles}.
+   *
+   * @param userId the user id
+   * @param projectId the project id
+   * @param target the build target
+   */
+  void startBuildStatusLog(String userId, long projectId, String target);
+
+  /**
+   * Appends an event to the build status log of a project's build target.
+   * Only the most recent events are kept. Progress reported after an event
+   * for the finished build is dropped, since the build server sends its
+   * progress and its result in separate requests that may arrive out of order.
+   *
+   * @param userId the user id
+   * @param projectId the project id
+   * @param target the build target
+   * @param progress the progress of the build, from 0 to 100
+   * @param result the result code of the finished build, or
+   *        {@link BuildStatusEvent#NOT_FINISHED}
+   * @return the event appended, or null if it was dropped or the log could
+   *         not be updated, in which case the log is discarded
+   */
+  BuildStatusEvent appendBuildStatusEvent(String userId, long projectId, String target,
+      int progress, int result);
+
+  /**
+   * Returns the events of the build status log of a project's build target
+   * that come after the given sequence number.
+   *
+   * @param userId the user id
+   * @param projectId the project id
+   * @param target the build target
+   * @param afterSequence the sequence number of the last event already seen, or 0
+   * @return the events in order, or null if there is no log, in which case
+   *         the caller must fall back to polling for the build output
+   */
+  List<BuildStatusEvent> getBuildStatusEvents(String userId, long projectId, String target,
+      long afterSequence);
+
+  /**
+   * Lists what a build of the project is made from: the files
+   * {@link #writeProjectSourceZip} writes for a build server, and the user's
+   * keystore and App Store credentials sent with them. Their fingerprint
+   * identifies the build's outputs.
+   *
+   * @param userId the user id
+   * @param projectId the project id
+   * @param forAppStore true if the app is being built for the App Store
+   * @return the files, whose fingerprint is null if build outputs are not retained
+   * @throws IOException if the files could not be read
+   */
+  BuildInput loadBuildInput(String userId, long projectId, boolean forAppStore)
+      throws IOException;
+
+  /**
+   * Writes the files of a build as a zip archive to a stream, as
+   * {@link #writeProjectSourceZip} would for a build server. The stream is
+   * not closed.
+   *
+   * @param input the files, as listed by {@link #loadBuildInput}
+   * @param out the stream to write the zip archive to
+   * @return the number of files in the zip archive
+   * @throws IllegalArgumentException if the project has no files
+   * @throws IOException if a file could not be read or written
+   */
+  int writeBuildInputZip(BuildInput input, OutputStream out) throws IOException;
+
+  /**
+   * Keeps a copy of the output files of a project's build target, to be
+   * reused by a later build of the same sources. The packages are copied
+   * within storage rather than read. The user's least recently
+   * used retained outputs are dropped when they take up more than the
+   * retention budget.
+   *
+   * @param userId the user id
+   * @param projectId the project id
+   * @param target the build target
+   * @param sourceHash what the build was made from, as returned by
+   *     {@link BuildInput#getFingerprint}
+   */
+  void retainBuildOutput(String userId, long projectId, String target, String sourceHash);
+
+  /**
+   * Replaces the output files of a project's build target with retained
+   * outputs of a build made from the same sources, if there are any.
+   *
+   * @param userId the user id
+   * @param projectId the project id
+   * @param target the build target
+   * @param sourceHash what the build would be made from, as returned by
+   *     {@link BuildInput#getFingerprint}
+   * @return true if retained outputs were restored
+   */
+  boolean restoreBuildOutput(String userId, long projectId, String target, String sourceHash);
+
   /**
    * Checks that the user identified by {@code userId} has a reference to the project identified
    * by {@code projectId}. If a corresponding UserProjectData is not found, this function throws
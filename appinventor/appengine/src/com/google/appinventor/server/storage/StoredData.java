@@ -15,6 +15,7 @@ import com.googlecode.objectify.annotation.Unindexed;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.Date;
+import java.util.List;
 
 import javax.persistence.Id;
 
@@ -194,6 +195,10 @@ public class StoredData {
     // DateTime of last backup only used if GCS is enabled
     long lastBackup;
 
+    // When the content was last written, or 0 if it has not been written
+    // since this was recorded. Content cached elsewhere is only valid for it.
+    long dateModified;
+
     String userId;              // The userId which owns this file
                                 // if null or the empty string, we haven't initialized
                                 // it yet
@@ -260,6 +265,25 @@ public class StoredData {
     public Date timestamp;
   }
 
+  // The output files of a build, kept so that a later build of the same
+  // sources by the same user can reuse them. The files are in GCS under
+  // gcsPrefix.
+  @Unindexed
+  static final class BuildOutputData {
+    // userId + ":" + hash of the build's sources
+    @Id String id;
+    @Indexed public String userId;
+    // 0 for outputs retained before the project was recorded
+    @Indexed public long projectId;
+    public String gcsPrefix;
+    // Names of the output files, without their build/<target>/ folder
+    public List<String> fileNames;
+    // Total size of the files in bytes
+    public long size;
+    // When the outputs were last built or reused
+    public long lastUsed;
+  }
+
   @Unindexed
   static final class CorruptionRecord {
     @Id Long id;
@@ -160,6 +160,25 @@ public class ServerLayout {
    */
   public static final String UPLOAD_USERFILE = "userfile";
 
+  /**
+   * Relative path within {@link com.google.appinventor.server.UploadServlet}
+   * for uploading one chunk of a resumable upload, which is later imported as
+   * a project or file by passing {@link #UPLOAD_ID_PARAMETER} and
+   * {@link #UPLOAD_CHUNKS_PARAMETER} instead of a form
+   */
+  public static final String UPLOAD_CHUNK = "chunk";
+
+  /**
+   * Name of the query parameter giving the id of a resumable upload.
+   */
+  public static final String UPLOAD_ID_PARAMETER = "upload";
+
+  /**
+   * Name of the query parameter giving the number of chunks of a resumable
+   * upload.
+   */
+  public static final String UPLOAD_CHUNKS_PARAMETER = "chunks";
+
   /**
    * Relative path of the {@link com.google.appinventor.server.components.FirebaseAuthServiceImpl}
    * within the ODE GWT module.
@@ -178,6 +197,13 @@ public class ServerLayout {
    */
   public static final String RECEIVE_BUILD_SERVLET = "receivebuild";
 
+  /**
+   * Relative base path of the
+   * {@link com.google.appinventor.server.BuildStatusServlet} within the ODE
+   * GWT module.
+   */
+  public static final String BUILD_STATUS_SERVLET_BASE = "buildstatus/";
+
   /**
    * Name of the form element to upload files.
    */
@@ -282,6 +282,23 @@ public interface ProjectService extends RemoteService {
   long save2(String sessionId, long projectId, String fileId, boolean force, String content) throws InvalidSessionException,
       BlocksTruncatedException;
 
+  /**
+   * Saves the content of the file associated with a node in the project tree
+   * by applying a patch to the stored content. If the stored content is not
+   * the version the patch was made against, nothing is saved and the caller
+   * should save the whole content with {@link #save2}.
+   *
+   * @param sessionId current session id
+   * @param projectId  project ID
+   * @param fileId  project node whose source should be saved
+   * @param force whether to write an empty blocks workspace
+   * @param patch  changes from the last saved content to the new content
+   * @return modification date for project
+   * @throws ChecksumedFileException if the patch does not apply to the stored content
+   */
+  long savePatch(String sessionId, long projectId, String fileId, boolean force, TextPatch patch)
+      throws InvalidSessionException, BlocksTruncatedException, ChecksumedFileException;
+
   /**
    * Saves the contents of multiple files.
    *
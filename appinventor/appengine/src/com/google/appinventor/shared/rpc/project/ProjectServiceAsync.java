@@ -151,6 +151,12 @@ public interface ProjectServiceAsync {
    */
   void save2(String sessionId, long projectId, String fileId, boolean force, String source, AsyncCallback<Long> callback);
 
+  /**
+   * @see ProjectService#savePatch(String, long, String, boolean, TextPatch)
+   */
+  void savePatch(String sessionId, long projectId, String fileId, boolean force, TextPatch patch,
+      AsyncCallback<Long> callback);
+
   /**
    * @see ProjectService#save(String, List)
    */
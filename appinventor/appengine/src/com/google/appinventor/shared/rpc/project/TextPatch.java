@@ -0,0 +1,212 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2026 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.shared.rpc.project;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The changes that turn one version of a text file into the next, sent to
+ * the server in place of the whole file when a large .bky or .scm file is
+ * saved again after a small edit.
+ *
+ * <p>The changes are a list of pieces of text copied from the old version and
+ * new text, found in the manner of rsync: the old version is cut into blocks,
+ * and the new version is scanned with a rolling checksum for the blocks it
+ * still contains. Moved and repeated text is found this way too. The patch
+ * carries the checksums of both versions, computed as for a
+ * {@link ChecksumedLoadFile}, so the server can tell whether it holds the
+ * version the patch was made against and whether it rebuilt the right
+ * result.</p>
+ *
+ * <p>The delta is a string of operations: {@code =offset,length;} copies
+ * text from the old version and {@code +length:text} adds new text.</p>
+ */
+public class TextPatch implements Serializable {
+
+  // For serialization
+  private static final long serialVersionUID = 4217388094130527412L;
+
+  // Length of the blocks of the old version that are looked for. Shorter
+  // blocks find more of the old text in a changed file, at the cost of a
+  // larger index and more operations.
+  private static final int BLOCK_SIZE = 32;
+
+  private String baseChecksum;
+  private String resultChecksum;
+  private String delta;
+
+  /**
+   * Default constructor (for serialization only).
+   */
+  @SuppressWarnings("unused")
+  private TextPatch() {
+  }
+
+  private TextPatch(String baseChecksum, String resultChecksum, String delta) {
+    this.baseChecksum = baseChecksum;
+    this.resultChecksum = resultChecksum;
+    this.delta = delta;
+  }
+
+  /**
+   * Computes the patch that turns {@code base} into {@code result}.
+   *
+   * @param base the old version of the file
+   * @param result the new version of the file
+   * @return the patch
+   */
+  public static TextPatch create(String base, String result) throws ChecksumedFileException {
+    return new TextPatch(ChecksumedLoadFile.computeChecksum(base),
+        ChecksumedLoadFile.computeChecksum(result), diff(base, result));
+  }
+
+  /**
+   * Applies the patch.
+   *
+   * @param base the current version of the file
+   * @return the new version of the file
+   * @throws ChecksumedFileException if {@code base} is not the version the
+   *     patch was made against, or the patch does not rebuild the new version
+   */
+  public String apply(String base) throws ChecksumedFileException {
+    if (!ChecksumedLoadFile.computeChecksum(base).equals(baseChecksum)) {
+      throw new ChecksumedFileException("Patch does not apply to the stored file");
+    }
+    StringBuilder sb = new StringBuilder();
+    try {
+      int i = 0;
+      while (i < delta.length()) {
+        char op = delta.charAt(i);
+        if (op == '=') {
+          int comma = delta.indexOf(',', i);
+          int end = delta.indexOf(';', comma);
+          int offset = Integer.parseInt(delta.substring(i + 1, comma));
+          int length = Integer.parseInt(delta.substring(comma + 1, end));
+          sb.append(base, offset, offset + length);
+          i = end + 1;
+        } else if (op == '+') {
+          int colon = delta.indexOf(':', i);
+          int length = Integer.parseInt(delta.substring(i + 1, colon));
+          sb.append(delta, colon + 1, colon + 1 + length);
+          i = colon + 1 + length;
+        } else {
+          throw new ChecksumedFileException("Malformed patch");
+        }
+      }
+    } catch (RuntimeException e) {
+      // A truncated or altered delta
+      throw new ChecksumedFileException("Malformed patch: " + e);
+    }
+    String result = sb.toString();
+    if (!ChecksumedLoadFile.computeChecksum(result).equals(resultChecksum)) {
+      throw new ChecksumedFileException("Patched file does not match its checksum");
+    }
+    return result;
+  }
+
+  /**
+   * Returns whether the patch leaves the file as it was.
+   */
+  public boolean isEmpty() {
+    return baseChecksum.equals(resultChecksum);
+  }
+
+  /**
+   * Returns the length of the delta, to weigh sending the patch against
+   * sending the whole file.
+   */
+  public int getDeltaLength() {
+    return delta.length();
+  }
+
+  private static String diff(String base, String result) {
+    // Index the blocks of the old version by their rolling checksum.
+    Map<Integer, Integer> blocks = new HashMap<Integer, Integer>();
+    for (int offset = 0; offset + BLOCK_SIZE <= base.length(); offset += BLOCK_SIZE) {
+      Integer key = rollingChecksum(base, offset);
+      if (!blocks.containsKey(key)) {
+        blocks.put(key, offset);
+      }
+    }
+
+    StringBuilder delta = new StringBuilder();
+    int literalStart = 0;
+    int position = 0;
+    // The two halves of the rolling checksum of result[position, position + BLOCK_SIZE)
+    int a = 0;
+    int b = 0;
+    boolean haveChecksum = false;
+    while (position + BLOCK_SIZE <= result.length()) {
+      if (!haveChecksum) {
+        a = 0;
+        b = 0;
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+          char c = result.charAt(position + i);
+          a += c;
+          b += (BLOCK_SIZE - i) * c;
+        }
+        haveChecksum = true;
+      }
+      Integer offset = blocks.get(a ^ (b << 16));
+      if (offset != null && base.regionMatches(offset, result, position, BLOCK_SIZE)) {
+        int start = position;
+        int from = offset;
+        // Grow the match backwards into the pending new text, and forwards.
+        while (start > literalStart && from > 0
+            && base.charAt(from - 1) == result.charAt(start - 1)) {
+          start--;
+          from--;
+        }
+        int end = position + BLOCK_SIZE;
+        int to = offset + BLOCK_SIZE;
+        while (end < result.length() && to < base.length()
+            && base.charAt(to) == result.charAt(end)) {
+          end++;
+          to++;
+        }
+        appendInsert(delta, result, literalStart, start);
+        delta.append('=').append(from).append(',').append(end - start).append(';');
+        position = end;
+        literalStart = end;
+        haveChecksum = false;
+      } else {
+        if (position + BLOCK_SIZE < result.length()) {
+          char out = result.charAt(position);
+          char in = result.charAt(position + BLOCK_SIZE);
+          a += in - out;
+          b += a - BLOCK_SIZE * out;
+        }
+        position++;
+      }
+    }
+    appendInsert(delta, result, literalStart, result.length());
+    return delta.toString();
+  }
+
+  /*
+   * A checksum in the manner of Adler-32 that can be rolled forward one
+   * character at a time. The sums stay well within the range of an int, so
+   * the arithmetic is exact in compiled JavaScript too.
+   */
+  private static int rollingChecksum(String text, int offset) {
+    int a = 0;
+    int b = 0;
+    for (int i = 0; i < BLOCK_SIZE; i++) {
+      char c = text.charAt(offset + i);
+      a += c;
+      b += (BLOCK_SIZE - i) * c;
+    }
+    return a ^ (b << 16);
+  }
+
+  private static void appendInsert(StringBuilder delta, String text, int start, int end) {
+    if (end > start) {
+      delta.append('+').append(end - start).append(':').append(text, start, end);
+    }
+  }
+}
@@ -48,6 +48,7 @@ public class Config implements IsSerializable, Serializable {
   private String iosExtensions;
   private String surveyUrl;
   private boolean iosBuildServer;
+  private boolean savePatches; // Whether the client may save files as patches
 
   public Config() {
   }
@@ -275,4 +276,12 @@ public class Config implements IsSerializable, Serializable {
   public void setiOSBuildServer(boolean value) {
     iosBuildServer = value;
   }
+
+  public boolean getSavePatches() {
+    return savePatches;
+  }
+
+  public void setSavePatches(boolean value) {
+    savePatches = value;
+  }
 }
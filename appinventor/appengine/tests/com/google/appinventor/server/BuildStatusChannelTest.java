@@ -0,0 +1,92 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2026 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.server;
+
+import com.google.appinventor.server.storage.BuildStatusEvent;
+import com.google.appinventor.server.storage.StorageIo;
+import com.google.appinventor.server.storage.StorageIoInstanceHolder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Tests for {@link BuildStatusChannel}. Mocks out the build status log kept
+ * by StorageIo.
+ */
+public class BuildStatusChannelTest {
+  private static final String USER_ID = "1";
+  private static final long PROJECT_ID = 1234L;
+  private static final String TARGET = "Android";
+
+  private StorageIo storageIoMock;
+  private final AtomicReference<List<BuildStatusEvent>> log =
+      new AtomicReference<List<BuildStatusEvent>>();
+
+  @Before
+  public void setUp() {
+    storageIoMock = Mockito.mock(StorageIo.class);
+    StorageIoInstanceHolder.setInstance(storageIoMock);
+    Mockito.when(storageIoMock.getBuildStatusEvents(USER_ID, PROJECT_ID, TARGET, 0))
+        .thenAnswer(invocation -> log.get());
+  }
+
+  @After
+  public void tearDown() {
+    StorageIoInstanceHolder.setInstance(null);
+  }
+
+  @Test
+  public void testAwaitWithoutLog() throws InterruptedException {
+    assertNull(BuildStatusChannel.getInstance().await(USER_ID, PROJECT_ID, TARGET, 0, 10000));
+  }
+
+  @Test
+  public void testAwaitTimesOut() throws InterruptedException {
+    log.set(Collections.<BuildStatusEvent>emptyList());
+    List<BuildStatusEvent> events =
+        BuildStatusChannel.getInstance().await(USER_ID, PROJECT_ID, TARGET, 0, 50);
+    assertEquals(0, events.size());
+  }
+
+  @Test
+  public void testPublishWakesWaitingClient() throws InterruptedException {
+    log.set(Collections.<BuildStatusEvent>emptyList());
+    final BuildStatusEvent event = new BuildStatusEvent(1, 100, 0);
+    Mockito.when(storageIoMock.appendBuildStatusEvent(USER_ID, PROJECT_ID, TARGET, 100, 0))
+        .thenAnswer(invocation -> {
+          log.set(Collections.singletonList(event));
+          return event;
+        });
+    Thread builder = new Thread(() -> {
+      try {
+        Thread.sleep(100);
+      } catch (InterruptedException e) {
+        return;
+      }
+      BuildStatusChannel.getInstance().publish(USER_ID, PROJECT_ID, TARGET, 100, 0);
+    });
+    long start = System.currentTimeMillis();
+    builder.start();
+    List<BuildStatusEvent> events =
+        BuildStatusChannel.getInstance().await(USER_ID, PROJECT_ID, TARGET, 0, 10000);
+    long elapsed = System.currentTimeMillis() - start;
+    builder.join();
+
+    assertEquals(1, events.size());
+    assertTrue(events.get(0).isFinished());
+    // Woken by the publish rather than by the next check of the log
+    assertTrue("Waited " + elapsed + " ms", elapsed < 800);
+  }
+}
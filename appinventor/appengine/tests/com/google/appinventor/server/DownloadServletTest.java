@@ -8,7 +8,6 @@ package com.google.appinventor.server;
 
 import com.google.appinventor.server.storage.StorageIo;
 import com.google.appinventor.server.storage.StorageIoInstanceHolder;
-import com.google.appinventor.shared.rpc.project.ProjectSourceZip;
 import com.google.appinventor.shared.rpc.project.RawFile;
 import com.riq.MockHttpServletRequest;
 import com.riq.MockHttpServletResponse;
@@ -21,6 +20,7 @@ import org.mockito.Mockito;
 
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 
 import static junit.framework.Assert.assertEquals;
@@ -42,8 +42,6 @@ public class DownloadServletTest {
   private static final String DUMMY_ZIP_FILENAME_WITH_TITLE = "MyProjectTitle123.aia";
   private static final String DOWNLOAD_URL = "http://localhost/baseUrl/download/";
 
-  private ProjectSourceZip dummyZip;
-  private ProjectSourceZip dummyZipWithTitle;
   private RawFile dummyApk;
   private RawFile dummyFile;
 
@@ -61,8 +59,6 @@ public class DownloadServletTest {
     storageIoMock = Mockito.mock(StorageIo.class);
     StorageIoInstanceHolder.setInstance(storageIoMock);
 
-    dummyZip = new ProjectSourceZip(DUMMY_ZIP_FILENAME, new byte[] {}, 2);
-    dummyZipWithTitle = new ProjectSourceZip(DUMMY_ZIP_FILENAME_WITH_TITLE, new byte[] {}, 2);
     dummyApk = new RawFile(DUMMY_APK_FILENAME, new byte[] {});
     dummyFile = new RawFile(DUMMY_FILENAME, new byte[] {});
   }
@@ -81,33 +77,33 @@ public class DownloadServletTest {
 
   @Test
   public void testDownloadProjectSourceZipWithoutTitle() throws Exception {
-    final ProjectSourceZip zip = dummyZip;
-    try (MockedConstruction<FileExporterImpl> ignored = Mockito.mockConstruction(FileExporterImpl.class,
-        (mock, ctx) -> Mockito.when(mock.exportProjectSourceZip(
-            USER_ID, PROJECT_ID, true, false, null, false, false, false, false, false, false))
-            .thenReturn(zip))) {
+    Mockito.when(storageIoMock.getProjectName(USER_ID, PROJECT_ID)).thenReturn(DUMMY_FILENAME);
+    try (MockedConstruction<FileExporterImpl> exporters =
+        Mockito.mockConstruction(FileExporterImpl.class)) {
       MockHttpServletRequest request = new MockHttpServletRequest(DOWNLOAD_URL + "project-source/1234");
       DownloadServlet download = new DownloadServlet();
       MockHttpServletResponse response = new MockHttpServletResponse();
       download.doGet(request, response);
-      checkResponseHeader(response, "attachment; filename=\"filename123.aia\"");
+      checkResponseHeader(response, "attachment; filename=\"" + DUMMY_ZIP_FILENAME + "\"");
       assertEquals("application/zip; charset=utf-8", response.getContentType());
+      Mockito.verify(exporters.constructed().get(0)).writeProjectSourceZip(
+          Mockito.eq(USER_ID), Mockito.eq(PROJECT_ID), Mockito.eq(true), Mockito.eq(false),
+          Mockito.eq(false), Mockito.eq(false), Mockito.eq(false), Mockito.eq(false),
+          Mockito.eq(false), Mockito.eq(false), Mockito.any(OutputStream.class));
     }
   }
 
   @Test
   public void testDownloadProjectSourceZipWithTitle() throws IOException {
-    final ProjectSourceZip zip = dummyZipWithTitle;
-    try (MockedConstruction<FileExporterImpl> ignored = Mockito.mockConstruction(FileExporterImpl.class,
-        (mock, ctx) -> Mockito.when(mock.exportProjectSourceZip(
-            USER_ID, PROJECT_ID, true, false, "MyProjectTitle123.aia", false, false, false, false, false, false))
-            .thenReturn(zip))) {
+    try (MockedConstruction<FileExporterImpl> ignored =
+        Mockito.mockConstruction(FileExporterImpl.class)) {
       MockHttpServletRequest request = new MockHttpServletRequest(DOWNLOAD_URL +
           "project-source/1234/My Project Title 123");
       DownloadServlet download = new DownloadServlet();
       MockHttpServletResponse response = new MockHttpServletResponse();
       download.doGet(request, response);
-      checkResponseHeader(response, "attachment; filename=\"MyProjectTitle123.aia\"");
+      checkResponseHeader(response,
+          "attachment; filename=\"" + DUMMY_ZIP_FILENAME_WITH_TITLE + "\"");
       assertEquals("application/zip; charset=utf-8", response.getContentType());
     }
   }
@@ -166,5 +166,57 @@ public class FileExporterImplTest extends LocalDatastoreTestCase {
     }
   }
 
-  // TODO(user): Add test of exportAllProjectsSourceZip().
+  public void testWriteProjectSourceZip() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    int count = exporter.writeProjectSourceZip(USER_ID, projectId,
+      true, false, false, false, false, false, false, false, out);
+    Map<String, byte[]> content = testExportProjectSourceZipHelper(
+        new ProjectSourceZip(PROJECT_NAME + ".aia", out.toByteArray(), count));
+    assertEquals(3, content.size());
+    assertTrue(content.containsKey(FileExporter.REMIX_INFORMATION_FILE_PATH));
+  }
+
+  public void testWriteProjectSourceZipWithNonExistingProject() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try {
+      exporter.writeProjectSourceZip(USER_ID, projectId + 1,
+        false, false, false, false, false, false, false, false, out);
+      fail();
+    } catch (Exception e) {
+      assertTrue(e instanceof IllegalArgumentException ||
+                 e.getCause() instanceof IllegalArgumentException);
+    }
+    // Nothing may be written, so that the download can still fail cleanly.
+    assertEquals(0, out.size());
+  }
+
+  public void testExportAllProjectsSourceZip() throws IOException {
+    // A second project with the same name, and an empty project that is left out.
+    Project project = new Project(PROJECT_NAME);
+    project.setProjectType(FAKE_PROJECT_TYPE);
+    long projectId2 = storageIo.createProject(USER_ID, project, SETTINGS);
+    storageIo.uploadFile(projectId2, FORM1_QUALIFIED_NAME, USER_ID, FORM1_CONTENT,
+        StorageUtil.DEFAULT_CHARSET);
+    storageIo.addSourceFilesToProject(USER_ID, projectId2, false, IMAGE1_NAME);
+    storageIo.uploadRawFile(projectId2, IMAGE1_NAME, USER_ID, true, IMAGE_CONTENT);
+    Project empty = new Project("Empty");
+    empty.setProjectType(FAKE_PROJECT_TYPE);
+    storageIo.createProject(USER_ID, empty, SETTINGS);
+
+    ProjectSourceZip zip = exporter.exportAllProjectsSourceZip(USER_ID, "all-projects.zip");
+    assertEquals(2, zip.getFileCount());
+    ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(zip.getContent()));
+    Map<String, byte[]> projects = new HashMap<String, byte[]>();
+    ZipEntry zipEntry;
+    while ((zipEntry = zis.getNextEntry()) != null) {
+      projects.put(zipEntry.getName(), ByteStreams.toByteArray(zis));
+    }
+    assertEquals(2, projects.size());
+    for (String name : new String[] { PROJECT_NAME + ".aia", "duplicate-" + PROJECT_NAME + ".aia" }) {
+      assertTrue(projects.containsKey(name));
+      Map<String, byte[]> content = testExportProjectSourceZipHelper(
+          new ProjectSourceZip(name, projects.get(name), 2));
+      assertEquals(2, content.size());
+    }
+  }
 }
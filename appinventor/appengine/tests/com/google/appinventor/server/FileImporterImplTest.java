@@ -13,10 +13,14 @@ import com.google.appinventor.shared.rpc.UploadResponse;
 import com.google.appinventor.shared.rpc.project.UserProject;
 import com.google.appinventor.shared.rpc.project.youngandroid.YoungAndroidProjectNode;
 
+import com.google.common.io.Files;
+
 import junitx.framework.ListAssert;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.util.List;
 
 /**
@@ -101,6 +105,35 @@ public class FileImporterImplTest extends LocalDatastoreTestCase {
         "assets/meow.mp3");
   }
 
+  public void testImportProject_fromChunks() throws Exception {
+    byte[] zip = Files.toByteArray(new File(TESTING_SOURCE_PATH + "ProjectWithAssets.zip"));
+    String uploadId = "chunkedupload1";
+    int half = zip.length / 2;
+    // The chunks arrive out of order, and the first one is sent again, as after a retry.
+    fileImporter.importChunk(USER_ID, uploadId, 1,
+        new ByteArrayInputStream(zip, half, zip.length - half));
+    fileImporter.importChunk(USER_ID, uploadId, 0, new ByteArrayInputStream(zip, 0, half));
+    assertEquals(zip.length,
+        fileImporter.importChunk(USER_ID, uploadId, 0, new ByteArrayInputStream(zip, 0, half)));
+    assertEquals(2, storageIo.getUploadChunks(USER_ID, uploadId).size());
+    try {
+      storageIo.openUpload(USER_ID, uploadId, 3);
+      fail();
+    } catch (FileNotFoundException e) {
+      // expected
+    }
+
+    UserProject userProject = fileImporter.importChunkedProject(USER_ID, PROJECT_NAME_1,
+        storageIo.openUpload(USER_ID, uploadId, 2));
+    List<String> projectSourceFiles =
+        storageIo.getProjectSourceFiles(USER_ID, userProject.getProjectId());
+    ListAssert.assertContains(projectSourceFiles,
+        "src/appinventor/ai_joeuser/project1/Screen1.scm");
+    ListAssert.assertContains(projectSourceFiles, "assets/meow.mp3");
+    storageIo.deleteUpload(USER_ID, uploadId);
+    assertTrue(storageIo.getUploadChunks(USER_ID, uploadId).isEmpty());
+  }
+
   public void testProjectNameUsed() throws Exception {
     UserProject userProject = importProjectArchive("Project1.zip", PROJECT_NAME_2);
     assertNotNull(userProject);
@@ -17,10 +17,12 @@ import com.google.appinventor.server.project.youngandroid.YoungAndroidSettingsBu
 import com.google.appinventor.server.storage.StorageIo;
 import com.google.appinventor.server.storage.StorageIoInstanceHolder;
 import com.google.appinventor.shared.rpc.BlocksTruncatedException;
+import com.google.appinventor.shared.rpc.project.ChecksumedFileException;
 import com.google.appinventor.shared.rpc.project.FileDescriptor;
 import com.google.appinventor.shared.rpc.project.FileDescriptorWithContent;
 import com.google.appinventor.shared.rpc.project.ProjectNode;
 import com.google.appinventor.shared.rpc.project.ProjectRootNode;
+import com.google.appinventor.shared.rpc.project.TextPatch;
 import com.google.appinventor.shared.rpc.project.UserProject;
 import com.google.appinventor.shared.rpc.project.youngandroid.NewYoungAndroidProjectParameters;
 import com.google.appinventor.shared.rpc.project.youngandroid.YoungAndroidProjectNode;
@@ -463,6 +465,37 @@ public class ProjectServiceTest {
     assertEquals(storedSettings, loadedSettings);
   }
 
+  @Test
+  public void testSavePatch() throws Exception {
+    when(localUserMock.getUserId()).thenReturn(USER_ID_ONE);
+    do_init();
+
+    NewYoungAndroidProjectParameters params = new NewYoungAndroidProjectParameters(
+        PACKAGE_BASE + PROJECT1_NAME);
+    long projectId = projectServiceImpl.newProject(
+        YoungAndroidProjectNode.YOUNG_ANDROID_PROJECT_TYPE, PROJECT1_NAME, params).getProjectId();
+    String fileId = findFileIdByName(projectServiceImpl.getProject(projectId),
+        YOUNG_ANDROID_FORM_NAME + FORM_PROPERTIES_EXTENSION);
+    String source = projectServiceImpl.load(projectId, fileId);
+
+    // A patch against the stored content is applied.
+    String changed = YOUNG_ANDROID_COMMENT + source;
+    long modificationDate = projectServiceImpl.savePatch("test-session", projectId, fileId,
+        false, TextPatch.create(source, changed));
+    assertEquals(changed, projectServiceImpl.load(projectId, fileId));
+    checkModificationDateMatchesStored(modificationDate, USER_ID_ONE, projectId);
+
+    // A patch against any other content is refused and changes nothing.
+    try {
+      projectServiceImpl.savePatch("test-session", projectId, fileId, false,
+          TextPatch.create(source, source + YOUNG_ANDROID_COMMENT));
+      fail("Expected ChecksumedFileException");
+    } catch (ChecksumedFileException e) {
+      // expected
+    }
+    assertEquals(changed, projectServiceImpl.load(projectId, fileId));
+  }
+
   private String getProjectProperties(String userId, long projectId) {
     return storageIo.downloadFile(userId, projectId,
         "youngandroidproject/project.properties", StorageUtil.DEFAULT_CHARSET);
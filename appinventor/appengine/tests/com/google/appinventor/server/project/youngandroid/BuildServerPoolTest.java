@@ -0,0 +1,246 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2026 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.server.project.youngandroid;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import org.junit.Test;
+
+/**
+ * Tests for {@link BuildServerPool}.
+ */
+public class BuildServerPoolTest {
+
+  /*
+   * Runs the probes when the test asks for it.
+   */
+  private static class HeldExecutor implements Executor {
+    final List<Runnable> held = new ArrayList<Runnable>();
+
+    @Override
+    public void execute(Runnable command) {
+      held.add(command);
+    }
+
+    void runAll() {
+      for (Runnable command : held) {
+        command.run();
+      }
+      held.clear();
+    }
+  }
+
+  private static final Executor DIRECT = new Executor() {
+    @Override
+    public void execute(Runnable command) {
+      command.run();
+    }
+  };
+
+  /*
+   * A pool whose probes return the statuses set by the test.
+   */
+  private static class FakePool extends BuildServerPool {
+    final Map<String, BuildServerPool.Status> statuses =
+        new HashMap<String, BuildServerPool.Status>();
+    int probes = 0;
+
+    FakePool(String hosts) {
+      this(hosts, DIRECT);
+    }
+
+    FakePool(String hosts, Executor probeExecutor) {
+      super(hosts, "", probeExecutor);
+    }
+
+    @Override
+    BuildServerPool.Status probe(String host) throws IOException {
+      probes++;
+      BuildServerPool.Status status = statuses.get(host);
+      if (status == null) {
+        throw new IOException("Connection refused");
+      }
+      return status;
+    }
+  }
+
+  @Test
+  public void testParsesHostList() {
+    assertEquals(3, new FakePool(" a:9990, b:9990 ,,c").select(1).size());
+    assertTrue(new FakePool("").select(1).isEmpty());
+  }
+
+  @Test
+  public void testVersion() {
+    FakePool pool = new FakePool("a:9990");
+    pool.statuses.put("a:9990", new BuildServerPool.Status(true, 0, 2, "v1"));
+    assertEquals(listOf("a:9990"), hosts(pool.select(1)));
+    assertEquals(1, pool.probes);
+    assertEquals("v1", pool.getVersion());
+
+    pool = new FakePool("a,b,c");
+    pool.statuses.put("a", new BuildServerPool.Status(true, 0, 2, "v1"));
+    pool.statuses.put("b", new BuildServerPool.Status(true, 0, 2, "v2"));
+    pool.statuses.put("c", new BuildServerPool.Status(false, 0, 2, "v1"));
+    assertNull(pool.getVersion());
+
+    // A server that is down does not take builds.
+    pool = new FakePool("a,b");
+    pool.statuses.put("a", new BuildServerPool.Status(true, 0, 2, "v1"));
+    pool.statuses.put("b", new BuildServerPool.Status(false, 0, 2, "v2"));
+    assertEquals("v1", pool.getVersion());
+  }
+
+  @Test
+  public void testVersionUnknownUntilProbed() {
+    HeldExecutor executor = new HeldExecutor();
+    FakePool pool = new FakePool("a", executor);
+    pool.statuses.put("a", new BuildServerPool.Status(true, 0, 2, "v1"));
+    assertNull(pool.getVersion());
+    executor.runAll();
+    assertEquals("v1", pool.getVersion());
+  }
+
+  @Test
+  public void testLeastLoadedHealthyServerFirst() {
+    FakePool pool = new FakePool("a,b,c");
+    pool.statuses.put("a", new BuildServerPool.Status(true, 4, 2));
+    pool.statuses.put("b", new BuildServerPool.Status(true, 3, 2));
+    pool.statuses.put("c", new BuildServerPool.Status(false, 0, 2));
+    assertEquals(listOf("b", "a", "c"), hosts(pool.select(1)));
+    assertEquals(3, pool.probes);
+
+    // The status is reused until it is out of date.
+    pool.select(2);
+    assertEquals(3, pool.probes);
+  }
+
+  @Test
+  public void testSelectDoesNotWaitForProbes() {
+    HeldExecutor executor = new HeldExecutor();
+    FakePool pool = new FakePool("a,b", executor);
+    pool.statuses.put("a", new BuildServerPool.Status(false, 0, 2));
+    pool.statuses.put("b", new BuildServerPool.Status(true, 0, 2));
+
+    // Nothing is known yet, so both servers are offered.
+    assertEquals(2, pool.select(1).size());
+    assertEquals(0, pool.probes);
+    assertEquals(2, executor.held.size());
+
+    // Builds arriving while the probes run neither wait for them nor probe again.
+    pool.select(2);
+    assertEquals(2, executor.held.size());
+
+    executor.runAll();
+    assertEquals(2, pool.probes);
+    assertEquals(listOf("b", "a"), hosts(pool.select(1)));
+    assertTrue(executor.held.isEmpty());
+  }
+
+  @Test
+  public void testProjectsStickToTheirServer() {
+    FakePool pool = new FakePool("a,b,c,d");
+    for (String host : listOf("a", "b", "c", "d")) {
+      pool.statuses.put(host, new BuildServerPool.Status(true, 1, 4));
+    }
+    Map<String, Integer> projectsPerHost = new HashMap<String, Integer>();
+    for (long projectId = 0; projectId < 100; projectId++) {
+      String first = pool.select(projectId).get(0).getHost();
+      assertEquals(first, pool.select(projectId).get(0).getHost());
+      Integer count = projectsPerHost.get(first);
+      projectsPerHost.put(first, count == null ? 1 : count + 1);
+    }
+    // The projects are spread over all of the servers.
+    assertEquals(4, projectsPerHost.size());
+  }
+
+  @Test
+  public void testFullServerLosesItsProjects() {
+    FakePool pool = new FakePool("a,b");
+    pool.statuses.put("a", new BuildServerPool.Status(true, 0, 2));
+    pool.statuses.put("b", new BuildServerPool.Status(true, 0, 2));
+    long projectId = 7;
+    List<BuildServerPool.Node> nodes = pool.select(projectId);
+    BuildServerPool.Node own = nodes.get(0);
+    BuildServerPool.Node other = nodes.get(1);
+
+    // One build leaves a free slot, so the project stays put.
+    pool.reportAccepted(own);
+    assertEquals(own, pool.select(projectId).get(0));
+
+    // A second fills the server.
+    pool.reportAccepted(own);
+    assertEquals(listOf(other.getHost(), own.getHost()), hosts(pool.select(projectId)));
+  }
+
+  @Test
+  public void testRejectedAndUnreachableServersGoLast() {
+    FakePool pool = new FakePool("a,b,c");
+    pool.statuses.put("a", new BuildServerPool.Status(true, 0, 2));
+    pool.statuses.put("b", new BuildServerPool.Status(true, 2, 2));
+    pool.statuses.put("c", new BuildServerPool.Status(true, 2, 2));
+    List<BuildServerPool.Node> nodes = pool.select(1);
+    BuildServerPool.Node a = nodes.get(0);
+    assertEquals("a", a.getHost());
+
+    pool.reportRejected(a);
+    assertEquals("a", hosts(pool.select(1)).get(2));
+
+    BuildServerPool.Node first = pool.select(1).get(0);
+    pool.reportUnreachable(first);
+    List<String> order = hosts(pool.select(1));
+    assertEquals(first.getHost(), order.get(2));
+    assertEquals("a", order.get(1));
+  }
+
+  @Test
+  public void testParseVars() {
+    BuildServerPool.Status status = BuildServerPool.parseVars("<html><body><tt>"
+        + "<b>num-processors</b> 8<br>"
+        + "<b>maximum-simultaneous-build-tasks-allowed</b> 4<br>"
+        + "<b>active-build-tasks</b> 3<br>"
+        + "<b>queued-build-tasks</b> 2<br>"
+        + "</tt></body></html>");
+    assertTrue(status.healthy);
+    assertEquals(5, status.tasks);
+    assertEquals(4, status.capacity);
+
+    status = BuildServerPool.parseVars("<b>num-processors</b> 8<br>"
+        + "<b>maximum-simultaneous-build-tasks-allowed</b> unlimited<br>"
+        + "<b>active-build-tasks</b> 1<br>");
+    assertEquals(1, status.tasks);
+    assertEquals(8, status.capacity);
+    assertNull(status.version);
+
+    status = BuildServerPool.parseVars("<b>buildserver-version</b> v1<br>"
+        + "<b>buildserver-git-fingerprint</b> 0123abcd<br>");
+    assertEquals("0123abcd", status.version);
+  }
+
+  private static List<String> hosts(List<BuildServerPool.Node> nodes) {
+    List<String> hosts = new ArrayList<String>();
+    for (BuildServerPool.Node node : nodes) {
+      hosts.add(node.getHost());
+    }
+    return hosts;
+  }
+
+  private static List<String> listOf(String... values) {
+    List<String> list = new ArrayList<String>();
+    for (String value : values) {
+      list.add(value);
+    }
+    return list;
+  }
+}
@@ -0,0 +1,71 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2026 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.server.storage;
+
+import java.util.Arrays;
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link FileContentCache}.
+ */
+public class FileContentCacheTest extends TestCase {
+
+  private static final byte[] CONTENT = {1, 2, 3, 4};
+
+  public void testHitAndMiss() {
+    FileContentCache cache = new FileContentCache(1024 * 1024, 1024);
+    assertNull(cache.get(1, "src/Screen1.bky", 100));
+    cache.put(1, "src/Screen1.bky", 100, CONTENT);
+    assertTrue(Arrays.equals(CONTENT, cache.get(1, "src/Screen1.bky", 100)));
+    assertNull(cache.get(2, "src/Screen1.bky", 100));
+    assertEquals(1, cache.getHits());
+    assertEquals(2, cache.getMisses());
+  }
+
+  public void testReturnsCopies() {
+    FileContentCache cache = new FileContentCache(1024 * 1024, 1024);
+    byte[] content = CONTENT.clone();
+    cache.put(1, "a", 100, content);
+    content[0] = 9;
+    cache.get(1, "a", 100)[1] = 9;
+    assertTrue(Arrays.equals(CONTENT, cache.get(1, "a", 100)));
+  }
+
+  public void testOtherVersionIsStale() {
+    FileContentCache cache = new FileContentCache(1024 * 1024, 1024);
+    cache.put(1, "a", 100, CONTENT);
+    assertNull(cache.get(1, "a", 101));
+    // The stale content is dropped.
+    assertNull(cache.get(1, "a", 100));
+    assertEquals(0, cache.getHits());
+  }
+
+  public void testInvalidate() {
+    FileContentCache cache = new FileContentCache(1024 * 1024, 1024);
+    cache.put(1, "a", 100, CONTENT);
+    cache.invalidate(1, "a");
+    assertNull(cache.get(1, "a", 100));
+  }
+
+  public void testSkipsUndatedAndLargeFiles() {
+    FileContentCache cache = new FileContentCache(1024 * 1024, 1024);
+    cache.put(1, "a", 0, CONTENT);
+    cache.put(1, "b", 100, new byte[1025]);
+    assertNull(cache.get(1, "a", 0));
+    assertNull(cache.get(1, "b", 100));
+  }
+
+  public void testEvictsWithinBudget() {
+    // Room for a few dozen files of 1000 bytes only
+    FileContentCache cache = new FileContentCache(40000, 1024);
+    for (int i = 0; i < 100; i++) {
+      cache.put(1, "file" + i, 100, new byte[1000]);
+    }
+    assertTrue(cache.getEvictions() >= 60);
+    assertNotNull(cache.get(1, "file99", 100));
+    assertNull(cache.get(1, "file0", 100));
+  }
+}
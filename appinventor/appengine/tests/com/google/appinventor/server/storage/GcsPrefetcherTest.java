@@ -0,0 +1,205 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2026 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.server.storage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.appengine.tools.cloudstorage.GcsFileMetadata;
+import com.google.appengine.tools.cloudstorage.GcsFileOptions;
+import com.google.appengine.tools.cloudstorage.GcsFilename;
+import com.google.appengine.tools.cloudstorage.GcsInputChannel;
+import com.google.appengine.tools.cloudstorage.GcsOutputChannel;
+import com.google.appengine.tools.cloudstorage.GcsService;
+import com.google.appengine.tools.cloudstorage.ListOptions;
+import com.google.appengine.tools.cloudstorage.ListResult;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+/**
+ * Tests for {@link GcsPrefetcher}, against a fake GCS.
+ */
+public class GcsPrefetcherTest {
+
+  private static final String BUCKET = "bucket";
+
+  private final Map<String, byte[]> objects = new ConcurrentHashMap<String, byte[]>();
+  // Object names and the number of metadata lookups that miss them before they are found
+  private final Map<String, AtomicInteger> misses = new ConcurrentHashMap<String, AtomicInteger>();
+
+  /*
+   * A GCS holding the objects of the test, which looks each of them up after a
+   * random delay.
+   */
+  private class FakeGcsService implements GcsService {
+    final AtomicInteger metadataLookups = new AtomicInteger(0);
+
+    @Override
+    public GcsFileMetadata getMetadata(GcsFilename file) throws IOException {
+      metadataLookups.incrementAndGet();
+      try {
+        Thread.sleep(ThreadLocalRandom.current().nextInt(5));
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+      AtomicInteger missesLeft = misses.get(file.getObjectName());
+      byte[] content = objects.get(file.getObjectName());
+      if (content == null || (missesLeft != null && missesLeft.getAndDecrement() > 0)) {
+        return null;
+      }
+      return new GcsFileMetadata(file, GcsFileOptions.getDefaultInstance(), "", content.length,
+          new Date());
+    }
+
+    @Override
+    public GcsInputChannel openReadChannel(GcsFilename file, long start) {
+      final ByteBuffer content = ByteBuffer.wrap(objects.get(file.getObjectName()));
+      return new GcsInputChannel() {
+        @Override
+        public int read(ByteBuffer dst) {
+          if (!content.hasRemaining()) {
+            return -1;
+          }
+          // Return a few bytes at a time, as a channel may.
+          int n = Math.min(dst.remaining(), Math.min(content.remaining(), 7));
+          for (int i = 0; i < n; i++) {
+            dst.put(content.get());
+          }
+          return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+          return true;
+        }
+
+        @Override
+        public void close() {
+        }
+      };
+    }
+
+    @Override
+    public GcsInputChannel openPrefetchingReadChannel(GcsFilename file, long start, int size) {
+      return openReadChannel(file, start);
+    }
+
+    @Override
+    public GcsOutputChannel createOrReplace(GcsFilename file, GcsFileOptions options) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void createOrReplace(GcsFilename file, GcsFileOptions options, ByteBuffer content) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean delete(GcsFilename file) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void compose(Iterable<String> sources, GcsFilename dest) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void copy(GcsFilename source, GcsFilename dest) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void update(GcsFilename file, GcsFileOptions options) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ListResult list(String bucket, ListOptions options) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  private final FakeGcsService gcsService = new FakeGcsService();
+
+  @Test
+  public void testFilesComeBackInOrder() throws IOException {
+    List<GcsFilename> files = new ArrayList<GcsFilename>();
+    for (int i = 0; i < 50; i++) {
+      objects.put("file" + i, ("content of file " + i).getBytes());
+      files.add(new GcsFilename(BUCKET, "file" + i));
+    }
+    try (GcsPrefetcher prefetcher = new GcsPrefetcher(gcsService, files, 8, 1024,
+        Executors.defaultThreadFactory())) {
+      for (int i = 0; i < 50; i++) {
+        GcsPrefetcher.Fetched fetched = prefetcher.next();
+        assertTrue(fetched.found);
+        assertArrayEquals(("content of file " + i).getBytes(), fetched.content);
+      }
+    }
+  }
+
+  @Test
+  public void testMissingAndLargeFiles() throws IOException {
+    objects.put("late", new byte[] {1, 2, 3});
+    misses.put("late", new AtomicInteger(2));
+    objects.put("large", new byte[2048]);
+    objects.put("empty", new byte[0]);
+    List<GcsFilename> files = new ArrayList<GcsFilename>();
+    for (String name : new String[] {"late", "missing", "large", "empty"}) {
+      files.add(new GcsFilename(BUCKET, name));
+    }
+    try (GcsPrefetcher prefetcher = new GcsPrefetcher(gcsService, files, 4, 1024,
+        Executors.defaultThreadFactory())) {
+      assertArrayEquals(new byte[] {1, 2, 3}, prefetcher.next().content);
+      GcsPrefetcher.Fetched missing = prefetcher.next();
+      assertFalse(missing.found);
+      GcsPrefetcher.Fetched large = prefetcher.next();
+      assertTrue(large.found);
+      assertNull(large.content);
+      assertEquals(0, prefetcher.next().content.length);
+      // Two for the late file and four for the missing one
+      assertEquals(6, prefetcher.getRetries());
+    }
+  }
+
+  @Test
+  public void testReadsInlineWithoutThreads() throws IOException {
+    objects.put("a", new byte[] {1});
+    objects.put("b", new byte[] {2});
+    List<GcsFilename> files = new ArrayList<GcsFilename>();
+    files.add(new GcsFilename(BUCKET, "a"));
+    files.add(new GcsFilename(BUCKET, "b"));
+    try (GcsPrefetcher prefetcher = new GcsPrefetcher(gcsService, files, 8, 1024, null)) {
+      assertEquals(0, gcsService.metadataLookups.get());
+      assertArrayEquals(new byte[] {1}, prefetcher.next().content);
+      assertArrayEquals(new byte[] {2}, prefetcher.next().content);
+    }
+  }
+
+  @Test
+  public void testBackoffGrowsWithJitter() {
+    for (int attempt = 1; attempt < 10; attempt++) {
+      long delay = GcsPrefetcher.backoffMillis(attempt);
+      long max = Math.min(1000, 50L << (attempt - 1));
+      assertTrue(delay <= max);
+      assertTrue(delay >= max / 2);
+    }
+  }
+}
@@ -7,6 +7,7 @@
 package com.google.appinventor.server.storage;
 
 import com.google.appengine.api.blobstore.BlobKey;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
 import com.google.appinventor.server.LocalDatastoreTestCase;
 import com.google.appinventor.server.storage.StoredData.ProjectData;
 import com.google.appinventor.shared.rpc.BlocksTruncatedException;
@@ -20,11 +21,17 @@ import com.google.appinventor.shared.rpc.user.User;
 import com.google.appinventor.shared.storage.StorageUtil;
 
 import com.google.common.base.Charsets;
+import com.googlecode.objectify.Objectify;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 
 import java.util.Arrays;
 import java.util.List;
@@ -300,6 +307,22 @@ public class ObjectifyStorageIoTest extends LocalDatastoreTestCase {
     oldModificationDate = modificationDate;
   }
 
+  public void testModificationTimeCoalesced() throws BlocksTruncatedException {
+    final String USER_ID = "1150";
+    final String USER_EMAIL = "newuser1150@test.com";
+    storage.getUser(USER_ID, USER_EMAIL);
+    long projectId = createProject(USER_ID, PROJECT_NAME, FAKE_PROJECT_TYPE, FORM_QUALIFIED_NAME);
+    long creationDate = storage.getProjectDateModified(USER_ID, projectId);
+    storage.addSourceFilesToProject(USER_ID, projectId, false, FILE_NAME1);
+    // Saves within a minute of the last stored date all return that date.
+    for (int i = 0; i < 5; i++) {
+      assertEquals(creationDate, storage.uploadFile(projectId, FILE_NAME1, USER_ID,
+          FILE_CONTENT1 + i, StorageUtil.DEFAULT_CHARSET));
+    }
+    assertEquals(creationDate, storage.deleteFile(USER_ID, projectId, FILE_NAME1));
+    assertEquals(creationDate, storage.getProjectDateModified(USER_ID, projectId));
+  }
+
   public void testAddRemoveFile() throws BlocksTruncatedException {
     final String USER_ID = "1200";
     final String USER_EMAIL = "newuser1200@test.com";
@@ -489,6 +512,28 @@ public class ObjectifyStorageIoTest extends LocalDatastoreTestCase {
     assertNull(result);
   }
 
+  public void testGetProjectSummaries() {
+    final String USER_ID = "1600";
+    final String USER_EMAIL = "newuser1600@test.com";
+    storage.getUser(USER_ID, USER_EMAIL);
+    assertTrue(storage.getProjectSummaries(USER_ID).isEmpty());
+    long projectId1 = createProject(USER_ID, PROJECT_NAME, FAKE_PROJECT_TYPE, FORM_QUALIFIED_NAME);
+    long projectId2 = createProject(USER_ID, "Project2", FAKE_PROJECT_TYPE, FORM_QUALIFIED_NAME);
+    List<UserProject> summaries = storage.getProjectSummaries(USER_ID);
+    assertEquals(2, summaries.size());
+    assertEquals(storage.getUserProjects(USER_ID, Arrays.asList(projectId1, projectId2)),
+        storage.getProjectSummaries(USER_ID));
+
+    // The cached summaries follow changes to the projects.
+    storage.updateProjectBuiltDate(USER_ID, projectId1, 12345L);
+    storage.deleteProject(USER_ID, projectId2);
+    summaries = storage.getProjectSummaries(USER_ID);
+    assertEquals(1, summaries.size());
+    assertEquals(projectId1, summaries.get(0).getProjectId());
+    assertEquals(PROJECT_NAME, summaries.get(0).getProjectName());
+    assertEquals(12345L, summaries.get(0).getDateBuilt());
+  }
+
   public void testWrongUserThrowsException() throws Exception {
     final String USER_ID = "1600";
     final String USER_EMAIL = "newuser1600@test.com";
@@ -570,6 +615,140 @@ public class ObjectifyStorageIoTest extends LocalDatastoreTestCase {
     sourcesFiles = storage.getProjectSourceFiles(USER_ID, projectId);
     assertFalse(sourcesFiles.contains(YAIL_FILE_NAME2));
   }
+
+  public void testRetainAndRestoreBuildOutput() throws BlocksTruncatedException, IOException {
+    final String USER_ID = "2000";
+    final String USER_EMAIL = "newuser2000@test.com";
+    final String APK_FILE = "build/Android/Project1.apk";
+    storage.getUser(USER_ID, USER_EMAIL);
+    long projectId = createProject(USER_ID, PROJECT_NAME, FAKE_PROJECT_TYPE, FORM_QUALIFIED_NAME);
+    storage.addSourceFilesToProject(USER_ID, projectId, false, SCM_FILE_NAME1);
+    storage.uploadFile(projectId, SCM_FILE_NAME1, USER_ID, FILE_CONTENT1, StorageUtil.DEFAULT_CHARSET);
+    storage.addSourceFilesToProject(USER_ID, projectId, false, BKY_FILE_NAME1);
+    storage.uploadFile(projectId, BKY_FILE_NAME1, USER_ID, FILE_CONTENT2, StorageUtil.DEFAULT_CHARSET);
+    storage.addSourceFilesToProject(USER_ID, projectId, false, YAIL_FILE_NAME1);
+    storage.uploadFile(projectId, YAIL_FILE_NAME1, USER_ID, FILE_CONTENT1, StorageUtil.DEFAULT_CHARSET);
+
+    BuildInput input = storage.loadBuildInput(USER_ID, projectId, false);
+    String hash = input.getFingerprint();
+    assertEquals(hash, storage.loadBuildInput(USER_ID, projectId, false).getFingerprint());
+    // The files listed for the fingerprint are the ones sent to a build server.
+    assertEquals(4, storage.writeBuildInputZip(input, new ByteArrayOutputStream()));
+    assertFalse(storage.restoreBuildOutput(USER_ID, projectId, "Android", hash));
+
+    storage.addOutputFilesToProject(USER_ID, projectId, APK_FILE);
+    storage.uploadRawFileForce(projectId, APK_FILE, USER_ID, APK_FILE_CONTENT);
+    storage.retainBuildOutput(USER_ID, projectId, "Android", hash);
+    storage.removeOutputFilesFromProject(USER_ID, projectId, APK_FILE);
+    assertFalse(storage.getProjectOutputFiles(USER_ID, projectId).contains(APK_FILE));
+
+    assertTrue(storage.restoreBuildOutput(USER_ID, projectId, "Android", hash));
+    assertTrue(storage.getProjectOutputFiles(USER_ID, projectId).contains(APK_FILE));
+    assertTrue(Arrays.equals(APK_FILE_CONTENT,
+        storage.downloadRawFile(USER_ID, projectId, APK_FILE)));
+
+    // A change to the sources is a different build.
+    storage.uploadFile(projectId, BKY_FILE_NAME1, USER_ID, FILE_CONTENT1, StorageUtil.DEFAULT_CHARSET);
+    assertFalse(hash.equals(storage.loadBuildInput(USER_ID, projectId, false).getFingerprint()));
+  }
+
+  public void testDeleteProjectDeletesRetainedBuildOutput() throws BlocksTruncatedException {
+    final String USER_ID = "2001";
+    final String USER_EMAIL = "newuser2001@test.com";
+    final String APK_FILE = "build/Android/Project1.apk";
+    final String HASH = "0123abcd";
+    storage.getUser(USER_ID, USER_EMAIL);
+    long projectId = createProject(USER_ID, PROJECT_NAME, FAKE_PROJECT_TYPE, FORM_QUALIFIED_NAME);
+    storage.addOutputFilesToProject(USER_ID, projectId, APK_FILE);
+    storage.uploadRawFileForce(projectId, APK_FILE, USER_ID, APK_FILE_CONTENT);
+    storage.retainBuildOutput(USER_ID, projectId, "Android", HASH);
+
+    storage.deleteProject(USER_ID, projectId);
+    long otherProjectId =
+        createProject(USER_ID, PROJECT_NAME, FAKE_PROJECT_TYPE, FORM_QUALIFIED_NAME);
+    assertFalse(storage.restoreBuildOutput(USER_ID, otherProjectId, "Android", HASH));
+  }
+
+  public void testProgressAfterResultIsDropped() {
+    final String USER_ID = "2002";
+    final long PROJECT_ID = 1;
+    storage.startBuildStatusLog(USER_ID, PROJECT_ID, "Android");
+    storage.appendBuildStatusEvent(USER_ID, PROJECT_ID, "Android", 50,
+        BuildStatusEvent.NOT_FINISHED);
+    assertNotNull(storage.appendBuildStatusEvent(USER_ID, PROJECT_ID, "Android", 100, 0));
+
+    // The progress request arrives after the result.
+    assertNull(storage.appendBuildStatusEvent(USER_ID, PROJECT_ID, "Android", 90,
+        BuildStatusEvent.NOT_FINISHED));
+    List<BuildStatusEvent> events =
+        storage.getBuildStatusEvents(USER_ID, PROJECT_ID, "Android", 0);
+    assertEquals(2, events.size());
+    assertTrue(events.get(1).isFinished());
+  }
+
+  public void testDownloadMissDoesNotOverwriteConcurrentUpload() throws Exception {
+    final String USER_ID = "2100";
+    final String USER_EMAIL = "newuser2100@test.com";
+    storage.getUser(USER_ID, USER_EMAIL);
+    final long projectId =
+        createProject(USER_ID, PROJECT_NAME, FAKE_PROJECT_TYPE, FORM_QUALIFIED_NAME);
+    storage.addSourceFilesToProject(USER_ID, projectId, false, FILE_NAME1);
+    storage.uploadRawFile(projectId, FILE_NAME1, USER_ID, true, RAW_FILE_CONTENT1);
+    MemcacheServiceFactory.getMemcacheService().clearAll();
+
+    // The download misses memcache and reads the old data, then the upload
+    // finishes before the download caches what it read.
+    ObjectifyStorageIo racingStorage = new ObjectifyStorageIo() {
+      @Override
+      void runJobWithRetries(final JobRetryHelper job, boolean useTransaction)
+          throws ObjectifyException {
+        super.runJobWithRetries(new JobRetryHelper() {
+          @Override
+          public void run(Objectify datastore) throws ObjectifyException, IOException {
+            job.run(uploadAfterFind(datastore));
+          }
+
+          @Override
+          public void onNonFatalError() {
+            job.onNonFatalError();
+          }
+
+          @Override
+          public void onIOException(IOException error) {
+            job.onIOException(error);
+          }
+        }, useTransaction);
+      }
+
+      // Returns a datastore that runs the upload after each lookup of an entity by key.
+      private Objectify uploadAfterFind(final Objectify datastore) {
+        return (Objectify) Proxy.newProxyInstance(Objectify.class.getClassLoader(),
+            new Class<?>[] { Objectify.class }, new InvocationHandler() {
+              @Override
+              public Object invoke(Object proxy, Method method, Object[] args)
+                  throws Throwable {
+                Object value;
+                try {
+                  value = method.invoke(datastore, args);
+                } catch (InvocationTargetException e) {
+                  throw e.getCause();
+                }
+                if (method.getName().equals("find") && args.length == 1) {
+                  storage.uploadRawFile(projectId, FILE_NAME1, USER_ID, true,
+                      RAW_FILE_CONTENT3);
+                }
+                return value;
+              }
+            });
+      }
+    };
+    assertTrue(Arrays.equals(RAW_FILE_CONTENT1,
+        racingStorage.downloadRawFile(USER_ID, projectId, FILE_NAME1)));
+
+    assertTrue(Arrays.equals(RAW_FILE_CONTENT3,
+        storage.downloadRawFile(USER_ID, projectId, FILE_NAME1)));
+  }
+
   /*
    * Fail on the Nth call to runJobWithRetries, where N is the value of the
    * failingRun argument to the constructor. Also allows counting
@@ -0,0 +1,74 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2026 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.shared.rpc.project;
+
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link TextPatch}.
+ */
+public class TextPatchTest extends TestCase {
+
+  private static String blocks(int count) {
+    StringBuilder sb = new StringBuilder("<xml xmlns=\"http://www.w3.org/1999/xhtml\">");
+    for (int i = 0; i < count; i++) {
+      sb.append("<block type=\"text\" id=\"b").append(i).append("\" x=\"")
+          .append(i * 17).append("\" y=\"").append(i * 31)
+          .append("\"><field name=\"TEXT\">hello ").append(i).append("</field></block>");
+    }
+    return sb.append("</xml>").toString();
+  }
+
+  public void testSmallEditMakesSmallPatch() throws Exception {
+    String base = blocks(200);
+    String result = base.replace("hello 100<", "goodbye 100<");
+    TextPatch patch = TextPatch.create(base, result);
+    assertEquals(result, patch.apply(base));
+    assertTrue(patch.getDeltaLength() < 100);
+    assertFalse(patch.isEmpty());
+  }
+
+  public void testScatteredAndMovedText() throws Exception {
+    String base = blocks(200);
+    String moved = base.substring(1000, 3000);
+    String result = base.substring(0, 1000) + base.substring(3000, 8000) + moved
+        + "<block type=\"new\"/>" + base.substring(8000).replace("x=\"", "x=\"1");
+    TextPatch patch = TextPatch.create(base, result);
+    assertEquals(result, patch.apply(base));
+    assertTrue(patch.getDeltaLength() < result.length() / 4);
+  }
+
+  public void testUnrelatedAndEmptyTexts() throws Exception {
+    Random random = new Random(42);
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      sb.append((char) ('a' + random.nextInt(26)));
+    }
+    String unrelated = sb.toString();
+    assertEquals(unrelated, TextPatch.create(blocks(10), unrelated).apply(blocks(10)));
+    assertEquals("", TextPatch.create(blocks(10), "").apply(blocks(10)));
+    assertEquals(blocks(10), TextPatch.create("", blocks(10)).apply(""));
+    assertTrue(TextPatch.create(blocks(10), blocks(10)).isEmpty());
+  }
+
+  public void testNonAsciiText() throws Exception {
+    String base = blocks(50).replace("hello", "\u4f60\u597d \u00e9t\u00e9");
+    String result = base.replace("\u00e9t\u00e9 7<", "hiver 7<");
+    assertEquals(result, TextPatch.create(base, result).apply(base));
+  }
+
+  public void testRefusesOtherBase() throws Exception {
+    String base = blocks(100);
+    TextPatch patch = TextPatch.create(base, base + "<!-- -->");
+    try {
+      patch.apply(blocks(101));
+      fail("Expected ChecksumedFileException");
+    } catch (ChecksumedFileException e) {
+      // expected
+    }
+  }
+}
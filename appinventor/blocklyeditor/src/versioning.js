@@ -1857,7 +1857,11 @@ Blockly.Versioning.AllUpgradeMaps =
 
     // Assets helper block was added.
     15: Blockly.Versioning.makeSetterUseHelper(
-        'Canvas', 'BackgroundImage', Blockly.Versioning.tryReplaceBlockWithAssets)
+        'Canvas', 'BackgroundImage', Blockly.Versioning.tryReplaceBlockWithAssets),
+
+    // FrameSync was added
+    // No blocks need to be modified to upgrade to version 16.
+    16: "noUpgrade"
 
   }, // End Canvas upgraders
 
@@ -3447,7 +3451,10 @@ Blockly.Versioning.AllUpgradeMaps =
     2: "noUpgrade",
 
     //Added blocks GetEntries
-    3: "noUpgrade"
+    3: "noUpgrade",
+
+    //Added Property: WriteInBackground and block StoreValues
+    4: "noUpgrade"
 
   }, // End TinyDB upgraders
 
@@ -0,0 +1,294 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2026 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.buildserver;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs builds on a pool of threads, queuing the builds that arrive while the maximum number of
+ * builds is already running.
+ *
+ * <p>Queued builds are started in round-robin order across users, so a user who submits many
+ * builds at once cannot delay everyone else's. A build that waits longer than the queue deadline
+ * is not started; its expiry handler runs instead so the requester can be told to try again. A
+ * build is rejected with a {@link RejectedExecutionException} only when the queue, or the user's
+ * share of it, is full.</p>
+ *
+ * <p>With a queue depth of 0 this behaves like {@link NonQueuingExecutor}: builds beyond the
+ * maximum are rejected right away.</p>
+ */
+final class BuildQueue {
+  private static final Logger LOG = Logger.getLogger(BuildQueue.class.getName());
+
+  private static final long SWEEP_INTERVAL_MILLIS = 1000;
+
+  /*
+   * A build waiting in the queue.
+   */
+  private static class Entry {
+    final String user;
+    final Runnable build;
+    final Runnable onExpired;
+    final long enqueuedAt = System.currentTimeMillis();
+
+    Entry(String user, Runnable build, Runnable onExpired) {
+      this.user = user;
+      this.build = build;
+      this.onExpired = onExpired;
+    }
+  }
+
+  // The maximum number of active tasks. 0 means unlimited.
+  private final int maxActiveTasks;
+  // The maximum number of queued tasks. 0 disables queuing.
+  private final int maxQueuedTasks;
+  // The maximum number of queued tasks of a single user. 0 means no limit besides maxQueuedTasks.
+  private final int maxQueuedTasksPerUser;
+  // How long a task may wait in the queue, in milliseconds.
+  private final long maxWaitMillis;
+
+  private final ExecutorService threads;
+  private final ScheduledExecutorService sweeper;
+
+  // Queued builds by user. Iteration order is the order in which users are served next.
+  private final LinkedHashMap<String, Deque<Entry>> queues = new LinkedHashMap<>();
+  private int queuedTaskCount = 0;
+  private int activeTaskCount = 0;
+
+  private final AtomicInteger peakActiveTaskCount = new AtomicInteger(0);
+  private final AtomicInteger peakQueuedTaskCount = new AtomicInteger(0);
+  private final AtomicInteger completedTaskCount = new AtomicInteger(0);
+  private final AtomicInteger dequeuedTaskCount = new AtomicInteger(0);
+  private final AtomicInteger rejectedTaskCount = new AtomicInteger(0);
+  private final AtomicInteger expiredTaskCount = new AtomicInteger(0);
+  private long totalWaitMillis = 0;
+  private long maxWaitMillisObserved = 0;
+
+  /**
+   * Creates a BuildQueue.
+   *
+   * @param maxActiveTasks the maximum number of builds running at once, or 0 for no limit
+   * @param maxQueuedTasks the maximum number of builds waiting to run, or 0 to disable queuing
+   * @param maxQueuedTasksPerUser the maximum number of waiting builds per user, or 0 for no limit
+   * @param maxWaitSeconds how long a build may wait before it expires
+   */
+  BuildQueue(int maxActiveTasks, int maxQueuedTasks, int maxQueuedTasksPerUser,
+      int maxWaitSeconds) {
+    this.maxActiveTasks = Math.max(0, maxActiveTasks);
+    this.maxQueuedTasks = Math.max(0, maxQueuedTasks);
+    this.maxQueuedTasksPerUser = Math.max(0, maxQueuedTasksPerUser);
+    this.maxWaitMillis = TimeUnit.SECONDS.toMillis(Math.max(1, maxWaitSeconds));
+    // Build threads are not daemons, as before, so that a running build keeps the server alive.
+    this.threads = Executors.newCachedThreadPool(namedThreads("build-", false));
+    this.sweeper = Executors.newSingleThreadScheduledExecutor(namedThreads("build-queue-", true));
+    if (this.maxActiveTasks > 0 && this.maxQueuedTasks > 0) {
+      sweeper.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          expireOverdue();
+        }
+      }, SWEEP_INTERVAL_MILLIS, SWEEP_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Runs a build now if there is capacity, otherwise queues it.
+   *
+   * @param user the user requesting the build, used to share the queue fairly
+   * @param build the build to run
+   * @param onExpired run instead of {@code build} if the build waits too long in the queue
+   * @throws RejectedExecutionException if the build can neither run nor be queued
+   */
+  void execute(String user, Runnable build, Runnable onExpired) {
+    String key = user == null ? "" : user;
+    synchronized (this) {
+      if (maxActiveTasks == 0 || (activeTaskCount < maxActiveTasks && queuedTaskCount == 0)) {
+        start(build);
+        return;
+      }
+      Deque<Entry> queue = queues.get(key);
+      int queuedForUser = queue == null ? 0 : queue.size();
+      if (queuedTaskCount >= maxQueuedTasks
+          || (maxQueuedTasksPerUser > 0 && queuedForUser >= maxQueuedTasksPerUser)) {
+        rejectedTaskCount.incrementAndGet();
+        throw new RejectedExecutionException();
+      }
+      if (queue == null) {
+        queue = new ArrayDeque<>();
+        queues.put(key, queue);
+      }
+      queue.addLast(new Entry(key, build, onExpired));
+      queuedTaskCount++;
+      final int queued = queuedTaskCount;
+      peakQueuedTaskCount.getAndUpdate(operand -> Math.max(queued, operand));
+    }
+  }
+
+  /**
+   * Stops the queue's threads once the running builds have finished. Queued builds that have not
+   * started are dropped.
+   */
+  void shutdown() {
+    sweeper.shutdownNow();
+    threads.shutdown();
+  }
+
+  // Must hold the lock
+  private void start(final Runnable build) {
+    activeTaskCount++;
+    final int active = activeTaskCount;
+    peakActiveTaskCount.getAndUpdate(operand -> Math.max(active, operand));
+    threads.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          build.run();
+        } finally {
+          completedTaskCount.incrementAndGet();
+          finished();
+        }
+      }
+    });
+  }
+
+  private void finished() {
+    synchronized (this) {
+      activeTaskCount--;
+      long now = System.currentTimeMillis();
+      while (activeTaskCount < maxActiveTasks && queuedTaskCount > 0 && !threads.isShutdown()) {
+        Entry entry = poll();
+        long waited = now - entry.enqueuedAt;
+        if (waited > maxWaitMillis) {
+          expire(entry);
+          continue;
+        }
+        dequeuedTaskCount.incrementAndGet();
+        totalWaitMillis += waited;
+        maxWaitMillisObserved = Math.max(maxWaitMillisObserved, waited);
+        start(entry.build);
+      }
+    }
+  }
+
+  // Must hold the lock. Takes the oldest build of the next user in round-robin order.
+  private Entry poll() {
+    Iterator<Map.Entry<String, Deque<Entry>>> it = queues.entrySet().iterator();
+    Map.Entry<String, Deque<Entry>> next = it.next();
+    Deque<Entry> queue = next.getValue();
+    Entry entry = queue.pollFirst();
+    it.remove();
+    if (!queue.isEmpty()) {
+      queues.put(next.getKey(), queue);  // The user goes to the back of the line
+    }
+    queuedTaskCount--;
+    return entry;
+  }
+
+  private synchronized void expireOverdue() {
+    long deadline = System.currentTimeMillis() - maxWaitMillis;
+    Iterator<Deque<Entry>> users = queues.values().iterator();
+    while (users.hasNext()) {
+      Deque<Entry> queue = users.next();
+      // Each user's builds are in arrival order, so only the oldest ones can be overdue.
+      while (!queue.isEmpty() && queue.peekFirst().enqueuedAt < deadline) {
+        expire(queue.pollFirst());
+        queuedTaskCount--;
+      }
+      if (queue.isEmpty()) {
+        users.remove();
+      }
+    }
+  }
+
+  // Must hold the lock
+  private void expire(final Entry entry) {
+    expiredTaskCount.incrementAndGet();
+    LOG.warning("Build for " + entry.user + " expired after waiting "
+        + (System.currentTimeMillis() - entry.enqueuedAt) + " ms in the queue");
+    if (entry.onExpired != null) {
+      try {
+        threads.execute(entry.onExpired);
+      } catch (RejectedExecutionException e) {
+        LOG.log(Level.WARNING, "Unable to run expiry handler", e);
+      }
+    }
+  }
+
+  public int getMaxActiveTasks() {
+    return maxActiveTasks;
+  }
+
+  public int getMaxQueuedTasks() {
+    return maxQueuedTasks;
+  }
+
+  public synchronized int getActiveTaskCount() {
+    return activeTaskCount;
+  }
+
+  public synchronized int getQueuedTaskCount() {
+    return queuedTaskCount;
+  }
+
+  public int getCompletedTaskCount() {
+    return completedTaskCount.get();
+  }
+
+  public int getPeakActiveTaskCount() {
+    return peakActiveTaskCount.get();
+  }
+
+  /**
+   * Adds the queue's gauges to the variables reported on /buildserver/vars.
+   *
+   * @param variables the map of variables being reported
+   */
+  public synchronized void reportVariables(Map<String, String> variables) {
+    long oldest = 0;
+    long now = System.currentTimeMillis();
+    for (Deque<Entry> queue : queues.values()) {
+      oldest = Math.max(oldest, now - queue.peekFirst().enqueuedAt);
+    }
+    int dequeued = dequeuedTaskCount.get();
+    variables.put("build-queue-depth-allowed", maxQueuedTasks + "");
+    variables.put("build-queue-wait-deadline-seconds",
+        TimeUnit.MILLISECONDS.toSeconds(maxWaitMillis) + "");
+    variables.put("queued-build-tasks", queuedTaskCount + "");
+    variables.put("queued-build-users", queues.size() + "");
+    variables.put("peak-queued-build-tasks", peakQueuedTaskCount.get() + "");
+    variables.put("oldest-queued-build-wait-ms", oldest + "");
+    variables.put("dequeued-build-tasks", dequeued + "");
+    variables.put("avg-build-queue-wait-ms", (dequeued == 0 ? 0 : totalWaitMillis / dequeued) + "");
+    variables.put("max-build-queue-wait-ms", maxWaitMillisObserved + "");
+    variables.put("rejected-build-tasks", rejectedTaskCount.get() + "");
+    variables.put("expired-build-tasks", expiredTaskCount.get() + "");
+  }
+
+  private static ThreadFactory namedThreads(final String prefix, final boolean daemon) {
+    final AtomicInteger count = new AtomicInteger(0);
+    return new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, prefix + count.incrementAndGet());
+        thread.setDaemon(daemon);
+        return thread;
+      }
+    };
+  }
+}
@@ -6,26 +6,34 @@
 
 package com.google.appinventor.buildserver;
 
+import com.google.appinventor.buildserver.stats.Histogram;
 import com.google.appinventor.buildserver.stats.SimpleStatReporter;
 import com.google.appinventor.buildserver.stats.StatCalculator;
 import com.google.appinventor.buildserver.stats.StatCalculator.Stats;
 import com.google.appinventor.buildserver.stats.StatReporter;
 import com.google.appinventor.buildserver.tasks.android.AndroidBuildFactory;
 import com.google.appinventor.buildserver.tasks.ios.IosBuildFactory;
+import com.google.appinventor.buildserver.util.CompileScheduler;
+import com.google.appinventor.buildserver.util.KawaCompilerPool;
+import com.google.appinventor.buildserver.util.KeyStoreGenerator;
+import com.google.appinventor.buildserver.util.PredexCache;
+import com.google.appinventor.buildserver.util.ScreenClassCache;
 import com.google.appinventor.common.version.GitBuildId;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
 import com.google.common.io.Files;
-import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.BufferedOutputStream;
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.lang.management.ManagementFactory;
@@ -41,8 +49,13 @@ import java.util.Date;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
@@ -81,14 +94,111 @@ public class BuildServer {
     // We create a ProgressReporter instance which is handed off to the
     // project builder and compiler. It is called to report the progress
     // of the build. The reporting is done by calling the callback URL
-    // and putting the status inside a "build.status" file. This isn't
-    // particularly efficient, but this is the version 0.9 implementation
+    // and putting the status inside a "build.status" file.
+    //
+    // Reports are sent by a shared pool of sender threads so that the
+    // build never waits on the network. Each reporter has at most one
+    // send pending; values reported while a send is in flight replace
+    // each other and only the latest one is sent next.
+    private static final int SENDER_THREADS = 4;
+    private static final ExecutorService SENDER = Executors.newFixedThreadPool(SENDER_THREADS,
+        new ThreadFactory() {
+          private final AtomicInteger count = new AtomicInteger(0);
+
+          @Override
+          public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "progress-sender-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+    // How long close() waits for a send in flight
+    private static final long CLOSE_TIMEOUT_MILLIS = 10000;
+
+    private static final AtomicInteger updatesReported = new AtomicInteger(0);
+    private static final AtomicInteger updatesSent = new AtomicInteger(0);
+    private static final AtomicInteger updatesCoalesced = new AtomicInteger(0);
+    private static final AtomicInteger sendFailures = new AtomicInteger(0);
+
     String callbackUrlStr;
+    private int latest = -1;
+    private int sent = -1;
+    private boolean sending = false;
+    private boolean closed = false;
+
     ProgressReporter(String callbackUrlStr) {
       this.callbackUrlStr = callbackUrlStr;
     }
 
     public void report(int progress) {
+      updatesReported.incrementAndGet();
+      synchronized (this) {
+        if (closed || progress == latest) {
+          return;
+        }
+        if (latest != sent) {
+          updatesCoalesced.incrementAndGet();  // The previous value was never sent
+        }
+        latest = progress;
+        if (sending) {
+          return;  // The sender picks up the new value when it is done
+        }
+        sending = true;
+      }
+      try {
+        SENDER.execute(new Runnable() {
+          @Override
+          public void run() {
+            drain();
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        synchronized (this) {
+          sending = false;
+          notifyAll();
+        }
+      }
+    }
+
+    /**
+     * Stops reporting progress. Values not yet sent are dropped, and a send in flight is given
+     * a chance to finish so that it does not arrive after the build output.
+     */
+    void close() {
+      long deadline = System.currentTimeMillis() + CLOSE_TIMEOUT_MILLIS;
+      synchronized (this) {
+        closed = true;
+        long remaining;
+        while (sending && (remaining = deadline - System.currentTimeMillis()) > 0) {
+          try {
+            wait(remaining);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+          }
+        }
+      }
+    }
+
+    private void drain() {
+      while (true) {
+        int progress;
+        synchronized (this) {
+          if (closed || latest == sent) {
+            sending = false;
+            notifyAll();
+            return;
+          }
+          progress = latest;
+        }
+        send(progress);
+        synchronized (this) {
+          sent = progress;
+        }
+      }
+    }
+
+    private void send(int progress) {
       try {
         ByteArrayOutputStream output = new ByteArrayOutputStream();
         ZipOutputStream zipoutput = new ZipOutputStream(output);
@@ -98,7 +208,7 @@ public class BuildServer {
         pout.flush();
         zipoutput.flush();
         zipoutput.close();
-        ByteArrayInputStream zipinput = new ByteArrayInputStream(output.toByteArray());
+        byte[] body = output.toByteArray();
         URL callbackUrl = new URL(callbackUrlStr);
         HttpURLConnection connection = (HttpURLConnection) callbackUrl.openConnection();
         connection.setDoOutput(true);
@@ -106,27 +216,38 @@ public class BuildServer {
         // Make sure we aren't misinterpreted as
         // form-url-encoded
         connection.addRequestProperty("Content-Type","application/zip; charset=utf-8");
+        connection.setFixedLengthStreamingMode(body.length);
         connection.setConnectTimeout(5000);
         connection.setReadTimeout(5000);
-        BufferedOutputStream bufferedOutputStream = new BufferedOutputStream(connection.getOutputStream());
-        try {
-          BufferedInputStream bufferedInputStream = new BufferedInputStream(zipinput);
-          try {
-            ByteStreams.copy(bufferedInputStream,bufferedOutputStream);
-            bufferedOutputStream.flush();
-          } finally {
-            bufferedInputStream.close();
+        try (OutputStream out = connection.getOutputStream()) {
+          out.write(body);
+        }
+        int responseCode = connection.getResponseCode();
+        // Reading the response to the end lets the connection be kept alive for the next report.
+        try (InputStream in = responseCode >= 400
+            ? connection.getErrorStream() : connection.getInputStream()) {
+          if (in != null) {
+            ByteStreams.copy(in, ByteStreams.nullOutputStream());
           }
-        } finally {
-          bufferedOutputStream.close();
         }
-        if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
-          LOG.severe("Bad Response Code! (sending status): "+ connection.getResponseCode());
+        if (responseCode != HttpURLConnection.HTTP_OK) {
+          sendFailures.incrementAndGet();
+          LOG.severe("Bad Response Code! (sending status): "+ responseCode);
+        } else {
+          updatesSent.incrementAndGet();
         }
       } catch (IOException e) {
+        sendFailures.incrementAndGet();
         LOG.severe("IOException during progress report!");
       }
     }
+
+    static void reportVariables(Map<String, String> variables) {
+      variables.put("progress-updates-reported", updatesReported.get() + "");
+      variables.put("progress-updates-sent", updatesSent.get() + "");
+      variables.put("progress-updates-coalesced", updatesCoalesced.get() + "");
+      variables.put("progress-update-failures", sendFailures.get() + "");
+    }
   }
 
 
@@ -147,6 +268,19 @@ public class BuildServer {
       usage = "Maximum number of builds that can run in parallel. O means unlimited.")
     int maxSimultaneousBuilds = 0;  // The default is unlimited.
 
+    @Option(name = "--buildQueueDepth",
+      usage = "Maximum number of builds waiting for one of the --maxSimultaneousBuilds slots. "
+          + "0 means builds are rejected when all slots are busy.")
+    int buildQueueDepth = 0;
+
+    @Option(name = "--maxQueuedBuildsPerUser",
+      usage = "Maximum number of queued builds for a single user. 0 means unlimited.")
+    int maxQueuedBuildsPerUser = 0;
+
+    @Option(name = "--buildQueueTimeoutSeconds",
+      usage = "Maximum time a build waits in the queue before it is failed, in seconds.")
+    int buildQueueTimeoutSeconds = 600;
+
     @Option(name = "--port",
       usage = "The port number to bind to on the local machine.")
     int port = 9990;
@@ -164,6 +298,22 @@ public class BuildServer {
             usage = "the directory to cache the pre-dexed libraries")
     String dexCacheDir = null;
 
+    @Option(name = "--dexCacheMaxMb",
+        usage = "Maximum size of the pre-dexed library cache, in MB. 0 means unlimited.")
+    long dexCacheMaxMb = 0;
+
+    @Option(name = "--screenCacheDir",
+        usage = "the directory to cache the classes compiled from unchanged screens")
+    String screenCacheDir = null;
+
+    @Option(name = "--screenCacheMaxMb",
+        usage = "Maximum size of the screen class cache, in MB. 0 means unlimited.")
+    long screenCacheMaxMb = 0;
+
+    @Option(name = "--serialTasks",
+        usage = "Run the tasks of each build one at a time instead of in parallel.")
+    boolean serialTasks = false;
+
     @Option(name = "--statreporter",
         usage = "the reporter to use for collecting stats")
     String statReporter = "com.google.appinventor.buildserver.stats.SimpleStatReporter";
@@ -172,6 +322,37 @@ public class BuildServer {
         usage = "Enables iOS builds for the buildserver")
     boolean ios = false;
 
+    @Option(name = "--kawaWorkers",
+        usage = "Number of warm Kawa compiler processes to keep. 0 starts a new process per build.")
+    int kawaWorkers = 0;
+
+    @Option(name = "--kawaWorkerMaxBuilds",
+        usage = "Number of builds after which a warm Kawa compiler process is restarted.")
+    int kawaWorkerMaxBuilds = 50;
+
+    @Option(name = "--maxChildProcesses",
+        usage = "Maximum number of Kawa and dex processes across all builds. 0 means computed from"
+            + " the processors and memory available.")
+    int maxChildProcesses = 0;
+
+    @Option(name = "--maxKawaProcesses",
+        usage = "Maximum number of simultaneous Kawa compilations. 0 means half the child processes.")
+    int maxKawaProcesses = 0;
+
+    @Option(name = "--maxD8Processes",
+        usage = "Maximum number of simultaneous d8 runs. 0 means half the child processes.")
+    int maxD8Processes = 0;
+
+    @Option(name = "--maxPredexProcesses",
+        usage = "Maximum number of simultaneous library pre-dex runs. 0 means half the child"
+            + " processes.")
+    int maxPredexProcesses = 0;
+
+    @Option(name = "--keyPairPoolSize",
+        usage = "Number of signing key pairs to generate ahead of time for projects without a"
+            + " keystore. 0 generates them when needed.")
+    int keyPairPoolSize = 0;
+
   }
 
   private static final CommandLineOptions commandLineOptions = new CommandLineOptions();
@@ -200,6 +381,16 @@ public class BuildServer {
   //The number of failed build requests for this server run
   private static final AtomicInteger failedBuildRequests = new AtomicInteger(0);
 
+  // Uploads of build results to the callback URL
+  private static final int CALLBACK_MAX_ATTEMPTS = 5;
+  private static final long CALLBACK_INITIAL_BACKOFF_MILLIS = 1000;
+  private static final long CALLBACK_MAX_BACKOFF_MILLIS = 30000;
+  private static final int CALLBACK_CHUNK_SIZE = 64 * 1024;
+  private static final AtomicInteger callbackAttempts = new AtomicInteger(0);
+  private static final AtomicInteger callbackRetries = new AtomicInteger(0);
+  private static final AtomicInteger callbackFailures = new AtomicInteger(0);
+  private static final AtomicLong callbackBytes = new AtomicLong(0);
+
   private static final String PASSWORD_HEADER_PREFIX = "Password ";
 
   // The reporter for gathering build stats.
@@ -212,7 +403,7 @@ public class BuildServer {
   // NOTE(lizlooney) - the buildExecutor must be created after the command line options are
   // processed in main(). If it is created here, the number of simultaneous builds will always be
   // the default value, even if the --maxSimultaneousBuilds option is on the command line.
-  private static NonQueuingExecutor buildExecutor;
+  private static BuildQueue buildExecutor;
 
   // The input zip file. It will be deleted in cleanUp.
   private File inputZip;
@@ -324,6 +515,10 @@ public class BuildServer {
     variables.put("rejected-async-build-requests", rejectedAsyncBuildRequests.get() + "");
     variables.put("successful-async-build-requests", successfulBuildRequests.get() + "");
     variables.put("failed-async-build-requests", failedBuildRequests.get() + "");
+    variables.put("build-output-upload-attempts", callbackAttempts.get() + "");
+    variables.put("build-output-upload-retries", callbackRetries.get() + "");
+    variables.put("build-output-upload-failures", callbackFailures.get() + "");
+    variables.put("build-output-upload-bytes", callbackBytes.get() + "");
 
     // Build tasks
     int max = buildExecutor.getMaxActiveTasks();
@@ -337,6 +532,36 @@ public class BuildServer {
     variables.put("maximum-simultaneous-build-tasks-occurred", maximumActiveBuildTasks + "");
     variables.put("active-build-tasks", buildExecutor.getActiveTaskCount() + "");
     variables.put("peak-active-build-tasks", buildExecutor.getPeakActiveTaskCount() + "");
+    buildExecutor.reportVariables(variables);
+
+    // Kawa compiler workers
+    KawaCompilerPool kawaPool = KawaCompilerPool.getInstance();
+    variables.put("kawa-workers-idle", kawaPool.getIdleWorkerCount() + "");
+    variables.put("kawa-workers-started", kawaPool.getWorkersStarted() + "");
+    variables.put("kawa-workers-retired", kawaPool.getWorkersRetired() + "");
+    variables.put("kawa-worker-compilations", kawaPool.getWorkerJobs() + "");
+    variables.put("kawa-fallback-compilations", kawaPool.getFallbackJobs() + "");
+
+    // Progress reports
+    ProgressReporter.reportVariables(variables);
+
+    // Keystores
+    KeyStoreGenerator.getInstance().reportVariables(variables);
+
+    // Child process scheduling
+    CompileScheduler.getInstance().reportVariables(variables);
+
+    // Pre-dexed libraries
+    if (commandLineOptions.dexCacheDir != null) {
+      PredexCache.forDirectory(new File(commandLineOptions.dexCacheDir))
+          .reportVariables(variables);
+    }
+
+    // Screen classes
+    ScreenClassCache screenCache = ScreenClassCache.getInstance();
+    if (screenCache != null) {
+      screenCache.reportVariables(variables);
+    }
 
     return mapToHtml(variables);
   }
@@ -352,10 +577,19 @@ public class BuildServer {
     return Response.ok(html.toString(), MediaType.TEXT_HTML_TYPE).build();
   }
 
+  /**
+   * Reports build timing statistics, and percentiles of the resources used by each task.
+   *
+   * @param format "json" for a machine-readable report, otherwise an HTML page
+   */
   @GET
   @Path("stats")
-  @Produces(MediaType.TEXT_HTML)
-  public Response stats() throws IOException {
+  @Produces({MediaType.TEXT_HTML, MediaType.APPLICATION_JSON})
+  public Response stats(@QueryParam("format") String format) throws IOException, JSONException {
+    if ("json".equals(format)) {
+      return Response.ok(statsToJson().toString(), MediaType.APPLICATION_JSON_TYPE).build();
+    }
+
     Map<String, String> variables = new LinkedHashMap<String, String>();
 
     variables.put("hostname", InetAddress.getLocalHost().getHostName());
@@ -372,11 +606,58 @@ public class BuildServer {
       processStats("failures.",
           calculator.computeStats(((SimpleStatReporter) statReporter).getFailureStats()),
           variables);
+      processHistograms(variables);
     }
 
     return mapToHtml(variables);
   }
 
+  private static final double[] PERCENTILES = { 50, 95, 99 };
+
+  private void processHistograms(Map<String, String> variables) {
+    Map<String, Map<String, Histogram>> histograms =
+        ((SimpleStatReporter) statReporter).getHistograms();
+    for (Map.Entry<String, Map<String, Histogram>> task : histograms.entrySet()) {
+      for (Map.Entry<String, Histogram> measurement : task.getValue().entrySet()) {
+        String prefix = "tasks." + task.getKey() + "." + measurement.getKey() + ".";
+        Histogram histogram = measurement.getValue();
+        variables.put(prefix + "count", histogram.getCount() + "");
+        for (double percentile : PERCENTILES) {
+          variables.put(prefix + "p" + (int) percentile,
+              histogram.getPercentile(percentile) + "");
+        }
+        variables.put(prefix + "max", histogram.getMax() + "");
+      }
+    }
+  }
+
+  private JSONObject statsToJson() throws IOException, JSONException {
+    JSONObject json = new JSONObject();
+    json.put("hostname", InetAddress.getLocalHost().getHostName());
+    JSONObject tasks = new JSONObject();
+    if (statReporter instanceof SimpleStatReporter) {
+      Map<String, Map<String, Histogram>> histograms =
+          ((SimpleStatReporter) statReporter).getHistograms();
+      for (Map.Entry<String, Map<String, Histogram>> task : histograms.entrySet()) {
+        JSONObject measurements = new JSONObject();
+        for (Map.Entry<String, Histogram> measurement : task.getValue().entrySet()) {
+          Histogram histogram = measurement.getValue();
+          JSONObject summary = new JSONObject();
+          summary.put("count", histogram.getCount());
+          summary.put("mean", histogram.getMean());
+          for (double percentile : PERCENTILES) {
+            summary.put("p" + (int) percentile, histogram.getPercentile(percentile));
+          }
+          summary.put("max", histogram.getMax());
+          measurements.put(measurement.getKey(), summary);
+        }
+        tasks.put(task.getKey(), measurements);
+      }
+    }
+    json.put("tasks", tasks);
+    return json;
+  }
+
   private void processStats(String prefix, Stats stats, Map<String, String> variables) {
     variables.put(prefix + "min", stats.getMinTime() + " ms");
     variables.put(prefix + "avg", stats.getAvgTime() + " ms");
@@ -651,35 +932,14 @@ public class BuildServer {
             try {
               LOG.info("START NEW BUILD " + count);
               checkMemory();
-              buildAndCreateZip(userName, inputZipFile, ext, new ProgressReporter(callbackUrlStr));
-              // Send zip back to the callbackUrl
-              LOG.info("CallbackURL: " + callbackUrlStr);
-              URL callbackUrl = new URL(callbackUrlStr);
-              HttpURLConnection connection = (HttpURLConnection) callbackUrl.openConnection();
-              connection.setDoOutput(true);
-              connection.setRequestMethod("POST");
-              // Make sure we aren't misinterpreted as
-              // form-url-encoded
-              connection.addRequestProperty("Content-Type","application/zip; charset=utf-8");
-              connection.setConnectTimeout(60000);
-              connection.setReadTimeout(60000);
-              BufferedOutputStream bufferedOutputStream = new BufferedOutputStream(connection.getOutputStream());
+              ProgressReporter progressReporter = new ProgressReporter(callbackUrlStr);
+              Result buildResult;
               try {
-                BufferedInputStream bufferedInputStream = new BufferedInputStream(
-                  new FileInputStream(outputZip));
-                try {
-                  ByteStreams.copy(bufferedInputStream,bufferedOutputStream);
-                  checkMemory();
-                  bufferedOutputStream.flush();
-                } finally {
-                  bufferedInputStream.close();
-                }
+                buildResult = buildAndCount(userName, inputZipFile, ext, progressReporter);
               } finally {
-                bufferedOutputStream.close();
-              }
-              if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {LOG.severe("Bad Response Code!: "+ connection.getResponseCode());
-                // TODO(user) Maybe do some retries
+                progressReporter.close();
               }
+              sendOutput(callbackUrlStr, buildResult);
             } catch (Exception e) {
               // TODO(user): Maybe send a failure callback
               e.printStackTrace();
@@ -691,11 +951,27 @@ public class BuildServer {
             }
           }
         };
+      Runnable expiredTask = new Runnable() {
+          @Override
+          public void run() {
+            // The build waited in the queue past its deadline. Tell the requester so they can
+            // try again instead of waiting for a build that will never happen.
+            rejectedAsyncBuildRequests.incrementAndGet();
+            try {
+              sendOutput(callbackUrlStr, Result.createFailingResult("",
+                  "The build server is currently at maximum capacity. Please try again later."));
+            } catch (Exception e) {
+              LOG.log(Level.WARNING, "Unable to report expired build to " + callbackUrlStr, e);
+            } finally {
+              cleanUp();
+            }
+          }
+        };
       try {
-        buildExecutor.execute(buildTask);
+        buildExecutor.execute(userName, buildTask, expiredTask);
       } catch (RejectedExecutionException e) {
         // This request was rejected because all threads in the build
-        // executor are busy.
+        // executor are busy and the queue is full.
         rejectedAsyncBuildRequests.incrementAndGet();
         cleanUp();
         // Here, we use SERVICE_UNAVAILABLE (response code 503), which
@@ -716,34 +992,157 @@ public class BuildServer {
 
   private void buildAndCreateZip(String userName, File inputZipFile, String ext,
       ProgressReporter reporter) throws IOException, JSONException {
-    Result buildResult = build(userName, inputZipFile, ext, reporter);
-    boolean buildSucceeded = buildResult.succeeded();
+    Result buildResult = buildAndCount(userName, inputZipFile, ext, reporter);
     outputZip = File.createTempFile(inputZipFile.getName(), ".zip");
     outputZip.deleteOnExit();  // In case build server is killed before cleanUp executes.
-    ZipOutputStream zipOutputStream =
-      new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(outputZip)));
-    if (buildSucceeded) {
+    try (OutputStream out = new BufferedOutputStream(new FileOutputStream(outputZip))) {
+      writeOutputZip(out, buildResult);
+    }
+    LOG.info("Output zip at " + outputZip.getAbsolutePath());
+  }
+
+  private Result buildAndCount(String userName, File inputZipFile, String ext,
+      ProgressReporter reporter) throws IOException, JSONException {
+    Result buildResult = build(userName, inputZipFile, ext, reporter);
+    if (buildResult.succeeded()) {
+      successfulBuildRequests.getAndIncrement();
+    } else {
+      LOG.severe("Build " + buildCount.get() + " Failed: " + buildResult.getResult() + " " + buildResult.getError());
+      failedBuildRequests.getAndIncrement();
+    }
+    return buildResult;
+  }
+
+  /*
+   * Writes the build outputs and a build.out entry describing the result as a zip. The output
+   * files are left in place so that the zip can be written again if sending it fails.
+   */
+  private void writeOutputZip(OutputStream out, Result buildResult)
+      throws IOException, JSONException {
+    ZipOutputStream zipOutputStream = new ZipOutputStream(out);
+    if (buildResult.succeeded()) {
       File[] files = outputDir.listFiles();
       if (files != null) {
         for (File file : files) {
           zipOutputStream.putNextEntry(new ZipEntry(file.getName()));
           Files.copy(file, zipOutputStream);
-          file.delete();        // Cleanup
         }
       }
-      successfulBuildRequests.getAndIncrement();
-    } else {
-      LOG.severe("Build " + buildCount.get() + " Failed: " + buildResult.getResult() + " " + buildResult.getError());
-      failedBuildRequests.getAndIncrement();
     }
     zipOutputStream.putNextEntry(new ZipEntry("build.out"));
     String buildOutputJson = genBuildOutput(buildResult);
     PrintStream zipPrintStream = new PrintStream(zipOutputStream);
     zipPrintStream.print(buildOutputJson);
     zipPrintStream.flush();
+    zipOutputStream.finish();
     zipOutputStream.flush();
-    zipOutputStream.close();
-    LOG.info("Output zip at " + outputZip.getAbsolutePath());
+  }
+
+  /*
+   * Sends the build result back to the callbackUrl. The zip is streamed straight into the
+   * request body, and the request is retried with exponential backoff if it fails or the server
+   * answers with a 5xx status.
+   */
+  private void sendOutput(String callbackUrlStr, final Result buildResult)
+      throws IOException, JSONException {
+    LOG.info("CallbackURL: " + callbackUrlStr);
+    final URL callbackUrl = new URL(callbackUrlStr);
+    sendWithRetries(new CallbackAttempt() {
+      @Override
+      public int send() throws IOException, JSONException {
+        return postOutputZip(callbackUrl, buildResult);
+      }
+    }, CALLBACK_MAX_ATTEMPTS, CALLBACK_INITIAL_BACKOFF_MILLIS, CALLBACK_MAX_BACKOFF_MILLIS);
+  }
+
+  /*
+   * One attempt at sending the build result to the callback URL.
+   */
+  @VisibleForTesting
+  interface CallbackAttempt {
+    /**
+     * Sends the build result once.
+     *
+     * @return the HTTP response code
+     */
+    int send() throws IOException, JSONException;
+  }
+
+  /**
+   * Makes up to {@code maxAttempts} attempts, sleeping between them with a backoff that starts
+   * at {@code initialBackoffMillis} and doubles up to {@code maxBackoffMillis}. I/O errors and
+   * 5xx responses are retried; any other response ends the loop.
+   *
+   * @return true if an attempt was answered with 200 OK
+   * @throws IOException if the last attempt failed with an I/O error
+   */
+  @VisibleForTesting
+  static boolean sendWithRetries(CallbackAttempt callback, int maxAttempts,
+      long initialBackoffMillis, long maxBackoffMillis) throws IOException, JSONException {
+    long backoff = initialBackoffMillis;
+    for (int attempt = 1; ; attempt++) {
+      callbackAttempts.incrementAndGet();
+      IOException failure = null;
+      try {
+        int responseCode = callback.send();
+        if (responseCode == HttpURLConnection.HTTP_OK) {
+          return true;
+        }
+        LOG.severe("Bad Response Code!: " + responseCode);
+        if (responseCode < 500) {
+          callbackFailures.incrementAndGet();
+          return false;  // The request itself is wrong; sending it again will not help
+        }
+      } catch (IOException e) {
+        failure = e;
+        LOG.log(Level.WARNING, "Unable to send build output (attempt " + attempt + ")", e);
+      }
+      if (attempt >= maxAttempts) {
+        callbackFailures.incrementAndGet();
+        if (failure != null) {
+          throw failure;
+        }
+        return false;
+      }
+      callbackRetries.incrementAndGet();
+      try {
+        Thread.sleep(backoff);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        callbackFailures.incrementAndGet();
+        return false;
+      }
+      backoff = Math.min(backoff * 2, maxBackoffMillis);
+    }
+  }
+
+  private int postOutputZip(URL callbackUrl, Result buildResult)
+      throws IOException, JSONException {
+    HttpURLConnection connection = (HttpURLConnection) callbackUrl.openConnection();
+    connection.setDoOutput(true);
+    connection.setRequestMethod("POST");
+    // Make sure we aren't misinterpreted as
+    // form-url-encoded
+    connection.addRequestProperty("Content-Type","application/zip; charset=utf-8");
+    // Stream the body rather than letting HttpURLConnection buffer all of it in memory.
+    connection.setChunkedStreamingMode(CALLBACK_CHUNK_SIZE);
+    connection.setConnectTimeout(60000);
+    connection.setReadTimeout(60000);
+    CountingOutputStream out = new CountingOutputStream(connection.getOutputStream());
+    try {
+      writeOutputZip(out, buildResult);
+    } finally {
+      out.close();
+      callbackBytes.addAndGet(out.getCount());
+    }
+    int responseCode = connection.getResponseCode();
+    try (InputStream in = responseCode >= 400
+        ? connection.getErrorStream() : connection.getInputStream()) {
+      if (in != null) {
+        ByteStreams.copy(in, ByteStreams.nullOutputStream());
+      }
+    }
+    return responseCode;
   }
 
   private String genBuildOutput(Result buildResult) throws JSONException {
@@ -794,6 +1193,12 @@ public class BuildServer {
       outputZip.delete();
     }
     if (outputDir != null) {
+      File[] files = outputDir.listFiles();
+      if (files != null) {
+        for (File file : files) {
+          file.delete();
+        }
+      }
       outputDir.delete();
     }
   }
@@ -826,8 +1231,21 @@ public class BuildServer {
         throw new IllegalArgumentException(new IOException("Unable to create dex cache dir "
             + commandLineOptions.dexCacheDir));
       }
+      PredexCache.setMaxBytes(commandLineOptions.dexCacheMaxMb * 1024 * 1024);
     }
 
+    if (commandLineOptions.screenCacheDir != null) {
+      File cacheDir = new File(commandLineOptions.screenCacheDir);
+      if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+        throw new IllegalArgumentException(new IOException("Unable to create screen cache dir "
+            + commandLineOptions.screenCacheDir));
+      }
+      ScreenClassCache.configure(cacheDir,
+          commandLineOptions.screenCacheMaxMb * 1024 * 1024);
+    }
+
+    Compiler.setSerialExecution(commandLineOptions.serialTasks);
+
     // Add a Shutdown Hook. In a container swarm, the swarm orchestrator
     // may choose to shutdown a container (running a buildserver) as part
     // of load balancing and other maintenance tasks. It will send a
@@ -846,8 +1264,10 @@ public class BuildServer {
             return;
           }
           while (true) {
-            int tasks = buildExecutor.getActiveTaskCount();
+            int tasks = buildExecutor.getActiveTaskCount() + buildExecutor.getQueuedTaskCount();
             if (tasks <= 0) {
+              buildExecutor.shutdown();
+              KawaCompilerPool.getInstance().shutdown();
               try {
                 Thread.sleep(10000); // One final wait so people can get
                                      // their barcode
@@ -870,7 +1290,15 @@ public class BuildServer {
       LOG.info("Enabling iOS builds");
       IosBuildFactory.install();
     }
-    buildExecutor = new NonQueuingExecutor(commandLineOptions.maxSimultaneousBuilds);
+    buildExecutor = new BuildQueue(commandLineOptions.maxSimultaneousBuilds,
+        commandLineOptions.buildQueueDepth, commandLineOptions.maxQueuedBuildsPerUser,
+        commandLineOptions.buildQueueTimeoutSeconds);
+    KeyStoreGenerator.getInstance().configure(commandLineOptions.keyPairPoolSize);
+    KawaCompilerPool.getInstance().configure(commandLineOptions.kawaWorkers,
+        commandLineOptions.kawaWorkerMaxBuilds);
+    CompileScheduler.getInstance().configure(commandLineOptions.maxChildProcesses,
+        commandLineOptions.maxKawaProcesses, commandLineOptions.maxD8Processes,
+        commandLineOptions.maxPredexProcesses, commandLineOptions.childProcessRamMb);
 
     int port = commandLineOptions.port;
     final ResourceConfig rc = new ResourceConfig(BuildServer.class);
@@ -883,6 +1311,10 @@ public class BuildServer {
       LOG.info("Maximum simultaneous builds = unlimited!");
     } else {
       LOG.info("Maximum simultaneous builds = " + commandLineOptions.maxSimultaneousBuilds);
+      if (commandLineOptions.buildQueueDepth > 0) {
+        LOG.info("Build queue depth = " + commandLineOptions.buildQueueDepth
+            + ", timeout = " + commandLineOptions.buildQueueTimeoutSeconds + " seconds");
+      }
     }
     LOG.info("Visit: http://" + hostAddress + ":" + port +
       "/buildserver/health for server health");
@@ -917,7 +1349,8 @@ public class BuildServer {
                                 // (unlimited == 0) and allow more then 10 max builds
         return ShutdownState.UP;
       }
-      int active = buildExecutor.getActiveTaskCount();
+      // Queued builds count as load, so that a busy server stays drained until its queue empties.
+      int active = buildExecutor.getActiveTaskCount() + buildExecutor.getQueuedTaskCount();
       if (draining) {
         if (active < max/3) {
           draining = false;
@@ -9,12 +9,24 @@ package com.google.appinventor.buildserver;
 import com.google.appinventor.buildserver.context.CompilerContext;
 import com.google.appinventor.buildserver.context.Paths;
 import com.google.appinventor.buildserver.interfaces.BuildType;
+import com.google.appinventor.buildserver.interfaces.DependsOn;
 import com.google.appinventor.buildserver.interfaces.Task;
+import com.google.appinventor.buildserver.stats.TaskMetrics;
+import com.google.common.annotations.VisibleForTesting;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -27,13 +39,26 @@ import java.util.logging.Logger;
  * style pattern, where receives build information, and then
  * {@link Task} can be added.</p>
  *
+ * <p>Tasks annotated with {@link DependsOn} run in parallel with any tasks they do not depend
+ * on; tasks without the annotation run after everything added before them. Progress and stage
+ * reports are made per task as before. {@link #setSerialExecution(boolean)} restores strictly
+ * sequential execution in the order the tasks were added.</p>
+ *
  * @see CompilerContext
  *
  * @author diego@barreiro.xyz (Diego Barreiro)
  */
 public class Compiler<P extends Paths, T extends CompilerContext<P>> implements Callable<Boolean> {
   private static final Logger LOG = Logger.getLogger(Compiler.class.getName());
+
+  // Upper bound on the number of tasks of one build running at once. Child processes started by
+  // the tasks are further limited by the CompileScheduler.
+  private static final int MAX_PARALLEL_TASKS = 4;
+
+  private static volatile boolean serialExecution = false;
+
   private final List<Class<? extends Task<? super T>>> tasks;
+  private final AtomicInteger completedTasks = new AtomicInteger(0);
   private T context;
   private String ext = BuildType.APK_EXTENSION;
 
@@ -102,6 +127,16 @@ public class Compiler<P extends Paths, T extends CompilerContext<P>> implements
     return this;
   }
 
+  /**
+   * Sets whether tasks run one at a time in the order they were added, ignoring
+   * {@link DependsOn} declarations. Parallel execution is the default.
+   *
+   * @param serial true to run tasks serially
+   */
+  public static void setSerialExecution(boolean serial) {
+    serialExecution = serial;
+  }
+
   // "Main" method that returns either true or false, depending
   // on result.
   @Override
@@ -118,87 +153,225 @@ public class Compiler<P extends Paths, T extends CompilerContext<P>> implements
       return true;
     }
 
+    if (serialExecution || numTasks == 1) {
+      for (int i = 0; i < numTasks; i++) {
+        if (!runTask(i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    return runGraph(computeDependencies(tasks));
+  }
+
+  /*
+   * Runs the tasks on a per-build thread pool, starting each one as soon as the tasks it depends
+   * on have succeeded. After a failure no new tasks are started, but the ones already running are
+   * allowed to finish before returning.
+   */
+  private boolean runGraph(List<List<Integer>> dependencies) {
+    final int numTasks = tasks.size();
+    final int[] pending = new int[numTasks];
+    final List<List<Integer>> dependents = new ArrayList<>();
     for (int i = 0; i < numTasks; i++) {
-      // We accept Classes, but not initialized ones.
-      Class<? extends Task<?>> task = this.tasks.get(i);
-      String taskName = task.getSimpleName();
-
-      // We try to initialize a Task instance.
-      Object taskObject;
-      try {
-        taskObject = task.newInstance();
-      } catch (IllegalAccessException | InstantiationException e) {
-        LOG.log(Level.SEVERE, "Could not create new task " + taskName, e);
-        context.getReporter().error("Could not create new task " + taskName);
-        return false;
+      dependents.add(new ArrayList<Integer>());
+    }
+    for (int i = 0; i < numTasks; i++) {
+      pending[i] = dependencies.get(i).size();
+      for (int dependency : dependencies.get(i)) {
+        dependents.get(dependency).add(i);
       }
+    }
 
-      // Task's will have an annotation to make sure they only run in
-      // the specified build type. If no annotation present, we throw
-      // a warning.
-      if (task.isAnnotationPresent(BuildType.class)) {
-        BuildType buildType = task.getAnnotation(BuildType.class);
-        switch (ext) {
-          case BuildType.IPA_EXTENSION:
-            if (!buildType.ipa()) {
-              context.getReporter().error("Task " + taskName + " does not support builds on IPAs!");
-              return false;
-            }
-            break;
-          case BuildType.ASC_EXTENSION:
-            if (!buildType.asc()) {
-              context.getReporter().error("Task " + taskName + " does not support builds on ASCs!");
-              return false;
-            }
-            break;
-          case BuildType.AAB_EXTENSION:
-            if (!buildType.aab()) {
-              context.getReporter().error("Task " + taskName + " does not support builds on AABs!");
-              return false;
-            }
-            break;
-          default:
-          case BuildType.APK_EXTENSION:
-            if (!buildType.apk()) {
-              context.getReporter().error("Task " + taskName + " does not support builds on APKs!");
-              return false;
-            }
-            break;
+    final AtomicInteger threadCount = new AtomicInteger(0);
+    ExecutorService executor = Executors.newFixedThreadPool(
+        Math.min(numTasks, MAX_PARALLEL_TASKS), new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "compiler-task-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+    CompletionService<Integer> completion = new ExecutorCompletionService<>(executor);
+    final boolean[] succeeded = new boolean[numTasks];
+    int running = 0;
+    int finished = 0;
+    boolean failed = false;
+    try {
+      for (int i = 0; i < numTasks; i++) {
+        if (pending[i] == 0) {
+          submitTask(completion, i, succeeded);
+          running++;
+        }
+      }
+      while (running > 0) {
+        int index = completion.take().get();
+        running--;
+        finished++;
+        if (!succeeded[index]) {
+          failed = true;
+        }
+        if (failed) {
+          continue;
+        }
+        for (int dependent : dependents.get(index)) {
+          if (--pending[dependent] == 0) {
+            submitTask(completion, dependent, succeeded);
+            running++;
+          }
         }
-      } else {
-        context.getReporter().warn("Task " + taskName + " does not contain build type targets!");
       }
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+      return false;
+    } catch (ExecutionException e) {
+      // runTask reports its own failures, so this is unexpected
+      LOG.log(Level.SEVERE, "Error running tasks", e.getCause());
+      failed = true;
+    } finally {
+      executor.shutdown();
+    }
+    return !failed && finished == numTasks;
+  }
 
-      // Get the current time to know the time needed to execute it.
-      context.getReporter().taskStart(taskName);
-      context.getStatReporter().nextStage(this, task.getSimpleName());
-      long start = System.currentTimeMillis();
-
-      // And then invoke the execute(ExecutorContext) method to run the Task.
-      TaskResult result;
-      try {
-        Method execute = task.getMethod("execute", CompilerContext.class);
-        result = (TaskResult) execute.invoke(taskObject, context);
-      } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
-        context.getReporter().taskError(-1);
-        LOG.log(Level.SEVERE, "Error running task " + task, e);
-        return false;
+  private void submitTask(CompletionService<Integer> completion, final int index,
+      final boolean[] succeeded) {
+    completion.submit(new Callable<Integer>() {
+      @Override
+      public Integer call() {
+        // Written before the future completes, so visible to the thread taking the result
+        succeeded[index] = runTask(index);
+        return index;
       }
-      double endTime = (System.currentTimeMillis() - start) / 1000.0;
-
-      // Make sure result is success, else we'll throw an error and don't run
-      // more tasks.
-      if (result == null || !result.isSuccess()) {
-        context.getReporter().error(result == null || result.getError() == null
-            ? "Unknown exception" : result.getError().getMessage(), true);
-        context.getReporter().taskError(endTime);
-        return false;
+    });
+  }
+
+  /*
+   * Computes the indices of the tasks each task waits for, following the rules described in
+   * DependsOn. Dependencies always refer to earlier tasks, so the graph has no cycles and the
+   * order in which tasks were added is a valid serial schedule.
+   */
+  @VisibleForTesting
+  static List<List<Integer>> computeDependencies(List<? extends Class<?>> tasks) {
+    List<List<Integer>> result = new ArrayList<>();
+    Map<Class<?>, Integer> added = new HashMap<>();
+    int barrier = -1;
+    for (int i = 0; i < tasks.size(); i++) {
+      Class<?> task = tasks.get(i);
+      List<Integer> dependencies = new ArrayList<>();
+      DependsOn dependsOn = task.getAnnotation(DependsOn.class);
+      if (dependsOn == null) {
+        for (int j = 0; j < i; j++) {
+          dependencies.add(j);
+        }
+        barrier = i;
+      } else {
+        if (barrier >= 0) {
+          dependencies.add(barrier);
+        }
+        for (Class<?> dependency : dependsOn.value()) {
+          Integer index = added.get(dependency);
+          if (index != null && index > barrier) {  // the barrier covers earlier tasks
+            dependencies.add(index);
+          }
+        }
+      }
+      added.put(task, i);
+      result.add(dependencies);
+    }
+    return result;
+  }
+
+  /*
+   * Runs the task at the given index, reporting its progress. Returns true if it succeeded.
+   */
+  private boolean runTask(int index) {
+    // We accept Classes, but not initialized ones.
+    Class<? extends Task<?>> task = this.tasks.get(index);
+    String taskName = task.getSimpleName();
+
+    // We try to initialize a Task instance.
+    Object taskObject;
+    try {
+      taskObject = task.newInstance();
+    } catch (IllegalAccessException | InstantiationException e) {
+      LOG.log(Level.SEVERE, "Could not create new task " + taskName, e);
+      context.getReporter().error("Could not create new task " + taskName);
+      return false;
+    }
+
+    // Task's will have an annotation to make sure they only run in
+    // the specified build type. If no annotation present, we throw
+    // a warning.
+    if (task.isAnnotationPresent(BuildType.class)) {
+      BuildType buildType = task.getAnnotation(BuildType.class);
+      switch (ext) {
+        case BuildType.IPA_EXTENSION:
+          if (!buildType.ipa()) {
+            context.getReporter().error("Task " + taskName + " does not support builds on IPAs!");
+            return false;
+          }
+          break;
+        case BuildType.ASC_EXTENSION:
+          if (!buildType.asc()) {
+            context.getReporter().error("Task " + taskName + " does not support builds on ASCs!");
+            return false;
+          }
+          break;
+        case BuildType.AAB_EXTENSION:
+          if (!buildType.aab()) {
+            context.getReporter().error("Task " + taskName + " does not support builds on AABs!");
+            return false;
+          }
+          break;
+        default:
+        case BuildType.APK_EXTENSION:
+          if (!buildType.apk()) {
+            context.getReporter().error("Task " + taskName + " does not support builds on APKs!");
+            return false;
+          }
+          break;
       }
+    } else {
+      context.getReporter().warn("Task " + taskName + " does not contain build type targets!");
+    }
+
+    // Get the current time to know the time needed to execute it.
+    context.getReporter().taskStart(taskName);
+    context.getStatReporter().nextStage(this, taskName);
+    long start = System.currentTimeMillis();
 
-      // Update progress depending on the number of steps.
-      context.getReporter().setProgress(((i + 1) * 100) / numTasks);
-      context.getReporter().taskSuccess(endTime);
+    // And then invoke the execute(ExecutorContext) method to run the Task.
+    TaskResult result;
+    TaskMetrics metrics = TaskMetrics.begin();
+    try {
+      Method execute = task.getMethod("execute", CompilerContext.class);
+      result = (TaskResult) execute.invoke(taskObject, context);
+    } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+      TaskMetrics.end(metrics);
+      context.getStatReporter().finishStage(this, taskName, metrics);
+      context.getReporter().taskError(-1);
+      LOG.log(Level.SEVERE, "Error running task " + task, e);
+      return false;
     }
+    TaskMetrics.end(metrics);
+    context.getStatReporter().finishStage(this, taskName, metrics);
+    double endTime = (System.currentTimeMillis() - start) / 1000.0;
+
+    // Make sure result is success, else we'll throw an error and don't run
+    // more tasks.
+    if (result == null || !result.isSuccess()) {
+      context.getReporter().error(result == null || result.getError() == null
+          ? "Unknown exception" : result.getError().getMessage(), true);
+      context.getReporter().taskError(endTime);
+      return false;
+    }
+
+    // Update progress depending on the number of steps.
+    context.getReporter().setProgress((completedTasks.incrementAndGet() * 100) / tasks.size());
+    context.getReporter().taskSuccess(endTime);
     return true;
   }
 
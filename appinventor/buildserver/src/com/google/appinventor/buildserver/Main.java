@@ -51,6 +51,10 @@ public final class Main {
         usage = "the directory to cache the pre-dexed libraries")
     String dexCacheDir = null;
 
+    @Option(name = "--serialTasks",
+        usage = "Run the build tasks one at a time instead of in parallel.")
+    boolean serialTasks = false;
+
     @Option(name = "--includeDangerousPermissions",
         usage = "Add extra features not allowed in the Google Play store.")
     boolean includeDangerousPermissions = false;
@@ -105,6 +109,7 @@ public final class Main {
       }
     }
 
+    Compiler.setSerialExecution(commandLineOptions.serialTasks);
     AndroidBuildFactory.install();
     // TODO(ewpatton): Install iOS build factory once published
 
@@ -23,6 +23,7 @@ import com.google.appinventor.buildserver.interfaces.BuildType;
 import com.google.appinventor.buildserver.stats.StatReporter;
 import com.google.appinventor.buildserver.tasks.common.BuildFactory;
 import com.google.appinventor.buildserver.util.Execution;
+import com.google.appinventor.buildserver.util.KeyStoreGenerator;
 
 import com.google.appinventor.buildserver.util.ProjectUtils;
 import com.google.appinventor.common.utils.StringUtils;
@@ -394,8 +395,21 @@ public final class ProjectBuilder {
 
   static String createKeyStore(String userName, File projectRoot, String keystoreFileName)
       throws IOException {
+    Preconditions.checkNotNull(userName);
     File keyStoreFile = new File(projectRoot.getPath(), keystoreFileName);
+    try {
+      KeyStoreGenerator.getInstance().generate(userName, keyStoreFile);
+      if (keyStoreFile.length() > 0) {
+        return keyStoreFile.getAbsolutePath();
+      }
+    } catch (IOException e) {
+      LOG.log(Level.WARNING, "Unable to create keystore in-process, falling back to keytool", e);
+      keyStoreFile.delete();
+    }
+    return runKeytool(userName, keyStoreFile);
+  }
 
+  private static String runKeytool(String userName, File keyStoreFile) {
     /* Note: must expire after October 22, 2033, to be in the Android
      * marketplace.  Android docs recommend "10000" as the expiration # of
      * days.
@@ -17,7 +17,8 @@ public class Reporter {
   private final ByteArrayOutputStream userBuffer;
   private final PrintStream system;
   private final PrintStream user;
-  private String task;
+  // The task running on each thread, since independent tasks of a build may run concurrently
+  private final ThreadLocal<String> task = new ThreadLocal<>();
 
   private static class ConsoleColors {
     static final String RESET = "\u001B[0m";
@@ -60,6 +61,7 @@ public class Reporter {
 
   private String task(String colorCode) {
     boolean color = colorCode != null && !colorCode.equals("");
+    String task = this.task.get();
 
     if (task != null && !task.equals("")) {
       return (color ? colorCode : "") + "[" + (color ? ConsoleColors.PURPLE : "") + task
@@ -160,7 +162,7 @@ public class Reporter {
    * @param name the name of the task
    */
   public void taskStart(String name) {
-    this.task = name;
+    this.task.set(name);
     System.out.println(this.task(ConsoleColors.BLUE) + "Starting Task" + ConsoleColors.RESET);
     this.system.println(this.task(null) + "Starting Task");
   }
@@ -174,7 +176,7 @@ public class Reporter {
     System.out.println(this.task(ConsoleColors.GREEN) + "Task succeeded in " + ConsoleColors.PURPLE
         + seconds + ConsoleColors.GREEN + " seconds" + ConsoleColors.RESET);
     this.system.println(this.task(null) + "Task succeeded in " + seconds + " seconds");
-    this.task = null;
+    this.task.remove();
   }
 
   /**
@@ -183,15 +185,16 @@ public class Reporter {
    * @param seconds the time in seconds the task ran before failing
    */
   public void taskError(double seconds) {
-    System.out.print(this.task(ConsoleColors.RED) + "Task errored");
-    this.system.print(this.task(null) + "Task errored");
+    // Each line is printed in one call so that it is not interleaved with other tasks' output
+    String console = this.task(ConsoleColors.RED) + "Task errored";
+    String system = this.task(null) + "Task errored";
     if (seconds > 0) {
-      System.out.print(" in " + ConsoleColors.PURPLE + seconds + ConsoleColors.RED + " seconds");
-      this.system.print(" in " + seconds + " seconds");
+      console += " in " + ConsoleColors.PURPLE + seconds + ConsoleColors.RED + " seconds";
+      system += " in " + seconds + " seconds";
     }
-    System.out.print(ConsoleColors.RESET + "\n");
-    this.system.print("\n");
-    this.task = null;
+    System.out.println(console + ConsoleColors.RESET);
+    this.system.println(system);
+    this.task.remove();
   }
 
 
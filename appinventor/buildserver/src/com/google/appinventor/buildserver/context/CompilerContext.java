@@ -14,10 +14,10 @@ import com.google.appinventor.common.utils.StringUtils;
 import java.io.File;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -201,7 +201,7 @@ public class CompilerContext<P extends Paths> {
       context.resources = new Resources();
       context.componentInfo = new ComponentInfo();
 
-      context.extTypePathCache = new HashMap<>();
+      context.extTypePathCache = new ConcurrentHashMap<>();
 
       System.out.println(this);
 
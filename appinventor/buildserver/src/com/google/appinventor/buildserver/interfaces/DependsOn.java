@@ -0,0 +1,30 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2026 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.buildserver.interfaces;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares the tasks whose outputs the annotated task uses, allowing the
+ * {@link com.google.appinventor.buildserver.Compiler} to run it in parallel with unrelated tasks.
+ *
+ * <p>A task without this annotation is a barrier: it starts only after every task added before it
+ * has finished, and every task added after it waits for it. An annotated task waits for the
+ * listed tasks that were added to the compiler before it, plus the closest preceding barrier.
+ * Listed tasks that are not part of the build (for example, {@code RunAapt} in an App Bundle
+ * build) are ignored.</p>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface DependsOn {
+  /**
+   * The tasks that must complete before the annotated task runs.
+   */
+  Class<? extends Task<?>>[] value() default {};
+}
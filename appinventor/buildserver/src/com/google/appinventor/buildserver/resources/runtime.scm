@@ -1058,6 +1058,7 @@
 (define-alias MultiThreadUtil <com.google.appinventor.components.runtime.util.MultiThreadUtil>)
 (define-alias Matcher <java.util.regex.Matcher>)
 (define-alias ContinuationUtil <com.google.appinventor.components.runtime.util.ContinuationUtil>)
+(define-alias MethodDispatcher <com.google.appinventor.components.runtime.util.MethodDispatcher>)
 (define-alias CsvUtil <com.google.appinventor.components.runtime.util.CsvUtil>)
 (define-alias PermissionException <com.google.appinventor.components.runtime.errors.PermissionException>)
 (define-alias StopBlocksExecution <com.google.appinventor.components.runtime.errors.StopBlocksExecution>)
@@ -1130,16 +1131,18 @@
 ;;; Be sure to check any components whose methods are type 'any' to make sure they can handle the
 ;;; values they will receive.
 
+;;; The component methods are called through MethodDispatcher rather than with (apply invoke ...),
+;;; which looks the method up again on every call.  MethodDispatcher looks up the method for a
+;;; component class, method name and number of arguments once, and leaves the calls it cannot
+;;; make to invoke.
+
 (define (call-component-method component-name method-name arglist typelist)
   (let ((coerced-args (coerce-args method-name arglist typelist))
         (component (lookup-in-current-form-environment component-name)))
     (let ((result
            (if (all-coercible? coerced-args)
                (try-catch
-                (apply invoke
-                       `(,component
-                         ,method-name
-                         ,@coerced-args))
+                (MethodDispatcher:invoke component method-name coerced-args)
                 (exception PermissionException
                            (*:dispatchPermissionDeniedEvent (SimpleForm:getActiveForm) component method-name exception)))
                (generate-runtime-type-error method-name arglist))))
@@ -1159,11 +1162,7 @@
                         Object:class)))
     (if (all-coercible? coerced-args)
         (try-catch
-         (apply invoke
-                `(,component
-                  ,method-name
-                  ,@coerced-args
-                  ,continuation))
+         (MethodDispatcher:invoke component method-name `(,@coerced-args ,continuation))
          (exception PermissionException
            (*:dispatchPermissionDeniedEvent (SimpleForm:getActiveForm) component method-name exception)))
       (generate-runtime-type-error method-name arglist))))
@@ -1201,10 +1200,7 @@
                                      (list (get-display-representation possible-component)))
         (let ((result
                (if (all-coercible? coerced-args)
-                   (apply invoke
-                          `(,component-value
-                            ,method-name
-                            ,@coerced-args))
+                   (MethodDispatcher:invoke component-value method-name coerced-args)
                    (generate-runtime-type-error method-name arglist))))
           ;; TODO(markf): this should probably be generalized but for now this is OK, I think
           (sanitize-return-value component-value method-name result)))))
@@ -1222,7 +1218,7 @@
                         Object:class)))
     (if (all-coercible? coerced-args)
         (try-catch
-         (apply invoke `(,component-value ,method-name ,@coerced-args ,continuation))
+         (MethodDispatcher:invoke component-value method-name `(,@coerced-args ,continuation))
          (exception PermissionException
            (*:dispatchPermissionDeniedEvent (SimpleForm:getActiveForm) component method-name exception)))
       (generate-runtime-type-error method-name arglist))))
@@ -1502,22 +1498,24 @@
           (string-append "Wrong number of arguments for" (get-display-representation procedure-name))))
         (else (map coerce-arg arglist typelist))))
 
+;;; The types are symbols, so they are compared with eq? rather than equal?.
+;;; This is called for each argument of each call, so the common types come first.
 (define (coerce-arg arg type)
   (let ((arg (sanitize-atomic arg)))
     (cond
-     ((equal? type 'number) (coerce-to-number arg))
-     ((equal? type 'text) (coerce-to-text arg))
-     ((equal? type 'boolean) (coerce-to-boolean arg))
-     ((equal? type 'list) (coerce-to-yail-list arg))
-     ((equal? type 'list-of-number) (coerce-to-number-list arg))
-     ((equal? type 'InstantInTime) (coerce-to-instant arg))
-     ((equal? type 'component) (coerce-to-component arg))
-     ((equal? type 'pair) (coerce-to-pair arg))
-     ((equal? type 'key) (coerce-to-key arg))
-     ((equal? type 'dictionary) (coerce-to-dictionary arg))
-     ((equal? type 'matrix) (coerce-to-matrix arg))
-     ((equal? type 'double-array) (coerce-to-double-array arg))
-     ((equal? type 'any) arg)
+     ((eq? type 'number) (coerce-to-number arg))
+     ((eq? type 'any) arg)
+     ((eq? type 'text) (coerce-to-text arg))
+     ((eq? type 'boolean) (coerce-to-boolean arg))
+     ((eq? type 'list) (coerce-to-yail-list arg))
+     ((eq? type 'list-of-number) (coerce-to-number-list arg))
+     ((eq? type 'InstantInTime) (coerce-to-instant arg))
+     ((eq? type 'component) (coerce-to-component arg))
+     ((eq? type 'pair) (coerce-to-pair arg))
+     ((eq? type 'key) (coerce-to-key arg))
+     ((eq? type 'dictionary) (coerce-to-dictionary arg))
+     ((eq? type 'matrix) (coerce-to-matrix arg))
+     ((eq? type 'double-array) (coerce-to-double-array arg))
      ((enum-type? type) (coerce-to-enum arg type))
      (else (coerce-to-component-of-type arg type)))))
 
@@ -2563,8 +2561,12 @@ list, use the make-yail-list constructor with no arguments.
 
 
 ;; Implements the Blocks length operation
+;; A YailList keeps an index of its items, so its length, and the item at
+;; a position, are found without walking the list.
 (define (yail-list-length yail-list)
-  (length (yail-list-contents yail-list)))
+  (if (instance? yail-list YailList)
+      (*:size (as YailList yail-list))
+      (length (yail-list-contents yail-list))))
 
 ;; These are removed, to simplify the API to lists
 ;; ;; Implements the Blocks first operation
@@ -2609,7 +2611,9 @@ list, use the make-yail-list constructor with no arguments.
                  len
                  (get-display-representation yail-list))
          "Select list item: List index too large")
-    (list-ref (yail-list-contents yail-list) (- index 1)))))
+    (if (instance? yail-list YailList)
+        (*:getObject (as YailList yail-list) (- index 1))
+        (list-ref (yail-list-contents yail-list) (- index 1))))))
 
 
 ;; Implements the Blocks set list item operation
@@ -2628,7 +2632,9 @@ list, use the make-yail-list constructor with no arguments.
                  len
                  (get-display-representation yail-list))
          "List index too large")))
-  (set-car! (list-tail (yail-list-contents yail-list) (- index 1)) value))
+  (if (instance? yail-list YailList)
+      (*:setObject (as YailList yail-list) (- index 1) value)
+      (set-car! (list-tail (yail-list-contents yail-list) (- index 1)) value)))
 
 
 
@@ -2659,8 +2665,7 @@ list, use the make-yail-list constructor with no arguments.
                    len
                    (get-display-representation yail-list))
            "List index too large"))
-      (let ((pair-pointing-to-deletion (list-tail yail-list (- index2 1))))
-        (set-cdr! pair-pointing-to-deletion (cddr pair-pointing-to-deletion))))))
+      (*:removeObject (as YailList yail-list) (- index2 1)))))
 
 
 ;; Implements the Blocks insert list item operation
@@ -2689,11 +2694,7 @@ list, use the make-yail-list constructor with no arguments.
                    (get-display-representation yail-list)
                    len+1)
            "List index too large"))
-      (let ((contents (yail-list-contents yail-list)))
-        (if (= index2 1)
-            (set-yail-list-contents! yail-list (cons item contents))
-            (let ((at-item (list-tail contents (- index2 2))))
-              (set-cdr! at-item (cons item (cdr at-item)))))))))
+      (*:insertObject (as YailList yail-list) (- index2 1) item))))
 
 ;; Extends list A by appending the elements of list B to it
 ;; Modifies list A
@@ -2703,21 +2704,14 @@ list, use the make-yail-list constructor with no arguments.
   ;; between the augmented list and the source of the added elements.
   ;; But like Python, we do a shallow copy, so that substructure is
   ;; shared.
-  (define (list-copy l)
-    (if (null? l)
-    '()
-    (cons (car l) (list-copy (cdr l)))))
-  ;; We have to operate on the yail-list itself, not the contents, because
-  ;; the contents might be empty
-  (set-cdr! (list-tail yail-list-A (length (yail-list-contents yail-list-A)))
-        (list-copy (yail-list-contents yail-list-B))))
+  (*:addAllObjects (as YailList yail-list-A) (as YailList yail-list-B)))
 
 
 ;; Extend list A by appending the items to it
 ;; Modifies list A
 ;; Implements blocks add to list operation
 (define (yail-list-add-to-list! yail-list . items)
-  (yail-list-append! yail-list (apply make-yail-list items)))
+  (for-each (lambda (item) (*:addObject (as YailList yail-list) item)) items))
 
 ;;;TODO(halabelson): BUG!  We need to recognize that "1" is
 ;;; a member of (1 2 3)
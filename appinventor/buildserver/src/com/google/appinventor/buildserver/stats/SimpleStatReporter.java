@@ -6,24 +6,32 @@
 package com.google.appinventor.buildserver.stats;
 
 import com.google.appinventor.buildserver.Compiler;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Logger;
 
 /**
  * SimpleStatReporter stores build performance measurements in memory. It saves the last
  * {@link #MAX_STATS} entries (currently 1000), evicting the oldest entries first.
  *
+ * <p>The resources used by each task are also recorded, for the whole life of the server, in a
+ * {@link Histogram} per task and measurement, from which percentiles can be read. The overall
+ * build times are recorded under the task name {@link #BUILD}.</p>
+ *
  * @author Evan W. Patton (ewpatton@mit.edu)
  */
 public class SimpleStatReporter implements StatReporter {
 
   private static final int MAX_STATS = 1000;
+  public static final String BUILD = "build";
   private static final Logger LOG = Logger.getLogger(SimpleStatReporter.class.getCanonicalName());
 
   /**
@@ -33,9 +41,10 @@ public class SimpleStatReporter implements StatReporter {
   public static class BuildStats {
     private final long start = System.currentTimeMillis();
     private final Map<String, Long> stages = new LinkedHashMap<>();
+    private final Map<String, Long> running = new HashMap<>();
+    private final Map<String, Map<String, Long>> taskMetrics = new LinkedHashMap<>();
     private long end;
     private long duration;
-    private long last = start;
 
     private BuildStats() {
       // Not instantiable outside this class
@@ -53,17 +62,28 @@ public class SimpleStatReporter implements StatReporter {
       return duration;
     }
 
-    public Map<String, Long> getStages() {
-      return Collections.unmodifiableMap(stages);
+    public synchronized Map<String, Long> getStages() {
+      return Collections.unmodifiableMap(new LinkedHashMap<>(stages));
+    }
+
+    /**
+     * Get the resources used by each task of the build, as reported by {@link TaskMetrics}.
+     *
+     * @return the measurements of each task, by task name
+     */
+    public synchronized Map<String, Map<String, Long>> getTaskMetrics() {
+      return Collections.unmodifiableMap(new LinkedHashMap<>(taskMetrics));
     }
   }
 
-  private final Map<Compiler, BuildStats> activeBuilds = new HashMap<>();
-  private final Map<Compiler, String> currentStages = new HashMap<>();
+  private final ConcurrentMap<Compiler, BuildStats> activeBuilds = new ConcurrentHashMap<>();
+
+  private final Deque<BuildStats> successfulBuilds = new ArrayDeque<>();
+  private final Deque<BuildStats> failedBuilds = new ArrayDeque<>();
+  private final Deque<BuildStats> orderedBuilds = new ArrayDeque<>();
 
-  private final Deque<BuildStats> successfulBuilds = new LinkedList<>();
-  private final Deque<BuildStats> failedBuilds = new LinkedList<>();
-  private final Deque<BuildStats> orderedBuilds = new LinkedList<>();
+  private final ConcurrentMap<String, ConcurrentMap<String, Histogram>> histograms =
+      new ConcurrentHashMap<>();
 
   @Override
   public void startBuild(Compiler compiler) {
@@ -72,61 +92,110 @@ public class SimpleStatReporter implements StatReporter {
 
   @Override
   public void nextStage(Compiler compiler, String newStage) {
-    BuildStats stats;
-    String previousStage;
-    synchronized (this) {
-      stats = activeBuilds.get(compiler);
-      previousStage = currentStages.get(compiler);
+    BuildStats stats = activeBuilds.get(compiler);
+    if (stats == null) {
+      LOG.warning("Got compiler with uninitialized stats object");
+      return;
+    }
+    synchronized (stats) {
+      stats.running.put(newStage, System.currentTimeMillis());
     }
+  }
+
+  @Override
+  public void finishStage(Compiler compiler, String stage) {
+    BuildStats stats = activeBuilds.get(compiler);
     if (stats == null) {
       LOG.warning("Got compiler with uninitialized stats object");
       return;
     }
-    if (previousStage != null) {
-      stats.stages.put(previousStage, System.currentTimeMillis() - stats.last);
+    synchronized (stats) {
+      Long started = stats.running.remove(stage);
+      if (started != null) {
+        stats.stages.put(stage, System.currentTimeMillis() - started);
+      }
     }
-    currentStages.put(compiler, newStage);
-    stats.last = System.currentTimeMillis();
   }
 
   @Override
-  public void stopBuild(Compiler compiler, boolean success) {
-    BuildStats stats;
-    String previousStage;
-    synchronized (this) {
-      stats = activeBuilds.remove(compiler);
-      previousStage = currentStages.remove(compiler);
+  public void finishStage(Compiler compiler, String stage, TaskMetrics metrics) {
+    finishStage(compiler, stage);
+    Map<String, Long> values = metrics.toMap();
+    for (Map.Entry<String, Long> value : values.entrySet()) {
+      histogram(stage, value.getKey()).record(value.getValue());
+    }
+    BuildStats stats = activeBuilds.get(compiler);
+    if (stats != null) {
+      synchronized (stats) {
+        stats.taskMetrics.put(stage, values);
+      }
     }
+  }
+
+  @Override
+  public void stopBuild(Compiler compiler, boolean success) {
+    BuildStats stats = activeBuilds.remove(compiler);
     if (stats == null) {
       LOG.warning("Got compiler with uninitialized stats object");
       return;
     }
-    stats.end = System.currentTimeMillis();
-    stats.duration = stats.end - stats.start;
-    if (previousStage != null) {
-      stats.stages.put(previousStage, stats.end - stats.last);
+    synchronized (stats) {
+      stats.end = System.currentTimeMillis();
+      stats.duration = stats.end - stats.start;
+      // Stages still running, e.g. when the build timed out, end with the build
+      for (Map.Entry<String, Long> stage : stats.running.entrySet()) {
+        stats.stages.put(stage.getKey(), stats.end - stage.getValue());
+      }
+      stats.running.clear();
     }
+    histogram(BUILD, TaskMetrics.WALL_MILLIS).record(stats.duration);
     queueAndExpire(stats, success ? successfulBuilds : failedBuilds);
     queueAndExpire(stats, orderedBuilds);
   }
 
   public Collection<BuildStats> getSuccessStats() {
-    return Collections.unmodifiableCollection(successfulBuilds);
+    return snapshot(successfulBuilds);
   }
 
   public Collection<BuildStats> getFailureStats() {
-    return Collections.unmodifiableCollection(failedBuilds);
+    return snapshot(failedBuilds);
   }
 
   public Collection<BuildStats> getOrderedStats() {
-    return Collections.unmodifiableCollection(orderedBuilds);
+    return snapshot(orderedBuilds);
+  }
+
+  /**
+   * Get the histograms of the resources used by each task since the server started.
+   *
+   * @return the histograms of each measurement, by task name and then measurement name
+   */
+  public Map<String, Map<String, Histogram>> getHistograms() {
+    Map<String, Map<String, Histogram>> result = new LinkedHashMap<>();
+    for (Map.Entry<String, ConcurrentMap<String, Histogram>> task : histograms.entrySet()) {
+      result.put(task.getKey(), Collections.unmodifiableMap(task.getValue()));
+    }
+    return Collections.unmodifiableMap(result);
+  }
+
+  private Histogram histogram(String task, String measurement) {
+    ConcurrentMap<String, Histogram> taskHistograms =
+        histograms.computeIfAbsent(task, k -> new ConcurrentHashMap<>());
+    return taskHistograms.computeIfAbsent(measurement, k -> new Histogram());
+  }
+
+  @SuppressWarnings("SynchronizationOnLocalVariableOrMethodParameter")
+  private static Collection<BuildStats> snapshot(final Deque<BuildStats> source) {
+    synchronized (source) {
+      return Collections.unmodifiableCollection(new ArrayList<>(source));
+    }
   }
 
   @SuppressWarnings("SynchronizationOnLocalVariableOrMethodParameter")
   private void queueAndExpire(BuildStats stats, final Deque<BuildStats> target) {
     synchronized (target) {
       if (target.size() == MAX_STATS) {
-        target.pollFirst();
+        target.pollLast();  // The oldest entry
       }
       target.push(stats);
     }
@@ -29,6 +29,30 @@ public interface StatReporter {
    */
   void nextStage(Compiler compiler, String stage);
 
+  /**
+   * Indicate to the StatReporter that a stage entered with {@link #nextStage} has finished.
+   * Stages of the same build may overlap when the compiler runs independent tasks in parallel.
+   * The default implementation does nothing.
+   *
+   * @param compiler the compilation process in progress
+   * @param stage the stage that finished
+   */
+  default void finishStage(Compiler compiler, String stage) {
+  }
+
+  /**
+   * Indicate to the StatReporter that a stage has finished, along with the resources it used.
+   * The default implementation ignores the metrics and calls {@link #finishStage(Compiler,
+   * String)}.
+   *
+   * @param compiler the compilation process in progress
+   * @param stage the stage that finished
+   * @param metrics the resources used by the stage
+   */
+  default void finishStage(Compiler compiler, String stage, TaskMetrics metrics) {
+    finishStage(compiler, stage);
+  }
+
   /**
    * Indicate to the StatReporter that a build has finished and whether it was successful.
    *
@@ -0,0 +1,140 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2026 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.buildserver.stats;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TaskMetrics accumulates the resources used by one run of a build task: the CPU time, peak
+ * resident memory and I/O of the child processes it starts, its cache hits and misses, and the
+ * time it waited for permission to start child processes.
+ *
+ * <p>The {@link com.google.appinventor.buildserver.Compiler} makes a TaskMetrics current on the
+ * thread running a task, and the utilities the task calls record into it through the static
+ * {@code record} methods, which do nothing when no task is running on the calling thread.</p>
+ */
+public class TaskMetrics {
+  public static final String WALL_MILLIS = "wall-ms";
+  public static final String CHILD_CPU_MILLIS = "child-cpu-ms";
+  public static final String CHILD_PEAK_RSS_KB = "child-peak-rss-kb";
+  public static final String CHILD_BYTES_READ = "child-bytes-read";
+  public static final String CHILD_BYTES_WRITTEN = "child-bytes-written";
+  public static final String CHILD_PROCESSES = "child-processes";
+  public static final String CACHE_HITS = "cache-hits";
+  public static final String CACHE_MISSES = "cache-misses";
+  public static final String QUEUE_WAIT_MILLIS = "queue-wait-ms";
+
+  private static final ThreadLocal<TaskMetrics> CURRENT = new ThreadLocal<>();
+
+  private final long start = System.currentTimeMillis();
+  private volatile long wallMillis = -1;
+  private final AtomicLong childCpuMillis = new AtomicLong(0);
+  private final AtomicLong childPeakRssKb = new AtomicLong(0);
+  private final AtomicLong childBytesRead = new AtomicLong(0);
+  private final AtomicLong childBytesWritten = new AtomicLong(0);
+  private final AtomicLong childProcesses = new AtomicLong(0);
+  private final AtomicLong cacheHits = new AtomicLong(0);
+  private final AtomicLong cacheMisses = new AtomicLong(0);
+  private final AtomicLong queueWaitMillis = new AtomicLong(0);
+
+  /**
+   * Starts measuring a task on the calling thread.
+   *
+   * @return the metrics of the task
+   */
+  public static TaskMetrics begin() {
+    TaskMetrics metrics = new TaskMetrics();
+    CURRENT.set(metrics);
+    return metrics;
+  }
+
+  /**
+   * Stops measuring the task running on the calling thread.
+   *
+   * @param metrics the metrics returned by {@link #begin()}
+   */
+  public static void end(TaskMetrics metrics) {
+    metrics.wallMillis = System.currentTimeMillis() - metrics.start;
+    if (CURRENT.get() == metrics) {
+      CURRENT.remove();
+    }
+  }
+
+  /**
+   * Returns the metrics of the task running on the calling thread, if any.
+   *
+   * @return the current metrics, or null
+   */
+  public static TaskMetrics current() {
+    return CURRENT.get();
+  }
+
+  /**
+   * Records the resources used by a child process of the current task.
+   *
+   * @param cpuMillis user and system CPU time
+   * @param peakRssKb peak resident set size
+   * @param bytesRead bytes read from storage
+   * @param bytesWritten bytes written to storage
+   */
+  public static void recordChildProcess(long cpuMillis, long peakRssKb, long bytesRead,
+      long bytesWritten) {
+    TaskMetrics metrics = CURRENT.get();
+    if (metrics != null) {
+      metrics.childProcesses.incrementAndGet();
+      metrics.childCpuMillis.addAndGet(cpuMillis);
+      metrics.childPeakRssKb.getAndAccumulate(peakRssKb, Math::max);
+      metrics.childBytesRead.addAndGet(bytesRead);
+      metrics.childBytesWritten.addAndGet(bytesWritten);
+    }
+  }
+
+  /**
+   * Records a cache lookup made by the current task.
+   *
+   * @param hit true if the lookup was a hit
+   */
+  public static void recordCacheLookup(boolean hit) {
+    TaskMetrics metrics = CURRENT.get();
+    if (metrics != null) {
+      (hit ? metrics.cacheHits : metrics.cacheMisses).incrementAndGet();
+    }
+  }
+
+  /**
+   * Records time the current task spent waiting in a queue.
+   *
+   * @param millis the time waited
+   */
+  public static void recordQueueWait(long millis) {
+    TaskMetrics metrics = CURRENT.get();
+    if (metrics != null) {
+      metrics.queueWaitMillis.addAndGet(millis);
+    }
+  }
+
+  /**
+   * Returns the measurements by name, in a stable order.
+   *
+   * @return the measurements
+   */
+  public Map<String, Long> toMap() {
+    Map<String, Long> values = new LinkedHashMap<>();
+    values.put(WALL_MILLIS,
+        wallMillis >= 0 ? wallMillis : System.currentTimeMillis() - start);
+    values.put(CHILD_PROCESSES, childProcesses.get());
+    values.put(CHILD_CPU_MILLIS, childCpuMillis.get());
+    values.put(CHILD_PEAK_RSS_KB, childPeakRssKb.get());
+    values.put(CHILD_BYTES_READ, childBytesRead.get());
+    values.put(CHILD_BYTES_WRITTEN, childBytesWritten.get());
+    values.put(CACHE_HITS, cacheHits.get());
+    values.put(CACHE_MISSES, cacheMisses.get());
+    values.put(QUEUE_WAIT_MILLIS, queueWaitMillis.get());
+    return values;
+  }
+}
@@ -6,6 +6,7 @@
 package com.google.appinventor.buildserver.tasks.android;
 
 import com.google.appinventor.buildserver.interfaces.BuildType;
+import com.google.appinventor.buildserver.interfaces.DependsOn;
 import com.google.appinventor.buildserver.TaskResult;
 import com.google.appinventor.buildserver.YoungAndroidConstants;
 import com.google.appinventor.buildserver.context.AndroidCompilerContext;
@@ -40,6 +41,7 @@ import static com.google.appinventor.common.constants.YoungAndroidStructureConst
  */
 
 @BuildType(apk = true, aab = true)
+@DependsOn
 public class AttachAarLibs implements AndroidTask {
   @Override
   public TaskResult execute(AndroidCompilerContext context) {
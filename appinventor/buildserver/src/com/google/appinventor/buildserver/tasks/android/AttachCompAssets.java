@@ -11,6 +11,7 @@ import com.google.appinventor.buildserver.TaskResult;
 import com.google.appinventor.buildserver.context.AndroidCompilerContext;
 import com.google.appinventor.buildserver.interfaces.AndroidTask;
 import com.google.appinventor.buildserver.interfaces.BuildType;
+import com.google.appinventor.buildserver.interfaces.DependsOn;
 import com.google.appinventor.buildserver.util.ExecutorUtils;
 
 import com.google.common.io.Files;
@@ -24,6 +25,7 @@ import java.io.IOException;
  */
 
 @BuildType(apk = true, aab = true)
+@DependsOn
 public class AttachCompAssets implements AndroidTask {
 
   @Override
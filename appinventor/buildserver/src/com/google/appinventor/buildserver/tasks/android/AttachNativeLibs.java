@@ -11,6 +11,7 @@ import static com.google.appinventor.components.common.ComponentDescriptorConsta
 import static com.google.appinventor.components.common.ComponentDescriptorConstants.X86_64_SUFFIX;
 
 import com.google.appinventor.buildserver.interfaces.BuildType;
+import com.google.appinventor.buildserver.interfaces.DependsOn;
 import com.google.appinventor.buildserver.TaskResult;
 import com.google.appinventor.buildserver.YoungAndroidConstants;
 import com.google.appinventor.buildserver.context.AndroidCompilerContext;
@@ -29,6 +30,7 @@ import java.io.IOException;
  */
 
 @BuildType(apk = true, aab = true)
+@DependsOn
 public class AttachNativeLibs implements AndroidTask {
   @Override
   public TaskResult execute(AndroidCompilerContext context) {
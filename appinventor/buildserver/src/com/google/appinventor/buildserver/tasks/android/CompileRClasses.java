@@ -0,0 +1,46 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021-2026 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.buildserver.tasks.android;
+
+import com.google.appinventor.buildserver.Signatures;
+import com.google.appinventor.buildserver.TaskResult;
+import com.google.appinventor.buildserver.context.AndroidCompilerContext;
+import com.google.appinventor.buildserver.interfaces.AndroidTask;
+import com.google.appinventor.buildserver.interfaces.BuildType;
+import com.google.appinventor.buildserver.interfaces.DependsOn;
+
+import java.io.IOException;
+
+/**
+ * Compiles the R classes of the AAR libraries used by the app. The screens compiled by
+ * {@link GenerateClasses} do not refer to these classes, so Kawa does not wait for aapt.
+ */
+@BuildType(apk = true, aab = true)
+@DependsOn({AttachAarLibs.class, RunAapt.class, RunAapt2.class})
+public class CompileRClasses implements AndroidTask {
+  @Override
+  public TaskResult execute(AndroidCompilerContext context) {
+    if (context.getComponentInfo().getExplodedAarLibs().isEmpty()) {
+      return TaskResult.generateSuccess();  // nothing to see here
+    }
+    int error;
+    try {
+      error = context.getComponentInfo().getExplodedAarLibs().writeRClasses(
+          context.getPaths().getClassesDir(),
+          Signatures.getPackageName(context.getProject().getMainClass()),
+          context.getResources().getAppRTxt()
+      );
+    } catch (IOException | InterruptedException e) {
+      context.getReporter().error("Error while compiling R classes", true);
+      return TaskResult.generateError("Could not compile R classes");
+    }
+    if (error != 0) {
+      context.getReporter().error("Compile R Classes returned E=" + error, true);
+      return TaskResult.generateError("Could not compile R classes");
+    }
+    return TaskResult.generateSuccess();
+  }
+}
@@ -10,15 +10,24 @@ import static com.google.appinventor.common.constants.YoungAndroidStructureConst
 import com.google.appinventor.buildserver.Project;
 import com.google.appinventor.buildserver.Signatures;
 import com.google.appinventor.buildserver.TaskResult;
+import com.google.appinventor.buildserver.YoungAndroidConstants;
 import com.google.appinventor.buildserver.context.AndroidCompilerContext;
 import com.google.appinventor.buildserver.context.AndroidPaths;
 import com.google.appinventor.buildserver.context.CompilerContext;
 import com.google.appinventor.buildserver.interfaces.AndroidTask;
 import com.google.appinventor.buildserver.interfaces.BuildType;
+import com.google.appinventor.buildserver.interfaces.DependsOn;
+import com.google.appinventor.buildserver.util.CompileScheduler;
 import com.google.appinventor.buildserver.util.Execution;
 import com.google.appinventor.buildserver.util.ExecutorUtils;
+import com.google.appinventor.buildserver.util.KawaCompilerPool;
+import com.google.appinventor.buildserver.util.ScreenClassCache;
+import com.google.appinventor.common.version.GitBuildId;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
 import com.google.common.collect.Lists;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -26,30 +35,45 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.io.Reader;
-import java.util.Collections;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
  * Compiles screen source files written in YAIL to Java class files.
+ *
+ * <p>When the {@link ScreenClassCache} is enabled, screens whose YAIL is unchanged since an
+ * earlier build reuse the class files generated then, and only the remaining screens are given
+ * to Kawa.</p>
  */
 @BuildType(apk = true, aab = true)
+@DependsOn(AttachAarLibs.class)
 public class GenerateClasses implements AndroidTask {
+  private static final String RUNTIME_PACKAGE_PATH = "com/google/youngandroid";
+  private static final String RUNTIME_CLASS_NAME = "runtime";
+
   CompilerContext<AndroidPaths> context;
 
   @Override
   public TaskResult execute(AndroidCompilerContext context) {
     this.context = context;
 
-    if (!this.compileRClasses()) {
-      return TaskResult.generateError("Could not compile R classes");
-    }
-
     try {
+      File classesDir = context.getPaths().getClassesDir();
+      String packagePrefix = Signatures.getPackageName(context.getProject().getMainClass()) + ".";
+      ScreenClassCache cache = ScreenClassCache.getInstance();
+      String environmentKey = cache == null ? null : computeEnvironmentKey(packagePrefix);
+
       List<Project.SourceDescriptor> sources = context.getProject().getSources();
       List<String> sourceFileNames = Lists.newArrayListWithCapacity(sources.size());
       List<String> classFileNames = Lists.newArrayListWithCapacity(sources.size());
+      // Cache keys of the screens being compiled, by their class file name
+      Map<String, String> keysToStore = new LinkedHashMap<>();
       boolean userCodeExists = false;
       for (Project.SourceDescriptor source : sources) {
         String sourceFileName = source.getFile().getAbsolutePath();
@@ -75,27 +99,47 @@ public class GenerateClasses implements AndroidTask {
             }
           }
         }
-        sourceFileNames.add(sourceFileName);
         classFileNames.add(classFileName);
+        if (cache != null) {
+          String key = computeSourceKey(environmentKey, source);
+          if (cache.restore(key, classesDir)) {
+            context.getReporter().info("Using cached classes for " + source.getQualifiedName());
+            continue;
+          }
+          keysToStore.put(classFileName, key);
+        }
+        sourceFileNames.add(sourceFileName);
       }
 
       if (!userCodeExists) {
         return TaskResult.generateError("No user code exists");
       }
 
-      // Construct the class path including component libraries (jars)
-      StringBuilder classpath = new StringBuilder(context.getResources().getKawaRuntime());
-      classpath.append(File.pathSeparator);
-      classpath.append(context.getResources().getAcraRuntime());
-      classpath.append(File.pathSeparator);
-      classpath.append(context.getResources().getSimpleAndroidRuntimeJar());
-      classpath.append(File.pathSeparator);
+      String runtimeKey = cache == null ? null : environmentKey + "-" + RUNTIME_CLASS_NAME;
+      boolean compileRuntime = cache == null || !cache.restore(runtimeKey, classesDir);
+      if (sourceFileNames.isEmpty() && !compileRuntime) {
+        context.getReporter().info("All screens are unchanged; skipping Kawa");
+        return TaskResult.generateSuccess();
+      }
+
+      // Construct the class path shared by every build
+      StringBuilder runtimeClasspath = new StringBuilder(context.getResources().getKawaRuntime());
+      runtimeClasspath.append(File.pathSeparator);
+      runtimeClasspath.append(context.getResources().getAcraRuntime());
+      runtimeClasspath.append(File.pathSeparator);
+      runtimeClasspath.append(context.getResources().getSimpleAndroidRuntimeJar());
+      runtimeClasspath.append(File.pathSeparator);
 
       for (String jar : context.getResources().getSupportJars()) {
-        classpath.append(context.getResource(jar));
-        classpath.append(File.pathSeparator);
+        runtimeClasspath.append(context.getResource(jar));
+        runtimeClasspath.append(File.pathSeparator);
       }
 
+      runtimeClasspath.append(context.getResources().getAndroidRuntime());
+
+      // Construct the class path of this project's component libraries (jars)
+      StringBuilder classpath = new StringBuilder();
+
       // attach the jars of external comps
       Set<String> addedExtJars = new HashSet<String>();
       for (String type : context.getExtCompTypes()) {
@@ -147,41 +191,36 @@ public class GenerateClasses implements AndroidTask {
             .getAbsolutePath());
         classpath.append(File.pathSeparator);
       }
+      if (classpath.length() > 0) {
+        classpath.setLength(classpath.length() - 1);
+      }
 
-      classpath.append(context.getResources().getAndroidRuntime());
-
-      context.getReporter().info("Libraries Classpath = " + classpath);
+      context.getReporter().info("Libraries Classpath = " + runtimeClasspath
+          + (classpath.length() > 0 ? File.pathSeparator + classpath : ""));
 
       String yailRuntime = context.getResources().getYailRuntime();
-      List<String> kawaCommandArgs = Lists.newArrayList();
       int mx = context.getChildProcessRam() - 200;
-      Collections.addAll(kawaCommandArgs,
-          System.getProperty("java.home") + "/bin/java",
-          "-Dfile.encoding=UTF-8",
-          "-mx" + mx + "M",
-          "-cp", classpath.toString(),
-          "kawa.repl",
-          "-f", yailRuntime,
-          "-d", context.getPaths().getClassesDir().getAbsolutePath(),
-          "-P", Signatures.getPackageName(context.getProject().getMainClass()) + ".",
-          "-C");
       // TODO(lizlooney) - we are currently using (and have always used) absolute paths for the
       // source file names. The resulting .class files contain references to the source file names,
       // including the name of the tmp directory that contains them. We may be able to avoid that
       // by using source file names that are relative to the project root and using the project
       // root as the working directory for the Kawa compiler process.
-      kawaCommandArgs.addAll(sourceFileNames);
-      kawaCommandArgs.add(yailRuntime);
-      String[] kawaCommandLine = kawaCommandArgs.toArray(new String[0]);
+      KawaCompilerPool.Job kawaJob = new KawaCompilerPool.Job(runtimeClasspath.toString(),
+          classpath.toString(), mx, yailRuntime, classesDir.getAbsolutePath(), packagePrefix,
+          sourceFileNames, compileRuntime);
 
       // Capture Kawa compiler stderr. The ODE server parses out the warnings and errors and adds
       // them to the protocol buffer for logging purposes. (See
       // buildserver/ProjectBuilder.processCompilerOutout.
       ByteArrayOutputStream kawaOutputStream = new ByteArrayOutputStream();
       boolean kawaSuccess;
-      synchronized (context.getResources().getSyncKawaOrDx()) {
-        kawaSuccess = Execution.execute(null, kawaCommandLine,
+      CompileScheduler.Permit permit =
+          CompileScheduler.getInstance().acquire(CompileScheduler.Kind.KAWA);
+      try {
+        kawaSuccess = KawaCompilerPool.getInstance().compile(kawaJob,
             System.out, new PrintStream(kawaOutputStream), Execution.Timeout.MEDIUM);
+      } finally {
+        permit.close();
       }
       if (!kawaSuccess) {
         context.getReporter().error("Kawa compile has failed.", true);
@@ -199,33 +238,85 @@ public class GenerateClasses implements AndroidTask {
           return TaskResult.generateError("Can't find class file for Screen '" + screenName + "'");
         }
       }
-    } catch (IOException e) {
+
+      if (cache != null) {
+        for (Map.Entry<String, String> entry : keysToStore.entrySet()) {
+          File classFile = new File(entry.getKey());
+          cache.store(entry.getValue(), classesDir,
+              listClassFiles(classFile.getParentFile(), classFile.getName().replace(".class", "")));
+        }
+        if (compileRuntime) {
+          cache.store(runtimeKey, classesDir, listClassFiles(
+              new File(classesDir, RUNTIME_PACKAGE_PATH), RUNTIME_CLASS_NAME));
+        }
+      }
+    } catch (IOException | InterruptedException e) {
       return TaskResult.generateError(e);
     }
 
     return TaskResult.generateSuccess();
   }
 
-  @VisibleForTesting
-  boolean compileRClasses() {
-    if (context.getComponentInfo().getExplodedAarLibs().isEmpty()) {
-      return true;  // nothing to see here
+  /*
+   * Hashes everything other than the YAIL source that affects the classes Kawa generates: the
+   * build server version (which determines the component libraries), runtime.scm, the package of
+   * the screens, and the project's extensions.
+   */
+  private String computeEnvironmentKey(String packagePrefix) throws IOException {
+    Hasher hasher = Hashing.sha256().newHasher();
+    hasher.putString(GitBuildId.getVersion(), Charsets.UTF_8);
+    hasher.putBytes(Files.readAllBytes(new File(context.getResources().getYailRuntime()).toPath()));
+    hasher.putString(packagePrefix, Charsets.UTF_8);
+    File extCompsDir = new File(context.getProject().getAssetsDirectory(),
+        YoungAndroidConstants.EXT_COMPS_DIR_NAME);
+    hashDirectory(hasher, extCompsDir, "");
+    return hasher.hash().toString();
+  }
+
+  private static void hashDirectory(Hasher hasher, File dir, String relativePath)
+      throws IOException {
+    File[] children = dir.listFiles();
+    if (children == null) {
+      return;
     }
-    int error;
-    try {
-      error = context.getComponentInfo().getExplodedAarLibs().writeRClasses(
-          context.getPaths().getClassesDir(),
-          Signatures.getPackageName(context.getProject().getMainClass()),
-          context.getResources().getAppRTxt()
-      );
-    } catch (IOException | InterruptedException e) {
-      context.getReporter().error("Error while compiling R classes", true);
-      return false;
+    Arrays.sort(children);
+    for (File child : children) {
+      String childPath = relativePath + "/" + child.getName();
+      hasher.putString(childPath, Charsets.UTF_8);
+      if (child.isDirectory()) {
+        hashDirectory(hasher, child, childPath);
+      } else {
+        hasher.putBytes(Files.readAllBytes(child.toPath()));
+      }
     }
-    if (error != 0) {
-      context.getReporter().error("Compile R Classes returned E=" + error, true);
-      return false;
+  }
+
+  private static String computeSourceKey(String environmentKey, Project.SourceDescriptor source)
+      throws IOException {
+    return Hashing.sha256().newHasher()
+        .putString(environmentKey, Charsets.UTF_8)
+        .putString(source.getQualifiedName(), Charsets.UTF_8)
+        .putBytes(Files.readAllBytes(source.getFile().toPath()))
+        .hash().toString();
+  }
+
+  /*
+   * Lists the class files Kawa generated for the class named {@code className} in {@code dir},
+   * including the inner classes for its lambdas.
+   */
+  @VisibleForTesting
+  static List<File> listClassFiles(File dir, String className) {
+    List<File> result = new ArrayList<>();
+    File[] files = dir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        String name = file.getName();
+        if (file.isFile() && (name.equals(className + ".class")
+            || (name.startsWith(className + "$") && name.endsWith(".class")))) {
+          result.add(file);
+        }
+      }
     }
-    return true;
+    return result;
   }
 }
@@ -9,6 +9,7 @@ import com.android.ide.common.internal.AaptCruncher;
 import com.android.ide.common.internal.PngCruncher;
 
 import com.google.appinventor.buildserver.interfaces.BuildType;
+import com.google.appinventor.buildserver.interfaces.DependsOn;
 import com.google.appinventor.buildserver.TaskResult;
 import com.google.appinventor.buildserver.context.AndroidCompilerContext;
 import com.google.appinventor.buildserver.interfaces.AndroidTask;
@@ -21,6 +22,7 @@ import java.io.File;
  * compiler.mergeResources()
  */
 @BuildType(apk = true, aab = true)
+@DependsOn({PrepareAppIcon.class, XmlConfig.class, AttachAarLibs.class})
 public class MergeResources implements AndroidTask {
   @Override
   public TaskResult execute(AndroidCompilerContext context) {
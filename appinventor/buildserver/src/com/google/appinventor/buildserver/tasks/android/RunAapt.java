@@ -12,6 +12,7 @@ import com.google.appinventor.buildserver.TaskResult;
 import com.google.appinventor.buildserver.context.AndroidCompilerContext;
 import com.google.appinventor.buildserver.interfaces.AndroidTask;
 import com.google.appinventor.buildserver.interfaces.BuildType;
+import com.google.appinventor.buildserver.interfaces.DependsOn;
 import com.google.appinventor.buildserver.util.Execution;
 import com.google.appinventor.buildserver.util.ExecutorUtils;
 
@@ -24,6 +25,8 @@ import java.util.List;
  */
 // RunAapt
 @BuildType(apk = true)
+@DependsOn({CreateManifest.class, MergeResources.class, SetupLibs.class, AttachAarLibs.class,
+    AttachCompAssets.class})
 public class RunAapt implements AndroidTask {
   @Override
   public TaskResult execute(AndroidCompilerContext context) {
@@ -13,6 +13,7 @@ import com.google.appinventor.buildserver.context.AndroidPaths;
 import com.google.appinventor.buildserver.context.CompilerContext;
 import com.google.appinventor.buildserver.interfaces.AndroidTask;
 import com.google.appinventor.buildserver.interfaces.BuildType;
+import com.google.appinventor.buildserver.interfaces.DependsOn;
 import com.google.appinventor.buildserver.util.Execution;
 import com.google.appinventor.buildserver.util.ExecutorUtils;
 
@@ -21,6 +22,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 @BuildType(aab = true)
+@DependsOn({CreateManifest.class, MergeResources.class, SetupLibs.class, AttachAarLibs.class,
+    AttachCompAssets.class})
 public class RunAapt2 implements AndroidTask {
   CompilerContext<AndroidPaths> context;
   File resourcesZip;
@@ -8,6 +8,7 @@ package com.google.appinventor.buildserver.tasks.android;
 import com.android.sdklib.build.ApkBuilder;
 
 import com.google.appinventor.buildserver.interfaces.BuildType;
+import com.google.appinventor.buildserver.interfaces.DependsOn;
 import com.google.appinventor.buildserver.TaskResult;
 import com.google.appinventor.buildserver.context.AndroidCompilerContext;
 import com.google.appinventor.buildserver.interfaces.AndroidTask;
@@ -20,6 +21,8 @@ import java.util.logging.Logger;
  * compiler.runApkBuilder
  */
 @BuildType(apk = true)
+@DependsOn({RunAapt.class, RunD8.class, RunMultidex.class, AttachNativeLibs.class,
+    AttachAarLibs.class})
 public class RunApkBuilder implements AndroidTask {
   private static final Logger LOG = Logger.getLogger(RunApkBuilder.class.getName());
 
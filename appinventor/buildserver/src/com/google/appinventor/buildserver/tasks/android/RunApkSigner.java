@@ -6,6 +6,7 @@
 package com.google.appinventor.buildserver.tasks.android;
 
 import com.google.appinventor.buildserver.interfaces.BuildType;
+import com.google.appinventor.buildserver.interfaces.DependsOn;
 import com.google.appinventor.buildserver.TaskResult;
 import com.google.appinventor.buildserver.context.AndroidCompilerContext;
 import com.google.appinventor.buildserver.interfaces.AndroidTask;
@@ -15,6 +16,7 @@ import com.google.appinventor.buildserver.util.Execution;
  * compiler.runApkSigner()
  */
 @BuildType(apk = true)
+@DependsOn(RunZipAlign.class)
 public class RunApkSigner implements AndroidTask {
   @Override
   public TaskResult execute(AndroidCompilerContext context) {
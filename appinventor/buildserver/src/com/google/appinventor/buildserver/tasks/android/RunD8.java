@@ -9,14 +9,16 @@ import com.google.appinventor.buildserver.TaskResult;
 import com.google.appinventor.buildserver.context.AndroidCompilerContext;
 import com.google.appinventor.buildserver.interfaces.AndroidTask;
 import com.google.appinventor.buildserver.interfaces.BuildType;
+import com.google.appinventor.buildserver.interfaces.DependsOn;
+import com.google.appinventor.buildserver.util.CompileScheduler;
 import com.google.appinventor.buildserver.util.Execution;
 import com.google.appinventor.buildserver.util.ExecutorUtils;
+import com.google.appinventor.buildserver.util.PredexCache;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
-import java.nio.file.FileSystems;
 import java.nio.file.FileVisitResult;
 import java.nio.file.FileVisitor;
 import java.nio.file.Files;
@@ -30,6 +32,7 @@ import java.util.List;
 import java.util.Set;
 
 @BuildType(aab = true, apk = true)
+@DependsOn({GenerateClasses.class, CompileRClasses.class})
 public class RunD8 extends DexTask implements AndroidTask {
   private static final boolean USE_D8_PROGUARD_RULES = true;
 
@@ -157,7 +160,7 @@ public class RunD8 extends DexTask implements AndroidTask {
   private static boolean runD8(AndroidCompilerContext context, Collection<File> inputs,
       Set<String> mainDexClasses) throws IOException {
     return runD8(context, inputs, mainDexClasses, context.getPaths().getTmpDir().getAbsolutePath(),
-        null);
+        false);
   }
 
   /**
@@ -167,12 +170,12 @@ public class RunD8 extends DexTask implements AndroidTask {
    * @param inputs collection of input files. For a complete list of supported input types see
    *               <a href="https://developer.android.com/tools/d8">d8</a>.
    * @param outputDir the destination for the classes.dex file
-   * @param intermediateFileName an alternative name to use for the dex file when pre-dexing
+   * @param intermediate true if pre-dexing a library for later merging
    * @return true if the process succeeded
-   * @throws IOException if the dex file is unable to be moved to the {@code intermediateFileName}
+   * @throws IOException if the d8 argument file cannot be written
    */
   private static boolean runD8(AndroidCompilerContext context, Collection<File> inputs,
-      Set<String> mainDexClasses, String outputDir, String intermediateFileName)
+      Set<String> mainDexClasses, String outputDir, boolean intermediate)
       throws IOException {
     List<String> arguments = new ArrayList<>();
     List<String> javaArgs = new ArrayList<>();
@@ -182,12 +185,12 @@ public class RunD8 extends DexTask implements AndroidTask {
     javaArgs.add("-cp");
     javaArgs.add(context.getResources().getD8Jar());
     javaArgs.add("com.android.tools.r8.D8");
-    if (intermediateFileName != null) {
+    if (intermediate) {
       javaArgs.add("--intermediate");
     }
     javaArgs.add("--lib");
     javaArgs.add(context.getResources().getAndroidRuntime());
-    if (intermediateFileName == null) {
+    if (!intermediate) {
       javaArgs.add("--classpath");
       javaArgs.add(context.getPaths().getClassesDir().getAbsolutePath());
     }
@@ -214,18 +217,21 @@ public class RunD8 extends DexTask implements AndroidTask {
       }
     }
     arguments.add("@" + javaArgsFile.getAbsolutePath());
-    synchronized (context.getResources().getSyncKawaOrDx()) {
-      boolean result = Execution.execute(context.getPaths().getTmpDir(),
-          arguments.toArray(new String[0]), System.out, System.err, Execution.Timeout.LONG);
-      if (!result) {
-        return false;
-      }
+    CompileScheduler.Kind kind = intermediate
+        ? CompileScheduler.Kind.PREDEX : CompileScheduler.Kind.D8;
+    CompileScheduler.Permit permit;
+    try {
+      permit = CompileScheduler.getInstance().acquire(kind);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
     }
-    if (intermediateFileName != null) {
-      Files.move(FileSystems.getDefault().getPath(outputDir, "classes.dex"),
-          FileSystems.getDefault().getPath(outputDir, intermediateFileName));
+    try {
+      return Execution.execute(context.getPaths().getTmpDir(),
+          arguments.toArray(new String[0]), System.out, System.err, Execution.Timeout.LONG);
+    } finally {
+      permit.close();
     }
-    return true;
   }
 
   /**
@@ -236,21 +242,22 @@ public class RunD8 extends DexTask implements AndroidTask {
    * @return the path of the library to use as an input to the downstream d8 process
    * @throws IOException if the d8 process fails due to an I/O issue
    */
-  private static File preDexLibrary(AndroidCompilerContext context, File input) throws IOException {
-    synchronized (PREDEX_CACHE) {
-      File cacheDir = new File(context.getDexCacheDir());
-      File dexedLib = getDexFileName(input, cacheDir);
-      if (dexedLib.isFile()) {
-        context.getReporter().info(String.format("Using pre-dexed %1$s <- %2$s",
-            dexedLib.getName(), input));
-      } else {
-        boolean success = runD8(context, Collections.singleton(input), null,
-            context.getDexCacheDir(), dexedLib.getName());
-        if (!success) {
-          return input;
-        }
-      }
-      return dexedLib;
+  private static File preDexLibrary(final AndroidCompilerContext context, final File input)
+      throws IOException {
+    PredexCache cache = PredexCache.forDirectory(new File(context.getDexCacheDir()));
+    final boolean[] dexed = { false };
+    File dexedLib = cache.get(getHashFor(input), outputDir -> {
+      dexed[0] = true;
+      return runD8(context, Collections.singleton(input), null, outputDir.getAbsolutePath(),
+          true);
+    });
+    if (dexedLib == null) {
+      return input;
+    }
+    if (!dexed[0]) {
+      context.getReporter().info(String.format("Using pre-dexed %1$s <- %2$s",
+          dexedLib.getName(), input));
     }
+    return dexedLib;
   }
 }
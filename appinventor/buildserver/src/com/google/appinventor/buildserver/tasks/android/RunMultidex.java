@@ -6,10 +6,12 @@
 package com.google.appinventor.buildserver.tasks.android;
 
 import com.google.appinventor.buildserver.interfaces.BuildType;
+import com.google.appinventor.buildserver.interfaces.DependsOn;
 import com.google.appinventor.buildserver.DexExecTask;
 import com.google.appinventor.buildserver.TaskResult;
 import com.google.appinventor.buildserver.context.AndroidCompilerContext;
 import com.google.appinventor.buildserver.interfaces.AndroidTask;
+import com.google.appinventor.buildserver.util.CompileScheduler;
 import com.google.appinventor.buildserver.util.ExecutorUtils;
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -25,6 +27,7 @@ import java.util.Set;
  * compiler.runMultidex()
  */
 @BuildType(apk = true, aab = true)
+@DependsOn({GenerateClasses.class, CompileRClasses.class})
 public class RunMultidex extends DexTask implements AndroidTask {
   @Override
   public TaskResult execute(AndroidCompilerContext context) {
@@ -97,8 +100,12 @@ public class RunMultidex extends DexTask implements AndroidTask {
         dexTask.setDexedLibs(context.getDexCacheDir());
       }
 
-      synchronized (context.getResources().getSyncKawaOrDx()) {
+      CompileScheduler.Permit permit =
+          CompileScheduler.getInstance().acquire(CompileScheduler.Kind.D8);
+      try {
         success = dexTask.execute(inputList);
+      } finally {
+        permit.close();
       }
 
       // Aggregate all of the classes.dex files output by dx
@@ -112,7 +119,7 @@ public class RunMultidex extends DexTask implements AndroidTask {
         throw new FileNotFoundException("Could not find classes.dex");
       }
       Collections.addAll(context.getResources().getDexFiles(), files);
-    } catch (IOException e) {
+    } catch (IOException | InterruptedException e) {
       return TaskResult.generateError(e);
     }
 
@@ -6,6 +6,7 @@
 package com.google.appinventor.buildserver.tasks.android;
 
 import com.google.appinventor.buildserver.interfaces.BuildType;
+import com.google.appinventor.buildserver.interfaces.DependsOn;
 import com.google.appinventor.buildserver.TaskResult;
 import com.google.appinventor.buildserver.context.AndroidCompilerContext;
 import com.google.appinventor.buildserver.interfaces.AndroidTask;
@@ -17,6 +18,7 @@ import java.io.File;
  * compiler.runZipAlign()
  */
 @BuildType(apk = true)
+@DependsOn(RunApkBuilder.class)
 public class RunZipAlign implements AndroidTask {
   @Override
   public TaskResult execute(AndroidCompilerContext context) {
@@ -10,6 +10,7 @@ import static com.google.appinventor.buildserver.util.ExecutorUtils.createDir;
 
 import com.google.appinventor.buildserver.AnimationXmlConstants;
 import com.google.appinventor.buildserver.interfaces.BuildType;
+import com.google.appinventor.buildserver.interfaces.DependsOn;
 import com.google.appinventor.buildserver.TaskResult;
 import com.google.appinventor.buildserver.context.AndroidCompilerContext;
 import com.google.appinventor.buildserver.interfaces.AndroidTask;
@@ -44,6 +45,7 @@ import java.util.Set;
 // createResXml
 // GenerateXmlRes
 @BuildType(apk = true, aab = true)
+@DependsOn
 public class XmlConfig implements AndroidTask {
   AndroidCompilerContext context;
 
@@ -0,0 +1,197 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2026 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.buildserver.util;
+
+import com.google.appinventor.buildserver.stats.TaskMetrics;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Admits child compiler processes (Kawa, d8/dx and pre-dexing) across all builds running on the
+ * build server.
+ *
+ * <p>Kawa and dex processes can use a lot of memory, so the number running at once is bounded
+ * twice: each {@link Kind} has its own pool of permits, and all kinds share a global pool sized
+ * from the number of processors and the physical memory available for
+ * {@code --childProcessRamMb}-sized processes. A permit for the kind is always taken before the
+ * global permit and no caller holds more than one of each, so the scheme cannot deadlock.</p>
+ *
+ * <p>All semaphores are fair. Waiters are admitted in arrival order, so a build that pre-dexes
+ * many libraries one after the other interleaves with other builds instead of starving them.</p>
+ */
+public final class CompileScheduler {
+  private static final Logger LOG = Logger.getLogger(CompileScheduler.class.getName());
+
+  private static final CompileScheduler INSTANCE = new CompileScheduler();
+
+  /**
+   * The kinds of child processes managed by the scheduler.
+   */
+  public enum Kind {
+    KAWA,
+    D8,
+    PREDEX
+  }
+
+  /**
+   * A granted admission. Closing the permit releases it.
+   */
+  public final class Permit implements AutoCloseable {
+    private final Pool pool;
+    private final Semaphore global;
+    private final long waitMillis;
+    private boolean released = false;
+
+    private Permit(Pool pool, Semaphore global, long waitMillis) {
+      this.pool = pool;
+      this.global = global;
+      this.waitMillis = waitMillis;
+    }
+
+    /**
+     * Returns how long the caller waited in the queue before being admitted, in milliseconds.
+     */
+    public long getWaitMillis() {
+      return waitMillis;
+    }
+
+    @Override
+    public void close() {
+      if (!released) {
+        released = true;
+        global.release();
+        pool.semaphore.release();
+      }
+    }
+  }
+
+  /*
+   * Permits and queue statistics for one kind of process.
+   */
+  private static class Pool {
+    final int permits;
+    final Semaphore semaphore;
+    final AtomicLong admitted = new AtomicLong(0);
+    final AtomicLong totalWaitMillis = new AtomicLong(0);
+    final AtomicLong maxWaitMillis = new AtomicLong(0);
+
+    Pool(int permits) {
+      this.permits = permits;
+      this.semaphore = new Semaphore(permits, true);
+    }
+  }
+
+  private volatile Map<Kind, Pool> pools;
+  private volatile Semaphore global;
+  private volatile int globalPermits;
+
+  private CompileScheduler() {
+    configure(0, 0, 0, 0, 2048);
+  }
+
+  public static CompileScheduler getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Configures the number of child processes admitted at once. A value of 0 for any limit picks
+   * a default based on the machine. Reconfiguring while processes are running only affects
+   * requests made after this call.
+   *
+   * @param maxChildProcesses the total number of child processes of any kind
+   * @param maxKawaProcesses the number of Kawa compiler processes
+   * @param maxD8Processes the number of d8 or dx processes dexing a final app
+   * @param maxPredexProcesses the number of d8 processes pre-dexing libraries
+   * @param childProcessRamMb the maximum heap of each child process, in MB
+   */
+  public synchronized void configure(int maxChildProcesses, int maxKawaProcesses,
+      int maxD8Processes, int maxPredexProcesses, int childProcessRamMb) {
+    int total = maxChildProcesses > 0 ? maxChildProcesses : defaultSlots(childProcessRamMb);
+    int half = Math.max(1, total / 2);
+    Map<Kind, Pool> newPools = new EnumMap<>(Kind.class);
+    newPools.put(Kind.KAWA, new Pool(maxKawaProcesses > 0 ? maxKawaProcesses : half));
+    newPools.put(Kind.D8, new Pool(maxD8Processes > 0 ? maxD8Processes : half));
+    newPools.put(Kind.PREDEX, new Pool(maxPredexProcesses > 0 ? maxPredexProcesses : half));
+    pools = newPools;
+    globalPermits = total;
+    global = new Semaphore(total, true);
+    LOG.info("Child process limits: total=" + total
+        + ", kawa=" + newPools.get(Kind.KAWA).permits
+        + ", d8=" + newPools.get(Kind.D8).permits
+        + ", predex=" + newPools.get(Kind.PREDEX).permits);
+  }
+
+  /**
+   * Waits until a child process of the given kind may be started.
+   *
+   * @param kind the kind of process about to be started
+   * @return a permit that must be closed once the process has finished
+   * @throws InterruptedException if the calling thread is interrupted while waiting
+   */
+  public Permit acquire(Kind kind) throws InterruptedException {
+    Pool pool = pools.get(kind);
+    Semaphore globalPool = global;
+    long start = System.currentTimeMillis();
+    pool.semaphore.acquire();
+    try {
+      globalPool.acquire();
+    } catch (InterruptedException e) {
+      pool.semaphore.release();
+      throw e;
+    }
+    long waited = System.currentTimeMillis() - start;
+    pool.admitted.incrementAndGet();
+    pool.totalWaitMillis.addAndGet(waited);
+    pool.maxWaitMillis.getAndAccumulate(waited, Math::max);
+    TaskMetrics.recordQueueWait(waited);
+    return new Permit(pool, globalPool, waited);
+  }
+
+  /**
+   * Adds the scheduler's state to the variables reported on /buildserver/vars.
+   *
+   * @param variables the map of variables being reported
+   */
+  public void reportVariables(Map<String, String> variables) {
+    variables.put("child-process-permits", globalPermits + "");
+    variables.put("child-process-permits-available", global.availablePermits() + "");
+    for (Map.Entry<Kind, Pool> entry : pools.entrySet()) {
+      String prefix = entry.getKey().name().toLowerCase() + "-";
+      Pool pool = entry.getValue();
+      long admitted = pool.admitted.get();
+      variables.put(prefix + "permits", pool.permits + "");
+      variables.put(prefix + "active", (pool.permits - pool.semaphore.availablePermits()) + "");
+      variables.put(prefix + "queued", pool.semaphore.getQueueLength() + "");
+      variables.put(prefix + "admitted", admitted + "");
+      variables.put(prefix + "avg-queue-ms",
+          (admitted == 0 ? 0 : pool.totalWaitMillis.get() / admitted) + "");
+      variables.put(prefix + "max-queue-ms", pool.maxWaitMillis.get() + "");
+    }
+  }
+
+  /*
+   * Number of child processes the machine can run at once: one per processor, limited by how
+   * many child heaps fit in physical memory. getTotalPhysicalMemorySize is deprecated from Java 14
+   * in favor of getTotalMemorySize, which Java 8, still a supported target, lacks.
+   */
+  @SuppressWarnings("deprecation")
+  private static int defaultSlots(int childProcessRamMb) {
+    int cores = Runtime.getRuntime().availableProcessors();
+    int slots = cores;
+    OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+    if (osBean instanceof com.sun.management.OperatingSystemMXBean && childProcessRamMb > 0) {
+      long physicalMb = ((com.sun.management.OperatingSystemMXBean) osBean)
+          .getTotalPhysicalMemorySize() / (1024 * 1024);
+      slots = (int) Math.min(slots, physicalMb / childProcessRamMb);
+    }
+    return Math.max(1, slots);
+  }
+}
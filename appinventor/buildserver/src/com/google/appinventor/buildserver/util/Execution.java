@@ -104,7 +104,8 @@ public final class Execution {
     Process proc;
     try {
       proc = pb.start();
-      int result = proc.waitFor();
+      new ProcessSampler(proc).waitFor(0);
+      int result = proc.exitValue();
       IOUtils.copy(proc.getInputStream(), out);
       IOUtils.copy(proc.getErrorStream(), err);
       return result == 0;
@@ -140,11 +141,13 @@ public final class Execution {
       new RedirectStreamHandler(new PrintWriter(out, true), process.getInputStream());
       new RedirectStreamHandler(new PrintWriter(err, true), process.getErrorStream());
 
+      ProcessSampler sampler = new ProcessSampler(process);
       if (timeoutSeconds <= 0 || DISABLE_TIMEOUTS) {
-        return process.waitFor() == 0;
+        sampler.waitFor(0);
+        return process.exitValue() == 0;
       }
 
-      if (!process.waitFor(timeoutSeconds, TimeUnit.SECONDS)) {
+      if (!sampler.waitFor(TimeUnit.SECONDS.toMillis(timeoutSeconds))) {
         process.destroyForcibly();
         err.println("Process had to be forcibly terminated due to timeout");
         return false;
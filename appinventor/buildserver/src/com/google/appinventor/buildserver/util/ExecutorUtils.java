@@ -30,7 +30,8 @@ public final class ExecutorUtils {
    */
   public static File createDir(File dir) {
     if (!dir.exists()) {
-      if (!dir.mkdir()) {
+      // Another task of the same build may have created it in the meantime
+      if (!dir.mkdir() && !dir.isDirectory()) {
         System.out.println("[WARN] Could not create directory: " + dir);
       }
     }
@@ -47,7 +48,8 @@ public final class ExecutorUtils {
   public static File createDir(File parentDir, String name) {
     File dir = new File(parentDir, name);
     if (!dir.exists()) {
-      if (!dir.mkdir()) {
+      // Another task of the same build may have created it in the meantime
+      if (!dir.mkdir() && !dir.isDirectory()) {
         System.out.println("[WARN] Could not create directory: " + dir);
       }
     }
@@ -0,0 +1,493 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2026 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.buildserver.util;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Pool of warm Kawa compiler processes used to compile YAIL screens.
+ *
+ * <p>Starting a JVM and loading runtime.scm dominates the Kawa step for small projects. The pool
+ * keeps up to a configured number of idle {@link KawaCompilerWorker} processes, each of which has
+ * the runtime already loaded, and hands compile jobs to them over the workers' standard input
+ * and output. Workers are keyed by the runtime classpath, heap size and runtime, which are the
+ * same for every build. The rest of a job's classpath, such as extension jars and exploded AARs,
+ * differs between builds and is sent with each job; the worker loads it in a class loader of its
+ * own. A worker is health checked before reuse, retired after a configured number of builds,
+ * and discarded after any failed compilation.</p>
+ *
+ * <p>If the pool is disabled (the default) or a worker cannot service a job, the job is run in a
+ * fresh {@code kawa.repl} process with {@link Execution#execute}, as it always has been.</p>
+ */
+public final class KawaCompilerPool {
+  private static final Logger LOG = Logger.getLogger(KawaCompilerPool.class.getName());
+
+  private static final KawaCompilerPool INSTANCE = new KawaCompilerPool();
+
+  private static final int HEALTH_CHECK_TIMEOUT_SECONDS = 5;
+
+  /**
+   * Description of a single Kawa compilation.
+   */
+  public static final class Job {
+    private final String runtimeClasspath;
+    private final String projectClasspath;
+    private final int heapMb;
+    private final String yailRuntime;
+    private final String outputDir;
+    private final String packagePrefix;
+    private final List<String> sourceFileNames;
+    private final boolean compileRuntime;
+
+    /**
+     * Creates a new compile job that also compiles runtime.scm.
+     *
+     * @param runtimeClasspath the part of the classpath that is the same for every build
+     * @param projectClasspath the part of the classpath that is specific to this build, such as
+     *     extension jars and exploded AARs; may be empty
+     * @param heapMb the maximum heap size for the compiler, in MB
+     * @param yailRuntime the path to runtime.scm
+     * @param outputDir the directory receiving the class files
+     * @param packagePrefix the package prefix for the compiled screens, ending with a dot
+     * @param sourceFileNames the absolute paths of the YAIL files to compile
+     */
+    public Job(String runtimeClasspath, String projectClasspath, int heapMb, String yailRuntime,
+        String outputDir, String packagePrefix, List<String> sourceFileNames) {
+      this(runtimeClasspath, projectClasspath, heapMb, yailRuntime, outputDir, packagePrefix,
+          sourceFileNames, true);
+    }
+
+    /**
+     * Creates a new compile job.
+     *
+     * @param runtimeClasspath the part of the classpath that is the same for every build
+     * @param projectClasspath the part of the classpath that is specific to this build, such as
+     *     extension jars and exploded AARs; may be empty
+     * @param heapMb the maximum heap size for the compiler, in MB
+     * @param yailRuntime the path to runtime.scm
+     * @param outputDir the directory receiving the class files
+     * @param packagePrefix the package prefix for the compiled screens, ending with a dot
+     * @param sourceFileNames the absolute paths of the YAIL files to compile
+     * @param compileRuntime true if the class files for runtime.scm should be generated as well
+     */
+    public Job(String runtimeClasspath, String projectClasspath, int heapMb, String yailRuntime,
+        String outputDir, String packagePrefix, List<String> sourceFileNames,
+        boolean compileRuntime) {
+      this.runtimeClasspath = runtimeClasspath;
+      this.projectClasspath = projectClasspath;
+      this.heapMb = heapMb;
+      this.yailRuntime = yailRuntime;
+      this.outputDir = outputDir;
+      this.packagePrefix = packagePrefix;
+      this.sourceFileNames = Collections.unmodifiableList(new ArrayList<>(sourceFileNames));
+      this.compileRuntime = compileRuntime;
+    }
+
+    /**
+     * Returns the command line that compiles this job in a new {@code kawa.repl} process.
+     */
+    public String[] toCommandLine() {
+      List<String> kawaCommandArgs = Lists.newArrayList();
+      Collections.addAll(kawaCommandArgs,
+          System.getProperty("java.home") + "/bin/java",
+          "-Dfile.encoding=UTF-8",
+          "-mx" + heapMb + "M",
+          "-cp", getClasspath(),
+          "kawa.repl",
+          "-f", yailRuntime,
+          "-d", outputDir,
+          "-P", packagePrefix,
+          "-C");
+      kawaCommandArgs.addAll(sourceFileNames);
+      if (compileRuntime) {
+        kawaCommandArgs.add(yailRuntime);
+      }
+      return kawaCommandArgs.toArray(new String[0]);
+    }
+
+    String getClasspath() {
+      if (projectClasspath.isEmpty()) {
+        return runtimeClasspath;
+      }
+      return runtimeClasspath + File.pathSeparator + projectClasspath;
+    }
+
+    // Only the parts of a job that are the same for every build, so that workers are reused
+    // across builds.
+    String getWorkerKey() {
+      return heapMb + File.pathSeparator + yailRuntime + File.pathSeparator + runtimeClasspath;
+    }
+  }
+
+  /*
+   * Result of a job run by a worker.
+   */
+  private static class WorkerResult {
+    final boolean success;
+    final byte[] out;
+    final byte[] err;
+
+    WorkerResult(boolean success, byte[] out, byte[] err) {
+      this.success = success;
+      this.out = out;
+      this.err = err;
+    }
+  }
+
+  /*
+   * Handle on a running KawaCompilerWorker process.
+   */
+  private class Worker {
+    private final String key;
+    private final Process process;
+    private final DataInputStream input;
+    private final DataOutputStream output;
+    private volatile boolean timedOut = false;
+    private int builds = 0;
+
+    Worker(Job job, String workerJar, int startupTimeoutSeconds) throws IOException {
+      this.key = job.getWorkerKey();
+      ProcessBuilder pb = new ProcessBuilder(
+          System.getProperty("java.home") + "/bin/java",
+          "-Dfile.encoding=UTF-8",
+          "-mx" + job.heapMb + "M",
+          "-cp", job.runtimeClasspath + File.pathSeparator + workerJar,
+          KawaCompilerWorker.class.getName(),
+          job.yailRuntime);
+      pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+      process = pb.start();
+      input = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+      output = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+      workersStarted.incrementAndGet();
+      String greeting = withTimeout(startupTimeoutSeconds, new IoCall<String>() {
+        @Override
+        public String call() throws IOException {
+          return input.readUTF();
+        }
+      });
+      if (!KawaCompilerWorker.READY.equals(greeting)) {
+        destroy();
+        throw new IOException("Unexpected greeting from Kawa worker: " + greeting);
+      }
+    }
+
+    boolean isHealthy() {
+      if (!process.isAlive()) {
+        return false;
+      }
+      try {
+        sendRequest(Collections.singletonList(KawaCompilerWorker.PING));
+        String reply = withTimeout(HEALTH_CHECK_TIMEOUT_SECONDS, new IoCall<String>() {
+          @Override
+          public String call() throws IOException {
+            return input.readUTF();
+          }
+        });
+        return KawaCompilerWorker.PONG.equals(reply);
+      } catch (IOException e) {
+        return false;
+      }
+    }
+
+    WorkerResult compile(Job job, int timeoutSeconds) throws IOException {
+      List<String> request = new ArrayList<>();
+      request.add(KawaCompilerWorker.COMPILE);
+      request.add(job.outputDir);
+      request.add(job.packagePrefix);
+      request.add(job.projectClasspath);
+      request.addAll(job.sourceFileNames);
+      if (job.compileRuntime) {
+        request.add(job.yailRuntime);
+      }
+      builds++;
+      sendRequest(request);
+      return withTimeout(timeoutSeconds, new IoCall<WorkerResult>() {
+        @Override
+        public WorkerResult call() throws IOException {
+          boolean success = input.readBoolean();
+          byte[] out = new byte[input.readInt()];
+          input.readFully(out);
+          byte[] err = new byte[input.readInt()];
+          input.readFully(err);
+          return new WorkerResult(success, out, err);
+        }
+      });
+    }
+
+    void destroy() {
+      try {
+        output.close();
+      } catch (IOException e) {
+        // The process is going away anyway.
+      }
+      process.destroyForcibly();
+    }
+
+    private void sendRequest(List<String> request) throws IOException {
+      output.writeInt(request.size());
+      for (String arg : request) {
+        output.writeUTF(arg);
+      }
+      output.flush();
+    }
+
+    /*
+     * Runs a blocking read against the worker, killing the worker if it does not answer in time.
+     */
+    private <T> T withTimeout(int timeoutSeconds, IoCall<T> call) throws IOException {
+      ScheduledFuture<?> watchdog = null;
+      if (timeoutSeconds > 0) {
+        watchdog = watchdogs.schedule(new Runnable() {
+          @Override
+          public void run() {
+            timedOut = true;
+            process.destroyForcibly();
+          }
+        }, timeoutSeconds, TimeUnit.SECONDS);
+      }
+      try {
+        return call.call();
+      } finally {
+        if (watchdog != null) {
+          watchdog.cancel(false);
+        }
+      }
+    }
+  }
+
+  private interface IoCall<T> {
+    T call() throws IOException;
+  }
+
+  // Idle workers, least recently used first.
+  private final LinkedList<Worker> idleWorkers = new LinkedList<>();
+
+  private final ScheduledExecutorService watchdogs =
+      Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "kawa-worker-watchdog");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+
+  // The maximum number of idle workers to keep. 0 disables the pool.
+  private volatile int maxIdleWorkers = 0;
+  private volatile int maxBuildsPerWorker = 50;
+  private volatile String workerJar = null;
+
+  private final AtomicInteger workersStarted = new AtomicInteger(0);
+  private final AtomicInteger workersRetired = new AtomicInteger(0);
+  private final AtomicInteger workerJobs = new AtomicInteger(0);
+  private final AtomicInteger fallbackJobs = new AtomicInteger(0);
+
+  @VisibleForTesting
+  KawaCompilerPool() {
+  }
+
+  public static KawaCompilerPool getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Configures the pool.
+   *
+   * @param maxIdleWorkers the number of warm workers to keep, or 0 to disable the pool
+   * @param maxBuildsPerWorker the number of compilations after which a worker is retired
+   */
+  public void configure(int maxIdleWorkers, int maxBuildsPerWorker) {
+    String jar = null;
+    if (maxIdleWorkers > 0) {
+      try {
+        jar = new File(KawaCompilerWorker.class.getProtectionDomain().getCodeSource()
+            .getLocation().toURI()).getAbsolutePath();
+      } catch (URISyntaxException | NullPointerException | SecurityException e) {
+        LOG.log(Level.WARNING, "Unable to locate the Kawa worker classes; pool disabled", e);
+      }
+    }
+    synchronized (idleWorkers) {
+      this.workerJar = jar;
+      this.maxIdleWorkers = jar == null ? 0 : maxIdleWorkers;
+      this.maxBuildsPerWorker = Math.max(1, maxBuildsPerWorker);
+      while (idleWorkers.size() > this.maxIdleWorkers) {
+        retire(idleWorkers.removeFirst());
+      }
+    }
+  }
+
+  public boolean isEnabled() {
+    return maxIdleWorkers > 0;
+  }
+
+  /**
+   * Compiles the given job, using a warm worker when the pool is enabled.
+   *
+   * @param job the compilation to perform
+   * @param out standard output stream to redirect to
+   * @param err standard error stream to redirect to
+   * @param timeout timeout for the compilation
+   * @return {@code true} if the compilation succeeds, {@code false} otherwise
+   */
+  public boolean compile(Job job, PrintStream out, PrintStream err, Execution.Timeout timeout) {
+    if (!isEnabled()) {
+      return Execution.execute(null, job.toCommandLine(), out, err, timeout);
+    }
+
+    Worker worker;
+    try {
+      worker = acquire(job, timeout.getSeconds());
+    } catch (IOException e) {
+      LOG.log(Level.WARNING, "Unable to start Kawa worker; compiling in a new process", e);
+      fallbackJobs.incrementAndGet();
+      return Execution.execute(null, job.toCommandLine(), out, err, timeout);
+    }
+
+    WorkerResult result;
+    try {
+      result = worker.compile(job, timeout.getSeconds());
+    } catch (IOException e) {
+      retire(worker);
+      if (worker.timedOut) {
+        err.println("Process had to be forcibly terminated due to timeout");
+        return false;
+      }
+      LOG.log(Level.WARNING, "Kawa worker failed; compiling in a new process", e);
+      fallbackJobs.incrementAndGet();
+      return Execution.execute(null, job.toCommandLine(), out, err, timeout);
+    }
+    workerJobs.incrementAndGet();
+    out.write(result.out, 0, result.out.length);
+    out.flush();
+    err.write(result.err, 0, result.err.length);
+    err.flush();
+
+    if (result.success) {
+      release(worker);
+    } else {
+      // Kawa exits on compile errors, and its state is suspect after an exception anyway.
+      retire(worker);
+    }
+    return result.success;
+  }
+
+  /**
+   * Stops all idle workers.
+   */
+  public void shutdown() {
+    synchronized (idleWorkers) {
+      while (!idleWorkers.isEmpty()) {
+        retire(idleWorkers.removeFirst());
+      }
+    }
+  }
+
+  /*
+   * Kills the processes of the idle workers without removing them from the pool, as if they
+   * had crashed.
+   */
+  @VisibleForTesting
+  void killIdleWorkers() throws InterruptedException {
+    synchronized (idleWorkers) {
+      for (Worker worker : idleWorkers) {
+        worker.process.destroyForcibly().waitFor();
+      }
+    }
+  }
+
+  public int getIdleWorkerCount() {
+    synchronized (idleWorkers) {
+      return idleWorkers.size();
+    }
+  }
+
+  public int getWorkersStarted() {
+    return workersStarted.get();
+  }
+
+  public int getWorkersRetired() {
+    return workersRetired.get();
+  }
+
+  public int getWorkerJobs() {
+    return workerJobs.get();
+  }
+
+  public int getFallbackJobs() {
+    return fallbackJobs.get();
+  }
+
+  private Worker acquire(Job job, int startupTimeoutSeconds) throws IOException {
+    String key = job.getWorkerKey();
+    while (true) {
+      Worker candidate = null;
+      synchronized (idleWorkers) {
+        Iterator<Worker> it = idleWorkers.descendingIterator();
+        while (it.hasNext()) {
+          Worker worker = it.next();
+          if (worker.key.equals(key)) {
+            it.remove();
+            candidate = worker;
+            break;
+          }
+        }
+      }
+      if (candidate == null) {
+        return new Worker(job, workerJar, startupTimeoutSeconds);
+      }
+      if (candidate.isHealthy()) {
+        return candidate;
+      }
+      LOG.info("Discarding unhealthy Kawa worker");
+      retire(candidate);
+    }
+  }
+
+  private void release(Worker worker) {
+    if (worker.builds >= maxBuildsPerWorker) {
+      retire(worker);
+      return;
+    }
+    synchronized (idleWorkers) {
+      if (maxIdleWorkers == 0) {
+        retire(worker);
+        return;
+      }
+      idleWorkers.addLast(worker);
+      while (idleWorkers.size() > maxIdleWorkers) {
+        retire(idleWorkers.removeFirst());
+      }
+    }
+  }
+
+  private void retire(Worker worker) {
+    workersRetired.incrementAndGet();
+    worker.destroy();
+  }
+}
@@ -0,0 +1,220 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2026 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.buildserver.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.File;
+import java.io.PrintStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Entry point for a long-lived Kawa compiler process managed by {@link KawaCompilerPool}.
+ *
+ * <p>The worker loads the YAIL runtime once at startup and then serves compile requests read
+ * from its standard input until the stream is closed. Because Kawa writes diagnostics to
+ * {@code System.out} and {@code System.err}, both are redirected to per-job buffers and the
+ * original standard output is reserved for the protocol.</p>
+ *
+ * <p>Protocol (all values written with {@link DataOutputStream}):</p>
+ * <ul>
+ *   <li>On startup the worker writes {@link #READY}.</li>
+ *   <li>A request is an int count followed by that many UTF strings. The first string is the
+ *   command: {@link #PING} or {@link #COMPILE}. The arguments of a compile request are the
+ *   output directory, the package prefix, the classpath specific to the job (possibly empty),
+ *   and the files to compile.</li>
+ *   <li>{@link #PING} is answered with {@link #PONG}.</li>
+ *   <li>{@link #COMPILE} is answered with a boolean success flag followed by the captured
+ *   standard output and standard error, each as an int length and the raw bytes.</li>
+ * </ul>
+ *
+ * <p>The worker is started with the classpath shared by all builds. The classpath of a job is
+ * loaded in a class loader used only for that job, and the types Kawa looked up during the job
+ * are forgotten afterwards, so that one project's extensions are never seen by the next.</p>
+ *
+ * <p>Kawa calls {@link System#exit(int)} when a source file has errors. A shutdown hook reports
+ * the job in progress as failed with its captured output, so the pool still receives the
+ * compiler messages before it discards the worker.</p>
+ */
+public final class KawaCompilerWorker {
+  static final String READY = "READY";
+  static final String PING = "PING";
+  static final String PONG = "PONG";
+  static final String COMPILE = "COMPILE";
+
+  private static final Object LOCK = new Object();
+  private static DataOutputStream protocol;
+  private static ByteArrayOutputStream currentOut;
+  private static ByteArrayOutputStream currentErr;
+
+  private KawaCompilerWorker() {
+  }
+
+  /**
+   * Starts the worker.
+   *
+   * @param args a single argument: the path to runtime.scm
+   */
+  public static void main(String[] args) throws Exception {
+    if (args.length != 1) {
+      System.err.println("Usage: KawaCompilerWorker <runtime.scm>");
+      System.exit(2);
+    }
+    protocol = new DataOutputStream(new BufferedOutputStream(
+        new FileOutputStream(FileDescriptor.out)));
+    DataInputStream input = new DataInputStream(new BufferedInputStream(
+        new FileInputStream(FileDescriptor.in)));
+    PrintStream realErr = System.err;
+    // Anything printed outside of a job must not end up on the protocol stream.
+    System.setOut(realErr);
+    Runtime.getRuntime().addShutdownHook(new Thread() {
+      @Override
+      public void run() {
+        synchronized (LOCK) {
+          if (currentOut != null) {
+            try {
+              writeResult(false);
+            } catch (IOException e) {
+              // The pool will treat the worker as crashed.
+            }
+          }
+        }
+      }
+    });
+
+    Class<?> repl = Class.forName("kawa.repl");
+    Method processArgs = repl.getMethod("processArgs", String[].class, int.class, int.class);
+    Class<?> moduleManagerClass = Class.forName("gnu.expr.ModuleManager");
+    Object moduleManager = moduleManagerClass.getMethod("getInstance").invoke(null);
+    Method clearModules = moduleManagerClass.getMethod("clear");
+    // Kawa's table of the types it has looked up by name
+    Field typesField = Class.forName("gnu.bytecode.Type").getDeclaredField("mapNameToType");
+    typesField.setAccessible(true);
+    @SuppressWarnings("unchecked")
+    Map<String, Object> types = (Map<String, Object>) typesField.get(null);
+
+    // Load the runtime once; every compile request reuses its definitions.
+    String[] loadArgs = { "-f", args[0] };
+    processArgs.invoke(null, loadArgs, 0, loadArgs.length);
+    Set<String> runtimeTypes = new HashSet<>(types.keySet());
+    writeString(READY);
+
+    while (true) {
+      String[] request;
+      try {
+        request = readRequest(input);
+      } catch (EOFException e) {
+        // The build server closed the channel.
+        System.exit(0);
+        return;
+      }
+      if (request.length == 0) {
+        continue;
+      }
+      if (PING.equals(request[0])) {
+        writeString(PONG);
+      } else if (COMPILE.equals(request[0]) && request.length > 4) {
+        synchronized (LOCK) {
+          currentOut = new ByteArrayOutputStream();
+          currentErr = new ByteArrayOutputStream();
+          System.setOut(new PrintStream(currentOut, true));
+          System.setErr(new PrintStream(currentErr, true));
+        }
+        boolean success;
+        URLClassLoader jobLoader = new URLClassLoader(toUrls(request[3]),
+            KawaCompilerWorker.class.getClassLoader());
+        Thread.currentThread().setContextClassLoader(jobLoader);
+        try {
+          // Forget modules compiled by earlier jobs so stale class names are not resolved.
+          clearModules.invoke(moduleManager);
+          String[] compileArgs = new String[request.length + 1];
+          compileArgs[0] = "-d";
+          compileArgs[1] = request[1];
+          compileArgs[2] = "-P";
+          compileArgs[3] = request[2];
+          compileArgs[4] = "-C";
+          System.arraycopy(request, 4, compileArgs, 5, request.length - 4);
+          processArgs.invoke(null, compileArgs, 0, compileArgs.length);
+          success = true;
+        } catch (InvocationTargetException e) {
+          e.getCause().printStackTrace();
+          success = false;
+        } finally {
+          // Types looked up during the job may come from its class loader.
+          types.keySet().retainAll(runtimeTypes);
+          Thread.currentThread().setContextClassLoader(KawaCompilerWorker.class.getClassLoader());
+          jobLoader.close();
+        }
+        synchronized (LOCK) {
+          System.out.flush();
+          System.err.flush();
+          writeResult(success);
+          System.setOut(realErr);
+          System.setErr(realErr);
+        }
+      } else {
+        realErr.println("Unknown worker request: " + request[0]);
+        System.exit(2);
+      }
+    }
+  }
+
+  private static URL[] toUrls(String classpath) throws MalformedURLException {
+    List<URL> urls = new ArrayList<>();
+    for (String entry : classpath.split(File.pathSeparator)) {
+      if (!entry.isEmpty()) {
+        urls.add(new File(entry).toURI().toURL());
+      }
+    }
+    return urls.toArray(new URL[0]);
+  }
+
+  private static String[] readRequest(DataInputStream input) throws IOException {
+    int count = input.readInt();
+    String[] request = new String[count];
+    for (int i = 0; i < count; i++) {
+      request[i] = input.readUTF();
+    }
+    return request;
+  }
+
+  private static void writeString(String value) throws IOException {
+    protocol.writeUTF(value);
+    protocol.flush();
+  }
+
+  // Must be called while holding LOCK.
+  private static void writeResult(boolean success) throws IOException {
+    protocol.writeBoolean(success);
+    byte[] out = currentOut.toByteArray();
+    protocol.writeInt(out.length);
+    protocol.write(out);
+    byte[] err = currentErr.toByteArray();
+    protocol.writeInt(err.length);
+    protocol.write(err);
+    protocol.flush();
+    currentOut = null;
+    currentErr = null;
+  }
+}
@@ -0,0 +1,181 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2026 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.buildserver.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.SecureRandom;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x500.X500NameBuilder;
+import org.bouncycastle.asn1.x500.style.BCStyle;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+
+/**
+ * Creates the keystores used to sign the apps of projects that do not have one yet.
+ *
+ * <p>The keystore holds a self-signed RSA key with the same alias, passwords, distinguished name
+ * and validity that {@code keytool -genkey} was given before, but it is created in-process.
+ * Generating the RSA key pair is the slow part, so a background thread can keep a pool of key pairs
+ * ready; a new keystore then only needs its certificate signed. When the pool is empty or disabled
+ * the key pair is generated by the calling thread.</p>
+ */
+public final class KeyStoreGenerator {
+  private static final Logger LOG = Logger.getLogger(KeyStoreGenerator.class.getName());
+
+  public static final String KEY_ALIAS = "AndroidKey";
+  private static final char[] PASSWORD = "android".toCharArray();
+  private static final String KEY_ALGORITHM = "RSA";
+  private static final int KEY_SIZE = 2048;
+  private static final String SIGNATURE_ALGORITHM = "SHA256withRSA";
+
+  /* Note: must expire after October 22, 2033, to be in the Android
+   * marketplace.  Android docs recommend "10000" as the expiration # of
+   * days.
+   */
+  private static final long VALIDITY_MILLIS = TimeUnit.DAYS.toMillis(10000);
+
+  private static final KeyStoreGenerator INSTANCE = new KeyStoreGenerator();
+
+  private final SecureRandom random = new SecureRandom();
+  private volatile BlockingQueue<KeyPair> pool = null;
+  private volatile int poolSize = 0;
+  private Thread filler = null;
+
+  private final AtomicInteger keyStoresCreated = new AtomicInteger(0);
+  private final AtomicInteger pooledKeysUsed = new AtomicInteger(0);
+  private final AtomicInteger inlineKeysGenerated = new AtomicInteger(0);
+
+  private KeyStoreGenerator() {
+  }
+
+  public static KeyStoreGenerator getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Sets the number of key pairs generated ahead of time.
+   *
+   * @param size the number of key pairs to keep ready, or 0 to generate them on demand
+   */
+  public synchronized void configure(int size) {
+    if (filler != null) {
+      filler.interrupt();
+      filler = null;
+    }
+    poolSize = Math.max(0, size);
+    if (poolSize == 0) {
+      pool = null;
+      return;
+    }
+    final BlockingQueue<KeyPair> keys = new LinkedBlockingQueue<>(poolSize);
+    pool = keys;
+    filler = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          while (!Thread.currentThread().isInterrupted()) {
+            keys.put(generateKeyPair());
+          }
+        } catch (InterruptedException e) {
+          // configure() replaced this pool
+        } catch (GeneralSecurityException e) {
+          LOG.log(Level.SEVERE, "Unable to pre-generate key pairs", e);
+        }
+      }
+    }, "keystore-keygen");
+    filler.setDaemon(true);
+    // Builds waiting on the CPU matter more than refilling the pool.
+    filler.setPriority(Thread.MIN_PRIORITY);
+    filler.start();
+  }
+
+  /**
+   * Writes a new keystore for the given user.
+   *
+   * @param userName the user name put in the certificate's common name
+   * @param keyStoreFile the file to write
+   * @throws IOException if the keystore could not be created or written
+   */
+  public void generate(String userName, File keyStoreFile) throws IOException {
+    try {
+      KeyPair keyPair = takeKeyPair();
+      X500Name name = new X500NameBuilder(BCStyle.INSTANCE)
+          .addRDN(BCStyle.CN, userName)
+          .addRDN(BCStyle.O, "AppInventor for Android")
+          .addRDN(BCStyle.C, "US")  // US may not be the right country.
+          .build();
+      long now = System.currentTimeMillis();
+      ContentSigner signer = new JcaContentSignerBuilder(SIGNATURE_ALGORITHM)
+          .build(keyPair.getPrivate());
+      X509Certificate certificate = new JcaX509CertificateConverter().getCertificate(
+          new JcaX509v3CertificateBuilder(name, new BigInteger(63, random), new Date(now),
+              new Date(now + VALIDITY_MILLIS), name, keyPair.getPublic()).build(signer));
+
+      KeyStore keyStore = KeyStore.getInstance("JKS");
+      keyStore.load(null, PASSWORD);
+      keyStore.setKeyEntry(KEY_ALIAS, keyPair.getPrivate(), PASSWORD,
+          new Certificate[] { certificate });
+      try (OutputStream out = new FileOutputStream(keyStoreFile)) {
+        keyStore.store(out, PASSWORD);
+      }
+      keyStoresCreated.incrementAndGet();
+    } catch (GeneralSecurityException | OperatorCreationException e) {
+      throw new IOException("Unable to create keystore", e);
+    }
+  }
+
+  /**
+   * Adds the generator's counters to the variables reported on /buildserver/vars.
+   *
+   * @param variables the map of variables being reported
+   */
+  public void reportVariables(Map<String, String> variables) {
+    BlockingQueue<KeyPair> keys = pool;
+    variables.put("keystore-key-pool-size", poolSize + "");
+    variables.put("keystore-key-pool-depth", (keys == null ? 0 : keys.size()) + "");
+    variables.put("keystores-created", keyStoresCreated.get() + "");
+    variables.put("keystore-pooled-keys-used", pooledKeysUsed.get() + "");
+    variables.put("keystore-inline-keys-generated", inlineKeysGenerated.get() + "");
+  }
+
+  private KeyPair takeKeyPair() throws GeneralSecurityException {
+    BlockingQueue<KeyPair> keys = pool;
+    KeyPair keyPair = keys == null ? null : keys.poll();
+    if (keyPair != null) {
+      pooledKeysUsed.incrementAndGet();
+      return keyPair;
+    }
+    inlineKeysGenerated.incrementAndGet();
+    return generateKeyPair();
+  }
+
+  private KeyPair generateKeyPair() throws GeneralSecurityException {
+    KeyPairGenerator generator = KeyPairGenerator.getInstance(KEY_ALGORITHM);
+    generator.initialize(KEY_SIZE, random);
+    return generator.generateKeyPair();
+  }
+}
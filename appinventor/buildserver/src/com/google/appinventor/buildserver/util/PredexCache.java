@@ -0,0 +1,251 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2026 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.buildserver.util;
+
+import com.google.appinventor.buildserver.stats.TaskMetrics;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Content-addressed cache of pre-dexed libraries stored in the {@code --dexCacheDir} directory.
+ *
+ * <p>Entries are keyed by a hash of the library's contents. Lookups for different keys proceed in
+ * parallel; lookups for the same key wait for the first one to finish dexing. New entries are
+ * written into a temporary directory and renamed into place, so a partially written dex file is
+ * never visible to other builds.</p>
+ *
+ * <p>The last-modified time of an entry records when it was last used. When a size limit is set,
+ * the least recently used entries are deleted once the cache grows past it. Entries used within
+ * {@link #IN_USE_GRACE_MILLIS} are never evicted, because a running build may still hand them to
+ * d8.</p>
+ */
+public final class PredexCache {
+  private static final Logger LOG = Logger.getLogger(PredexCache.class.getName());
+
+  private static final String PREFIX = "dex-cached-";
+  private static final String SUFFIX = ".dex";
+  private static final String OUTPUT_NAME = "classes.dex";
+
+  // Longer than the maximum build time so that entries used by a running build are kept.
+  private static final long IN_USE_GRACE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+  // Keys are guarded by a fixed set of locks rather than one lock per key, so that nothing
+  // accumulates for keys that have been evicted. Two libraries sharing a lock only means one
+  // waits for the other to be dexed.
+  private static final int LOCK_STRIPES = 64;
+
+  private static final ConcurrentMap<File, PredexCache> CACHES = new ConcurrentHashMap<>();
+
+  // The maximum size of each cache directory in bytes. 0 means unlimited.
+  private static volatile long maxBytes = 0;
+
+  /**
+   * Produces the dex file for a cache miss.
+   */
+  public interface Producer {
+    /**
+     * Dexes the library into {@code outputDir}, which must contain a classes.dex file afterwards.
+     *
+     * @param outputDir an empty directory for the output
+     * @return true if dexing succeeded
+     * @throws IOException if dexing fails due to an I/O issue
+     */
+    boolean produce(File outputDir) throws IOException;
+  }
+
+  private static class Entry {
+    final long size;
+    volatile long lastUsed;
+
+    Entry(long size, long lastUsed) {
+      this.size = size;
+      this.lastUsed = lastUsed;
+    }
+  }
+
+  private final File directory;
+  private final Object[] locks = new Object[LOCK_STRIPES];
+  private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+  private final AtomicLong totalBytes = new AtomicLong(0);
+  private final AtomicInteger hits = new AtomicInteger(0);
+  private final AtomicInteger misses = new AtomicInteger(0);
+  private final AtomicInteger failures = new AtomicInteger(0);
+  private final AtomicInteger evictions = new AtomicInteger(0);
+
+  private PredexCache(File directory) {
+    this.directory = directory;
+    for (int i = 0; i < locks.length; i++) {
+      locks[i] = new Object();
+    }
+    ExecutorUtils.createDir(directory);
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        String name = file.getName();
+        if (file.isFile() && name.startsWith(PREFIX) && name.endsWith(SUFFIX)) {
+          String key = name.substring(PREFIX.length(), name.length() - SUFFIX.length());
+          entries.put(key, new Entry(file.length(), file.lastModified()));
+          totalBytes.addAndGet(file.length());
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the cache stored in the given directory.
+   *
+   * @param directory the dex cache directory
+   * @return the cache for {@code directory}
+   */
+  public static PredexCache forDirectory(File directory) {
+    File key = directory.getAbsoluteFile();
+    PredexCache cache = CACHES.get(key);
+    if (cache == null) {
+      cache = CACHES.computeIfAbsent(key, PredexCache::new);
+    }
+    return cache;
+  }
+
+  /**
+   * Sets the size limit applied to every cache directory.
+   *
+   * @param bytes the maximum size in bytes, or 0 for no limit
+   */
+  public static void setMaxBytes(long bytes) {
+    maxBytes = Math.max(0, bytes);
+  }
+
+  /**
+   * Returns the dexed library for {@code key}, creating it with {@code producer} on a miss.
+   *
+   * @param key the content hash of the library
+   * @param producer dexes the library on a cache miss
+   * @return the cached dex file, or null if the producer failed
+   * @throws IOException if the dex file could not be produced or stored
+   */
+  public File get(String key, Producer producer) throws IOException {
+    File target = new File(directory, PREFIX + key + SUFFIX);
+    synchronized (lockFor(key)) {
+      if (target.isFile()) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+          // Written by another process sharing the directory
+          entry = new Entry(target.length(), target.lastModified());
+          entries.put(key, entry);
+          totalBytes.addAndGet(entry.size);
+        }
+        hits.incrementAndGet();
+        TaskMetrics.recordCacheLookup(true);
+        touch(target, entry);
+        return target;
+      }
+      misses.incrementAndGet();
+      TaskMetrics.recordCacheLookup(false);
+      File tempDir = Files.createTempDirectory(directory.toPath(), "predex-").toFile();
+      try {
+        if (!producer.produce(tempDir)) {
+          failures.incrementAndGet();
+          return null;
+        }
+        File output = new File(tempDir, OUTPUT_NAME);
+        try {
+          Files.move(output.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+          Files.move(output.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+      } finally {
+        FileUtils.deleteQuietly(tempDir);
+      }
+      Entry previous = entries.put(key, new Entry(target.length(), target.lastModified()));
+      if (previous != null) {
+        totalBytes.addAndGet(-previous.size);
+      }
+      totalBytes.addAndGet(target.length());
+    }
+    evictIfNeeded();
+    return target;
+  }
+
+  /**
+   * Adds the cache's counters to the variables reported on /buildserver/vars.
+   *
+   * @param variables the map of variables being reported
+   */
+  public void reportVariables(Map<String, String> variables) {
+    variables.put("dex-cache-entries", entries.size() + "");
+    variables.put("dex-cache-bytes", totalBytes.get() + "");
+    variables.put("dex-cache-max-bytes", maxBytes == 0 ? "unlimited" : maxBytes + "");
+    variables.put("dex-cache-hits", hits.get() + "");
+    variables.put("dex-cache-misses", misses.get() + "");
+    variables.put("dex-cache-failures", failures.get() + "");
+    variables.put("dex-cache-evictions", evictions.get() + "");
+  }
+
+  private Object lockFor(String key) {
+    return locks[(key.hashCode() & Integer.MAX_VALUE) % locks.length];
+  }
+
+  private static void touch(File file, Entry entry) {
+    long now = System.currentTimeMillis();
+    entry.lastUsed = now;
+    if (!file.setLastModified(now)) {
+      LOG.fine("Unable to update access time of " + file);
+    }
+  }
+
+  private void evictIfNeeded() {
+    long limit = maxBytes;
+    if (limit == 0 || totalBytes.get() <= limit) {
+      return;
+    }
+    List<Map.Entry<String, Entry>> candidates = new ArrayList<>(entries.entrySet());
+    Collections.sort(candidates, new Comparator<Map.Entry<String, Entry>>() {
+      @Override
+      public int compare(Map.Entry<String, Entry> a, Map.Entry<String, Entry> b) {
+        return Long.compare(a.getValue().lastUsed, b.getValue().lastUsed);
+      }
+    });
+    long cutoff = System.currentTimeMillis() - IN_USE_GRACE_MILLIS;
+    for (Map.Entry<String, Entry> candidate : candidates) {
+      if (totalBytes.get() <= limit || candidate.getValue().lastUsed > cutoff) {
+        break;
+      }
+      String key = candidate.getKey();
+      synchronized (lockFor(key)) {
+        Entry entry = entries.get(key);
+        if (entry != candidate.getValue()) {
+          continue;  // Replaced or removed concurrently
+        }
+        File file = new File(directory, PREFIX + key + SUFFIX);
+        try {
+          Files.deleteIfExists(file.toPath());
+        } catch (IOException e) {
+          LOG.log(Level.WARNING, "Unable to evict " + file, e);
+          continue;
+        }
+        entries.remove(key);
+        totalBytes.addAndGet(-entry.size);
+        evictions.incrementAndGet();
+      }
+    }
+  }
+}
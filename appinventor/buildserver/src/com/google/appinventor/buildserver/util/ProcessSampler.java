@@ -0,0 +1,135 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2026 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.buildserver.util;
+
+import com.google.appinventor.buildserver.stats.TaskMetrics;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Waits for a child process while sampling its resource usage from {@code /proc}, and records
+ * the last sample in the {@link TaskMetrics} of the running task.
+ *
+ * <p>The kernel discards a process's accounting once it has been reaped, so the usage is sampled
+ * every {@link #SAMPLE_INTERVAL_MILLIS} while the process runs; up to one interval of CPU time and
+ * I/O at the end of the process is not counted, nor is the usage of processes it starts in turn.
+ * Nothing is sampled when {@code /proc} is not available or no task is being measured on the
+ * calling thread.</p>
+ */
+public final class ProcessSampler {
+  private static final long SAMPLE_INTERVAL_MILLIS = 100;
+  // USER_HZ, the unit of the CPU times in /proc/<pid>/stat, is 100 on all supported platforms
+  private static final long MILLIS_PER_TICK = 10;
+  private static final File PROC = new File("/proc");
+
+  private final Process process;
+  private final File procDir;
+  private long cpuMillis = 0;
+  private long peakRssKb = 0;
+  private long bytesRead = 0;
+  private long bytesWritten = 0;
+
+  /**
+   * Creates a sampler for the given process.
+   *
+   * @param process a running child process
+   */
+  public ProcessSampler(Process process) {
+    this.process = process;
+    long pid = TaskMetrics.current() == null || !PROC.isDirectory() ? -1 : pidOf(process);
+    this.procDir = pid < 0 ? null : new File(PROC, Long.toString(pid));
+  }
+
+  /**
+   * Waits for the process to exit and records its resource usage.
+   *
+   * @param timeoutMillis how long to wait, or 0 to wait forever
+   * @return true if the process exited, false if the timeout elapsed first
+   * @throws InterruptedException if the calling thread is interrupted while waiting
+   */
+  public boolean waitFor(long timeoutMillis) throws InterruptedException {
+    try {
+      if (procDir == null) {
+        if (timeoutMillis <= 0) {
+          process.waitFor();
+          return true;
+        }
+        return process.waitFor(timeoutMillis, TimeUnit.MILLISECONDS);
+      }
+      long deadline = System.currentTimeMillis() + timeoutMillis;
+      while (true) {
+        sample();
+        long wait = SAMPLE_INTERVAL_MILLIS;
+        if (timeoutMillis > 0) {
+          long remaining = deadline - System.currentTimeMillis();
+          if (remaining <= 0) {
+            return false;
+          }
+          wait = Math.min(wait, remaining);
+        }
+        if (process.waitFor(wait, TimeUnit.MILLISECONDS)) {
+          return true;
+        }
+      }
+    } finally {
+      if (procDir != null) {
+        TaskMetrics.recordChildProcess(cpuMillis, peakRssKb, bytesRead, bytesWritten);
+      }
+    }
+  }
+
+  private void sample() {
+    try {
+      // The command name in field 2 may contain spaces, so count fields after its ')'.
+      String stat = new String(Files.readAllBytes(new File(procDir, "stat").toPath()),
+          StandardCharsets.UTF_8);
+      String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+      // utime and stime are fields 14 and 15 of the file, 12 and 13 after the command name
+      cpuMillis = (Long.parseLong(fields[11]) + Long.parseLong(fields[12])) * MILLIS_PER_TICK;
+      peakRssKb = Math.max(peakRssKb, readField(new File(procDir, "status"), "VmHWM:"));
+      bytesRead = Math.max(bytesRead, readField(new File(procDir, "io"), "rchar:"));
+      bytesWritten = Math.max(bytesWritten, readField(new File(procDir, "io"), "wchar:"));
+    } catch (IOException | RuntimeException e) {
+      // The process exited between samples, or the file is not readable; keep the last sample
+    }
+  }
+
+  private static long readField(File file, String name) throws IOException {
+    List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+    for (String line : lines) {
+      if (line.startsWith(name)) {
+        return Long.parseLong(line.substring(name.length()).trim().split("\\s+")[0]);
+      }
+    }
+    return 0;
+  }
+
+  /*
+   * Process.pid() exists from Java 9. On Java 8, the pid is a private field of the Unix
+   * implementation.
+   */
+  private static long pidOf(Process process) {
+    try {
+      Method pid = Process.class.getMethod("pid");
+      return (Long) pid.invoke(process);
+    } catch (ReflectiveOperationException e) {
+      // Java 8
+    }
+    try {
+      Field pid = process.getClass().getDeclaredField("pid");
+      pid.setAccessible(true);
+      return pid.getInt(process);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      return -1;
+    }
+  }
+}
@@ -0,0 +1,284 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2026 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.buildserver.util;
+
+import com.google.appinventor.buildserver.stats.TaskMetrics;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Cache of the class files Kawa generates for individual YAIL sources.
+ *
+ * <p>Each entry is a zip of the class files produced for one source, stored under a key that
+ * hashes the source together with everything else that affects its compilation (see
+ * {@code GenerateClasses}). Entries are written to a temporary file and renamed into place. The
+ * last-modified time of an entry records its last use. As in {@link PredexCache}, the size and
+ * last use of each entry are kept in memory, so that the least recently used entries can be
+ * deleted once the cache grows past its size limit without listing the directory.</p>
+ *
+ * <p>The cache is disabled unless {@link #configure(File, long)} is called with a directory.</p>
+ */
+public final class ScreenClassCache {
+  private static final Logger LOG = Logger.getLogger(ScreenClassCache.class.getName());
+
+  private static final String SUFFIX = ".classes.zip";
+
+  // Keys are guarded by a fixed set of locks rather than one lock per key, as in PredexCache.
+  private static final int LOCK_STRIPES = 64;
+
+  private static volatile ScreenClassCache instance = null;
+
+  private static class Entry {
+    final long size;
+    volatile long lastUsed;
+
+    Entry(long size, long lastUsed) {
+      this.size = size;
+      this.lastUsed = lastUsed;
+    }
+  }
+
+  private final File directory;
+  private final long maxBytes;
+  private final Object[] locks = new Object[LOCK_STRIPES];
+  private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+  private final AtomicLong totalBytes = new AtomicLong(0);
+  private final AtomicInteger hits = new AtomicInteger(0);
+  private final AtomicInteger misses = new AtomicInteger(0);
+  private final AtomicInteger stores = new AtomicInteger(0);
+  private final AtomicInteger evictions = new AtomicInteger(0);
+
+  private ScreenClassCache(File directory, long maxBytes) {
+    this.directory = directory;
+    this.maxBytes = maxBytes;
+    for (int i = 0; i < locks.length; i++) {
+      locks[i] = new Object();
+    }
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        String name = file.getName();
+        if (file.isFile() && name.endsWith(SUFFIX)) {
+          String key = name.substring(0, name.length() - SUFFIX.length());
+          entries.put(key, new Entry(file.length(), file.lastModified()));
+          totalBytes.addAndGet(file.length());
+        }
+      }
+    }
+  }
+
+  /**
+   * Enables the cache.
+   *
+   * @param directory the directory holding the cache, or null to disable the cache
+   * @param maxBytes the maximum size of the cache in bytes, or 0 for no limit
+   */
+  public static void configure(File directory, long maxBytes) {
+    if (directory == null) {
+      instance = null;
+    } else {
+      ExecutorUtils.createDir(directory);
+      instance = new ScreenClassCache(directory, Math.max(0, maxBytes));
+    }
+  }
+
+  /**
+   * Returns the configured cache.
+   *
+   * @return the cache, or null if the cache is disabled
+   */
+  public static ScreenClassCache getInstance() {
+    return instance;
+  }
+
+  /**
+   * Extracts the class files cached under {@code key} into {@code classesDir}.
+   *
+   * @param key the cache key of the source
+   * @param classesDir the root of the class output directory
+   * @return true if the entry was found and restored
+   */
+  public boolean restore(String key, File classesDir) {
+    File entry = new File(directory, key + SUFFIX);
+    if (!entry.isFile()) {
+      misses.incrementAndGet();
+      TaskMetrics.recordCacheLookup(false);
+      return false;
+    }
+    try (ZipInputStream zip = new ZipInputStream(
+        new BufferedInputStream(new FileInputStream(entry)))) {
+      ZipEntry zipEntry;
+      String root = classesDir.getCanonicalPath() + File.separator;
+      while ((zipEntry = zip.getNextEntry()) != null) {
+        File output = new File(classesDir, zipEntry.getName());
+        if (!output.getCanonicalPath().startsWith(root)) {
+          throw new IOException("Invalid entry " + zipEntry.getName() + " in " + entry);
+        }
+        Files.createParentDirs(output);
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(output))) {
+          ByteStreams.copy(zip, out);
+        }
+      }
+    } catch (IOException e) {
+      // A damaged entry is treated as a miss; the source is compiled again and re-cached.
+      LOG.log(Level.WARNING, "Unable to restore cached classes from " + entry, e);
+      misses.incrementAndGet();
+      TaskMetrics.recordCacheLookup(false);
+      return false;
+    }
+    synchronized (lockFor(key)) {
+      Entry cached = entries.get(key);
+      if (cached == null && entry.isFile()) {
+        // Written by another process sharing the directory
+        cached = new Entry(entry.length(), entry.lastModified());
+        entries.put(key, cached);
+        totalBytes.addAndGet(cached.size);
+      }
+      if (cached != null) {
+        touch(entry, cached);
+      }
+    }
+    hits.incrementAndGet();
+    TaskMetrics.recordCacheLookup(true);
+    return true;
+  }
+
+  /**
+   * Stores class files under {@code key}.
+   *
+   * @param key the cache key of the source
+   * @param classesDir the root of the class output directory
+   * @param classFiles the class files generated for the source, all within {@code classesDir}
+   * @throws IOException if the entry cannot be written
+   */
+  public void store(String key, File classesDir, List<File> classFiles) throws IOException {
+    String root = classesDir.getAbsolutePath() + File.separator;
+    File temp = File.createTempFile("screen-", ".tmp", directory);
+    try {
+      try (ZipOutputStream zip = new ZipOutputStream(
+          new BufferedOutputStream(new FileOutputStream(temp)))) {
+        for (File classFile : classFiles) {
+          String name = classFile.getAbsolutePath().substring(root.length())
+              .replace(File.separatorChar, '/');
+          zip.putNextEntry(new ZipEntry(name));
+          try (InputStream in = new FileInputStream(classFile)) {
+            ByteStreams.copy(in, zip);
+          }
+          zip.closeEntry();
+        }
+      }
+      File entry = new File(directory, key + SUFFIX);
+      synchronized (lockFor(key)) {
+        try {
+          java.nio.file.Files.move(temp.toPath(), entry.toPath(),
+              StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+          java.nio.file.Files.move(temp.toPath(), entry.toPath(),
+              StandardCopyOption.REPLACE_EXISTING);
+        }
+        Entry previous = entries.put(key, new Entry(entry.length(), entry.lastModified()));
+        if (previous != null) {
+          totalBytes.addAndGet(-previous.size);
+        }
+        totalBytes.addAndGet(entry.length());
+      }
+      stores.incrementAndGet();
+    } finally {
+      if (temp.exists() && !temp.delete()) {
+        LOG.warning("Unable to delete " + temp);
+      }
+    }
+    evictIfNeeded();
+  }
+
+  /**
+   * Adds the cache's counters to the variables reported on /buildserver/vars.
+   *
+   * @param variables the map of variables being reported
+   */
+  public void reportVariables(Map<String, String> variables) {
+    variables.put("screen-cache-entries", entries.size() + "");
+    variables.put("screen-cache-bytes", totalBytes.get() + "");
+    variables.put("screen-cache-hits", hits.get() + "");
+    variables.put("screen-cache-misses", misses.get() + "");
+    variables.put("screen-cache-stores", stores.get() + "");
+    variables.put("screen-cache-evictions", evictions.get() + "");
+  }
+
+  private Object lockFor(String key) {
+    return locks[(key.hashCode() & Integer.MAX_VALUE) % locks.length];
+  }
+
+  private static void touch(File file, Entry entry) {
+    long now = System.currentTimeMillis();
+    entry.lastUsed = now;
+    if (!file.setLastModified(now)) {
+      LOG.fine("Unable to update access time of " + file);
+    }
+  }
+
+  private void evictIfNeeded() {
+    if (maxBytes == 0 || totalBytes.get() <= maxBytes) {
+      return;
+    }
+    List<Map.Entry<String, Entry>> candidates = new ArrayList<>(entries.entrySet());
+    Collections.sort(candidates, new Comparator<Map.Entry<String, Entry>>() {
+      @Override
+      public int compare(Map.Entry<String, Entry> a, Map.Entry<String, Entry> b) {
+        return Long.compare(a.getValue().lastUsed, b.getValue().lastUsed);
+      }
+    });
+    for (Map.Entry<String, Entry> candidate : candidates) {
+      if (totalBytes.get() <= maxBytes) {
+        break;
+      }
+      String key = candidate.getKey();
+      synchronized (lockFor(key)) {
+        Entry entry = entries.get(key);
+        if (entry != candidate.getValue()) {
+          continue;  // Replaced or removed concurrently
+        }
+        // Restoring copies the classes out, so an entry can be deleted even while in use.
+        File file = new File(directory, key + SUFFIX);
+        try {
+          java.nio.file.Files.deleteIfExists(file.toPath());
+        } catch (IOException e) {
+          LOG.log(Level.WARNING, "Unable to evict " + file, e);
+          continue;
+        }
+        entries.remove(key);
+        totalBytes.addAndGet(-entry.size);
+        evictions.incrementAndGet();
+      }
+    }
+  }
+}
@@ -0,0 +1,184 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2026 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.buildserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests for {@link BuildQueue}.
+ */
+public class BuildQueueTest {
+  private final List<String> started = new CopyOnWriteArrayList<>();
+  private final List<CountDownLatch> releases = new ArrayList<>();
+  private BuildQueue queue;
+
+  @After
+  public void tearDown() {
+    for (CountDownLatch release : releases) {
+      release.countDown();
+    }
+    if (queue != null) {
+      queue.shutdown();
+    }
+  }
+
+  @Test
+  public void testQueuesBuildsBeyondCapacity() throws Exception {
+    queue = new BuildQueue(1, 2, 0, 60);
+    CountDownLatch first = submit("alice", "a1");
+    CountDownLatch second = submit("bob", "b1");
+    awaitStarted(1);
+    assertEquals(1, queue.getActiveTaskCount());
+    assertEquals(1, queue.getQueuedTaskCount());
+
+    first.countDown();
+    awaitStarted(2);
+    assertEquals(Arrays.asList("a1", "b1"), started);
+    assertEquals(0, queue.getQueuedTaskCount());
+    second.countDown();
+  }
+
+  @Test
+  public void testUsersAreServedInTurn() throws Exception {
+    queue = new BuildQueue(1, 10, 0, 60);
+    CountDownLatch blocker = submit("carol", "c1");
+    awaitStarted(1);
+    submit("alice", "a1").countDown();
+    submit("alice", "a2").countDown();
+    submit("alice", "a3").countDown();
+    submit("bob", "b1").countDown();
+    submit("bob", "b2").countDown();
+
+    blocker.countDown();
+    awaitStarted(6);
+    assertEquals(Arrays.asList("c1", "a1", "b1", "a2", "b2", "a3"), started);
+  }
+
+  @Test
+  public void testRejectsWhenQueueIsFull() throws Exception {
+    queue = new BuildQueue(1, 1, 0, 60);
+    submit("alice", "a1");
+    submit("bob", "b1");
+    try {
+      submit("carol", "c1");
+      fail("Expected RejectedExecutionException");
+    } catch (RejectedExecutionException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testRejectsWhenUserShareIsFull() throws Exception {
+    queue = new BuildQueue(1, 10, 1, 60);
+    submit("alice", "a1");
+    submit("alice", "a2");
+    try {
+      submit("alice", "a3");
+      fail("Expected RejectedExecutionException");
+    } catch (RejectedExecutionException e) {
+      // expected
+    }
+    submit("bob", "b1");
+    assertEquals(2, queue.getQueuedTaskCount());
+  }
+
+  @Test
+  public void testWithoutQueueRejectsAtCapacity() throws Exception {
+    queue = new BuildQueue(1, 0, 0, 60);
+    submit("alice", "a1");
+    try {
+      submit("bob", "b1");
+      fail("Expected RejectedExecutionException");
+    } catch (RejectedExecutionException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testExpiredBuildsDoNotRun() throws Exception {
+    queue = new BuildQueue(1, 10, 0, 1);
+    CountDownLatch blocker = submit("alice", "a1");
+    awaitStarted(1);
+    final CountDownLatch expired = new CountDownLatch(1);
+    queue.execute("bob", new Runnable() {
+      @Override
+      public void run() {
+        started.add("b1");
+      }
+    }, new Runnable() {
+      @Override
+      public void run() {
+        expired.countDown();
+      }
+    });
+    assertTrue(expired.await(5, TimeUnit.SECONDS));
+    assertEquals(0, queue.getQueuedTaskCount());
+
+    blocker.countDown();
+    Map<String, String> variables = new HashMap<>();
+    queue.reportVariables(variables);
+    assertEquals("1", variables.get("expired-build-tasks"));
+    assertEquals(Arrays.asList("a1"), started);
+  }
+
+  @Test
+  public void testReportVariables() throws Exception {
+    queue = new BuildQueue(1, 5, 0, 60);
+    submit("alice", "a1");
+    submit("bob", "b1");
+    submit("carol", "c1");
+    Map<String, String> variables = new HashMap<>();
+    queue.reportVariables(variables);
+    assertEquals("5", variables.get("build-queue-depth-allowed"));
+    assertEquals("60", variables.get("build-queue-wait-deadline-seconds"));
+    assertEquals("2", variables.get("queued-build-tasks"));
+    assertEquals("2", variables.get("queued-build-users"));
+    assertEquals("2", variables.get("peak-queued-build-tasks"));
+    assertEquals("0", variables.get("rejected-build-tasks"));
+  }
+
+  /*
+   * Submits a build that records its name and then waits until the returned latch is released.
+   */
+  private CountDownLatch submit(String user, final String name) {
+    final CountDownLatch release = new CountDownLatch(1);
+    releases.add(release);
+    queue.execute(user, new Runnable() {
+      @Override
+      public void run() {
+        started.add(name);
+        try {
+          release.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }, null);
+    return release;
+  }
+
+  private void awaitStarted(int count) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (started.size() < count && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(count, started.size());
+  }
+}
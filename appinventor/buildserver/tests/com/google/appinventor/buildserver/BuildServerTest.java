@@ -0,0 +1,94 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2026 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.buildserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Tests the retry loop that sends async build results back to the callback URL.
+ */
+public class BuildServerTest {
+  private static final IOException CONNECTION_RESET = new IOException("Connection reset");
+
+  /*
+   * Plays back a fixed list of outcomes: an Integer is a response code, an IOException is
+   * thrown.
+   */
+  private static class ScriptedCallback implements BuildServer.CallbackAttempt {
+    private final LinkedList<Object> outcomes;
+    private final List<Long> attemptTimes = new ArrayList<>();
+
+    ScriptedCallback(Object... outcomes) {
+      this.outcomes = new LinkedList<>(Arrays.asList(outcomes));
+    }
+
+    @Override
+    public int send() throws IOException {
+      attemptTimes.add(System.nanoTime());
+      Object outcome = outcomes.removeFirst();
+      if (outcome instanceof IOException) {
+        throw (IOException) outcome;
+      }
+      return (Integer) outcome;
+    }
+
+    int getAttempts() {
+      return attemptTimes.size();
+    }
+
+    long getDelayMillis(int attempt) {
+      return (attemptTimes.get(attempt) - attemptTimes.get(attempt - 1)) / 1000000;
+    }
+  }
+
+  @Test
+  public void testFailureThenSuccess() throws Exception {
+    ScriptedCallback callback = new ScriptedCallback(CONNECTION_RESET, 503, 200);
+    assertTrue(BuildServer.sendWithRetries(callback, 5, 20, 1000));
+    assertEquals(3, callback.getAttempts());
+    // The backoff doubles after each failure.
+    assertTrue(callback.getDelayMillis(1) >= 20);
+    assertTrue(callback.getDelayMillis(2) >= 40);
+  }
+
+  @Test
+  public void testRetriesExhaustedByErrors() throws Exception {
+    ScriptedCallback callback = new ScriptedCallback(
+        CONNECTION_RESET, CONNECTION_RESET, CONNECTION_RESET, 200);
+    try {
+      BuildServer.sendWithRetries(callback, 3, 1, 1);
+      fail("Expected the last failure to be rethrown");
+    } catch (IOException e) {
+      assertSame(CONNECTION_RESET, e);
+    }
+    assertEquals(3, callback.getAttempts());
+  }
+
+  @Test
+  public void testRetriesExhaustedByServerErrors() throws Exception {
+    ScriptedCallback callback = new ScriptedCallback(500, 502, 503, 200);
+    assertFalse(BuildServer.sendWithRetries(callback, 3, 1, 1));
+    assertEquals(3, callback.getAttempts());
+  }
+
+  @Test
+  public void testClientErrorNotRetried() throws Exception {
+    ScriptedCallback callback = new ScriptedCallback(400, 200);
+    assertFalse(BuildServer.sendWithRetries(callback, 5, 1, 1));
+    assertEquals(1, callback.getAttempts());
+  }
+}
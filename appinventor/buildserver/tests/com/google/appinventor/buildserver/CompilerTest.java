@@ -0,0 +1,224 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2026 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.buildserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.appinventor.buildserver.context.AndroidCompilerContext;
+import com.google.appinventor.buildserver.context.AndroidPaths;
+import com.google.appinventor.buildserver.context.CompilerContext;
+import com.google.appinventor.buildserver.interfaces.AndroidTask;
+import com.google.appinventor.buildserver.interfaces.BuildType;
+import com.google.appinventor.buildserver.interfaces.DependsOn;
+import com.google.appinventor.buildserver.stats.Histogram;
+import com.google.appinventor.buildserver.stats.SimpleStatReporter;
+import com.google.appinventor.buildserver.stats.TaskMetrics;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the scheduling of tasks by the {@link Compiler} class.
+ */
+public class CompilerTest {
+  private static final List<String> EVENTS = new CopyOnWriteArrayList<>();
+  private static CountDownLatch bothStarted;
+
+  private SimpleStatReporter statReporter;
+  private AndroidCompilerContext context;
+
+  @BuildType(apk = true)
+  public static class First implements AndroidTask {
+    @Override
+    public TaskResult execute(AndroidCompilerContext context) {
+      EVENTS.add("First");
+      return TaskResult.generateSuccess();
+    }
+  }
+
+  @BuildType(apk = true)
+  @DependsOn
+  public static class Left implements AndroidTask {
+    @Override
+    public TaskResult execute(AndroidCompilerContext context) {
+      return waitForOther("Left");
+    }
+  }
+
+  @BuildType(apk = true)
+  @DependsOn
+  public static class Right implements AndroidTask {
+    @Override
+    public TaskResult execute(AndroidCompilerContext context) {
+      return waitForOther("Right");
+    }
+  }
+
+  @BuildType(apk = true)
+  @DependsOn({Left.class, Right.class})
+  public static class Join implements AndroidTask {
+    @Override
+    public TaskResult execute(AndroidCompilerContext context) {
+      EVENTS.add("Join");
+      return TaskResult.generateSuccess();
+    }
+  }
+
+  @BuildType(apk = true)
+  @DependsOn
+  public static class CacheUser implements AndroidTask {
+    @Override
+    public TaskResult execute(AndroidCompilerContext context) {
+      TaskMetrics.recordCacheLookup(true);
+      TaskMetrics.recordCacheLookup(false);
+      TaskMetrics.recordCacheLookup(true);
+      TaskMetrics.recordQueueWait(25);
+      return TaskResult.generateSuccess();
+    }
+  }
+
+  @BuildType(apk = true)
+  @DependsOn
+  public static class Failing implements AndroidTask {
+    @Override
+    public TaskResult execute(AndroidCompilerContext context) {
+      EVENTS.add("Failing");
+      return TaskResult.generateError("Failed on purpose");
+    }
+  }
+
+  @BuildType(apk = true)
+  @DependsOn(Failing.class)
+  public static class AfterFailing implements AndroidTask {
+    @Override
+    public TaskResult execute(AndroidCompilerContext context) {
+      EVENTS.add("AfterFailing");
+      return TaskResult.generateSuccess();
+    }
+  }
+
+  /*
+   * Succeeds only if the other branch starts while this one is running.
+   */
+  private static TaskResult waitForOther(String name) {
+    EVENTS.add(name);
+    bothStarted.countDown();
+    try {
+      if (bothStarted.await(5, TimeUnit.SECONDS)) {
+        return TaskResult.generateSuccess();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return TaskResult.generateError("Tasks did not run in parallel");
+  }
+
+  @Before
+  public void setUp() {
+    EVENTS.clear();
+    bothStarted = new CountDownLatch(2);
+    statReporter = new SimpleStatReporter();
+    context = new CompilerContext.Builder<AndroidPaths, AndroidCompilerContext>(null, "apk")
+        .withClass(AndroidCompilerContext.class)
+        .withTypes(Collections.<String>emptySet())
+        .withBlocks(Collections.<String, Set<String>>emptyMap())
+        .withReporter(new Reporter(null))
+        .withStatReporter(statReporter)
+        .withKeystore("test.keystore")
+        .build();
+  }
+
+  @After
+  public void tearDown() {
+    Compiler.setSerialExecution(false);
+  }
+
+  @Test
+  public void testIndependentTasksRunInParallel() {
+    Compiler<AndroidPaths, AndroidCompilerContext> compiler = newCompiler();
+    compiler.add(First.class).add(Left.class).add(Right.class).add(Join.class);
+    assertTrue(compiler.call());
+    statReporter.stopBuild(compiler, true);
+
+    assertEquals("First", EVENTS.get(0));
+    assertEquals("Join", EVENTS.get(3));
+    SimpleStatReporter.BuildStats stats = statReporter.getSuccessStats().iterator().next();
+    assertEquals(4, stats.getStages().size());
+    assertTrue(stats.getStages().containsKey("Left"));
+    assertTrue(stats.getStages().containsKey("Right"));
+  }
+
+  @Test
+  public void testDependentsOfFailedTaskDoNotRun() {
+    Compiler<AndroidPaths, AndroidCompilerContext> compiler = newCompiler();
+    compiler.add(First.class).add(Failing.class).add(AfterFailing.class);
+    assertFalse(compiler.call());
+    assertEquals(Arrays.asList("First", "Failing"), EVENTS);
+  }
+
+  @Test
+  public void testSerialExecutionFollowsInsertionOrder() {
+    Compiler.setSerialExecution(true);
+    Compiler<AndroidPaths, AndroidCompilerContext> compiler = newCompiler();
+    compiler.add(First.class).add(Join.class).add(Failing.class);
+    assertFalse(compiler.call());
+    assertEquals(Arrays.asList("First", "Join", "Failing"), EVENTS);
+  }
+
+  @Test
+  public void testTaskMetricsAreRecorded() {
+    Compiler<AndroidPaths, AndroidCompilerContext> compiler = newCompiler();
+    compiler.add(First.class).add(CacheUser.class);
+    assertTrue(compiler.call());
+    statReporter.stopBuild(compiler, true);
+
+    Map<String, Long> metrics = statReporter.getSuccessStats().iterator().next()
+        .getTaskMetrics().get("CacheUser");
+    assertEquals(Long.valueOf(2), metrics.get(TaskMetrics.CACHE_HITS));
+    assertEquals(Long.valueOf(1), metrics.get(TaskMetrics.CACHE_MISSES));
+    assertEquals(Long.valueOf(25), metrics.get(TaskMetrics.QUEUE_WAIT_MILLIS));
+    Histogram hits = statReporter.getHistograms().get("CacheUser").get(TaskMetrics.CACHE_HITS);
+    assertEquals(1, hits.getCount());
+    assertEquals(2, hits.getPercentile(50));
+    assertEquals(1, statReporter.getHistograms().get(SimpleStatReporter.BUILD)
+        .get(TaskMetrics.WALL_MILLIS).getCount());
+    // Recording outside of a task is ignored
+    TaskMetrics.recordCacheLookup(true);
+  }
+
+  @Test
+  public void testComputeDependencies() {
+    List<List<Integer>> dependencies = Compiler.computeDependencies(Arrays.asList(
+        First.class, Left.class, Right.class, Join.class, Failing.class, First.class,
+        AfterFailing.class));
+    assertEquals(Collections.<Integer>emptyList(), dependencies.get(0));
+    assertEquals(Collections.singletonList(0), dependencies.get(1));
+    assertEquals(Collections.singletonList(0), dependencies.get(2));
+    assertEquals(Arrays.asList(0, 1, 2), dependencies.get(3));
+    assertEquals(Collections.singletonList(0), dependencies.get(4));
+    // A task without the annotation waits for everything before it
+    assertEquals(Arrays.asList(0, 1, 2, 3, 4), dependencies.get(5));
+    // Failing was added before the most recent barrier, which already covers it
+    assertEquals(Collections.singletonList(5), dependencies.get(6));
+  }
+
+  private Compiler<AndroidPaths, AndroidCompilerContext> newCompiler() {
+    return new Compiler.Builder<AndroidPaths, AndroidCompilerContext>()
+        .withContext(context)
+        .withType(BuildType.APK_EXTENSION)
+        .build();
+  }
+}
@@ -0,0 +1,98 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2026 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.buildserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipInputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link BuildServer.ProgressReporter}.
+ */
+public class ProgressReporterTest {
+  private final List<Integer> received = new CopyOnWriteArrayList<>();
+  private final CountDownLatch firstArrived = new CountDownLatch(1);
+  private final CountDownLatch release = new CountDownLatch(1);
+  private HttpServer server;
+  private String callbackUrl;
+
+  @Before
+  public void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/callback", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        ZipInputStream in = new ZipInputStream(exchange.getRequestBody());
+        in.getNextEntry();
+        received.add(Integer.parseInt(new String(ByteStreams.toByteArray(in)).trim()));
+        ByteStreams.copy(exchange.getRequestBody(), ByteStreams.nullOutputStream());
+        firstArrived.countDown();
+        try {
+          release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        exchange.sendResponseHeaders(200, -1);
+        exchange.close();
+      }
+    });
+    server.start();
+    callbackUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/callback";
+  }
+
+  @After
+  public void tearDown() {
+    release.countDown();
+    server.stop(0);
+  }
+
+  @Test
+  public void testReportsAreCoalescedWhileSending() throws Exception {
+    BuildServer.ProgressReporter reporter = new BuildServer.ProgressReporter(callbackUrl);
+    reporter.report(10);
+    assertTrue(firstArrived.await(5, TimeUnit.SECONDS));
+    // These arrive while the first report is in flight; only the last one should be sent.
+    for (int progress = 20; progress <= 50; progress += 10) {
+      reporter.report(progress);
+    }
+    release.countDown();
+    long deadline = System.currentTimeMillis() + 5000;
+    while (received.size() < 2 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    reporter.close();
+    assertEquals(Arrays.asList(10, 50), received);
+  }
+
+  @Test
+  public void testCloseDropsPendingReports() throws Exception {
+    BuildServer.ProgressReporter reporter = new BuildServer.ProgressReporter(callbackUrl);
+    reporter.report(10);
+    assertTrue(firstArrived.await(5, TimeUnit.SECONDS));
+    reporter.report(90);
+    release.countDown();
+    reporter.close();
+    reporter.report(95);
+    Thread.sleep(100);
+    // The report in flight when close() was called completes; the newer ones are never sent.
+    assertEquals(Arrays.asList(10), received);
+  }
+}
@@ -1467,6 +1467,83 @@ public class YailEvalTest extends TestCase {
     assertTrue((Boolean) scheme.eval(String.format(code, sym)));
   }
 
+  /**
+   * A component with a method for the blocks to call, which counts its calls.
+   */
+  public static class CountingComponent implements Component {
+    private int calls = 0;
+
+    @Override
+    public HandlesEventDispatching getDispatchDelegate() {
+      return null;
+    }
+
+    @Override
+    public void setComponentName(final String componentName) {}
+
+    public double Add(double x, int y) {
+      calls++;
+      return x + y;
+    }
+  }
+
+  public void testCallComponentMethod() throws Throwable {
+    String sym = gensym();
+    CountingComponent component = new CountingComponent();
+    scheme.define(sym, component);
+    scheme.eval("(add-to-current-form-environment 'Counter1 " + sym + ")");
+    assertEquals("3.5", scheme.eval("(call-component-method 'Counter1 'Add "
+        + "(*list-for-runtime* 1.5 \"2\") '(number number))").toString());
+    assertEquals("5", scheme.eval("(call-component-method 'Counter1 'Add "
+        + "(*list-for-runtime* 2 3) '(number number))").toString());
+    assertEquals(2, component.calls);
+    try {
+      scheme.eval("(call-component-method 'Counter1 'Add "
+          + "(*list-for-runtime* 1 \"two\") '(number number))");
+      fail();
+    } catch (YailRuntimeError e) {
+      // this is the intended behavior
+    }
+  }
+
+  /**
+   * Compares calling a component method in a loop through call-component-method
+   * with calling it through Kawa's reflective invoke, as call-component-method
+   * did before it cached the methods. The times are printed rather than
+   * checked, as they depend on the machine, so this only runs when the
+   * benchmarks system property is set (ant -Dbenchmarks=true).
+   */
+  public void testCallComponentMethodSpeed() throws Throwable {
+    if (!Boolean.getBoolean("benchmarks")) {
+      return;
+    }
+    final int iterations = 100000;
+    String sym = gensym();
+    CountingComponent component = new CountingComponent();
+    scheme.define(sym, component);
+    scheme.eval("(add-to-current-form-environment 'Counter1 " + sym + ")");
+    String dispatched = "(do ((i 0 (+ i 1))) ((= i " + iterations + ")) "
+        + "(call-component-method 'Counter1 'Add (*list-for-runtime* i 1) '(number number)))";
+    String reflective = "(do ((i 0 (+ i 1))) ((= i " + iterations + ")) "
+        + "(let ((coerced-args (coerce-args 'Add (*list-for-runtime* i 1) '(number number)))"
+        + "      (component (lookup-in-current-form-environment 'Counter1)))"
+        + "  (sanitize-return-value component 'Add"
+        + "    (apply invoke `(,component Add ,@coerced-args)))))";
+    // Warm up both before timing them
+    scheme.eval(dispatched);
+    scheme.eval(reflective);
+    long start = System.nanoTime();
+    scheme.eval(reflective);
+    long reflectiveNanos = System.nanoTime() - start;
+    start = System.nanoTime();
+    scheme.eval(dispatched);
+    long dispatchedNanos = System.nanoTime() - start;
+    assertEquals(4 * iterations, component.calls);
+    System.out.println("call-component-method: " + iterations + " calls in "
+        + dispatchedNanos / 1000000 + " ms, " + reflectiveNanos / 1000000
+        + " ms with apply invoke");
+  }
+
   private static String gensym() {
     return "gensym$" + Math.round(Math.random() * Long.MAX_VALUE);
   }
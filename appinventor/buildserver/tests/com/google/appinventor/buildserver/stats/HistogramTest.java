@@ -0,0 +1,64 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2026 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.buildserver.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link Histogram}.
+ */
+public class HistogramTest {
+  @Test
+  public void testSmallValuesAreExact() {
+    Histogram histogram = new Histogram();
+    for (int i = 1; i <= 20; i++) {
+      histogram.record(i);
+    }
+    assertEquals(20, histogram.getCount());
+    assertEquals(10, histogram.getPercentile(50));
+    assertEquals(19, histogram.getPercentile(95));
+    assertEquals(20, histogram.getPercentile(99));
+    assertEquals(10.5, histogram.getMean(), 0.001);
+  }
+
+  @Test
+  public void testLargeValuesAreWithinRelativeError() {
+    Histogram histogram = new Histogram();
+    for (long i = 1; i <= 100000; i++) {
+      histogram.record(i);
+    }
+    assertWithin(50000, histogram.getPercentile(50));
+    assertWithin(95000, histogram.getPercentile(95));
+    assertWithin(99000, histogram.getPercentile(99));
+    assertEquals(100000, histogram.getMax());
+  }
+
+  @Test
+  public void testBucketBoundaries() {
+    for (long value : new long[] { 0, 31, 32, 33, 63, 64, 1000, 123456789L, 1L << 39 }) {
+      int index = Histogram.indexOf(value);
+      assertTrue(value + " above its bucket", value <= Histogram.highestValueOf(index));
+      if (index > 0) {
+        assertTrue(value + " in an earlier bucket", value > Histogram.highestValueOf(index - 1));
+      }
+    }
+  }
+
+  @Test
+  public void testEmptyHistogram() {
+    Histogram histogram = new Histogram();
+    assertEquals(0, histogram.getPercentile(99));
+    assertEquals(0, histogram.getMean(), 0);
+  }
+
+  private static void assertWithin(long expected, long actual) {
+    assertTrue("expected about " + expected + " but was " + actual,
+        Math.abs(actual - expected) <= expected * 0.04);
+  }
+}
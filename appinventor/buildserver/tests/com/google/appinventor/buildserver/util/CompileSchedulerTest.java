@@ -0,0 +1,91 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2026 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.buildserver.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests the {@link CompileScheduler} class.
+ */
+public class CompileSchedulerTest {
+  private final CompileScheduler scheduler = CompileScheduler.getInstance();
+
+  @After
+  public void tearDown() {
+    scheduler.configure(0, 0, 0, 0, 2048);
+  }
+
+  @Test
+  public void testKindLimitIsEnforced() throws Exception {
+    scheduler.configure(4, 1, 1, 1, 2048);
+    final CountDownLatch admitted = new CountDownLatch(1);
+    try (CompileScheduler.Permit ignored = scheduler.acquire(CompileScheduler.Kind.KAWA)) {
+      Thread waiter = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try (CompileScheduler.Permit permit =
+              scheduler.acquire(CompileScheduler.Kind.KAWA)) {
+            admitted.countDown();
+          } catch (InterruptedException e) {
+            // ignored
+          }
+        }
+      });
+      waiter.start();
+      assertFalse(admitted.await(200, TimeUnit.MILLISECONDS));
+
+      // A different kind is not blocked by the busy Kawa pool.
+      try (CompileScheduler.Permit d8 = scheduler.acquire(CompileScheduler.Kind.D8)) {
+        assertTrue(d8.getWaitMillis() < 1000);
+      }
+    }
+    assertTrue(admitted.await(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testGlobalLimitIsShared() throws Exception {
+    scheduler.configure(1, 1, 1, 1, 2048);
+    final CountDownLatch admitted = new CountDownLatch(1);
+    try (CompileScheduler.Permit ignored = scheduler.acquire(CompileScheduler.Kind.KAWA)) {
+      Thread waiter = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try (CompileScheduler.Permit permit =
+              scheduler.acquire(CompileScheduler.Kind.PREDEX)) {
+            admitted.countDown();
+          } catch (InterruptedException e) {
+            // ignored
+          }
+        }
+      });
+      waiter.start();
+      assertFalse(admitted.await(200, TimeUnit.MILLISECONDS));
+    }
+    assertTrue(admitted.await(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testVariablesAreReported() throws Exception {
+    scheduler.configure(3, 2, 1, 1, 2048);
+    scheduler.acquire(CompileScheduler.Kind.KAWA).close();
+    Map<String, String> variables = new LinkedHashMap<>();
+    scheduler.reportVariables(variables);
+    assertEquals("3", variables.get("child-process-permits"));
+    assertEquals("2", variables.get("kawa-permits"));
+    assertEquals("1", variables.get("kawa-admitted"));
+    assertEquals("0", variables.get("kawa-active"));
+    assertEquals("0", variables.get("d8-admitted"));
+  }
+}
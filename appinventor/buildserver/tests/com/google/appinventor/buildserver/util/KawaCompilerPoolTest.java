@@ -0,0 +1,214 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2026 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.buildserver.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.io.Files;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.tools.ToolProvider;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link KawaCompilerPool} class and the protocol of {@link KawaCompilerWorker}.
+ */
+public class KawaCompilerPoolTest {
+  private static final int HEAP_MB = 256;
+
+  private File tempDir;
+  private File libDir;
+  private String kawaJar;
+  private String yailRuntime;
+  private KawaCompilerPool pool;
+  private ByteArrayOutputStream err;
+
+  @Before
+  public void setUp() throws Exception {
+    tempDir = Files.createTempDir();
+    kawaJar = new File(kawa.repl.class.getProtectionDomain().getCodeSource().getLocation()
+        .toURI()).getAbsolutePath();
+    yailRuntime = write("runtime.scm", "(define (identity x) x)");
+
+    // A library only some projects have on their classpath, like an extension
+    libDir = new File(tempDir, "lib");
+    File greeter = new File(libDir, "demo/Greeter.java");
+    Files.createParentDirs(greeter);
+    Files.write("package demo;\n"
+        + "public class Greeter { public static String greet() { return \"hi\"; } }\n",
+        greeter, StandardCharsets.UTF_8);
+    assertEquals(0, ToolProvider.getSystemJavaCompiler().run(null, null, null,
+        "-d", libDir.getAbsolutePath(), greeter.getAbsolutePath()));
+
+    pool = new KawaCompilerPool();
+    pool.configure(2, 50);
+    err = new ByteArrayOutputStream();
+  }
+
+  @After
+  public void tearDown() {
+    pool.shutdown();
+    FileUtils.deleteQuietly(tempDir);
+  }
+
+  @Test
+  public void testWorkerReusedAcrossProjectClasspaths() throws IOException {
+    String screen = write("Screen1.scm", "(define (greeting) (demo.Greeter:greet))");
+    assertTrue(compile(newJob(libDir.getAbsolutePath(), screen)));
+    assertFalse(errors().contains("demo.Greeter"));
+    assertTrue(new File(tempDir, "out1/app/Screen1.class").exists());
+
+    // The second project does not have the library, and must not see it from the first one.
+    err.reset();
+    assertTrue(compile(newJob("", screen)));
+    assertTrue(errors().contains("no declaration seen for demo.Greeter"));
+
+    assertEquals(1, pool.getWorkersStarted());
+    assertEquals(2, pool.getWorkerJobs());
+    assertEquals(0, pool.getFallbackJobs());
+    assertEquals(1, pool.getIdleWorkerCount());
+  }
+
+  @Test
+  public void testCrashedWorkerReplaced() throws Exception {
+    String screen = write("Screen1.scm", "(define (twice x) (* 2 x))");
+    assertTrue(compile(newJob("", screen)));
+    pool.killIdleWorkers();
+
+    assertTrue(compile(newJob("", screen)));
+    assertEquals(2, pool.getWorkersStarted());
+    assertEquals(1, pool.getWorkersRetired());
+    assertEquals(2, pool.getWorkerJobs());
+    assertEquals(1, pool.getIdleWorkerCount());
+  }
+
+  @Test
+  public void testFailedCompileRetiresWorker() throws IOException {
+    String broken = write("Broken.scm", "(define (twice x) (* 2 x)");
+    assertFalse(compile(newJob("", broken)));
+    assertEquals(1, pool.getWorkersStarted());
+    assertEquals(1, pool.getWorkersRetired());
+    assertEquals(0, pool.getIdleWorkerCount());
+
+    String screen = write("Screen1.scm", "(define (twice x) (* 2 x))");
+    assertTrue(compile(newJob("", screen)));
+    assertEquals(2, pool.getWorkersStarted());
+  }
+
+  @Test
+  public void testEviction() throws IOException {
+    pool.configure(1, 50);
+    String screen = write("Screen1.scm", "(define (twice x) (* 2 x))");
+    assertTrue(compile(newJob("", screen)));
+    // A different heap size needs a different worker, which pushes out the first one.
+    assertTrue(compile(new KawaCompilerPool.Job(kawaJar, "", HEAP_MB + 64, yailRuntime,
+        new File(tempDir, "out2").getAbsolutePath(), "app.", Collections.singletonList(screen),
+        false)));
+    assertEquals(2, pool.getWorkersStarted());
+    assertEquals(1, pool.getWorkersRetired());
+    assertEquals(1, pool.getIdleWorkerCount());
+  }
+
+  @Test
+  public void testRetiredAfterMaxBuilds() throws IOException {
+    pool.configure(2, 2);
+    String screen = write("Screen1.scm", "(define (twice x) (* 2 x))");
+    for (int i = 0; i < 3; i++) {
+      assertTrue(compile(newJob("", screen)));
+    }
+    assertEquals(2, pool.getWorkersStarted());
+    assertEquals(1, pool.getWorkersRetired());
+    assertEquals(3, pool.getWorkerJobs());
+  }
+
+  @Test
+  public void testProtocol() throws Exception {
+    String workerClasses = new File(KawaCompilerWorker.class.getProtectionDomain()
+        .getCodeSource().getLocation().toURI()).getAbsolutePath();
+    Process process = new ProcessBuilder(
+        System.getProperty("java.home") + "/bin/java",
+        "-cp", kawaJar + File.pathSeparator + workerClasses,
+        KawaCompilerWorker.class.getName(),
+        yailRuntime)
+        .redirectError(ProcessBuilder.Redirect.INHERIT)
+        .start();
+    try {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+      DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+      assertEquals(KawaCompilerWorker.READY, in.readUTF());
+
+      send(out, KawaCompilerWorker.PING);
+      assertEquals(KawaCompilerWorker.PONG, in.readUTF());
+
+      String screen = write("Screen1.scm", "(define (greeting) (demo.Greeter:greet))");
+      File outputDir = new File(tempDir, "protocol");
+      send(out, KawaCompilerWorker.COMPILE, outputDir.getAbsolutePath(), "app.",
+          libDir.getAbsolutePath(), screen);
+      assertTrue(in.readBoolean());
+      byte[] stdout = new byte[in.readInt()];
+      in.readFully(stdout);
+      byte[] stderr = new byte[in.readInt()];
+      in.readFully(stderr);
+      String output = new String(stdout, StandardCharsets.UTF_8)
+          + new String(stderr, StandardCharsets.UTF_8);
+      assertTrue(output.contains("Screen1.scm to app.Screen1"));
+      assertFalse(output.contains("warning"));
+      assertTrue(new File(outputDir, "app/Screen1.class").exists());
+
+      // The worker is still usable after a compile.
+      send(out, KawaCompilerWorker.PING);
+      assertEquals(KawaCompilerWorker.PONG, in.readUTF());
+    } finally {
+      process.destroyForcibly();
+    }
+  }
+
+  private KawaCompilerPool.Job newJob(String projectClasspath, String... sources) {
+    File outputDir = new File(tempDir, "out" + (pool.getWorkerJobs() + 1));
+    return new KawaCompilerPool.Job(kawaJar, projectClasspath, HEAP_MB, yailRuntime,
+        outputDir.getAbsolutePath(), "app.", Arrays.asList(sources), false);
+  }
+
+  private boolean compile(KawaCompilerPool.Job job) {
+    return pool.compile(job, new PrintStream(new ByteArrayOutputStream()), new PrintStream(err),
+        Execution.Timeout.MEDIUM);
+  }
+
+  private String errors() {
+    return new String(err.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  private String write(String name, String contents) throws IOException {
+    File file = new File(tempDir, name);
+    Files.write(contents, file, StandardCharsets.UTF_8);
+    return file.getAbsolutePath();
+  }
+
+  private static void send(DataOutputStream out, String... request) throws IOException {
+    List<String> strings = Arrays.asList(request);
+    out.writeInt(strings.size());
+    for (String s : strings) {
+      out.writeUTF(s);
+    }
+    out.flush();
+  }
+}
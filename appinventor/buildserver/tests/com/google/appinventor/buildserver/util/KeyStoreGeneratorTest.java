@@ -0,0 +1,79 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2026 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.buildserver.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link KeyStoreGenerator}.
+ */
+public class KeyStoreGeneratorTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @After
+  public void tearDown() {
+    KeyStoreGenerator.getInstance().configure(0);
+  }
+
+  @Test
+  public void testKeyStoreMatchesKeytoolSettings() throws Exception {
+    File file = folder.newFile("android.keystore");
+    KeyStoreGenerator.getInstance().generate("user \"quoted\"@example.com", file);
+
+    KeyStore keyStore = KeyStore.getInstance("JKS");
+    try (InputStream in = new FileInputStream(file)) {
+      keyStore.load(in, "android".toCharArray());
+    }
+    Key key = keyStore.getKey("AndroidKey", "android".toCharArray());
+    assertNotNull(key);
+    assertEquals("RSA", key.getAlgorithm());
+    X509Certificate certificate = (X509Certificate) keyStore.getCertificate("AndroidKey");
+    String name = certificate.getSubjectX500Principal().getName();
+    assertTrue(name, name.contains("O=AppInventor for Android"));
+    assertTrue(name, name.contains("C=US"));
+    assertTrue(name, name.contains("quoted"));
+    certificate.verify(certificate.getPublicKey());
+    long validity = certificate.getNotAfter().getTime() - certificate.getNotBefore().getTime();
+    assertEquals(10000, TimeUnit.MILLISECONDS.toDays(validity));
+  }
+
+  @Test
+  public void testPooledKeyPairsAreUsed() throws Exception {
+    KeyStoreGenerator generator = KeyStoreGenerator.getInstance();
+    generator.configure(1);
+    Map<String, String> variables = new HashMap<>();
+    long deadline = System.currentTimeMillis() + 30000;
+    do {
+      Thread.sleep(50);
+      generator.reportVariables(variables);
+    } while (!"1".equals(variables.get("keystore-key-pool-depth"))
+        && System.currentTimeMillis() < deadline);
+    assertEquals("1", variables.get("keystore-key-pool-size"));
+    assertEquals("1", variables.get("keystore-key-pool-depth"));
+
+    int used = Integer.parseInt(variables.get("keystore-pooled-keys-used"));
+    generator.generate("user", folder.newFile("pooled.keystore"));
+    generator.reportVariables(variables);
+    assertEquals(used + 1, Integer.parseInt(variables.get("keystore-pooled-keys-used")));
+  }
+}
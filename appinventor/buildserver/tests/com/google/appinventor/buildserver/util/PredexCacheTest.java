@@ -0,0 +1,155 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2026 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.buildserver.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.io.Files;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link PredexCache} class.
+ */
+public class PredexCacheTest {
+  private File cacheDir;
+
+  @Before
+  public void setUp() {
+    cacheDir = Files.createTempDir();
+  }
+
+  @After
+  public void tearDown() {
+    PredexCache.setMaxBytes(0);
+    FileUtils.deleteQuietly(cacheDir);
+  }
+
+  @Test
+  public void testMissThenHit() throws IOException {
+    PredexCache cache = PredexCache.forDirectory(cacheDir);
+    final AtomicInteger produced = new AtomicInteger(0);
+    PredexCache.Producer producer = new PredexCache.Producer() {
+      @Override
+      public boolean produce(File outputDir) throws IOException {
+        produced.incrementAndGet();
+        writeDex(outputDir, "dex");
+        return true;
+      }
+    };
+    File first = cache.get("abc", producer);
+    File second = cache.get("abc", producer);
+    assertEquals(first, second);
+    assertEquals(1, produced.get());
+    assertEquals("dex", Files.toString(first, StandardCharsets.UTF_8));
+
+    Map<String, String> variables = new HashMap<>();
+    cache.reportVariables(variables);
+    assertEquals("1", variables.get("dex-cache-hits"));
+    assertEquals("1", variables.get("dex-cache-misses"));
+    assertEquals("1", variables.get("dex-cache-entries"));
+
+    // Only the entry remains; the temporary directory was cleaned up.
+    assertEquals(1, cacheDir.listFiles().length);
+  }
+
+  @Test
+  public void testFailedProducerIsNotCached() throws IOException {
+    PredexCache cache = PredexCache.forDirectory(cacheDir);
+    assertNull(cache.get("bad", new PredexCache.Producer() {
+      @Override
+      public boolean produce(File outputDir) {
+        return false;
+      }
+    }));
+    assertEquals(0, cacheDir.listFiles().length);
+  }
+
+  @Test
+  public void testDifferentKeysRunInParallel() throws Exception {
+    final PredexCache cache = PredexCache.forDirectory(cacheDir);
+    final CountDownLatch bothStarted = new CountDownLatch(2);
+    final AtomicInteger failures = new AtomicInteger(0);
+    Thread[] threads = new Thread[2];
+    for (int i = 0; i < threads.length; i++) {
+      final String key = "key" + i;
+      threads[i] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            cache.get(key, new PredexCache.Producer() {
+              @Override
+              public boolean produce(File outputDir) throws IOException {
+                bothStarted.countDown();
+                try {
+                  // Fails unless the other key is being produced at the same time.
+                  if (!bothStarted.await(5, TimeUnit.SECONDS)) {
+                    return false;
+                  }
+                } catch (InterruptedException e) {
+                  return false;
+                }
+                writeDex(outputDir, key);
+                return true;
+              }
+            });
+          } catch (IOException e) {
+            failures.incrementAndGet();
+          }
+        }
+      });
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(0, failures.get());
+    assertTrue(new File(cacheDir, "dex-cached-key0.dex").isFile());
+    assertTrue(new File(cacheDir, "dex-cached-key1.dex").isFile());
+  }
+
+  @Test
+  public void testLeastRecentlyUsedEntriesAreEvicted() throws IOException {
+    // Pre-existing entries last used long ago.
+    File old1 = new File(cacheDir, "dex-cached-old1.dex");
+    File old2 = new File(cacheDir, "dex-cached-old2.dex");
+    Files.write(new byte[100], old1);
+    Files.write(new byte[100], old2);
+    long longAgo = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1);
+    assertTrue(old1.setLastModified(longAgo - 1000));
+    assertTrue(old2.setLastModified(longAgo));
+
+    PredexCache.setMaxBytes(250);
+    PredexCache cache = PredexCache.forDirectory(cacheDir);
+    cache.get("new", new PredexCache.Producer() {
+      @Override
+      public boolean produce(File outputDir) throws IOException {
+        Files.write(new byte[100], new File(outputDir, "classes.dex"));
+        return true;
+      }
+    });
+    assertFalse(old1.exists());
+    assertTrue(old2.exists());
+    assertTrue(new File(cacheDir, "dex-cached-new.dex").exists());
+  }
+
+  private static void writeDex(File outputDir, String content) throws IOException {
+    Files.write(content, new File(outputDir, "classes.dex"), StandardCharsets.UTF_8);
+  }
+}
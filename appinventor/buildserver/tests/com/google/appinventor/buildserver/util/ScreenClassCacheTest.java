@@ -0,0 +1,95 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2026 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.buildserver.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.io.Files;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link ScreenClassCache} class.
+ */
+public class ScreenClassCacheTest {
+  private File cacheDir;
+  private File classesDir;
+
+  @Before
+  public void setUp() {
+    cacheDir = Files.createTempDir();
+    classesDir = Files.createTempDir();
+  }
+
+  @After
+  public void tearDown() {
+    ScreenClassCache.configure(null, 0);
+    FileUtils.deleteQuietly(cacheDir);
+    FileUtils.deleteQuietly(classesDir);
+  }
+
+  @Test
+  public void testStoreThenRestore() throws IOException {
+    ScreenClassCache.configure(cacheDir, 0);
+    ScreenClassCache cache = ScreenClassCache.getInstance();
+    File screen = writeClass("com/example/app/Screen1.class", new byte[] {1, 2, 3});
+    File lambda = writeClass("com/example/app/Screen1$frame.class", new byte[] {4});
+    assertFalse(cache.restore("key", classesDir));
+    cache.store("key", classesDir, Arrays.asList(screen, lambda));
+
+    FileUtils.cleanDirectory(classesDir);
+    assertTrue(cache.restore("key", classesDir));
+    assertArrayEquals(new byte[] {1, 2, 3}, Files.toByteArray(screen));
+    assertArrayEquals(new byte[] {4}, Files.toByteArray(lambda));
+
+    Map<String, String> variables = new HashMap<>();
+    cache.reportVariables(variables);
+    assertEquals("1", variables.get("screen-cache-hits"));
+    assertEquals("1", variables.get("screen-cache-misses"));
+    assertEquals("1", variables.get("screen-cache-stores"));
+  }
+
+  @Test
+  public void testLeastRecentlyUsedEntriesAreEvicted() throws IOException {
+    byte[] content = new byte[1000];
+    new Random(0).nextBytes(content);  // incompressible, so each entry is over 1000 bytes
+    File screen = writeClass("Screen1.class", content);
+    ScreenClassCache.configure(cacheDir, 0);
+    ScreenClassCache cache = ScreenClassCache.getInstance();
+    cache.store("old", classesDir, Arrays.asList(screen));
+    cache.store("used", classesDir, Arrays.asList(screen));
+    long longAgo = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1);
+    assertTrue(new File(cacheDir, "old.classes.zip").setLastModified(longAgo - 1000));
+    assertTrue(new File(cacheDir, "used.classes.zip").setLastModified(longAgo));
+
+    ScreenClassCache.configure(cacheDir, 2500);
+    cache = ScreenClassCache.getInstance();
+    assertTrue(cache.restore("used", classesDir));
+    cache.store("new", classesDir, Arrays.asList(screen));
+    assertFalse(new File(cacheDir, "old.classes.zip").exists());
+    assertTrue(new File(cacheDir, "used.classes.zip").exists());
+    assertTrue(new File(cacheDir, "new.classes.zip").exists());
+  }
+
+  private File writeClass(String path, byte[] content) throws IOException {
+    File file = new File(classesDir, path);
+    Files.createParentDirs(file);
+    Files.write(content, file);
+    return file;
+  }
+}
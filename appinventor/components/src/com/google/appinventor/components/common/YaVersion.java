@@ -643,7 +643,11 @@ public class YaVersion {
   // - EV3_GYROSENSOR_COMPONENT_VERSION was incremented to 3.
   // - EV3_TOUCHSENSOR_COMPONENT_VERSION was incremented to 2.
   // - EV3_ULTRASONICSENSOR_COMPONENT_VERSION was incremented to 3.
-  public static final int YOUNG_ANDROID_VERSION = 237;
+  // For YOUNG_ANDROID_VERSION 238:
+  // - CANVAS_COMPONENT_VERSION was incremented to 16.
+  // For YOUNG_ANDROID_VERSION 239:
+  // - TINYDB_COMPONENT_VERSION was incremented to 4.
+  public static final int YOUNG_ANDROID_VERSION = 239;
 
   // ............................... Blocks Language Version Number ...............................
 
@@ -932,7 +936,9 @@ public class YaVersion {
   // -TapThreshold was added
   // For CANVAS_COMPONENT_VERSION 15
   // - Assets helper block was added.
-  public static final int CANVAS_COMPONENT_VERSION = 15;
+  // For CANVAS_COMPONENT_VERSION 16
+  // - FrameSync was added
+  public static final int CANVAS_COMPONENT_VERSION = 16;
 
   // For CHART_COMPONENT_VERSION 2:
   // - The XFromZero and YFromZero properties were added
@@ -1630,7 +1636,10 @@ public class YaVersion {
   // - Added Property: Namespace
   // For TINYDB_COMPONENT_VERSION 3:
   // - Added GetEntries method
-  public static final int TINYDB_COMPONENT_VERSION = 3;
+  // For TINYDB_COMPONENT_VERSION 4:
+  // - Added Property: WriteInBackground
+  // - Added StoreValues method
+  public static final int TINYDB_COMPONENT_VERSION = 4;
 
   // For TINYWEBDB_COMPONENT_VERSION 2:
   // - The TinyWebDB.ShowAlert method was removed. Notifier.ShowAlert should be used instead.
@@ -25,6 +25,9 @@ import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
 
+import android.os.Handler;
+import android.os.SystemClock;
+
 import android.text.TextUtils;
 
 import android.util.Base64;
@@ -64,10 +67,12 @@ import com.google.appinventor.components.runtime.util.BoundingBox;
 import com.google.appinventor.components.runtime.util.ErrorMessages;
 import com.google.appinventor.components.runtime.util.FileUtil;
 import com.google.appinventor.components.runtime.util.FileWriteOperation;
+import com.google.appinventor.components.runtime.util.JellybeanUtil;
 import com.google.appinventor.components.runtime.util.MediaUtil;
 import com.google.appinventor.components.runtime.util.PaintUtil;
 import com.google.appinventor.components.runtime.util.ScopedFile;
 import com.google.appinventor.components.runtime.util.SdkLevel;
+import com.google.appinventor.components.runtime.util.SpatialHash;
 import com.google.appinventor.components.runtime.util.Synchronizer;
 import com.google.appinventor.components.runtime.util.YailList;
 
@@ -138,7 +143,9 @@ import java.util.Set;
     iconName = "images/canvas.png")
 @SimpleObject
 @UsesPermissions(permissionNames = "android.permission.INTERNET")
-public final class Canvas extends AndroidViewComponent implements ComponentContainer {
+public final class Canvas extends AndroidViewComponent
+    implements ComponentContainer, OnDestroyListener, OnPauseListener, OnResumeListener,
+    Deleteable {
   private static final String LOG_TAG = "Canvas";
 
   private final Activity context;
@@ -155,6 +162,9 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
   private String backgroundImagePath = "";
   private int textAlignment;
   private boolean extendMovesOutsideCanvas = false;
+  private boolean frameSync = false;
+  // Whether the activity is paused, so that the sprites are not moved
+  private boolean paused = false;
   
   /**
    * The number of pixels right, left, up, or down, a sequence of drags must
@@ -176,11 +186,27 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
   private static final int DEFAULT_TEXTALIGNMENT = Component.ALIGNMENT_CENTER;
   private static final int FLING_INTERVAL = 1000;  // ms
   private static final int DEFAULT_TAP_THRESHOLD = 15;
+  // Size of the cells of the grid used to find sprites that may collide, in pixels
+  private static final int COLLISION_CELL_SIZE = 64;
+  // Sprites covering more cells are checked against every moved sprite instead
+  private static final int COLLISION_MAX_CELLS_PER_SPRITE = 64;
+  // Time between frames of the sprite frame loop where there are no display frame callbacks
+  private static final int FRAME_INTERVAL = 16;  // ms
+  // Longest time sprites are moved for in one frame, so that they do not jump after a pause
+  private static final int MAX_FRAME_ELAPSED = 250;  // ms
 
   // Keep track of enclosed sprites.  This list should always be
   // sorted by increasing sprite.Z().
   private final List<Sprite> sprites;
 
+  // The collision bounds of the enclosed sprites, so that a moved sprite is
+  // only checked for collisions against the sprites near it.
+  private final SpatialHash<Sprite> spriteGrid =
+      new SpatialHash<Sprite>(COLLISION_CELL_SIZE, COLLISION_MAX_CELLS_PER_SPRITE);
+
+  // Moves the sprites once per frame when FrameSync is true
+  private final SpriteFrameLoop frameLoop = new SpriteFrameLoop();
+
   // Handle touches and drags
   private final MotionEventParser motionEventParser;
 
@@ -750,6 +776,100 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
     }
   }
 
+  /**
+   * Moves all the sprites of the canvas on each display frame when
+   * {@link #FrameSync()} is true, instead of each sprite moving on its own
+   * timer. Uses the display's frame callbacks where there are any, and a
+   * handler otherwise. The loop stops after a frame in which no sprite moved,
+   * and is started again by {@link #spriteMotionChanged()}.
+   */
+  private final class SpriteFrameLoop implements Runnable {
+    private final Handler handler = new Handler();
+    // The Choreographer.FrameCallback running this, on Jellybean and later
+    private Object frameCallback;
+    private boolean running = false;
+    private long lastFrameMillis;
+    // The sprites of the canvas as of the current frame, and the ones moved in it
+    private final List<Sprite> frameSprites = new ArrayList<Sprite>();
+    private final List<Sprite> movedSprites = new ArrayList<Sprite>();
+
+    void start() {
+      if (!running) {
+        running = true;
+        lastFrameMillis = SystemClock.uptimeMillis();
+        postFrame();
+      }
+    }
+
+    void stop() {
+      if (running) {
+        running = false;
+        if (frameCallback != null) {
+          JellybeanUtil.removeFrameCallback(frameCallback);
+        }
+        handler.removeCallbacks(this);
+      }
+    }
+
+    private void postFrame() {
+      if (SdkLevel.getLevel() >= SdkLevel.LEVEL_JELLYBEAN) {
+        if (frameCallback == null) {
+          frameCallback = JellybeanUtil.newFrameCallback(this);
+        }
+        JellybeanUtil.postFrameCallback(frameCallback);
+      } else {
+        handler.postDelayed(this, FRAME_INTERVAL);
+      }
+    }
+
+    @Override
+    public void run() {
+      if (!running) {
+        return;
+      }
+      long now = SystemClock.uptimeMillis();
+      long elapsed = Math.min(now - lastFrameMillis, MAX_FRAME_ELAPSED);
+      lastFrameMillis = now;
+      if (!moveSprites(elapsed)) {
+        // Nothing is moving, so stop until a sprite starts moving again.
+        running = false;
+      }
+      // One of the events raised may have stopped the loop.
+      if (running) {
+        postFrame();
+      }
+    }
+
+    // Moves every enabled sprite, then checks the moved sprites for collisions
+    // and redraws the canvas once. Returns whether any sprite moved.
+    private boolean moveSprites(long elapsedMillis) {
+      // Events raised while moving may add, remove or reorder sprites.
+      frameSprites.addAll(sprites);
+      for (Sprite sprite : frameSprites) {
+        if (sprite.advance(elapsedMillis)) {
+          movedSprites.add(sprite);
+        }
+      }
+      for (Sprite sprite : movedSprites) {
+        if (spriteGrid.contains(sprite)) {
+          updateSpriteBounds(sprite);
+        }
+      }
+      for (Sprite sprite : movedSprites) {
+        if (spriteGrid.contains(sprite)) {
+          findSpriteCollisions(sprite);
+        }
+      }
+      boolean moved = !movedSprites.isEmpty();
+      if (moved) {
+        view.invalidate();
+      }
+      frameSprites.clear();
+      movedSprites.clear();
+      return moved;
+    }
+  }
+
   public Canvas(ComponentContainer container) {
     super(container);
     context = container.$context();
@@ -777,6 +897,10 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
     } else {
       havePermission = true;
     }
+
+    form.registerForOnDestroy(this);
+    form.registerForOnPause(this);
+    form.registerForOnResume(this);
   }
 
   @Override
@@ -839,12 +963,14 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
     for (int i = 0; i < sprites.size(); i++) {
       if (sprites.get(i).Z() > sprite.Z()) {
         sprites.add(i, sprite);
+        updateSpriteBounds(sprite);
         return;
       }
     }
 
     // Add to end if it has the highest Z value.
     sprites.add(sprite);
+    updateSpriteBounds(sprite);
   }
 
   /**
@@ -854,6 +980,19 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
    */
   void removeSprite(Sprite sprite) {
     sprites.remove(sprite);
+    spriteGrid.remove(sprite);
+  }
+
+  /**
+   * Records where a sprite can collide with other sprites, for the next
+   * check for collisions.
+   *
+   * @param sprite the sprite whose location or size may have changed
+   */
+  void updateSpriteBounds(Sprite sprite) {
+    BoundingBox bounds = sprite.getCollisionBounds();
+    spriteGrid.update(sprite, bounds.getLeft(), bounds.getTop(),
+        bounds.getRight(), bounds.getBottom());
   }
 
   /**
@@ -913,6 +1052,7 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
    */
   void registerChange(Sprite sprite) {
     view.invalidate();
+    updateSpriteBounds(sprite);
     findSpriteCollisions(sprite);
   }
 
@@ -932,10 +1072,21 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
    * and
    * {@link com.google.appinventor.components.runtime.Sprite#Enabled()}.
    *
+   * <p>Only the sprites whose collision bounds overlap those of the moved
+   * sprite are checked in detail. The other sprites cannot be colliding
+   * with it, so any collision with them that was registered has ended.</p>
+   *
    * @param movedSprite the sprite that has just changed position
    */
   protected void findSpriteCollisions(Sprite movedSprite) {
-    for (Sprite sprite : sprites) {
+    List<Sprite> nearbySprites = spriteGrid.query(movedSprite);
+    for (Sprite sprite : movedSprite.getCollidingSprites()) {
+      if (spriteGrid.contains(sprite) && !nearbySprites.contains(sprite)) {
+        movedSprite.NoLongerCollidingWith(sprite);
+        sprite.NoLongerCollidingWith(movedSprite);
+      }
+    }
+    for (Sprite sprite : nearbySprites) {
       if (sprite != movedSprite) {
         // Check whether we already raised an event for their collision.
         if (movedSprite.CollidingWith(sprite)) {
@@ -1279,6 +1430,91 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
     extendMovesOutsideCanvas = extend;   
   }
 
+  /**
+   * Returns whether the sprites on the canvas are moved together once per
+   * display frame.
+   *
+   * @return {@code true} if the sprites are moved on each display frame,
+   *     {@code false} if each sprite moves on its own timer
+   */
+  @SimpleProperty(description =
+      "Determines whether the sprites on the canvas are moved together once per " +
+      "display frame, instead of each on its own timer. Sprites still move Speed pixels " +
+      "every Interval milliseconds, but in smaller steps on each frame, which gives " +
+      "smoother movement when there are many sprites. Default is false.",
+      category = PropertyCategory.BEHAVIOR)
+  public boolean FrameSync() {
+    return frameSync;
+  }
+
+  /**
+   * Specifies whether the sprites on the canvas are moved together once per
+   * display frame. When true, each enabled sprite is moved on every frame by
+   * the part of its `Speed` for the time since the last frame,
+   * then collisions are checked and the canvas is redrawn once for all of them.
+   *
+   * @param frameSync {@code true} to move the sprites on each display frame,
+   *     {@code false} to move each sprite on its own timer
+   */
+  @DesignerProperty(editorType = PropertyTypeConstants.PROPERTY_TYPE_BOOLEAN,
+      defaultValue = "False")
+  @SimpleProperty
+  public void FrameSync(boolean frameSync) {
+    if (this.frameSync == frameSync) {
+      return;
+    }
+    this.frameSync = frameSync;
+    for (Sprite sprite : sprites) {
+      sprite.updateTimer();
+    }
+    if (!frameSync) {
+      frameLoop.stop();
+    }
+  }
+
+  /**
+   * Called by a sprite when it may have started moving, because it was
+   * initialized or its Enabled or Speed properties changed. Starts the sprite
+   * frame loop again if it stopped once nothing was moving.
+   */
+  void spriteMotionChanged() {
+    if (frameSync && !paused) {
+      frameLoop.start();
+    }
+  }
+
+  // OnPauseListener implementation
+
+  @Override
+  public void onPause() {
+    paused = true;
+    frameLoop.stop();
+  }
+
+  // OnResumeListener implementation
+
+  @Override
+  public void onResume() {
+    paused = false;
+    if (frameSync) {
+      frameLoop.start();
+    }
+  }
+
+  // OnDestroyListener implementation
+
+  @Override
+  public void onDestroy() {
+    frameLoop.stop();
+  }
+
+  // Deleteable implementation
+
+  @Override
+  public void onDelete() {
+    frameLoop.stop();
+  }
+
   // Methods supporting event handling
 
   /**
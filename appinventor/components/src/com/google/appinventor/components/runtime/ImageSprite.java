@@ -23,12 +23,14 @@ import com.google.appinventor.components.common.ComponentCategory;
 import com.google.appinventor.components.common.PropertyTypeConstants;
 import com.google.appinventor.components.common.YaVersion;
 
+import com.google.appinventor.components.runtime.util.BoundingBox;
 import com.google.appinventor.components.runtime.util.GifMovieDrawable;
 import com.google.appinventor.components.runtime.util.MediaUtil;
 import com.google.appinventor.components.runtime.util.Vector2D;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 
 /**
  * A 'sprite' that can be placed on a {@link Canvas}, where it can react to touches and drags,
@@ -78,6 +80,21 @@ public class ImageSprite extends Sprite {
   private String picturePath = "";  // Picture property
   private boolean rotates;
 
+  // The corners and the edge normals of the sprite as last computed, and the
+  // geometry they were computed for. Collision checks ask for them for every
+  // axis and every other sprite, so they are kept until the sprite moves,
+  // turns or changes size.
+  private java.util.List<Vector2D> corners;
+  private java.util.List<Vector2D> normalAxes;
+  private double cornersXLeft;
+  private double cornersYTop;
+  private int cornersWidth;
+  private int cornersHeight;
+  private boolean cornersRotate;
+  private double cornersHeadingRadians;
+  private double cornersXOrigin;
+  private double cornersYOrigin;
+
   /**
    * Constructor for ImageSprite.
    *
@@ -130,9 +147,12 @@ public class ImageSprite extends Sprite {
   }
 
   // Get all non - parallel axes normal to the edges of the sprite. We need to consider only two
-  // axes as the other two would be parallel to these.
+  // axes as the other two would be parallel to these. The list returned must not be modified.
   protected java.util.List<Vector2D> getNormalAxes() {
     java.util.List<Vector2D> corners = getExtremityVectors();
+    if (normalAxes != null) {
+      return normalAxes;
+    }
 
     java.util.List<Vector2D> normalAxes = new ArrayList<>();
 
@@ -145,7 +165,8 @@ public class ImageSprite extends Sprite {
     normalAxes.add(leftRightNormal);
     normalAxes.add(topDownNormal);
 
-    return normalAxes;
+    this.normalAxes = Collections.unmodifiableList(normalAxes);
+    return this.normalAxes;
   }
 
   // The minimum projection will be that of one of the corners. Note this is the minimum dot product
@@ -188,7 +209,17 @@ public class ImageSprite extends Sprite {
   // Let u be the vector for some corner. After rotation u changes as follows:
   // v - u is the vector from origin to the corner. Rotate v - u by Heading() degrees and say it
   // becomes w. Then the vector for the corner after rotation will be v + w.
+  // The list returned must not be modified.
   protected java.util.List<Vector2D> getExtremityVectors() {
+    int width = Width();
+    int height = Height();
+    if (corners != null && cornersXLeft == xLeft && cornersYTop == yTop
+        && cornersWidth == width && cornersHeight == height && cornersRotate == rotates
+        && cornersHeadingRadians == headingRadians
+        && cornersXOrigin == xOrigin && cornersYOrigin == yOrigin) {
+      return corners;
+    }
+
     java.util.List<Vector2D> corners = new ArrayList<>();
 
     // [u, v] values of the four corners, taken in clockwise direction starting from top - left
@@ -196,13 +227,43 @@ public class ImageSprite extends Sprite {
 
     // add all corners to corners
     for (int[] d : delta) {
-      double dx = d[0] * Width();
-      double dy = d[1] * Height();
+      double dx = d[0] * width;
+      double dy = d[1] * height;
       Vector2D corner = new Vector2D(xLeft + dx, yTop + dy);
       corners.add(getVectorRotated(corner));
     }
 
-    return corners;
+    this.corners = Collections.unmodifiableList(corners);
+    normalAxes = null;
+    cornersXLeft = xLeft;
+    cornersYTop = yTop;
+    cornersWidth = width;
+    cornersHeight = height;
+    cornersRotate = rotates;
+    cornersHeadingRadians = headingRadians;
+    cornersXOrigin = xOrigin;
+    cornersYOrigin = yOrigin;
+    return this.corners;
+  }
+
+  // A rotated sprite can collide outside of its unrotated bounds, up to its rotated corners.
+  @Override
+  BoundingBox getCollisionBounds() {
+    if (!rotates) {
+      return super.getCollisionBounds();
+    }
+    java.util.List<Vector2D> corners = getExtremityVectors();
+    double left = Double.POSITIVE_INFINITY;
+    double top = Double.POSITIVE_INFINITY;
+    double right = Double.NEGATIVE_INFINITY;
+    double bottom = Double.NEGATIVE_INFINITY;
+    for (Vector2D corner : corners) {
+      left = Math.min(left, corner.getX());
+      top = Math.min(top, corner.getY());
+      right = Math.max(right, corner.getX());
+      bottom = Math.max(bottom, corner.getY());
+    }
+    return new BoundingBox(left, top, right, bottom);
   }
 
   // If the image is rotated return the vector toRotate after rotation
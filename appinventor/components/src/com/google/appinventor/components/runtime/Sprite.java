@@ -23,7 +23,11 @@ import com.google.appinventor.components.runtime.util.TimerInternal;
 import com.google.appinventor.components.runtime.util.Vector2D;
 import com.google.appinventor.components.runtime.util.YailList;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -66,6 +70,10 @@ public abstract class Sprite extends VisibleComponent
   // all components has taken place.  This was added to fix bug 2262218.
   protected boolean initialized = false;
 
+  // Whether the sprite moves and can be interacted with. Its timer only runs
+  // when it is enabled and the canvas is not moving the sprites itself.
+  private boolean enabled = DEFAULT_ENABLED;
+
   // Properties: These are protected, instead of private, both so they
   // can be used by subclasses and tests.
   protected int interval;      // number of milliseconds until next move
@@ -168,6 +176,7 @@ public abstract class Sprite extends VisibleComponent
   public void Initialize() {
     initialized = true;
     canvas.registerChange(this);
+    canvas.spriteMotionChanged();
   }
 
   // Properties (Enabled, Heading, Interval, Speed, Visible, X, Y, Z, OriginAtCenter)
@@ -185,7 +194,7 @@ public abstract class Sprite extends VisibleComponent
       description = "Controls whether the %type% moves and can be interacted with " +
           "through collisions, dragging, touching, and flinging.")
   public boolean Enabled() {
-    return timerInternal.Enabled();
+    return enabled;
   }
 
   /**
@@ -199,7 +208,20 @@ public abstract class Sprite extends VisibleComponent
       defaultValue = DEFAULT_ENABLED ? "True" : "False")
   @SimpleProperty(category = PropertyCategory.BEHAVIOR)
   public void Enabled(boolean enabled) {
-    timerInternal.Enabled(enabled);
+    this.enabled = enabled;
+    updateTimer();
+  }
+
+  /**
+   * Starts or stops the timer that moves this sprite, depending on whether
+   * it is enabled and whether the canvas moves its sprites on each frame
+   * instead.
+   */
+  void updateTimer() {
+    timerInternal.Enabled(enabled && !canvas.FrameSync());
+    if (enabled) {
+      canvas.spriteMotionChanged();
+    }
   }
 
   /**
@@ -283,6 +305,7 @@ public abstract class Sprite extends VisibleComponent
       defaultValue = DEFAULT_SPEED + "")
   public void Speed(float speed) {
     this.speed = speed;
+    canvas.spriteMotionChanged();
   }
 
   /**
@@ -416,6 +439,7 @@ public abstract class Sprite extends VisibleComponent
     }
     xLeft = xOriginToLeft(xOrigin);
     yTop = yOriginToTop(yOrigin);
+    canvas.updateSpriteBounds(this);
   }
 
   // The following methods get overridden in ImageSprite with the @SimpleProperty and
@@ -726,6 +750,16 @@ public abstract class Sprite extends VisibleComponent
     return registeredCollisions.contains(other);
   }
 
+  /**
+   * Returns the sprites this sprite is registered as colliding with.
+   */
+  Collection<Sprite> getCollidingSprites() {
+    if (registeredCollisions.isEmpty()) {
+      return Collections.emptyList();
+    }
+    return new ArrayList<Sprite>(registeredCollisions);
+  }
+
   /**
    * Moves the sprite back in bounds if part of it extends out of bounds,
    * having no effect otherwise. If the sprite is too wide to fit on the
@@ -823,6 +857,8 @@ public abstract class Sprite extends VisibleComponent
     // before all components had been constructed.
     if (!initialized) {
       // During REPL, components are not initalized, but we still want to repaint the canvas.
+      // The canvas still needs to know where the sprite is for later collision checks.
+      canvas.updateSpriteBounds(this);
       canvas.getView().invalidate();
       return;
     }
@@ -986,12 +1022,41 @@ public abstract class Sprite extends VisibleComponent
    * caller is responsible for calling {@link #registerChange()}.
    */
   protected void updateCoordinates() {
-    xOrigin += speed * headingCos;
+    updateCoordinates(speed);
+  }
+
+  private void updateCoordinates(double distance) {
+    xOrigin += distance * headingCos;
     xLeft = xOriginToLeft(xOrigin);
-    yOrigin += speed * headingSin;
+    yOrigin += distance * headingSin;
     yTop = yOriginToTop(yOrigin);
   }
 
+  /**
+   * Moves this sprite for a frame of the canvas when it moves its sprites on
+   * each display frame, by the part of {@link #Speed()} for the time since
+   * the last frame, and raises {@link #EdgeReached(int)} if an edge is hit.
+   * Checking for collisions and redrawing are left to the canvas, which does
+   * them once for all the sprites moved in the frame.
+   *
+   * @param elapsedMillis the time since the last frame, in ms
+   * @return {@code true} if the sprite moved, {@code false} otherwise
+   */
+  boolean advance(long elapsedMillis) {
+    if (!initialized || !enabled || speed == 0) {
+      return false;
+    }
+    // With no interval the timer would move the sprite as often as it could,
+    // so move it a full step each frame.
+    int interval = Interval();
+    updateCoordinates(interval > 0 ? speed * elapsedMillis / interval : speed);
+    Direction edge = hitEdgeAbstract();
+    if (edge != null) {
+      EdgeReachedAbstract(edge);
+    }
+    return true;
+  }
+
   // Methods for determining collisions with other Sprites and the edge
   // of the Canvas.
 
@@ -1024,6 +1089,17 @@ public abstract class Sprite extends VisibleComponent
         xLeft + Width() - 1 + border, yTop + Height() - 1 + border);
   }
 
+  /**
+   * Provides the bounds within which this sprite can collide with other
+   * sprites. Unlike {@link #getBoundingBox(int)}, these include the right
+   * and bottom edges, as sprites that only touch are in collision.
+   *
+   * @return the collision bounds for this sprite
+   */
+  BoundingBox getCollisionBounds() {
+    return new BoundingBox(xLeft, yTop, xLeft + Width(), yTop + Height());
+  }
+
   /**
    * Determines whether two sprites are in collision.
    *
@@ -1066,9 +1142,12 @@ public abstract class Sprite extends VisibleComponent
   private static boolean collidingImageSprites(ImageSprite sprite1, ImageSprite sprite2) {
 
     // axes to project the sprites on
-    java.util.List<Vector2D> axes = sprite1.getNormalAxes();
-    axes.addAll(sprite2.getNormalAxes());
+    return overlappingOnAxes(sprite1, sprite2, sprite1.getNormalAxes())
+        && overlappingOnAxes(sprite1, sprite2, sprite2.getNormalAxes());
+  }
 
+  private static boolean overlappingOnAxes(ImageSprite sprite1, ImageSprite sprite2,
+      List<Vector2D> axes) {
     for (Vector2D a : axes) {
       double minA = sprite1.getMinProjection(a);
       double maxA = sprite1.getMaxProjection(a);
@@ -1086,9 +1165,9 @@ public abstract class Sprite extends VisibleComponent
   // ball. The axes to project the sprites onto are the vectors normal to the image sprites and the
   // vector that connects the center of the ball to the closest vertex of the image sprite.
   private static boolean collidingBallAndImageSprite(Ball ball, ImageSprite imageSprite) {
-    java.util.List<Vector2D> axes = imageSprite.getNormalAxes();
+    List<Vector2D> axes = new ArrayList<Vector2D>(imageSprite.getNormalAxes());
 
-    java.util.List<Vector2D> imageCorners = imageSprite.getExtremityVectors();
+    List<Vector2D> imageCorners = imageSprite.getExtremityVectors();
 
     Vector2D ballCenter = ball.getCenterVector();
 
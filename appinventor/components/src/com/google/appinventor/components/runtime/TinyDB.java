@@ -9,6 +9,8 @@ package com.google.appinventor.components.runtime;
 import android.content.Context;
 import android.content.SharedPreferences;
 
+import android.os.Handler;
+
 import android.util.Log;
 
 import com.google.appinventor.components.annotations.DesignerComponent;
@@ -29,7 +31,9 @@ import com.google.appinventor.components.runtime.util.YailDictionary;
 import com.google.appinventor.components.runtime.util.YailList;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -86,12 +90,51 @@ import org.json.JSONException;
 
 @SimpleObject
 public class TinyDB extends AndroidNonvisibleComponent implements Component, Deleteable,
-    ObservableDataSource<String, YailList> {
+    ObservableDataSource<String, YailList>, OnPauseListener, OnDestroyListener {
 
   public static final String DEFAULT_NAMESPACE = "TinyDB1";
 
+  // The most decoded values to keep, so that GetValue need not parse them again
+  private static final int MAX_CACHED_VALUES = 256;
+
   private SharedPreferences sharedPreferences;
   private String namespace;
+  private boolean writeInBackground = false;
+
+  // Changes not yet applied to sharedPreferences when writing in the background,
+  // by tag: the JSON of a stored value, or null for a cleared tag.
+  private final Map<String, String> pendingValues = new HashMap<>();
+  private SharedPreferences.Editor pendingEditor;
+  private final Handler handler = new Handler();
+  private final Runnable applyPending = new Runnable() {
+    @Override
+    public void run() {
+      applyPendingValues();
+    }
+  };
+
+  /*
+   * A value decoded from JSON, with the JSON it came from, so that it is only
+   * used while the JSON stored under its tag is the same.
+   */
+  private static final class CachedValue {
+    final String json;
+    final Object value;
+
+    CachedValue(String json, Object value) {
+      this.json = json;
+      this.value = value;
+    }
+  }
+
+  // The values decoded most recently, by tag
+  private final Map<String, CachedValue> cachedValues =
+      new LinkedHashMap<String, CachedValue>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedValue> eldest) {
+          return size() > MAX_CACHED_VALUES;
+        }
+      };
 
   private Context context;  // this was a local in constructor and final not private
 
@@ -120,6 +163,8 @@ public class TinyDB extends AndroidNonvisibleComponent implements Component, Del
     };
 
     Namespace(DEFAULT_NAMESPACE);
+    form.registerForOnPause(this);
+    form.registerForOnDestroy(this);
   }
 
   /**
@@ -136,6 +181,8 @@ public class TinyDB extends AndroidNonvisibleComponent implements Component, Del
   @SimpleProperty(description = "Namespace for storing data.", category = PropertyCategory.BEHAVIOR)
   @DesignerProperty(editorType = PropertyTypeConstants.PROPERTY_TYPE_STRING, defaultValue = DEFAULT_NAMESPACE)
   public void Namespace(String namespace) {
+    applyPendingValues();
+    cachedValues.clear();
     this.namespace = namespace;
 
     // SharedPreferences previously defined; Unregister the change listener.
@@ -154,6 +201,31 @@ public class TinyDB extends AndroidNonvisibleComponent implements Component, Del
     return namespace;
   }
 
+  /**
+   * Specifies whether stored values are written to the phone's storage in the background. When
+   * `true`{:.logic.block}, the values stored and tags cleared while a block runs are written
+   * together once it is done, instead of the app waiting for each to be written. This makes
+   * storing many values much faster. The values can be read back right away either way.
+   *
+   * @param writeInBackground {@code true} to write in the background, {@code false} to write
+   *     each value before the block continues
+   */
+  @SimpleProperty(category = PropertyCategory.BEHAVIOR)
+  @DesignerProperty(editorType = PropertyTypeConstants.PROPERTY_TYPE_BOOLEAN,
+      defaultValue = "False")
+  public void WriteInBackground(boolean writeInBackground) {
+    this.writeInBackground = writeInBackground;
+    if (!writeInBackground) {
+      applyPendingValues();
+    }
+  }
+
+  @SimpleProperty(description = "Whether stored values are written to the phone's storage "
+      + "in the background, together once the blocks storing them are done.")
+  public boolean WriteInBackground() {
+    return writeInBackground;
+  }
+
   /**
    * Store the given `valueToStore`{:.variable.block} under the given `tag`{:.text.block}.
    * The storage persists on the phone when the app is restarted.
@@ -165,13 +237,27 @@ public class TinyDB extends AndroidNonvisibleComponent implements Component, Del
   @SimpleFunction(description = "Store the given value under the given tag.  The storage persists "
       + "on the phone when the app is restarted.")
   public void StoreValue(final String tag, final Object valueToStore) {
-    final SharedPreferences.Editor sharedPrefsEditor = sharedPreferences.edit();
-    try {
-      sharedPrefsEditor.putString(tag, JsonUtil.getJsonRepresentation(valueToStore));
-      sharedPrefsEditor.commit();
-    } catch (JSONException e) {
-      throw new YailRuntimeError("Value failed to convert to JSON.", "JSON Creation Error.");
+    Map<String, String> values = new HashMap<>();
+    values.put(tag, toJson(valueToStore));
+    write(values);
+  }
+
+  /**
+   * Store each value of the given `tagsAndValues`{:.dictionary.block} under its key, all at
+   * once: either all of them are stored or, if one of them cannot be stored, none are. This is
+   * much faster than storing the values one at a time.
+   *
+   * @param tagsAndValues a dictionary of the values to store by tag
+   */
+  @SimpleFunction(description = "Store each value of the given dictionary under its key, all "
+      + "at once. If one of the values cannot be stored, none of them are.")
+  public void StoreValues(final YailDictionary tagsAndValues) {
+    // Convert all the values before storing any.
+    Map<String, String> values = new LinkedHashMap<>();
+    for (Map.Entry<Object, Object> entry : tagsAndValues.entrySet()) {
+      values.put(String.valueOf(entry.getKey()), toJson(entry.getValue()));
     }
+    write(values);
   }
 
   /**
@@ -186,11 +272,33 @@ public class TinyDB extends AndroidNonvisibleComponent implements Component, Del
   @SimpleFunction(description = "Retrieve the value stored under the given tag. If there's no "
       + "such tag, then return valueIfTagNotThere.")
   public Object GetValue(final String tag, final Object valueIfTagNotThere) {
+    String value;
+    if (pendingValues.containsKey(tag)) {
+      value = pendingValues.get(tag);
+      if (value == null) {
+        value = "";
+      }
+    } else {
+      value = sharedPreferences.getString(tag, "");
+    }
+    // If there's no entry with tag as a key then return the empty string.
+    //    was  return (value.length() == 0) ? "" : JsonUtil.getObjectFromJson(value);
+    if (value.length() == 0) {
+      return valueIfTagNotThere;
+    }
+    CachedValue cached = cachedValues.get(tag);
+    if (cached != null && cached.json.equals(value)) {
+      return copyOf(cached.value);
+    }
     try {
-      String value = sharedPreferences.getString(tag, "");
-      // If there's no entry with tag as a key then return the empty string.
-      //    was  return (value.length() == 0) ? "" : JsonUtil.getObjectFromJson(value);
-      return (value.length() == 0) ? valueIfTagNotThere : JsonUtil.getObjectFromJson(value, true);
+      Object decoded = JsonUtil.getObjectFromJson(value, true);
+      if (isCacheable(decoded)) {
+        cachedValues.put(tag, new CachedValue(value, decoded));
+        // The blocks may change the list or dictionary returned, so keep one of our own.
+        return copyOf(decoded);
+      }
+      cachedValues.remove(tag);
+      return decoded;
     } catch (JSONException e) {
       throw new YailRuntimeError("Value failed to convert from JSON.", "JSON Creation Error.");
     }
@@ -203,6 +311,7 @@ public class TinyDB extends AndroidNonvisibleComponent implements Component, Del
    */
   @SimpleFunction(description = "Return a list of all the tags in the data store.")
   public Object GetTags() {
+    applyPendingValues();
     List<String> keyList = new ArrayList<String>();
     Map<String, ?> keyValues = sharedPreferences.getAll();
     // here is the simple way to get keys
@@ -217,9 +326,10 @@ public class TinyDB extends AndroidNonvisibleComponent implements Component, Del
    */
   @SimpleFunction(description = "Clear the entire data store.")
   public void ClearAll() {
+    discardPendingValues();
     final SharedPreferences.Editor sharedPrefsEditor = sharedPreferences.edit();
     sharedPrefsEditor.clear();
-    sharedPrefsEditor.commit();
+    save(sharedPrefsEditor);
     notifyDataObservers(null, null); // Notify observers with null value to be interpreted as clear
   }
 
@@ -230,13 +340,14 @@ public class TinyDB extends AndroidNonvisibleComponent implements Component, Del
    */
   @SimpleFunction(description = "Clear the entry with the given tag.")
   public void ClearTag(final String tag) {
-    final SharedPreferences.Editor sharedPrefsEditor = sharedPreferences.edit();
-    sharedPrefsEditor.remove(tag);
-    sharedPrefsEditor.commit();
+    Map<String, String> values = new HashMap<>();
+    values.put(tag, null);
+    write(values);
   }
 
   @Override
   public void onDelete() {
+    discardPendingValues();
     final SharedPreferences.Editor sharedPrefsEditor = sharedPreferences.edit();
     sharedPrefsEditor.clear();
     sharedPrefsEditor.commit();
@@ -291,6 +402,7 @@ public class TinyDB extends AndroidNonvisibleComponent implements Component, Del
    */
   @SimpleFunction(description = "Retrieves all data entries of TinyDB in form of Dictionaries")
   public YailDictionary GetEntries() {
+    applyPendingValues();
     Map<String, ?> keyValues = sharedPreferences.getAll();
     List<String> keyList = new ArrayList<>(keyValues.keySet());
 
@@ -305,4 +417,102 @@ public class TinyDB extends AndroidNonvisibleComponent implements Component, Del
     return dictionary;
   }
 
+  @Override
+  public void onPause() {
+    applyPendingValues();
+  }
+
+  @Override
+  public void onDestroy() {
+    applyPendingValues();
+  }
+
+  private static String toJson(Object value) {
+    try {
+      return JsonUtil.getJsonRepresentation(value);
+    } catch (JSONException e) {
+      throw new YailRuntimeError("Value failed to convert to JSON.", "JSON Creation Error.");
+    }
+  }
+
+  /*
+   * Stores the given JSON values by tag, clearing the tags whose value is
+   * null, in a single edit. When writing in the background, the edit is
+   * added to the pending one, which is applied once the blocks are done.
+   */
+  private void write(Map<String, String> values) {
+    SharedPreferences.Editor sharedPrefsEditor;
+    if (writeInBackground) {
+      if (pendingEditor == null) {
+        pendingEditor = sharedPreferences.edit();
+        handler.post(applyPending);
+      }
+      sharedPrefsEditor = pendingEditor;
+      pendingValues.putAll(values);
+    } else {
+      sharedPrefsEditor = sharedPreferences.edit();
+    }
+    for (Map.Entry<String, String> entry : values.entrySet()) {
+      if (entry.getValue() == null) {
+        sharedPrefsEditor.remove(entry.getKey());
+      } else {
+        sharedPrefsEditor.putString(entry.getKey(), entry.getValue());
+      }
+    }
+    if (!writeInBackground) {
+      sharedPrefsEditor.commit();
+    }
+  }
+
+  private void save(SharedPreferences.Editor sharedPrefsEditor) {
+    if (writeInBackground) {
+      sharedPrefsEditor.apply();
+    } else {
+      sharedPrefsEditor.commit();
+    }
+  }
+
+  private void applyPendingValues() {
+    if (pendingEditor != null) {
+      handler.removeCallbacks(applyPending);
+      SharedPreferences.Editor sharedPrefsEditor = pendingEditor;
+      pendingEditor = null;
+      pendingValues.clear();
+      // Updates sharedPreferences right away and writes them out in the background.
+      sharedPrefsEditor.apply();
+    }
+  }
+
+  private void discardPendingValues() {
+    if (pendingEditor != null) {
+      handler.removeCallbacks(applyPending);
+      pendingEditor = null;
+      pendingValues.clear();
+    }
+  }
+
+  // Only values whose copies can be made without parsing them again are cached.
+  private static boolean isCacheable(Object value) {
+    return value == null || value instanceof String || value instanceof Number
+        || value instanceof Boolean || value instanceof YailList
+        || value instanceof YailDictionary;
+  }
+
+  private static Object copyOf(Object value) {
+    if (value instanceof YailList) {
+      Object[] items = ((YailList) value).toArray();
+      List<Object> copies = new ArrayList<>(items.length);
+      for (Object item : items) {
+        copies.add(copyOf(item));
+      }
+      return YailList.makeList(copies);
+    } else if (value instanceof YailDictionary) {
+      YailDictionary copy = new YailDictionary();
+      for (Map.Entry<Object, Object> entry : ((YailDictionary) value).entrySet()) {
+        copy.put(entry.getKey(), copyOf(entry.getValue()));
+      }
+      return copy;
+    }
+    return value;
+  }
 }
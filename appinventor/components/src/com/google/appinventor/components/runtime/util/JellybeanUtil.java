@@ -8,6 +8,7 @@ package com.google.appinventor.components.runtime.util;
 import android.graphics.Point;
 import android.util.DisplayMetrics;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.Display;
 
 /**
@@ -23,4 +24,36 @@ public class JellybeanUtil {
     display.getRealSize(outSize);
   }
 
+  /**
+   * Creates a callback for the next display frame that runs the given runnable.
+   * The callback is returned as an Object so that callers do not refer to
+   * Choreographer classes on older devices.
+   *
+   * @param runnable the runnable to run on each frame the callback is posted for
+   * @return the frame callback
+   */
+  public static Object newFrameCallback(final Runnable runnable) {
+    return new Choreographer.FrameCallback() {
+      @Override
+      public void doFrame(long frameTimeNanos) {
+        runnable.run();
+      }
+    };
+  }
+
+  /**
+   * Posts a callback made by {@link #newFrameCallback(Runnable)} to run on the
+   * next display frame.
+   */
+  public static void postFrameCallback(Object callback) {
+    Choreographer.getInstance().postFrameCallback((Choreographer.FrameCallback) callback);
+  }
+
+  /**
+   * Removes a callback posted by {@link #postFrameCallback(Object)}.
+   */
+  public static void removeFrameCallback(Object callback) {
+    Choreographer.getInstance().removeFrameCallback((Choreographer.FrameCallback) callback);
+  }
+
 }
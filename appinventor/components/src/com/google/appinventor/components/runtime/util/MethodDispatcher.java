@@ -0,0 +1,196 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2026 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import gnu.kawa.reflect.Invoke;
+import gnu.lists.LList;
+import gnu.lists.Pair;
+import gnu.mapping.Symbol;
+import gnu.mapping.Values;
+import gnu.text.Char;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Calls component methods from the blocks. Kawa's {@code invoke} looks up
+ * the method by reflection on every call, which shows when a block calls a
+ * method over and over, as in a loop drawing on a Canvas. Here the method
+ * for a component class, method name and number of arguments is looked up
+ * once and kept, and the arguments, which the runtime has already coerced
+ * to the types of the blocks, are only converted to the primitive types of
+ * the method's parameters.
+ *
+ * <p>Calls the cached method cannot take, for overloaded methods or
+ * arguments of other types than the parameters, are left to Kawa's
+ * {@code invoke}, so they behave as they did before.</p>
+ *
+ * See runtime.scm
+ */
+public final class MethodDispatcher {
+
+  // Stands for a method to leave to Kawa, as there is none or more than one
+  private static final Method UNRESOLVED;
+
+  static {
+    try {
+      UNRESOLVED = Object.class.getMethod("toString");
+    } catch (NoSuchMethodException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  // The methods of each class by name, then by number of arguments
+  private static final ConcurrentMap<Class<?>, ConcurrentMap<String, Method[]>> METHODS =
+      new ConcurrentHashMap<>();
+
+  private MethodDispatcher() {
+  }
+
+  /**
+   * Calls a method of a component.
+   *
+   * @param target the component
+   * @param methodName the name of the method
+   * @param args the arguments, coerced to the types of the blocks
+   * @return the result of the method, as Kawa's {@code invoke} would return it
+   * @throws Throwable whatever the method throws
+   */
+  @SuppressWarnings("unused")  // called from runtime.scm
+  public static Object invoke(Object target, Symbol methodName, LList args) throws Throwable {
+    Object[] argArray = toArray(args);
+    Method method = lookup(target.getClass(), methodName.getName(), argArray.length);
+    if (method == UNRESOLVED || !convertArgs(method.getParameterTypes(), argArray)) {
+      return invokeWithKawa(target, methodName, args);
+    }
+    Object result;
+    try {
+      result = method.invoke(target, argArray);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    } catch (IllegalAccessException e) {
+      return invokeWithKawa(target, methodName, args);
+    }
+    Class<?> returnType = method.getReturnType();
+    if (returnType == void.class) {
+      return Values.empty;
+    } else if (returnType == char.class) {
+      return Char.make((Character) result);
+    }
+    return result;
+  }
+
+  private static Object[] toArray(LList args) {
+    Object[] array = new Object[args.size()];
+    Object rest = args;
+    for (int i = 0; i < array.length; i++) {
+      Pair pair = (Pair) rest;
+      array[i] = pair.getCar();
+      rest = pair.getCdr();
+    }
+    return array;
+  }
+
+  private static Object invokeWithKawa(Object target, Symbol methodName, LList args)
+      throws Throwable {
+    Object[] invokeArgs = new Object[args.size() + 2];
+    invokeArgs[0] = target;
+    invokeArgs[1] = methodName;
+    System.arraycopy(toArray(args), 0, invokeArgs, 2, invokeArgs.length - 2);
+    return Invoke.invoke.applyN(invokeArgs);
+  }
+
+  private static Method lookup(Class<?> clazz, String name, int arity) {
+    ConcurrentMap<String, Method[]> byName = METHODS.get(clazz);
+    if (byName == null) {
+      byName = new ConcurrentHashMap<>();
+      ConcurrentMap<String, Method[]> existing = METHODS.putIfAbsent(clazz, byName);
+      if (existing != null) {
+        byName = existing;
+      }
+    }
+    Method[] byArity = byName.get(name);
+    if (byArity == null) {
+      byArity = resolve(clazz, name);
+      byName.put(name, byArity);
+    }
+    return arity < byArity.length ? byArity[arity] : UNRESOLVED;
+  }
+
+  // Returns the methods of the given name by number of parameters, with
+  // UNRESOLVED where there is no method or more than one.
+  private static Method[] resolve(Class<?> clazz, String name) {
+    Method[] methods = clazz.getMethods();
+    int maxArity = -1;
+    for (Method method : methods) {
+      if (method.getName().equals(name) && !method.isBridge()) {
+        maxArity = Math.max(maxArity, method.getParameterTypes().length);
+      }
+    }
+    Method[] byArity = new Method[maxArity + 1];
+    for (Method method : methods) {
+      if (method.getName().equals(name) && !method.isBridge()) {
+        int arity = method.getParameterTypes().length;
+        byArity[arity] = byArity[arity] == null ? method : UNRESOLVED;
+      }
+    }
+    for (int i = 0; i < byArity.length; i++) {
+      if (byArity[i] == null) {
+        byArity[i] = UNRESOLVED;
+      } else if (byArity[i] != UNRESOLVED) {
+        try {
+          // Components declared in classes that are not public, as in tests
+          byArity[i].setAccessible(true);
+        } catch (SecurityException e) {
+          // invoke falls back on Kawa if the method cannot be called
+        }
+      }
+    }
+    return byArity;
+  }
+
+  // Converts the arguments in place to the types of the parameters, and
+  // returns false if one of them is not of a type that can be converted.
+  private static boolean convertArgs(Class<?>[] types, Object[] args) {
+    for (int i = 0; i < args.length; i++) {
+      Class<?> type = types[i];
+      Object arg = args[i];
+      if (!type.isPrimitive()) {
+        if (arg instanceof CharSequence && type == String.class) {
+          args[i] = arg.toString();
+        } else if (arg != null && !type.isInstance(arg)) {
+          return false;
+        }
+      } else if (type == boolean.class) {
+        if (!(arg instanceof Boolean)) {
+          return false;
+        }
+      } else if (type == char.class) {
+        if (arg instanceof Char) {
+          args[i] = ((Char) arg).charValue();
+        } else if (!(arg instanceof Character)) {
+          return false;
+        }
+      } else if (!(arg instanceof Number)) {
+        return false;
+      } else if (type == int.class) {
+        args[i] = ((Number) arg).intValue();
+      } else if (type == double.class) {
+        args[i] = ((Number) arg).doubleValue();
+      } else if (type == float.class) {
+        args[i] = ((Number) arg).floatValue();
+      } else if (type == long.class) {
+        args[i] = ((Number) arg).longValue();
+      } else if (type == short.class) {
+        args[i] = ((Number) arg).shortValue();
+      } else if (type == byte.class) {
+        args[i] = ((Number) arg).byteValue();
+      }
+    }
+    return true;
+  }
+}
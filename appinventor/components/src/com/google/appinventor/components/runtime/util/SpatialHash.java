@@ -0,0 +1,220 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2026 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A uniform grid of square cells over the plane, each cell listing the
+ * items whose bounds overlap it, for finding the items whose bounds
+ * overlap those of a given item without checking every item.
+ *
+ * <p>Bounds are closed rectangles, so items whose bounds only touch
+ * overlap. An item spanning more than a given number of cells is kept
+ * apart from the grid and checked against every query, so that a few
+ * large items do not fill the grid.</p>
+ *
+ * @param <T> the type of the items, which are compared by identity
+ */
+public final class SpatialHash<T> {
+
+  private static final class Entry<T> {
+    final T item;
+    double left;
+    double top;
+    double right;
+    double bottom;
+    // The range of cells the item is listed in, if it is not oversized
+    int minColumn;
+    int minRow;
+    int maxColumn;
+    int maxRow;
+    boolean listed;
+    boolean oversized;
+    // The number of the last query that found the item, so it is found only once
+    int lastQuery;
+
+    Entry(T item) {
+      this.item = item;
+    }
+
+    boolean overlaps(Entry<?> other) {
+      return left <= other.right && other.left <= right
+          && top <= other.bottom && other.top <= bottom;
+    }
+  }
+
+  private final double cellSize;
+  private final int maxCellsPerItem;
+  private final Map<Long, List<Entry<T>>> cells = new HashMap<>();
+  private final Map<T, Entry<T>> entries = new IdentityHashMap<>();
+  private final List<Entry<T>> oversized = new ArrayList<>();
+  private int queries = 0;
+
+  /**
+   * Creates an empty grid.
+   *
+   * @param cellSize the width and height of a cell
+   * @param maxCellsPerItem the most cells to list an item in
+   */
+  public SpatialHash(double cellSize, int maxCellsPerItem) {
+    this.cellSize = cellSize;
+    this.maxCellsPerItem = maxCellsPerItem;
+  }
+
+  /**
+   * Adds an item or moves it to new bounds.
+   */
+  public void update(T item, double left, double top, double right, double bottom) {
+    Entry<T> entry = entries.get(item);
+    if (entry == null) {
+      entry = new Entry<>(item);
+      entries.put(item, entry);
+    } else if (entry.left == left && entry.top == top
+        && entry.right == right && entry.bottom == bottom) {
+      return;
+    }
+    entry.left = left;
+    entry.top = top;
+    entry.right = right;
+    entry.bottom = bottom;
+    int minColumn = cell(left);
+    int minRow = cell(top);
+    int maxColumn = cell(right);
+    int maxRow = cell(bottom);
+    boolean oversized = ((long) maxColumn - minColumn + 1) * ((long) maxRow - minRow + 1)
+        > maxCellsPerItem;
+    if (entry.listed && !oversized && !entry.oversized
+        && minColumn == entry.minColumn && minRow == entry.minRow
+        && maxColumn == entry.maxColumn && maxRow == entry.maxRow) {
+      return;  // still in the same cells
+    }
+    unlist(entry);
+    entry.oversized = oversized;
+    if (oversized) {
+      this.oversized.add(entry);
+    } else {
+      entry.minColumn = minColumn;
+      entry.minRow = minRow;
+      entry.maxColumn = maxColumn;
+      entry.maxRow = maxRow;
+      for (int column = minColumn; column <= maxColumn; column++) {
+        for (int row = minRow; row <= maxRow; row++) {
+          Long key = key(column, row);
+          List<Entry<T>> cell = cells.get(key);
+          if (cell == null) {
+            cell = new ArrayList<>(4);
+            cells.put(key, cell);
+          }
+          cell.add(entry);
+        }
+      }
+    }
+    entry.listed = true;
+  }
+
+  /**
+   * Removes an item.
+   */
+  public void remove(T item) {
+    Entry<T> entry = entries.remove(item);
+    if (entry != null) {
+      unlist(entry);
+    }
+  }
+
+  /**
+   * Returns whether an item is in the grid.
+   */
+  public boolean contains(T item) {
+    return entries.containsKey(item);
+  }
+
+  /**
+   * Returns the number of items in the grid.
+   */
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * Returns the items, other than the given one, whose bounds overlap those
+   * of the given item.
+   *
+   * @param item an item in the grid
+   * @return the overlapping items, or an empty list if the item is not in
+   *     the grid
+   */
+  public List<T> query(T item) {
+    List<T> found = new ArrayList<>();
+    Entry<T> entry = entries.get(item);
+    if (entry == null) {
+      return found;
+    }
+    int query = ++queries;
+    entry.lastQuery = query;
+    if (entry.oversized) {
+      // It would be found in most cells anyway.
+      for (Entry<T> other : entries.values()) {
+        collect(entry, other, query, found);
+      }
+      return found;
+    }
+    for (int column = entry.minColumn; column <= entry.maxColumn; column++) {
+      for (int row = entry.minRow; row <= entry.maxRow; row++) {
+        List<Entry<T>> cell = cells.get(key(column, row));
+        for (int i = 0; i < cell.size(); i++) {
+          collect(entry, cell.get(i), query, found);
+        }
+      }
+    }
+    for (int i = 0; i < oversized.size(); i++) {
+      collect(entry, oversized.get(i), query, found);
+    }
+    return found;
+  }
+
+  private void collect(Entry<T> entry, Entry<T> other, int query, List<T> found) {
+    if (other.lastQuery != query) {
+      other.lastQuery = query;
+      if (entry.overlaps(other)) {
+        found.add(other.item);
+      }
+    }
+  }
+
+  private int cell(double coordinate) {
+    return (int) Math.floor(coordinate / cellSize);
+  }
+
+  private static Long key(int column, int row) {
+    return ((long) column << 32) | (row & 0xffffffffL);
+  }
+
+  private void unlist(Entry<T> entry) {
+    if (!entry.listed) {
+      return;
+    }
+    entry.listed = false;
+    if (entry.oversized) {
+      oversized.remove(entry);
+      return;
+    }
+    for (int column = entry.minColumn; column <= entry.maxColumn; column++) {
+      for (int row = entry.minRow; row <= entry.maxRow; row++) {
+        Long key = key(column, row);
+        List<Entry<T>> cell = cells.get(key);
+        if (cell != null && cell.remove(entry) && cell.isEmpty()) {
+          cells.remove(key);
+        }
+      }
+    }
+  }
+}
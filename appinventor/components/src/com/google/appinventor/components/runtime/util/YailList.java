@@ -11,6 +11,7 @@ import gnu.lists.LList;
 import gnu.lists.Pair;
 import gnu.math.IntNum;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
@@ -21,6 +22,15 @@ import org.json.JSONException;
  * by the Kawa framework. YailList is the main list primitive used
  * by App Inventor components.
  *
+ * <p>The items stay in a chain of Kawa pairs, so that Kawa and the
+ * runtime can walk the list as any other, but a YailList also keeps an
+ * array of the pairs holding its items, so that its size and the item at
+ * a position are found without walking the chain. The array is built
+ * when it is first needed, kept up to date by the methods here that
+ * change the list, and built again if the ends of the chain are found to
+ * have been changed some other way. Changes to the middle of the chain
+ * should go through the methods here.</p>
+ *
  */
 @SuppressWarnings("rawtypes")
 public class YailList extends Pair implements YailObject {
@@ -35,6 +45,14 @@ public class YailList extends Pair implements YailObject {
   // legitimate Yail data types.  See the definition of sanitization
   // in runtime.scm.
 
+  // The smallest index of pairs to allocate
+  private static final int MIN_INDEX_CAPACITY = 8;
+
+  // The pairs holding the items, in order, in the first pairCount
+  // entries, or null if they have not been indexed yet.
+  private transient Pair[] pairs;
+  private transient int pairCount;
+
   /**
    * Create an empty YailList.
    */
@@ -170,7 +188,20 @@ public class YailList extends Pair implements YailObject {
    */
   @Override
   public int size() {
-    return super.size() - 1;
+    pairs();
+    return pairCount;
+  }
+
+  /**
+   * Return the element at the given position, counting the header as
+   * position 0, as Pair does.
+   */
+  @Override
+  public Object get(int position) {
+    if (position == 0) {
+      return car;
+    }
+    return pair(position - 1).getCar();
   }
 
   /**
@@ -200,4 +231,107 @@ public class YailList extends Pair implements YailObject {
   public Object getObject(int index) {
     return get(index + 1);
   }
+
+  /**
+   * Replace the Object at the given index.
+   */
+  public void setObject(int index, Object value) {
+    pair(index).setCar(value);
+  }
+
+  /**
+   * Add an Object to the end of this YailList.
+   */
+  public void addObject(Object value) {
+    insertObject(size(), value);
+  }
+
+  /**
+   * Add the items of another YailList, which may be this one, to the end
+   * of this YailList. The items themselves are not copied.
+   */
+  public void addAllObjects(YailList other) {
+    for (Object value : other.toArray()) {
+      addObject(value);
+    }
+  }
+
+  /**
+   * Insert an Object at the given index, which may be the size of this
+   * YailList to add it to the end.
+   */
+  public void insertObject(int index, Object value) {
+    Pair[] cells = pairs();
+    if (index < 0 || index > pairCount) {
+      throw new IndexOutOfBoundsException("index " + index + ", size " + pairCount);
+    }
+    Pair cell = new Pair(value, index < pairCount ? cells[index] : LList.Empty);
+    if (index == 0) {
+      cdr = cell;
+    } else {
+      cells[index - 1].setCdr(cell);
+    }
+    if (pairCount == cells.length) {
+      cells = pairs = Arrays.copyOf(cells, cells.length * 2);
+    }
+    System.arraycopy(cells, index, cells, index + 1, pairCount - index);
+    cells[index] = cell;
+    pairCount++;
+  }
+
+  /**
+   * Remove the Object at the given index.
+   *
+   * @return the removed Object
+   */
+  public Object removeObject(int index) {
+    Pair cell = pair(index);
+    Pair[] cells = pairs;
+    if (index == 0) {
+      cdr = cell.getCdr();
+    } else {
+      cells[index - 1].setCdr(cell.getCdr());
+    }
+    System.arraycopy(cells, index + 1, cells, index, pairCount - index - 1);
+    cells[--pairCount] = null;
+    return cell.getCar();
+  }
+
+  /**
+   * Replace the contents of this YailList.
+   */
+  @Override
+  public void setCdr(Object cdr) {
+    super.setCdr(cdr);
+    pairs = null;
+  }
+
+  // Returns the pair holding the item at the given index.
+  private Pair pair(int index) {
+    Pair[] cells = pairs();
+    if (index < 0 || index >= pairCount) {
+      throw new IndexOutOfBoundsException("index " + index + ", size " + pairCount);
+    }
+    return cells[index];
+  }
+
+  // Returns the index of the pairs holding the items, building it if it
+  // is missing or the chain no longer starts or ends where it did.
+  private Pair[] pairs() {
+    if (pairs != null && (pairCount == 0 ? cdr == LList.Empty
+        : pairs[0] == cdr && pairs[pairCount - 1].getCdr() == LList.Empty)) {
+      return pairs;
+    }
+    Pair[] cells = new Pair[MIN_INDEX_CAPACITY];
+    int size = 0;
+    for (Object rest = cdr; rest instanceof Pair; rest = ((Pair) rest).getCdr()) {
+      if (size == cells.length) {
+        cells = Arrays.copyOf(cells, size * 2);
+      }
+      cells[size++] = (Pair) rest;
+    }
+    pairs = cells;
+    pairCount = size;
+    return cells;
+  }
 }
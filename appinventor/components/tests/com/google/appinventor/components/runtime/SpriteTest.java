@@ -314,4 +314,53 @@ public class SpriteTest {
     assertEquals(40, sprite.xOrigin, DELTA);
     assertEquals(40, sprite.yOrigin, DELTA);
   }
+
+  @Test
+  public void testAdvanceByElapsedTime() {
+    TestSprite sprite = TestSprite.createTestSprite(canvasMock, handlerMock, 10, 10);
+    sprite.MoveTo(50, 50);
+    sprite.Speed(10);
+    sprite.Interval(100);
+
+    // Sprites do not move before they are initialized.
+    assertFalse(sprite.advance(50));
+    sprite.initialized = true;
+
+    // Half an interval moves half the speed.
+    assertTrue(sprite.advance(50));
+    assertEquals(55, sprite.xOrigin, DELTA);
+    assertEquals(50, sprite.yOrigin, DELTA);
+    assertEquals(55, sprite.xLeft, DELTA);
+
+    sprite.Heading(-90);  // down the screen
+    assertTrue(sprite.advance(200));
+    assertEquals(55, sprite.xOrigin, DELTA);
+    assertEquals(70, sprite.yOrigin, DELTA);
+
+    // With no interval, the sprite moves a full step each frame.
+    sprite.Interval(0);
+    assertTrue(sprite.advance(16));
+    assertEquals(80, sprite.yOrigin, DELTA);
+
+    sprite.Enabled(false);
+    assertFalse(sprite.Enabled());
+    assertFalse(sprite.advance(50));
+    assertEquals(80, sprite.yOrigin, DELTA);
+  }
+
+  @Test
+  public void testStartingToMoveWakesCanvas() {
+    TestSprite sprite = TestSprite.createTestSprite(canvasMock, handlerMock, 10, 10);
+    sprite.Enabled(false);
+    Mockito.clearInvocations(canvasMock);
+
+    // A disabled sprite does not move, so the canvas need not know.
+    sprite.Enabled(false);
+    Mockito.verify(canvasMock, Mockito.never()).spriteMotionChanged();
+
+    sprite.Enabled(true);
+    sprite.Speed(5);
+    sprite.Initialize();
+    Mockito.verify(canvasMock, Mockito.times(3)).spriteMotionChanged();
+  }
 }
@@ -7,9 +7,17 @@ package com.google.appinventor.components.runtime;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
 
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Looper;
+import com.google.appinventor.components.runtime.util.YailDictionary;
+import com.google.appinventor.components.runtime.util.YailList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import org.junit.Before;
 import org.junit.Test;
@@ -79,4 +87,49 @@ public class TinyDBTest extends RobolectricTestBase {
     assertEquals("Invalid TinyDB StoreValue","test-value-3",
         aTinyDB.GetValue("test-tag-3", "tag-not-found"));
   }
+
+  @Test
+  public void testStoreValues() {
+    YailDictionary values = YailDictionary.makeDictionary(
+        "test-tag-2", "new-value-2", "test-tag-3", YailList.makeList(Arrays.asList(1, 2)));
+    aTinyDB.StoreValues(values);
+    assertEquals("new-value-2", aTinyDB.GetValue("test-tag-2", "tag-not-found"));
+    assertEquals(YailList.makeList(Arrays.asList(1, 2)),
+        aTinyDB.GetValue("test-tag-3", "tag-not-found"));
+    assertEquals(Arrays.asList("test-tag-1", "test-tag-2", "test-tag-3"), aTinyDB.GetTags());
+  }
+
+  @Test
+  public void testWriteInBackground() {
+    aTinyDB.WriteInBackground(true);
+    aTinyDB.StoreValue("test-tag-3", "test-value-3");
+    aTinyDB.ClearTag("test-tag-1");
+
+    // The changes can be read back before they are written.
+    assertEquals("test-value-3", aTinyDB.GetValue("test-tag-3", "tag-not-found"));
+    assertEquals("tag-not-found", aTinyDB.GetValue("test-tag-1", "tag-not-found"));
+    SharedPreferences prefs =
+        getForm().getSharedPreferences(TinyDB.DEFAULT_NAMESPACE, Context.MODE_PRIVATE);
+    assertFalse(prefs.contains("test-tag-3"));
+    assertTrue(prefs.contains("test-tag-1"));
+
+    // They are written together once the blocks are done.
+    shadowOf(Looper.getMainLooper()).idle();
+    assertTrue(prefs.contains("test-tag-3"));
+    assertFalse(prefs.contains("test-tag-1"));
+  }
+
+  @Test
+  public void testCachedValuesAreCopies() {
+    aTinyDB.StoreValue("list", YailList.makeList(Arrays.asList("a", "b")));
+    YailList first = (YailList) aTinyDB.GetValue("list", "tag-not-found");
+    first.addObject("c");
+    YailList second = (YailList) aTinyDB.GetValue("list", "tag-not-found");
+    assertNotSame(first, second);
+    assertEquals(YailList.makeList(Arrays.asList("a", "b")), second);
+
+    // Another TinyDB storing under the same tag replaces the cached value.
+    new TinyDB(getForm()).StoreValue("list", "replaced");
+    assertEquals("replaced", aTinyDB.GetValue("list", "tag-not-found"));
+  }
 }
@@ -0,0 +1,113 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2026 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ * Tests SpatialHash class.
+ *
+ */
+public class SpatialHashTest extends TestCase {
+  private SpatialHash<String> grid;
+
+  @Override
+  protected void setUp() {
+    grid = new SpatialHash<String>(10, 16);
+  }
+
+  private void assertFound(String item, String... expected) {
+    assertEquals(new HashSet<String>(Arrays.asList(expected)),
+        new HashSet<String>(grid.query(item)));
+    assertEquals(expected.length, grid.query(item).size());
+  }
+
+  public void testOverlapping() {
+    grid.update("a", 0, 0, 15, 15);
+    grid.update("b", 12, 12, 30, 30);
+    grid.update("c", 31, 31, 35, 35);
+    assertFound("a", "b");
+    assertFound("b", "a");
+    assertFound("c");
+  }
+
+  public void testTouching() {
+    grid.update("a", 0, 0, 10, 10);
+    grid.update("b", 10, 0, 20, 10);
+    grid.update("c", 0, 10.5, 10, 20);
+    assertFound("a", "b");
+    assertFound("b", "a");
+  }
+
+  public void testMoveAndRemove() {
+    grid.update("a", 0, 0, 5, 5);
+    grid.update("b", 100, 100, 105, 105);
+    assertFound("a");
+    grid.update("b", 3, 3, 8, 8);
+    assertFound("a", "b");
+    grid.update("b", -50, -50, -45, -45);
+    assertFound("a");
+    assertFound("b");
+    grid.update("a", -48, -48, -40, -40);
+    assertFound("b", "a");
+    grid.remove("a");
+    assertFalse(grid.contains("a"));
+    assertTrue(grid.contains("b"));
+    assertEquals(1, grid.size());
+    assertFound("b");
+    assertFound("a");
+  }
+
+  public void testOversized() {
+    grid.update("big", 0, 0, 1000, 1000);
+    grid.update("inside", 500, 500, 510, 510);
+    grid.update("outside", 1001, 0, 1010, 10);
+    assertFound("big", "inside");
+    assertFound("inside", "big");
+    assertFound("outside");
+    // Shrinking it puts it back in the cells.
+    grid.update("big", 995, 0, 1005, 10);
+    assertFound("big", "outside");
+    assertFound("inside");
+  }
+
+  public void testAgreesWithPairwiseChecks() {
+    Random random = new Random(42);
+    List<String> items = new ArrayList<String>();
+    List<BoundingBox> bounds = new ArrayList<BoundingBox>();
+    for (int i = 0; i < 200; i++) {
+      items.add("item" + i);
+      bounds.add(null);
+    }
+    for (int round = 0; round < 5; round++) {
+      for (int i = 0; i < items.size(); i++) {
+        double left = random.nextInt(400) - 200;
+        double top = random.nextInt(400) - 200;
+        BoundingBox box = new BoundingBox(left, top,
+            left + random.nextInt(i % 10 == 0 ? 200 : 30), top + random.nextInt(30));
+        bounds.set(i, box);
+        grid.update(items.get(i), box.getLeft(), box.getTop(), box.getRight(), box.getBottom());
+      }
+      for (int i = 0; i < items.size(); i++) {
+        List<String> expected = new ArrayList<String>();
+        for (int j = 0; j < items.size(); j++) {
+          BoundingBox a = bounds.get(i);
+          BoundingBox b = bounds.get(j);
+          if (i != j && a.getLeft() <= b.getRight() && b.getLeft() <= a.getRight()
+              && a.getTop() <= b.getBottom() && b.getTop() <= a.getBottom()) {
+            expected.add(items.get(j));
+          }
+        }
+        assertFound(items.get(i), expected.toArray(new String[0]));
+      }
+    }
+  }
+}
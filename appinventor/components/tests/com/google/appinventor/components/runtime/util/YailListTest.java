@@ -7,6 +7,7 @@
 package com.google.appinventor.components.runtime.util;
 
 import gnu.lists.FString;
+import gnu.lists.LList;
 import gnu.math.IntNum;
 
 import org.junit.Test;
@@ -235,4 +236,52 @@ public class YailListTest {
     assertEquals(Long.toString(Long.MAX_VALUE), strings[0]);
     assertEquals(Long.toString(Long.MAX_VALUE), strings[1]);
   }
+
+  @Test
+  public void testIndexedChanges() {
+    YailList yailList = new YailList();
+    for (int i = 0; i < 1000; i++) {
+      yailList.addObject(i);
+    }
+    assertEquals(1000, yailList.size());
+    assertEquals(999, yailList.getObject(999));
+    yailList.insertObject(0, "first");
+    yailList.insertObject(500, "middle");
+    yailList.setObject(1001, "last");
+    assertEquals(1002, yailList.size());
+    assertEquals("first", yailList.getObject(0));
+    assertEquals("middle", yailList.getObject(500));
+    assertEquals("last", yailList.getObject(1001));
+    assertEquals("middle", yailList.removeObject(500));
+    assertEquals("last", yailList.removeObject(1000));
+    assertEquals(1000, yailList.size());
+    assertEquals(998, yailList.getObject(999));
+    try {
+      yailList.removeObject(1000);
+      fail();
+    } catch (IndexOutOfBoundsException e) {
+      // this is the intended behavior
+    }
+  }
+
+  @Test
+  public void testAddAllObjectsOfItself() {
+    YailList yailList = YailList.makeList(new Object[] {"a", "b"});
+    yailList.addAllObjects(yailList);
+    assertEquals("(a b a b)", yailList.toString());
+    assertEquals(4, yailList.size());
+  }
+
+  @Test
+  public void testContentsReplaced() {
+    YailList yailList = YailList.makeList(new Object[] {"a", "b", "c"});
+    assertEquals(3, yailList.size());
+    yailList.setCdr(LList.list1("d"));
+    assertEquals(1, yailList.size());
+    assertEquals("d", yailList.getObject(0));
+    yailList.setCdr(LList.Empty);
+    assertEquals(0, yailList.size());
+    yailList.addObject("e");
+    assertEquals("(e)", yailList.toString());
+  }
 }